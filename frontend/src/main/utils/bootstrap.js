@@ -0,0 +1,10 @@
+import axios from "axios";
+
+// The current user and the system info both come from one /api/bootstrap
+// call; hooks that ask at the same time share the request in flight.
+export function fetchBootstrap(queryClient) {
+  return queryClient.fetchQuery("bootstrap", async () => {
+    const response = await axios.get("/api/bootstrap");
+    return response.data;
+  });
+}
@@ -1,19 +1,23 @@
 import { useMutation, useQuery, useQueryClient } from "react-query";
 import axios from "axios";
 import { useNavigate } from "react-router-dom"
+import { fetchBootstrap } from "main/utils/bootstrap";
 
 export function useCurrentUser() {
+  const queryClient = useQueryClient();
   let rolesList = ["ERROR_GETTING_ROLES"];
   return useQuery("current user", async () => {
     try {
-      const response = await axios.get("/api/currentUser");
+      const { currentUser } = await fetchBootstrap(queryClient);
+      if (currentUser == null) {
+        return { loggedIn: false, root: null };
+      }
       try {
-        rolesList = response.data.roles.map((r) => r.authority);
+        rolesList = currentUser.roles.map((r) => r.authority);
       } catch (e) {
         console.error("Error getting roles: ", e);
       }
-      response.data = { ...response.data, rolesList: rolesList }
-      return { loggedIn: true, root: response.data };
+      return { loggedIn: true, root: { ...currentUser, rolesList: rolesList } };
     } catch (e) {
       console.error("Error invoking axios.get: ", e);
       return { loggedIn: false, root: null };
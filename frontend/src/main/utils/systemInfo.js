@@ -1,12 +1,12 @@
-import { useQuery } from "react-query";
-import axios from "axios";
+import { useQuery, useQueryClient } from "react-query";
+import { fetchBootstrap } from "main/utils/bootstrap";
 
 export function useSystemInfo() {
-  
+  const queryClient = useQueryClient();
   return useQuery("systemInfo", async () => {
     try {
-      const response = await axios.get("/api/systemInfo");
-      return response.data;
+      const { systemInfo } = await fetchBootstrap(queryClient);
+      return systemInfo;
     } catch (e) {
       console.error("Error invoking axios.get: ", e);
       return {  
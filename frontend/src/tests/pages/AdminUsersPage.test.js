@@ -19,8 +19,7 @@ describe("AdminUsersPage tests", () => {
     beforeEach( () => {
         axiosMock.reset();
         axiosMock.resetHistory();
-        axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-        axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+        axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
     });
 
     test("renders without crashing on three users", async () => {
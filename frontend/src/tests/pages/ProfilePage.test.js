@@ -15,8 +15,7 @@ describe("ProfilePage tests", () => {
     test("renders correctly for regular logged in user", async () => {
 
         const axiosMock =new AxiosMockAdapter(axios);
-        axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-        axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+        axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
 
         const { getByText } = render(
             <QueryClientProvider client={queryClient}>
@@ -33,8 +32,7 @@ describe("ProfilePage tests", () => {
     test("renders correctly for admin user", async () => {
 
         const axiosMock =new AxiosMockAdapter(axios);
-        axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.adminUser);
-        axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+        axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.adminUser, systemInfo: systemInfoFixtures.showingNeither });
 
         const { getByText, getByTestId } = render(
             <QueryClientProvider client={queryClient}>
@@ -11,8 +11,7 @@ import AxiosMockAdapter from "axios-mock-adapter";
 describe("TodosIndexPage tests", () => {
 
     const axiosMock =new AxiosMockAdapter(axios);
-    axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-    axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+    axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
 
     const queryClient = new QueryClient();
     test("renders without crashing", () => {
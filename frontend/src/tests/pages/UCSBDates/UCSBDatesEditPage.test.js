@@ -42,8 +42,7 @@ describe("UCSBDatesEditPage tests", () => {
         beforeEach(() => {
             axiosMock.reset();
             axiosMock.resetHistory();
-            axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-            axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
             axiosMock.onGet("/api/ucsbdates", { params: { id: 17 } }).timeout();
         });
 
@@ -72,8 +71,7 @@ describe("UCSBDatesEditPage tests", () => {
         beforeEach(() => {
             axiosMock.reset();
             axiosMock.resetHistory();
-            axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-            axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
             axiosMock.onGet("/api/ucsbdates", { params: { id: 17 } }).reply(200, {
                 id: 17,
                 quarterYYYYQ: '20221',
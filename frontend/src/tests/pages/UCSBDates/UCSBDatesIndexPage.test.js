@@ -31,15 +31,13 @@ describe("UCSBDatesIndexPage tests", () => {
     const setupUserOnly = () => {
         axiosMock.reset();
         axiosMock.resetHistory();
-        axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-        axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+        axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
     };
 
     const setupAdminUser = () => {
         axiosMock.reset();
         axiosMock.resetHistory();
-        axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.adminUser);
-        axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+        axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.adminUser, systemInfo: systemInfoFixtures.showingNeither });
     };
 
     test("renders without crashing for regular user", () => {
@@ -6,6 +6,7 @@ import mockConsole from "jest-mock-console";
 import { act } from 'react-dom/test-utils';
 import { useNavigate } from "react-router-dom";
 import { systemInfoFixtures } from "fixtures/systemInfoFixtures";
+import { useSystemInfo } from "main/utils/systemInfo";
 
 import axios from "axios";
 import AxiosMockAdapter from "axios-mock-adapter";
@@ -24,8 +25,7 @@ describe("utils/currentUser tests", () => {
             );
 
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/currentUser").timeoutOnce();
-            axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+            axiosMock.onGet("/api/bootstrap").timeoutOnce();
 
             const restoreConsole = mockConsole();
 
@@ -55,8 +55,7 @@ describe("utils/currentUser tests", () => {
             );
 
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/currentUser").reply(200, apiCurrentUserFixtures.userOnly);
-            axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingNeither });
 
             const { result, waitFor } = renderHook(() => useCurrentUser(), { wrapper });
 
@@ -78,7 +77,7 @@ describe("utils/currentUser tests", () => {
             );
 
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/currentUser").reply(404)
+            axiosMock.onGet("/api/bootstrap").reply(404)
 
             const restoreConsole = mockConsole();
             const { result, waitFor } = renderHook(() => useCurrentUser(), { wrapper });
@@ -104,7 +103,7 @@ describe("utils/currentUser tests", () => {
 
             const apiResult = apiCurrentUserFixtures.missingRolesToTestErrorHandling;
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/currentUser").reply(200, apiResult);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiResult, systemInfo: systemInfoFixtures.showingNeither });
 
             const restoreConsole = mockConsole();
             const { result, waitFor } = renderHook(() => useCurrentUser(), { wrapper });
@@ -120,6 +119,51 @@ describe("utils/currentUser tests", () => {
             queryClient.clear();
         });
 
+        test("test useCurrentUser when nobody is logged in ", async () => {
+
+            const queryClient = new QueryClient();
+            const wrapper = ({ children }) => (
+                <QueryClientProvider client={queryClient}>
+                    {children}
+                </QueryClientProvider>
+            );
+
+            const axiosMock =new AxiosMockAdapter(axios);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: null, systemInfo: systemInfoFixtures.showingNeither });
+
+            const restoreConsole = mockConsole();
+            const { result, waitFor } = renderHook(() => useCurrentUser(), { wrapper });
+
+            await waitFor(() => result.current.isFetched);
+            expect(console.error).not.toHaveBeenCalled();
+            restoreConsole();
+
+            expect(result.current.data).toEqual({ loggedIn: false, root: null });
+            queryClient.clear();
+        });
+
+        test("test useCurrentUser and useSystemInfo share one bootstrap request ", async () => {
+
+            const queryClient = new QueryClient();
+            const wrapper = ({ children }) => (
+                <QueryClientProvider client={queryClient}>
+                    {children}
+                </QueryClientProvider>
+            );
+
+            const axiosMock =new AxiosMockAdapter(axios);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: apiCurrentUserFixtures.userOnly, systemInfo: systemInfoFixtures.showingBoth });
+
+            const { result, waitFor } = renderHook(() => ({ currentUser: useCurrentUser(), systemInfo: useSystemInfo() }), { wrapper });
+
+            await waitFor(() => result.current.currentUser.isFetched && result.current.systemInfo.isFetched);
+
+            expect(result.current.currentUser.data).toEqual(currentUserFixtures.userOnly);
+            expect(result.current.systemInfo.data).toEqual(systemInfoFixtures.showingBoth);
+            expect(axiosMock.history.get.length).toEqual(1);
+            queryClient.clear();
+        });
+
     });
     describe("useLogout tests", () => {
         test("useLogout  ", async () => {
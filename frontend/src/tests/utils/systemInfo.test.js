@@ -21,8 +21,8 @@ describe("utils/systemInfo tests", () => {
             );
 
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/systemInfo").timeoutOnce();
-            axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingNeither);
+            axiosMock.onGet("/api/bootstrap").timeoutOnce();
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: null, systemInfo: systemInfoFixtures.showingNeither });
 
             const restoreConsole = mockConsole();
 
@@ -56,7 +56,7 @@ describe("utils/systemInfo tests", () => {
             );
 
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/systemInfo").reply(200, systemInfoFixtures.showingBoth);
+            axiosMock.onGet("/api/bootstrap").reply(200, { currentUser: null, systemInfo: systemInfoFixtures.showingBoth });
 
             const { result, waitFor } = renderHook(() => useSystemInfo(), { wrapper });
 
@@ -78,7 +78,7 @@ describe("utils/systemInfo tests", () => {
             );
 
             const axiosMock =new AxiosMockAdapter(axios);
-            axiosMock.onGet("/api/systemInfo").reply(404)
+            axiosMock.onGet("/api/bootstrap").reply(404)
 
             const restoreConsole = mockConsole();
             const { result, waitFor } = renderHook(() => useSystemInfo(), { wrapper });
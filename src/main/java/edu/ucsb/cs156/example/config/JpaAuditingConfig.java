@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+// Fills in the @LastModifiedDate columns used by the /changes endpoints.
+// Kept off ExampleApplication so @WebMvcTest slices don't try to start JPA.
+
+@Configuration
+@EnableJpaAuditing
+public class JpaAuditingConfig {
+}
@@ -1,22 +1,78 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.Tombstone;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.PreconditionFailedException;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.ChangeClockRepository;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityCacheService;
+import edu.ucsb.cs156.example.services.IdempotencyService;
+import edu.ucsb.cs156.example.services.NegativeLookupService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @Slf4j
 public abstract class ApiController {
+  // upper bound on the number of ids accepted by a /batch lookup
+  protected static final int MAX_BATCH_IDS = 1000;
+
+  protected static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private ResponseCacheService responseCacheService;
+
+  @Autowired
+  private EntityCacheService entityCacheService;
+
+  @Autowired
+  private NegativeLookupService negativeLookupService;
+
+  @Autowired
+  private TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  private IdempotencyService idempotencyService;
+
+  @Autowired
+  private ApplicationEventPublisher eventPublisher;
+
+  @Autowired
+  private ChangeClockRepository changeClockRepository;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -25,6 +81,165 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  // Serves a listing of entityType from the response cache; loader is only
+  // called when one of the entity*() hooks below has run since the last render.
+  protected ResponseEntity<byte[]> cachedListing(Class<?> entityType, String acceptEncoding, Supplier<?> loader)
+      throws JsonProcessingException {
+    return responseCacheService.serve(entityType.getSimpleName(), acceptEncoding, loader);
+  }
+
+  // Another listing of entityType (e.g. with extra rows), cached under its
+  // own name but dropped by the same entity*() hooks.
+  protected ResponseEntity<byte[]> cachedListing(Class<?> entityType, String variant, String acceptEncoding,
+      Supplier<?> loader) throws JsonProcessingException {
+    return responseCacheService.serve(entityType.getSimpleName() + ":" + variant, acceptEncoding, loader);
+  }
+
+  // Serves a single entity as JSON bytes from the entity cache; finder only
+  // runs (and Jackson only serializes) on a cache miss. Ids known not to
+  // exist are rejected before either cache or database is consulted.
+  // Versioned entities carry their version as the ETag.
+  protected ResponseEntity<byte[]> cachedEntity(Class<?> entityType, Object id, Supplier<? extends Optional<?>> finder)
+      throws JsonProcessingException {
+    if (negativeLookupService.isKnownMissing(entityType, id)) {
+      throw new EntityNotFoundException(entityType, id);
+    }
+    EntityCacheService.CachedEntity cached = entityCacheService.get(entityType, id,
+        () -> finder.get().orElseThrow(() -> {
+          negativeLookupService.recordMiss(entityType, id);
+          return new EntityNotFoundException(entityType, id);
+        }));
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+    if (cached.version() != null) {
+      response.eTag(etagOf(cached.version()));
+    }
+    return response.body(cached.body());
+  }
+
+  protected static String etagOf(long version) {
+    return "\"" + version + "\"";
+  }
+
+  // Write handlers call this with the If-Match header (if any) before
+  // changing the entity; a client holding a stale ETag gets a 412 instead
+  // of silently overwriting someone else's change.
+  protected void checkIfMatch(Class<?> entityType, Object id, String ifMatch, long version) {
+    if (ifMatch == null) {
+      return;
+    }
+    String current = etagOf(version);
+    for (String tag : ifMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*") || tag.equals(current)) {
+        return;
+      }
+    }
+    throw new PreconditionFailedException(entityType, id, current);
+  }
+
+  // Resolves ids with a single finder call (findAllById, i.e. one IN query)
+  // and returns the hits in request order along with the ids not found.
+  protected <T, ID> BatchResult<T> batchLookup(List<ID> ids, Function<Set<ID>, Iterable<T>> finder,
+      Function<T, ID> idOf) {
+    Set<ID> unique = new LinkedHashSet<>(ids);
+    if (unique.size() > MAX_BATCH_IDS) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "at most %d ids can be requested at once".formatted(MAX_BATCH_IDS));
+    }
+
+    Map<ID, T> byId = new HashMap<>();
+    if (!unique.isEmpty()) {
+      finder.apply(unique).forEach(entity -> byId.put(idOf.apply(entity), entity));
+    }
+
+    List<T> found = new ArrayList<>();
+    List<Object> missing = new ArrayList<>();
+    for (ID id : unique) {
+      T entity = byId.get(id);
+      if (entity != null) {
+        found.add(entity);
+      } else {
+        missing.add(id);
+      }
+    }
+    return BatchResult.<T>builder().found(found).missing(missing).build();
+  }
+
+  // Rows of entityType changed or deleted after the since token (the change
+  // sequence number returned by the previous call; 0 for a full sync).
+  // finder runs one range query on the indexed changeSeq column; parseId
+  // turns a tombstone's stored id back into the entity's id type.
+  protected <T> ChangeSet<T> changesSince(Class<T> entityType, long since,
+      BiFunction<Long, Long, List<T>> finder, Function<T, ?> idOf, Function<String, ?> parseId) {
+    long until = changeClockRepository.current().orElse(0L);
+    if (since > until) {
+      // not a token this database handed out, e.g. one from before the change clock
+      since = 0;
+    }
+    if (since == until) {
+      return ChangeSet.<T>builder().changed(List.of()).deleted(List.of()).token(until).build();
+    }
+
+    List<T> changed = finder.apply(since, until);
+    // a String-keyed row can be deleted and then re-created under the same key
+    Set<String> live = changed.stream().map(entity -> idOf.apply(entity).toString()).collect(Collectors.toSet());
+    List<Object> deleted = tombstoneRepository.findDeletedBetween(entityType.getSimpleName(), since, until).stream()
+        .map(Tombstone::getEntityId)
+        .filter(id -> !live.contains(id))
+        .distinct()
+        .<Object>map(parseId::apply)
+        .collect(Collectors.toList());
+
+    return ChangeSet.<T>builder().changed(changed).deleted(deleted).token(until).build();
+  }
+
+  // Runs create at most once per Idempotency-Key header value; a retry with
+  // the same key (same entity type and user) gets the first call's result.
+  // Without a key, create simply runs.
+  protected <T> T idempotent(Class<?> entityType, String idempotencyKey, Supplier<T> create) {
+    if (idempotencyKey == null || idempotencyKey.isBlank()) {
+      return create.get();
+    }
+    String user = SecurityContextHolder.getContext().getAuthentication().getName();
+    return idempotencyService.execute(String.join("\n", entityType.getSimpleName(), user, idempotencyKey), create);
+  }
+
+  // Write handlers call these after the repository call succeeds. Besides
+  // dropping cached copies, each publishes an EntityChangedEvent; services
+  // keeping state derived from the entity listen for that rather than being
+  // called by the handler, so they only see writes that commit.
+
+  protected <T> void entityCreated(Class<T> entityType, Object id, T created) {
+    negativeLookupService.recordCreated(entityType, id);
+    responseCacheService.invalidate(entityType.getSimpleName());
+    eventPublisher.publishEvent(EntityChangedEvent.created(entityType, id, created));
+  }
+
+  protected <T> void entityUpdated(Class<T> entityType, Object id, T current) {
+    entityUpdated(entityType, id, null, current);
+  }
+
+  // previous: a copy of the entity as it was read, for listeners that look
+  // at what changed
+  protected <T> void entityUpdated(Class<T> entityType, Object id, T previous, T current) {
+    entityCacheService.invalidate(entityType, id);
+    responseCacheService.invalidate(entityType.getSimpleName());
+    eventPublisher.publishEvent(EntityChangedEvent.updated(entityType, id, previous, current));
+  }
+
+  // callers are @Transactional, so the tombstone commits with the delete or
+  // not at all, and the DELETED event goes out after that commit
+  protected <T> void entityDeleted(Class<T> entityType, Object id, T deleted) {
+    tombstoneRepository.save(Tombstone.builder()
+        .entityType(entityType.getSimpleName())
+        .entityId(id.toString())
+        .deletedAt(Instant.now())
+        .build());
+    entityCacheService.invalidate(entityType, id);
+    responseCacheService.invalidate(entityType.getSimpleName());
+    eventPublisher.publishEvent(EntityChangedEvent.deleted(entityType, id, deleted));
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
@@ -33,4 +248,18 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  // the If-Match check passed but another write committed before ours
+  // flushed; @Version catches that as an optimistic locking failure
+  @ExceptionHandler({ PreconditionFailedException.class, OptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  public Object handlePreconditionFailed(RuntimeException e) {
+    String message = e instanceof PreconditionFailedException
+        ? e.getMessage()
+        : "the entity was changed by another request; reload it and try again";
+    return Map.of(
+      "type", PreconditionFailedException.class.getSimpleName(),
+      "message", message
+    );
+  }
 }
@@ -2,6 +2,8 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Articles;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,18 +14,24 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
 
 
@@ -38,20 +46,35 @@ public class ArticlesController extends ApiController{
     @Operation(summary= "List all articles")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<Articles> allArticles() {
-        Iterable<Articles> articles = articlesRepository.findAll();
-        return articles;
+    public ResponseEntity<byte[]> allArticles(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        return cachedListing(Articles.class, acceptEncoding, () -> articlesRepository.findAll());
     }
 
     @Operation(summary= "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Articles getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        Articles articles = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="id") @RequestParam Long id)
+            throws JsonProcessingException {
+        return cachedEntity(Articles.class, id, () -> articlesRepository.findById(id));
+    }
 
-        return articles;
+    @Operation(summary= "Get several articles at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<Articles> getByIds(
+            @Parameter(name="ids", description="comma separated list of ids") @RequestParam List<Long> ids) {
+        return batchLookup(ids, articlesRepository::findAllById, Articles::getId);
+    }
+
+    @Operation(summary= "List articles created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<Articles> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(Articles.class, since, articlesRepository::findChangedBetween, Articles::getId, Long::valueOf);
     }
 
     @Operation(summary= "Create a new article")
@@ -62,7 +85,8 @@ public class ArticlesController extends ApiController{
             @Parameter(name="url") @RequestParam String url,
             @Parameter(name="explanation") @RequestParam String explanation,
             @Parameter(name="email") @RequestParam String email,
-            @Parameter(name="dateAdded") @RequestParam("dateAdded") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateAdded)
+            @Parameter(name="dateAdded") @RequestParam("dateAdded") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateAdded,
+            @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey)
             throws JsonProcessingException {
 
         // For an explanation of @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
@@ -77,20 +101,26 @@ public class ArticlesController extends ApiController{
         articles.setEmail(email);
         articles.setDateAdded(dateAdded);
 
-        Articles savedArticles = articlesRepository.save(articles);
-
-        return savedArticles;
+        return idempotent(Articles.class, idempotencyKey, () -> {
+            Articles saved = articlesRepository.save(articles);
+            entityCreated(Articles.class, saved.getId(), saved);
+            return saved;
+        });
     }
   
     @Operation(summary= "Delete a Article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteHelpRequest(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Articles articles = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+        checkIfMatch(Articles.class, id, ifMatch, articles.getVersion());
 
         articlesRepository.delete(articles);
+        entityDeleted(Articles.class, id, articles);
         return genericMessage("Articles with id %s deleted".formatted(id));
     }
     
@@ -99,10 +129,12 @@ public class ArticlesController extends ApiController{
     @PutMapping("")
     public Articles updateArticle(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid Articles incoming) {
+            @RequestBody @Valid Articles incoming,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         Articles articles = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+        checkIfMatch(Articles.class, id, ifMatch, articles.getVersion());
 
         articles.setTitle(incoming.getTitle());
         articles.setUrl(incoming.getUrl());
@@ -111,6 +143,7 @@ public class ArticlesController extends ApiController{
         articles.setDateAdded(incoming.getDateAdded());
 
         articlesRepository.save(articles);
+        entityUpdated(Articles.class, id, articles);
 
         return articles;
     }
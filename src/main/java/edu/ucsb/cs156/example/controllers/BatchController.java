@@ -0,0 +1,187 @@
+package edu.ucsb.cs156.example.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import edu.ucsb.cs156.example.models.BatchOperation;
+import edu.ucsb.cs156.example.models.BatchOperationResult;
+import edu.ucsb.cs156.example.models.BatchResponse;
+import edu.ucsb.cs156.example.services.EntityCacheService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Tag(name = "Batch operations")
+@RequestMapping("/api/batch")
+@RestController
+@Slf4j
+public class BatchController extends ApiController {
+
+    // upper bound on the number of operations accepted in one batch
+    static final int MAX_OPERATIONS = 100;
+
+    private static final Set<String> METHODS = Set.of("GET", "POST", "PUT", "DELETE");
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    HandlerMapping handlerMapping;
+
+    @Autowired
+    RequestMappingHandlerAdapter handlerAdapter;
+
+    @Autowired
+    @Qualifier("handlerExceptionResolver")
+    HandlerExceptionResolver exceptionResolver;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ObjectMapper mapper;
+
+    @Autowired
+    ResponseCacheService responseCacheService;
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    // Each operation goes through the same handler method, argument binding,
+    // @PreAuthorize check and exception handling as it would on its own;
+    // only the transaction is shared. The first operation that fails (any
+    // status >= 400) rolls back the whole batch.
+    @Operation(summary= "Run several API calls in order, in one transaction")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @PostMapping("")
+    public BatchResponse runBatch(
+            @RequestBody List<BatchOperation> operations,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "at most %d operations can be run in one batch".formatted(MAX_OPERATIONS));
+        }
+
+        List<BatchOperationResult> results = new ArrayList<>();
+        Boolean committed;
+        try {
+            committed = new TransactionTemplate(transactionManager).execute(status -> {
+                for (BatchOperation operation : operations) {
+                    BatchOperationResult result = dispatch(operation, request, response);
+                    results.add(result);
+                    if (result.getStatus() >= 400) {
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                }
+                return true;
+            });
+        } finally {
+            // the handlers' cache hooks ran before commit (or before a rollback),
+            // so a read in between may have cached rows that are now stale
+            responseCacheService.invalidateAll();
+            entityCacheService.invalidateAll();
+        }
+
+        return BatchResponse.builder()
+                .committed(Boolean.TRUE.equals(committed))
+                .results(results)
+                .build();
+    }
+
+    private BatchOperationResult dispatch(BatchOperation operation, HttpServletRequest request,
+            HttpServletResponse response) {
+        String method = operation.getMethod() == null ? "" : operation.getMethod().toUpperCase();
+        String path = operation.getPath() == null ? "" : operation.getPath();
+        if (!METHODS.contains(method) || !path.startsWith("/api/") || path.startsWith("/api/batch")) {
+            return failure(HttpStatus.BAD_REQUEST, "BadOperation",
+                    "unsupported operation %s %s".formatted(operation.getMethod(), operation.getPath()));
+        }
+
+        if (operation.getHeaders() != null) {
+            for (String header : operation.getHeaders().keySet()) {
+                if (!BatchOperationRequest.OPERATION_HEADERS.contains(header)) {
+                    return failure(HttpStatus.BAD_REQUEST, "BadOperation",
+                            "unsupported header %s; an operation can only set %s".formatted(header,
+                                    String.join(", ", BatchOperationRequest.OPERATION_HEADERS)));
+                }
+            }
+        }
+
+        byte[] body = operation.getBody() == null || operation.getBody().isNull() ? null
+                : operation.getBody().toString().getBytes(StandardCharsets.UTF_8);
+        BatchOperationRequest operationRequest = new BatchOperationRequest(request, method, path, body, operation.getHeaders());
+        BatchOperationResponse operationResponse = new BatchOperationResponse(response);
+
+        Object handler = null;
+        try {
+            HandlerExecutionChain chain = handlerMapping.getHandler(operationRequest);
+            if (chain == null) {
+                return failure(HttpStatus.NOT_FOUND, "NoHandlerFound", "no endpoint for %s %s".formatted(method, path));
+            }
+            handler = chain.getHandler();
+            handlerAdapter.handle(operationRequest, operationResponse, handler);
+        } catch (AccessDeniedException e) {
+            return failure(HttpStatus.FORBIDDEN, e.getClass().getSimpleName(), e.getMessage());
+        } catch (Exception e) {
+            if (exceptionResolver.resolveException(operationRequest, operationResponse, handler, e) == null) {
+                log.error("batch operation {} {} failed", method, path, e);
+                return failure(HttpStatus.INTERNAL_SERVER_ERROR, e.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+
+        return BatchOperationResult.builder()
+                .status(operationResponse.getStatus())
+                .body(bodyOf(operationResponse))
+                .build();
+    }
+
+    private JsonNode bodyOf(BatchOperationResponse operationResponse) {
+        byte[] content = operationResponse.getContentAsByteArray();
+        if (content.length == 0) {
+            String error = operationResponse.getErrorMessage();
+            return error == null ? null : mapper.valueToTree(Map.of("message", error));
+        }
+        try {
+            return mapper.readTree(content);
+        } catch (IOException e) {
+            return TextNode.valueOf(new String(content, StandardCharsets.UTF_8));
+        }
+    }
+
+    private BatchOperationResult failure(HttpStatus status, String type, String message) {
+        return BatchOperationResult.builder()
+                .status(status.value())
+                .body(mapper.valueToTree(Map.of("type", type, "message", String.valueOf(message))))
+                .build();
+    }
+}
@@ -0,0 +1,240 @@
+package edu.ucsb.cs156.example.controllers;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// The request seen by the handler of one operation inside POST /api/batch.
+// Method, path, parameters and body come from the operation; everything
+// else (session, security context, Accept) comes from the batch request.
+// The exceptions are OPERATION_HEADERS, which only ever come from the
+// operation: one Idempotency-Key on the batch would make every create of
+// the same type in it return the first one's row, and one If-Match would
+// apply to every update in it.
+//
+// Attributes are kept per operation: handler mapping caches the lookup
+// path and URI variables as request attributes, and those must not leak
+// from one operation into the next.
+
+class BatchOperationRequest extends HttpServletRequestWrapper {
+
+  static final Set<String> OPERATION_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+  static {
+    OPERATION_HEADERS.addAll(List.of(ApiController.IDEMPOTENCY_KEY, HttpHeaders.IF_MATCH, HttpHeaders.IF_NONE_MATCH));
+  }
+
+  private final String method;
+  private final String path;
+  private final String query;
+  private final Map<String, String[]> parameters = new LinkedHashMap<>();
+  private final byte[] body;
+  private final Map<String, String> headers = new LinkedCaseInsensitiveMap<>();
+  private final Map<String, Object> attributes = new HashMap<>();
+
+  BatchOperationRequest(HttpServletRequest request, String method, String pathAndQuery, byte[] body,
+      Map<String, String> headers) {
+    super(request);
+    UriComponents uri = UriComponentsBuilder.fromUriString(pathAndQuery).build();
+    this.method = method;
+    this.path = uri.getPath();
+    this.query = uri.getQuery();
+    this.body = body;
+    if (headers != null) {
+      this.headers.putAll(headers);
+    }
+
+    MultiValueMap<String, String> queryParams = uri.getQueryParams();
+    MultiValueMap<String, String> decoded = new LinkedMultiValueMap<>();
+    queryParams.forEach((name, values) -> values.forEach(value ->
+        decoded.add(UriUtils.decode(name, StandardCharsets.UTF_8),
+            value == null ? "" : UriUtils.decode(value, StandardCharsets.UTF_8))));
+    decoded.forEach((name, values) -> parameters.put(name, values.toArray(String[]::new)));
+
+    // DispatcherServlet's own attributes (application context, locale resolver...) still apply
+    for (String name : Collections.list(request.getAttributeNames())) {
+      if (name.startsWith(DispatcherServlet.class.getName())) {
+        attributes.put(name, request.getAttribute(name));
+      }
+    }
+  }
+
+  @Override
+  public String getMethod() {
+    return method;
+  }
+
+  @Override
+  public String getRequestURI() {
+    return getContextPath() + path;
+  }
+
+  @Override
+  public String getServletPath() {
+    return path;
+  }
+
+  @Override
+  public String getPathInfo() {
+    return null;
+  }
+
+  @Override
+  public String getQueryString() {
+    return query;
+  }
+
+  @Override
+  public String getParameter(String name) {
+    String[] values = parameters.get(name);
+    return values == null ? null : values[0];
+  }
+
+  @Override
+  public Map<String, String[]> getParameterMap() {
+    return Collections.unmodifiableMap(parameters);
+  }
+
+  @Override
+  public Enumeration<String> getParameterNames() {
+    return Collections.enumeration(parameters.keySet());
+  }
+
+  @Override
+  public String[] getParameterValues(String name) {
+    return parameters.get(name);
+  }
+
+  @Override
+  public String getContentType() {
+    return body == null ? null : MediaType.APPLICATION_JSON_VALUE;
+  }
+
+  @Override
+  public int getContentLength() {
+    return body == null ? -1 : body.length;
+  }
+
+  @Override
+  public long getContentLengthLong() {
+    return getContentLength();
+  }
+
+  @Override
+  public String getHeader(String name) {
+    List<String> values = headerValues(name);
+    if (values == null) {
+      return super.getHeader(name);
+    }
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  @Override
+  public Enumeration<String> getHeaders(String name) {
+    List<String> values = headerValues(name);
+    return values == null ? super.getHeaders(name) : Collections.enumeration(values);
+  }
+
+  // headers that describe the operation rather than the batch; null for the rest
+  private List<String> headerValues(String name) {
+    if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+      return body == null ? List.of() : List.of(getContentType());
+    }
+    if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+      return body == null ? List.of() : List.of(Integer.toString(body.length));
+    }
+    if (OPERATION_HEADERS.contains(name)) {
+      String value = headers.get(name);
+      return value == null ? List.of() : List.of(value);
+    }
+    if (HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(name)) {
+      // results are embedded in the batch response as JSON, so never gzip them
+      return List.of();
+    }
+    return null;
+  }
+
+  @Override
+  public ServletInputStream getInputStream() {
+    ByteArrayInputStream in = new ByteArrayInputStream(body == null ? new byte[0] : body);
+    return new ServletInputStream() {
+      @Override
+      public int read() {
+        return in.read();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        return in.read(b, off, len);
+      }
+
+      @Override
+      public boolean isFinished() {
+        return in.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(ReadListener readListener) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public BufferedReader getReader() {
+    return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return attributes.get(name);
+  }
+
+  @Override
+  public Enumeration<String> getAttributeNames() {
+    return Collections.enumeration(attributes.keySet());
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    if (value == null) {
+      attributes.remove(name);
+    } else {
+      attributes.put(name, value);
+    }
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    attributes.remove(name);
+  }
+}
@@ -0,0 +1,192 @@
+package edu.ucsb.cs156.example.controllers;
+
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+// Captures the status and body written by the handler of one operation
+// inside POST /api/batch. Nothing reaches the real response: headers,
+// status and content all stay here until the batch controller copies the
+// status and body into the batch result.
+
+class BatchOperationResponse extends HttpServletResponseWrapper {
+
+  private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+  private final HttpHeaders headers = new HttpHeaders();
+  private int status = SC_OK;
+  private String errorMessage;
+  private PrintWriter writer;
+
+  BatchOperationResponse(HttpServletResponse response) {
+    super(response);
+  }
+
+  byte[] getContentAsByteArray() {
+    if (writer != null) {
+      writer.flush();
+    }
+    return content.toByteArray();
+  }
+
+  // the message passed to sendError, if the handler or an exception resolver called it
+  String getErrorMessage() {
+    return errorMessage;
+  }
+
+  @Override
+  public int getStatus() {
+    return status;
+  }
+
+  @Override
+  public void setStatus(int sc) {
+    status = sc;
+  }
+
+  @Override
+  public void sendError(int sc) {
+    status = sc;
+  }
+
+  @Override
+  public void sendError(int sc, String msg) {
+    status = sc;
+    errorMessage = msg;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    return new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        content.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        content.write(b, off, len);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public PrintWriter getWriter() {
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(content, StandardCharsets.UTF_8));
+    }
+    return writer;
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return false;
+  }
+
+  @Override
+  public void flushBuffer() {
+  }
+
+  @Override
+  public void reset() {
+    resetBuffer();
+    headers.clear();
+    status = SC_OK;
+  }
+
+  @Override
+  public void resetBuffer() {
+    getContentAsByteArray();
+    content.reset();
+  }
+
+  @Override
+  public String getContentType() {
+    return headers.getFirst(HttpHeaders.CONTENT_TYPE);
+  }
+
+  @Override
+  public void setContentType(String type) {
+    setHeader(HttpHeaders.CONTENT_TYPE, type);
+  }
+
+  @Override
+  public void setContentLength(int len) {
+  }
+
+  @Override
+  public void setContentLengthLong(long len) {
+  }
+
+  @Override
+  public void setCharacterEncoding(String charset) {
+  }
+
+  @Override
+  public boolean containsHeader(String name) {
+    return headers.containsKey(name);
+  }
+
+  @Override
+  public String getHeader(String name) {
+    return headers.getFirst(name);
+  }
+
+  @Override
+  public Collection<String> getHeaders(String name) {
+    return headers.getOrEmpty(name);
+  }
+
+  @Override
+  public Collection<String> getHeaderNames() {
+    return headers.keySet();
+  }
+
+  @Override
+  public void setHeader(String name, String value) {
+    headers.set(name, value);
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    headers.add(name, value);
+  }
+
+  @Override
+  public void setIntHeader(String name, int value) {
+    setHeader(name, Integer.toString(value));
+  }
+
+  @Override
+  public void addIntHeader(String name, int value) {
+    addHeader(name, Integer.toString(value));
+  }
+
+  @Override
+  public void setDateHeader(String name, long date) {
+    headers.setDate(name, date);
+  }
+
+  @Override
+  public void addDateHeader(String name, long date) {
+    setDateHeader(name, date);
+  }
+}
@@ -0,0 +1,46 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.models.Bootstrap;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.SystemInfoService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collection;
+
+@Tag(name = "Bootstrap")
+@RequestMapping("/api/bootstrap")
+@RestController
+public class BootstrapController extends ApiController {
+
+    @Autowired
+    private CurrentUserService currentUserService;
+
+    @Autowired
+    private SystemInfoService systemInfoService;
+
+    @Operation(summary= "Get the current user (if logged in), their roles, and system information in one call")
+    @GetMapping("")
+    public Bootstrap getBootstrap() {
+        Collection<? extends GrantedAuthority> roles = currentUserService.getRoles();
+        boolean loggedIn = roles.stream().anyMatch(role -> role.getAuthority().equals("ROLE_USER"));
+
+        CurrentUser currentUser = !loggedIn ? null : CurrentUser.builder()
+            .user(currentUserService.getUser())
+            .roles(roles)
+            .build();
+
+        return Bootstrap.builder()
+            .currentUser(currentUser)
+            .systemInfo(systemInfoService.getSystemInfo())
+            .build();
+    }
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.models.EntityCacheStats;
+import edu.ucsb.cs156.example.services.EntityCacheService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Cache statistics (admin only)")
+@RequestMapping("/api/admin/caches")
+@RestController
+public class CachesController extends ApiController {
+
+    @Autowired
+    EntityCacheService entityCacheService;
+
+    @Operation(summary= "Size, memory use and hit rate of the single-entity JSON cache")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/entities")
+    public EntityCacheStats entityCacheStats() {
+        return entityCacheService.getStats();
+    }
+}
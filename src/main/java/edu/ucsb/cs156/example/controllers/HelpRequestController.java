@@ -1,8 +1,24 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
 import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.errors.AlreadyClaimedException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.Heatmap;
+import edu.ucsb.cs156.example.models.HelpQueueStats;
+import edu.ucsb.cs156.example.models.HelpRequestAnalytics;
+import edu.ucsb.cs156.example.models.QueuePosition;
+import edu.ucsb.cs156.example.models.SimilarHelpRequest;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpQueueService;
+import edu.ucsb.cs156.example.services.HelpQueueStatsService;
+import edu.ucsb.cs156.example.services.HelpRequestAnalyticsService;
+import edu.ucsb.cs156.example.services.HelpRequestRollupService;
+import edu.ucsb.cs156.example.services.SimilarQuestionsService;
+import edu.ucsb.cs156.example.services.SseSlaAlarmSink;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -12,18 +28,37 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Tag(name = "HelpRequest")
@@ -34,23 +69,80 @@ public class HelpRequestController extends ApiController{
     @Autowired
     HelpRequestRepository helpRequestRepository;
 
+    @Autowired
+    ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+    @Autowired
+    HelpQueueService helpQueueService;
+
+    @Autowired
+    HelpQueueStatsService helpQueueStatsService;
+
+    @Autowired
+    SseSlaAlarmSink sseSlaAlarmSink;
+
+    @Autowired
+    SimilarQuestionsService similarQuestionsService;
+
+    @Autowired
+    HelpRequestRollupService helpRequestRollupService;
+
+    @Autowired
+    HelpRequestAnalyticsService helpRequestAnalyticsService;
+
     @Operation(summary= "List of help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<HelpRequest> allHelpRequest() {
-        Iterable<HelpRequest> request = helpRequestRepository.findAll();
-        return request;
+    public ResponseEntity<byte[]> allHelpRequest(
+            @Parameter(name="includeArchived", description="also list solved requests moved to the archive") @RequestParam(defaultValue = "false") boolean includeArchived,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        if (includeArchived) {
+            return cachedListing(HelpRequest.class, "includeArchived", acceptEncoding, () -> {
+                List<Object> all = new ArrayList<>();
+                helpRequestRepository.findAll().forEach(all::add);
+                archivedHelpRequestRepository.findAll().forEach(all::add);
+                return all;
+            });
+        }
+        return cachedListing(HelpRequest.class, acceptEncoding, () -> helpRequestRepository.findAll());
     }
 
     @Operation(summary= "Get a single request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public HelpRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="includeArchived", description="fall back to solved requests moved to the archive") @RequestParam(defaultValue = "false") boolean includeArchived)
+            throws JsonProcessingException {
+        try {
+            return cachedEntity(HelpRequest.class, id, () -> helpRequestRepository.findById(id));
+        } catch (EntityNotFoundException e) {
+            if (!includeArchived) {
+                throw e;
+            }
+            try {
+                return cachedEntity(ArchivedHelpRequest.class, id, () -> archivedHelpRequestRepository.findById(id));
+            } catch (EntityNotFoundException archivedMissing) {
+                throw e;
+            }
+        }
+    }
 
-        return helpRequest;
+    @Operation(summary= "Get several help requests at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<HelpRequest> getByIds(
+            @Parameter(name="ids", description="comma separated list of ids") @RequestParam List<Long> ids) {
+        return batchLookup(ids, helpRequestRepository::findAllById, HelpRequest::getId);
+    }
+
+    @Operation(summary= "List help requests created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<HelpRequest> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(HelpRequest.class, since, helpRequestRepository::findChangedBetween, HelpRequest::getId, Long::valueOf);
     }
 
     @Operation(summary= "Create a new help request")
@@ -62,7 +154,8 @@ public class HelpRequestController extends ApiController{
             @Parameter(name="tableOrBreakoutRoom") @RequestParam String tableOrBreakoutRoom,
             @Parameter(name="explanation") @RequestParam String explanation,
             @Parameter(name="solved") @RequestParam boolean solved,
-            @Parameter(name="requestTime") @RequestParam("requestTime") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime requestTime)
+            @Parameter(name="requestTime") @RequestParam("requestTime") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime requestTime,
+            @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey)
             throws JsonProcessingException {
 
         // For an explanation of @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
@@ -78,20 +171,148 @@ public class HelpRequestController extends ApiController{
         helpRequest.setSolved(solved);
         helpRequest.setRequestTime(requestTime);
 
-        HelpRequest savedHelpRequest = helpRequestRepository.save(helpRequest);
+        // the hooks run here, so that a retry replaying the first response doesn't
+        // count it again or put a request that has since changed back in the queue
+        return idempotent(HelpRequest.class, idempotencyKey, () -> {
+            HelpRequest saved = helpRequestRepository.save(helpRequest);
+            entityCreated(HelpRequest.class, saved.getId(), saved);
+            return saved;
+        });
+    }
 
-        return savedHelpRequest;
+    @Operation(summary= "Open requests per team and table, the oldest open request, and the solve rate")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/stats")
+    public HelpQueueStats getStats() {
+        return helpQueueStatsService.getStats();
+    }
+
+    @Operation(summary= "Help requests between two dates (inclusive) by day of week and hour, from hourly rollups")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/heatmap")
+    public Heatmap getHeatmap(
+            @Parameter(name="from", description="first day, e.g. 2022-01-03") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(name="to", description="last day") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "to (%s) is before from (%s)".formatted(to, from));
+        }
+        return helpRequestRollupService.heatmap(from, to);
+    }
+
+    @Operation(summary= "Approximate distinct requesters and wait-time percentiles for help requests made between two dates (inclusive)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/analytics")
+    public HelpRequestAnalytics getAnalytics(
+            @Parameter(name="from", description="first day, e.g. 2022-01-03") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(name="to", description="last day") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "to (%s) is before from (%s)".formatted(to, from));
+        }
+        return helpRequestAnalyticsService.analytics(from, to);
+    }
+
+    @Operation(summary= "Recompute the heatmap's hourly rollups from all help requests")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/heatmap/rebuild")
+    public Object rebuildHeatmap() {
+        int hours = helpRequestRollupService.backfill();
+        return genericMessage("rebuilt %s hourly rollups".formatted(hours));
+    }
+
+    @Operation(summary= "Server-sent events: an \"overdue\" event for each help request unsolved past the SLA")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/overdue/stream")
+    public SseEmitter streamOverdue() {
+        return sseSlaAlarmSink.subscribe();
+    }
+
+    @Operation(summary= "Open help requests whose explanation is close to this one's, most similar first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/{id}/similar")
+    public List<SimilarHelpRequest> getSimilar(
+            @Parameter(name="id") @PathVariable Long id,
+            @Parameter(name="limit") @RequestParam(defaultValue = "10") int limit) {
+        HelpRequest helpRequest = helpRequestRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+
+        Map<Long, Double> similarities = new HashMap<>();
+        similarQuestionsService.similar(helpRequest, limit)
+                .forEach(match -> similarities.put(match.key(), match.similarity()));
+        if (similarities.isEmpty()) {
+            return List.of();
+        }
+        // one IN query for all the matches
+        List<SimilarHelpRequest> similar = new ArrayList<>();
+        helpRequestRepository.findAllById(similarities.keySet()).forEach(match -> similar.add(SimilarHelpRequest.builder()
+                .helpRequest(match)
+                .similarity(similarities.get(match.getId()))
+                .build()));
+        similar.sort(Comparator.comparingDouble(SimilarHelpRequest::getSimilarity).reversed());
+        return similar;
+    }
+
+    @Operation(summary= "Groups of open help requests asking near-identical questions (ids, largest group first)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/clusters")
+    public List<List<Long>> getClusters() {
+        return similarQuestionsService.clusters();
+    }
+
+    @Operation(summary= "Place in line of an unsolved help request, with an estimated wait")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/position")
+    public QueuePosition getPosition(
+            @Parameter(name="id") @RequestParam Long id) {
+        return helpQueueService.position(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "HelpRequest with id %s is not waiting".formatted(id)));
+    }
+
+    @Operation(summary= "Claim the next waiting help request for the current user, taking turns between teams; 204 if none are waiting")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/next")
+    public ResponseEntity<HelpRequest> nextHelpRequest() {
+        Optional<HelpRequest> next = helpQueueService.dispatch(getCurrentUser().getUser().getEmail());
+        next.ifPresent(helpRequest -> entityUpdated(HelpRequest.class, helpRequest.getId(), unclaimed(helpRequest), helpRequest));
+        return next.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @Operation(summary= "Claim a help request for the current user; 409 if someone else already has")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/claim")
+    public HelpRequest claimHelpRequest(
+        @Parameter(name="id") @RequestParam Long id) {
+        String email = getCurrentUser().getUser().getEmail();
+
+        if (helpRequestRepository.claim(id, email, Instant.now()) == 0) {
+            HelpRequest helpRequest = helpRequestRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+            throw new AlreadyClaimedException(HelpRequest.class, id, helpRequest.getClaimedBy());
+        }
+        HelpRequest claimed = helpRequestRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+        entityUpdated(HelpRequest.class, id, unclaimed(claimed), claimed);
+        return claimed;
+    }
+
+    // the claim is a conditional UPDATE of an unclaimed row, so this is the row before it
+    private static HelpRequest unclaimed(HelpRequest claimed) {
+        return claimed.toBuilder().claimedBy(null).claimedAt(null).build();
     }
 
     @Operation(summary= "Delete a help request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteHelpRequest(
-        @Parameter(name="id") @RequestParam Long id) {
+        @Parameter(name="id") @RequestParam Long id,
+        @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         HelpRequest helpRequest = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+        checkIfMatch(HelpRequest.class, id, ifMatch, helpRequest.getVersion());
 
         helpRequestRepository.delete(helpRequest);
+        entityDeleted(HelpRequest.class, id, helpRequest);
         return genericMessage("HelpRequest with id %s deleted".formatted(id));
     }
 
@@ -100,11 +321,19 @@ public class HelpRequestController extends ApiController{
     @PutMapping("")
     public HelpRequest updateHeloHelpRequest(
         @Parameter(name="id") @RequestParam Long id,
-        @RequestBody @Valid HelpRequest incoming) {
+        @RequestBody @Valid HelpRequest incoming,
+        @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         HelpRequest helpRequest = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+        checkIfMatch(HelpRequest.class, id, ifMatch, helpRequest.getVersion());
+        HelpRequest previous = helpRequest.toBuilder().build();
 
+        if (incoming.getSolved() && !helpRequest.getSolved()) {
+            helpRequest.setSolvedAt(Instant.now());
+        } else if (!incoming.getSolved()) {
+            helpRequest.setSolvedAt(null);
+        }
         helpRequest.setRequesterEmail(incoming.getRequesterEmail());
         helpRequest.setTeamId(incoming.getTeamId());
         helpRequest.setTableOrBreakoutRoom(incoming.getTableOrBreakoutRoom());
@@ -113,10 +342,17 @@ public class HelpRequestController extends ApiController{
         helpRequest.setRequestTime(incoming.getRequestTime());
 
         helpRequestRepository.save(helpRequest);
+        entityUpdated(HelpRequest.class, id, previous, helpRequest);
 
         return helpRequest;
     }
 
-
-
+    @ExceptionHandler({ AlreadyClaimedException.class })
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Object handleAlreadyClaimed(AlreadyClaimedException e) {
+        return Map.of(
+            "type", e.getClass().getSimpleName(),
+            "message", e.getMessage()
+        );
+    }
 }
@@ -2,7 +2,18 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.ReviewAnalytics;
+import edu.ucsb.cs156.example.models.ReviewBombingState;
+import edu.ucsb.cs156.example.models.ReviewPartitions;
+import edu.ucsb.cs156.example.models.Trending;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemReviewPartitionService;
+import edu.ucsb.cs156.example.services.ReviewBombingService;
+import edu.ucsb.cs156.example.services.ReviewColumnStoreService;
+import edu.ucsb.cs156.example.services.ReviewIngestionService;
+import edu.ucsb.cs156.example.services.TrendingService;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,47 +24,157 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 
 import javax.validation.Valid;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Tag(name = "MenuItemReview")
 @RequestMapping("/api/menuitemreview")
 @RestController
 @Slf4j
 public class MenuItemReviewController extends ApiController {
 
+    // the length of the varchar columns behind reviewerEmail and comments
+    private static final int MAX_TEXT = 255;
+
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    MenuItemReviewPartitionService menuItemReviewPartitions;
+
+    @Autowired
+    ReviewIngestionService reviewIngestion;
+
+    @Autowired
+    TrendingService trending;
+
+    @Autowired
+    ReviewBombingService reviewBombing;
+
+    @Autowired
+    ReviewColumnStoreService reviewColumns;
 
     @Operation(summary = "List all reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<MenuItemReview> allCommonss() {
-        Iterable<MenuItemReview> review = menuItemReviewRepository.findAll();
-        return review;
+    public ResponseEntity<byte[]> allCommonss(
+        @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+        throws JsonProcessingException {
+        return cachedListing(MenuItemReview.class, acceptEncoding, () -> menuItemReviewRepository.findAll());
+    }
+
+    @Operation(summary = "List the reviews of the last few days")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/recent")
+    public List<MenuItemReview> recentReviews(
+        @Parameter(name="days", description="reviews dated at most this many days ago (1 to 366)") @RequestParam(defaultValue = "7") int days) {
+        if (days < 1 || days > 366) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "days must be between 1 and 366");
+        }
+        return menuItemReviewRepository.findByDateReviewedGreaterThanEqual(LocalDateTime.now().minusDays(days));
+    }
+
+    @Operation(summary = "List the menu items with the most and best reviews lately")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/trending")
+    public Trending trendingItems(
+        @Parameter(name="window", description="how far back to look, e.g. 1h; see app.trending.windows") @RequestParam(defaultValue = "1h") String window,
+        @Parameter(name="k", description="number of items") @RequestParam(defaultValue = "10") int k) {
+        if (!trending.isWindow(window)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "window must be one of %s".formatted(String.join(", ", trending.getWindows())));
+        }
+        if (k < 1 || k > trending.getMaxK()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "k must be between 1 and %d".formatted(trending.getMaxK()));
+        }
+        return trending.trending(window, k);
+    }
+
+    @Operation(summary = "Count reviews and average their stars, filtered and grouped, from an in-memory copy refreshed every few seconds")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/analytics")
+    public ReviewAnalytics analytics(
+        @Parameter(name="groupBy", description="comma separated, at most 3 of item, commons, station, day, week, month, stars; none for one overall group") @RequestParam(defaultValue = "") List<String> groupBy,
+        @Parameter(name="from", description="first day reviewed, e.g. 2023-01-02") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @Parameter(name="to", description="last day reviewed") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+        @Parameter(name="itemId") @RequestParam(required = false) Long itemId,
+        @Parameter(name="commons", description="diningCommonsCode of the item") @RequestParam(required = false) String commons,
+        @Parameter(name="station", description="station of the item") @RequestParam(required = false) String station,
+        @Parameter(name="reviewerEmail") @RequestParam(required = false) String reviewerEmail) {
+        List<ReviewColumnStoreService.Dimension> dimensions = new ArrayList<>();
+        for (String name : groupBy) {
+            try {
+                dimensions.add(ReviewColumnStoreService.Dimension.of(name));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "can't group by %s".formatted(name));
+            }
+        }
+        if (dimensions.size() > ReviewColumnStoreService.MAX_GROUP_BY) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "at most %d dimensions to group by".formatted(ReviewColumnStoreService.MAX_GROUP_BY));
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "to (%s) is before from (%s)".formatted(to, from));
+        }
+        return reviewColumns.query(dimensions,
+            new ReviewColumnStoreService.Filter(from, to, itemId, commons, station, reviewerEmail));
+    }
+
+    @Operation(summary = "Show the items and reviewers suspected of review bombing")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/bombing")
+    public ReviewBombingState bombing() {
+        return reviewBombing.state();
+    }
+
+    @Operation(summary = "List the months reviews are stored by")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/partitions")
+    public ReviewPartitions partitions() {
+        return menuItemReviewPartitions.partitions();
     }
 
-    @Operation(summary = "Create a new review")
+    @Operation(summary = "Drop the reviews of every month before a given one")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/partitions")
+    public Object expirePartitions(
+        @Parameter(name="before", description="first month to keep, e.g. 2022-01") @RequestParam YearMonth before) {
+        int expired = menuItemReviewPartitions.expire(before);
+        return genericMessage("dropped %s monthly partitions of reviews before %s".formatted(expired, before));
+    }
+
+    @Operation(summary = "Create a new review (202 Accepted, without the saved review, when ingestion is asynchronous)")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
-    public MenuItemReview postItemReview(
+    public ResponseEntity<Object> postItemReview(
         @Parameter(name="itemId") @RequestParam long itemId,
         @Parameter(name="reviewerEmail") @RequestParam String reviewerEmail,
         @Parameter(name="stars") @RequestParam int stars,
         @Parameter(name="dateReviewed") @RequestParam LocalDateTime dateReviewed,
-        @Parameter(name="comments") @RequestParam String comments
+        @Parameter(name="comments") @RequestParam String comments,
+        @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey
         ) throws JsonProcessingException {
 
         log.info("postItemReview: itemId={}, reviewerEmail={}, stars={}, dateReviewed={}, comments={}", itemId, reviewerEmail, stars, dateReviewed, comments);
@@ -66,18 +187,66 @@ public class MenuItemReviewController extends ApiController {
             .comments(comments)
             .build();
 
-        return menuItemReviewRepository.save(review);
+        // checked here, as a review the writer thread can't insert is only found out after the 202
+        if (reviewerEmail.length() > MAX_TEXT || comments.length() > MAX_TEXT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "reviewerEmail and comments must be at most %d characters".formatted(MAX_TEXT));
+        }
+
+        menuItemReviewPartitions.route(dateReviewed);
+        if (reviewIngestion.isAsync()) {
+            // inserted in a batch by the writer thread; entity hooks run there
+            idempotent(MenuItemReview.class, idempotencyKey, () -> {
+                screen(review);
+                if (!reviewIngestion.offer(review)) {
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too many reviews queued; try again shortly");
+                }
+                return review;
+            });
+            return ResponseEntity.accepted().body(genericMessage("review of item %s accepted".formatted(itemId)));
+        }
+        // the hooks run inside the idempotent block too, so a retried POST isn't trending twice
+        MenuItemReview savedReview = idempotent(MenuItemReview.class, idempotencyKey, () -> {
+            screen(review);
+            MenuItemReview saved = menuItemReviewRepository.save(review);
+            entityCreated(MenuItemReview.class, saved.getId(), saved);
+            return saved;
+        });
+        return ResponseEntity.ok(savedReview);
+    }
+
+    // inside the idempotent block, so a retried POST isn't counted twice
+    private void screen(MenuItemReview review) {
+        ReviewBombingService.Verdict verdict = reviewBombing.screen(review);
+        if (verdict == ReviewBombingService.Verdict.REFUSE) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "too many reviews like this lately; try again later");
+        }
+        review.setFlagged(verdict == ReviewBombingService.Verdict.FLAG);
     }
 
     @Operation(summary = "Get a single review")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public MenuItemReview getById(
-        @Parameter(name="id") @RequestParam long id) {
-        MenuItemReview review = menuItemReviewRepository.findById(id)
-            .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+    public ResponseEntity<byte[]> getById(
+        @Parameter(name="id") @RequestParam Long id)
+        throws JsonProcessingException {
+        return cachedEntity(MenuItemReview.class, id, () -> menuItemReviewRepository.findById(id));
+    }
 
-        return review;
+    @Operation(summary= "Get several reviews at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<MenuItemReview> getByIds(
+        @Parameter(name="ids", description="comma separated list of ids") @RequestParam List<Long> ids) {
+        return batchLookup(ids, menuItemReviewRepository::findAllById, MenuItemReview::getId);
+    }
+
+    @Operation(summary= "List reviews created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<MenuItemReview> getChanges(
+        @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(MenuItemReview.class, since, menuItemReviewRepository::findChangedBetween, MenuItemReview::getId, Long::valueOf);
     }
 
     @Operation(summary = "Update a single menu item review")
@@ -85,9 +254,11 @@ public class MenuItemReviewController extends ApiController {
     @PutMapping("")
     public MenuItemReview updatMenuItemReview(
         @Parameter(name="id") @RequestParam Long id,
-        @RequestBody @Valid MenuItemReview menuItemReview) {
+        @RequestBody @Valid MenuItemReview menuItemReview,
+        @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         MenuItemReview oldReview = menuItemReviewRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+        checkIfMatch(MenuItemReview.class, id, ifMatch, oldReview.getVersion());
 
         oldReview.setItemId(menuItemReview.getItemId());
         oldReview.setReviewerEmail(menuItemReview.getReviewerEmail());
@@ -95,19 +266,46 @@ public class MenuItemReviewController extends ApiController {
         oldReview.setDateReviewed(menuItemReview.getDateReviewed());
         oldReview.setComments(menuItemReview.getComments());
 
+        menuItemReviewPartitions.route(oldReview.getDateReviewed());
         menuItemReviewRepository.save(oldReview);
+        entityUpdated(MenuItemReview.class, id, oldReview);
         return oldReview;
     }
 
+    @Operation(summary = "Clear a review's review bombing flag, once a moderator finds it genuine")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping("/unflag")
+    public MenuItemReview unflagMenuItemReview(
+        @Parameter(name="id") @RequestParam Long id,
+        @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        MenuItemReview review = menuItemReviewRepository.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+        checkIfMatch(MenuItemReview.class, id, ifMatch, review.getVersion());
+        if (!review.getFlagged()) {
+            return review;
+        }
+
+        // the analytics and ranking pick it up from the change feed, trending from the event
+        MenuItemReview previous = review.toBuilder().build();
+        review.setFlagged(false);
+        menuItemReviewRepository.save(review);
+        entityUpdated(MenuItemReview.class, id, previous, review);
+        return review;
+    }
+
     @Operation(summary = "Delete a review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteMenuItemReview(
-        @Parameter(name="id") @RequestParam Long id) {
+        @Parameter(name="id") @RequestParam Long id,
+        @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
             .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+        checkIfMatch(MenuItemReview.class, id, ifMatch, menuItemReview.getVersion());
 
         menuItemReviewRepository.delete(menuItemReview);
+        entityDeleted(MenuItemReview.class, id, menuItemReview);
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 }
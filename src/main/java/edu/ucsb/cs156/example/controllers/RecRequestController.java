@@ -3,6 +3,8 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.entities.RecRequest;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.RecRequestRepository;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 
@@ -12,13 +14,19 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -27,6 +35,8 @@ import java.time.LocalDateTime;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 @Tag(name = "RecRequest")
 @RequestMapping("/api/recommendationrequest")
 @RestController
@@ -40,20 +50,35 @@ public class RecRequestController extends ApiController {
     @Operation(summary= "List all recommendation requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<RecRequest> allRecommendations() {
-        Iterable<RecRequest> recommendations = recRequestRepository.findAll();
-        return recommendations;
+    public ResponseEntity<byte[]> allRecommendations(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        return cachedListing(RecRequest.class, acceptEncoding, () -> recRequestRepository.findAll());
     }
 
     @Operation(summary= "Get a single recommendation")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public RecRequest getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        RecRequest recommendation = recRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(RecRequest.class, id));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="id") @RequestParam Long id)
+            throws JsonProcessingException {
+        return cachedEntity(RecRequest.class, id, () -> recRequestRepository.findById(id));
+    }
 
-        return recommendation;
+    @Operation(summary= "Get several recommendation requests at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<RecRequest> getByIds(
+            @Parameter(name="ids", description="comma separated list of ids") @RequestParam List<Long> ids) {
+        return batchLookup(ids, recRequestRepository::findAllById, RecRequest::getId);
+    }
+
+    @Operation(summary= "List recommendation requests created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<RecRequest> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(RecRequest.class, since, recRequestRepository::findChangedBetween, RecRequest::getId, Long::valueOf);
     }
 
     @Operation(summary= "Create a new recommendation")
@@ -65,7 +90,8 @@ public class RecRequestController extends ApiController {
         @Parameter(name="explanation", description="what you need the recommendation for and some other details", example="For BS/MS program") @RequestParam String explanation,
         @Parameter(name="dateRequested", description="The date the recommendation was requestion in ISO-8601", example="2022-01-03T00:00:00") @RequestParam LocalDateTime dateRequested,
         @Parameter(name="dateNeeded", description="The date of when the recommendation is needed by in ISO-8601", example="2022-01-03T00:00:00") @RequestParam LocalDateTime dateNeeded,
-        @Parameter(name="done", description="If the recommendation has been sent", example="true") @RequestParam boolean done
+        @Parameter(name="done", description="If the recommendation has been sent", example="true") @RequestParam boolean done,
+        @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey
         )
         {
 
@@ -77,20 +103,26 @@ public class RecRequestController extends ApiController {
         recommendation.setDateNeeded(dateNeeded);
         recommendation.setDone(done);
 
-        RecRequest savedRecommendation = recRequestRepository.save(recommendation);
-
-        return savedRecommendation;
+        return idempotent(RecRequest.class, idempotencyKey, () -> {
+            RecRequest saved = recRequestRepository.save(recommendation);
+            entityCreated(RecRequest.class, saved.getId(), saved);
+            return saved;
+        });
     }
 
     @Operation(summary= "Delete a Recommendation Request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteCommons(
-            @Parameter(name="id") @RequestParam long id) {
+            @Parameter(name="id") @RequestParam long id,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         RecRequest request = recRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(RecRequest.class, id));
+        checkIfMatch(RecRequest.class, id, ifMatch, request.getVersion());
 
         recRequestRepository.delete(request);
+        entityDeleted(RecRequest.class, id, request);
         return genericMessage("RecRequest with id %s deleted".formatted(id));
     }
 
@@ -99,10 +131,12 @@ public class RecRequestController extends ApiController {
     @PutMapping("")
     public RecRequest updateCommons(
             @Parameter(name="id") @RequestParam long id,
-            @RequestBody @Valid RecRequest incoming) {
+            @RequestBody @Valid RecRequest incoming,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         RecRequest recommendation = recRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(RecRequest.class, id));
+        checkIfMatch(RecRequest.class, id, ifMatch, recommendation.getVersion());
 
 
         recommendation.setRequesterEmail(incoming.getRequesterEmail());
@@ -113,6 +147,7 @@ public class RecRequestController extends ApiController {
         recommendation.setDone(incoming.getDone());
 
         recRequestRepository.save(recommendation);
+        entityUpdated(RecRequest.class, id, recommendation);
 
         return recommendation;
     }
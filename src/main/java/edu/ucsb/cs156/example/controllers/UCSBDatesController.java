@@ -2,6 +2,8 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -13,18 +15,24 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
 import java.time.LocalDateTime;
 
 @Tag(name = "UCSBDates")
@@ -39,20 +47,35 @@ public class UCSBDatesController extends ApiController {
     @Operation(summary= "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDate> allUCSBDates() {
-        Iterable<UCSBDate> dates = ucsbDateRepository.findAll();
-        return dates;
+    public ResponseEntity<byte[]> allUCSBDates(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        return cachedListing(UCSBDate.class, acceptEncoding, () -> ucsbDateRepository.findAll());
     }
 
     @Operation(summary= "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDate getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="id") @RequestParam Long id)
+            throws JsonProcessingException {
+        return cachedEntity(UCSBDate.class, id, () -> ucsbDateRepository.findById(id));
+    }
 
-        return ucsbDate;
+    @Operation(summary= "Get several dates at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<UCSBDate> getByIds(
+            @Parameter(name="ids", description="comma separated list of ids") @RequestParam List<Long> ids) {
+        return batchLookup(ids, ucsbDateRepository::findAllById, UCSBDate::getId);
+    }
+
+    @Operation(summary= "List dates created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<UCSBDate> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(UCSBDate.class, since, ucsbDateRepository::findChangedBetween, UCSBDate::getId, Long::valueOf);
     }
 
     @Operation(summary= "Create a new date")
@@ -61,7 +84,8 @@ public class UCSBDatesController extends ApiController {
     public UCSBDate postUCSBDate(
             @Parameter(name="quarterYYYYQ") @RequestParam String quarterYYYYQ,
             @Parameter(name="name") @RequestParam String name,
-            @Parameter(name="date (in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601)") @RequestParam("localDateTime") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime localDateTime)
+            @Parameter(name="date (in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601)") @RequestParam("localDateTime") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime localDateTime,
+            @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey)
             throws JsonProcessingException {
 
         // For an explanation of @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
@@ -74,20 +98,26 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setName(name);
         ucsbDate.setLocalDateTime(localDateTime);
 
-        UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
-
-        return savedUcsbDate;
+        return idempotent(UCSBDate.class, idempotencyKey, () -> {
+            UCSBDate saved = ucsbDateRepository.save(ucsbDate);
+            entityCreated(UCSBDate.class, saved.getId(), saved);
+            return saved;
+        });
     }
 
     @Operation(summary= "Delete a UCSBDate")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteUCSBDate(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        checkIfMatch(UCSBDate.class, id, ifMatch, ucsbDate.getVersion());
 
         ucsbDateRepository.delete(ucsbDate);
+        entityDeleted(UCSBDate.class, id, ucsbDate);
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
@@ -96,16 +126,19 @@ public class UCSBDatesController extends ApiController {
     @PutMapping("")
     public UCSBDate updateUCSBDate(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid UCSBDate incoming) {
+            @RequestBody @Valid UCSBDate incoming,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+        checkIfMatch(UCSBDate.class, id, ifMatch, ucsbDate.getVersion());
 
         ucsbDate.setQuarterYYYYQ(incoming.getQuarterYYYYQ());
         ucsbDate.setName(incoming.getName());
         ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
         ucsbDateRepository.save(ucsbDate);
+        entityUpdated(UCSBDate.class, id, ucsbDate);
 
         return ucsbDate;
     }
@@ -2,6 +2,8 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,19 +11,28 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.function.Function;
+
 @Tag(name = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
 @RestController
@@ -34,20 +45,35 @@ public class UCSBDiningCommonsController extends ApiController {
     @Operation(summary= "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBDiningCommons> allCommonss() {
-        Iterable<UCSBDiningCommons> commons = ucsbDiningCommonsRepository.findAll();
-        return commons;
+    public ResponseEntity<byte[]> allCommonss(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        return cachedListing(UCSBDiningCommons.class, acceptEncoding, () -> ucsbDiningCommonsRepository.findAll());
     }
 
     @Operation(summary= "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommons getById(
-            @Parameter(name="code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="code") @RequestParam String code)
+            throws JsonProcessingException {
+        return cachedEntity(UCSBDiningCommons.class, code, () -> ucsbDiningCommonsRepository.findById(code));
+    }
 
-        return commons;
+    @Operation(summary= "Get several commons at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<UCSBDiningCommons> getByIds(
+            @Parameter(name="codes", description="comma separated list of codes") @RequestParam List<String> codes) {
+        return batchLookup(codes, ucsbDiningCommonsRepository::findAllById, UCSBDiningCommons::getCode);
+    }
+
+    @Operation(summary= "List commons created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<UCSBDiningCommons> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(UCSBDiningCommons.class, since, ucsbDiningCommonsRepository::findChangedBetween, UCSBDiningCommons::getCode, Function.identity());
     }
 
     @Operation(summary= "Create a new commons")
@@ -60,7 +86,8 @@ public class UCSBDiningCommonsController extends ApiController {
         @Parameter(name="hasTakeOutMeal") @RequestParam boolean hasTakeOutMeal,
         @Parameter(name="hasDiningCam") @RequestParam boolean hasDiningCam,
         @Parameter(name="latitude") @RequestParam double latitude,
-        @Parameter(name="longitude") @RequestParam double longitude
+        @Parameter(name="longitude") @RequestParam double longitude,
+        @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey
         )
         {
 
@@ -73,20 +100,26 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLatitude(latitude);
         commons.setLongitude(longitude);
 
-        UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
-
-        return savedCommons;
+        return idempotent(UCSBDiningCommons.class, idempotencyKey, () -> {
+            UCSBDiningCommons saved = ucsbDiningCommonsRepository.save(commons);
+            entityCreated(UCSBDiningCommons.class, code, saved);
+            return saved;
+        });
     }
 
     @Operation(summary= "Delete a UCSBDiningCommons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteCommons(
-            @Parameter(name="code") @RequestParam String code) {
+            @Parameter(name="code") @RequestParam String code,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        checkIfMatch(UCSBDiningCommons.class, code, ifMatch, commons.getVersion());
 
         ucsbDiningCommonsRepository.delete(commons);
+        entityDeleted(UCSBDiningCommons.class, code, commons);
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
@@ -95,10 +128,12 @@ public class UCSBDiningCommonsController extends ApiController {
     @PutMapping("")
     public UCSBDiningCommons updateCommons(
             @Parameter(name="code") @RequestParam String code,
-            @RequestBody @Valid UCSBDiningCommons incoming) {
+            @RequestBody @Valid UCSBDiningCommons incoming,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+        checkIfMatch(UCSBDiningCommons.class, code, ifMatch, commons.getVersion());
 
 
         commons.setName(incoming.getName());  
@@ -109,6 +144,7 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(incoming.getLongitude());
 
         ucsbDiningCommonsRepository.save(commons);
+        entityUpdated(UCSBDiningCommons.class, code, commons);
 
         return commons;
     }
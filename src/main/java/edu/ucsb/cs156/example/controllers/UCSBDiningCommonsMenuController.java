@@ -2,20 +2,36 @@ package edu.ucsb.cs156.example.controllers;
 
 import javax.validation.Valid;
 
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.MenuSearchHit;
+import edu.ucsb.cs156.example.models.RankedMenu;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import edu.ucsb.cs156.example.services.MenuRankingService;
+import edu.ucsb.cs156.example.services.MenuSearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -30,24 +46,71 @@ public class UCSBDiningCommonsMenuController extends ApiController {
     @Autowired
     UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
 
+    @Autowired
+    MenuRankingService menuRanking;
+
+    @Autowired
+    MenuSearchService menuSearch;
+
     @Operation(summary= "Menu for the UCSB dining commons, Carrillo, De La Guerra, Ortega, Portola.")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
 
-    public Iterable<UCSBDiningCommonsMenu> getMenu() {
-        Iterable<UCSBDiningCommonsMenu> menu = ucsbDiningCommonsMenuRepository.findAll();
-        return menu;
+    public ResponseEntity<byte[]> getMenu(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        return cachedListing(UCSBDiningCommonsMenu.class, acceptEncoding, () -> ucsbDiningCommonsMenuRepository.findAll());
     }
 
     @Operation(summary= "Get a single DiningCommonMenu item")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommonsMenu getById(
-            @Parameter(name="id") @RequestParam Long id) {
-        UCSBDiningCommonsMenu commons = ucsbDiningCommonsMenuRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenu.class, id));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="id") @RequestParam Long id)
+            throws JsonProcessingException {
+        return cachedEntity(UCSBDiningCommonsMenu.class, id, () -> ucsbDiningCommonsMenuRepository.findById(id));
+    }
 
-        return commons;
+    @Operation(summary= "Get several DiningCommonMenu items at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<UCSBDiningCommonsMenu> getByIds(
+            @Parameter(name="ids", description="comma separated list of ids") @RequestParam List<Long> ids) {
+        return batchLookup(ids, ucsbDiningCommonsMenuRepository::findAllById, UCSBDiningCommonsMenu::getId);
+    }
+
+    @Operation(summary= "List DiningCommonMenu items created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<UCSBDiningCommonsMenu> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(UCSBDiningCommonsMenu.class, since, ucsbDiningCommonsMenuRepository::findChangedBetween, UCSBDiningCommonsMenu::getId, Long::valueOf);
+    }
+
+    @Operation(summary= "Reviewed DiningCommonMenu items, best first, by their review stars smoothed towards the average of all reviews")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/ranked")
+    public RankedMenu getRanked(
+            @Parameter(name="commons", description="optional; only items of this dining commons code") @RequestParam(required = false) String commons,
+            @Parameter(name="limit", description="how many items") @RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > menuRanking.getMaxLimit()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and %d".formatted(menuRanking.getMaxLimit()));
+        }
+        return menuRanking.ranked(commons, limit);
+    }
+
+    @Operation(summary= "Find DiningCommonMenu items by name, tolerating typos; fewest typos first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public List<MenuSearchHit> search(
+            @Parameter(name="q", description="all or part of a name, e.g. chiken") @RequestParam String q,
+            @Parameter(name="diningCommonsCode", description="optional; only items of this dining commons") @RequestParam(required = false) String diningCommonsCode,
+            @Parameter(name="station", description="optional; only items of this station") @RequestParam(required = false) String station,
+            @Parameter(name="limit", description="how many items") @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > menuSearch.getMaxLimit()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and %d".formatted(menuSearch.getMaxLimit()));
+        }
+        return menuSearch.search(q, diningCommonsCode, station, limit);
     }
 
     @Operation(summary= "Create a new UCSBDiningCommonsMenu item")
@@ -57,7 +120,8 @@ public class UCSBDiningCommonsMenuController extends ApiController {
         @Parameter(name="id") @RequestParam Long id,
         @Parameter(name="diningCommonsCode") @RequestParam String diningCommonsCode, 
         @Parameter(name="name") @RequestParam String name,
-        @Parameter(name="station") @RequestParam String station
+        @Parameter(name="station") @RequestParam String station,
+        @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey
         )
         {
 
@@ -66,20 +130,26 @@ public class UCSBDiningCommonsMenuController extends ApiController {
         menu.setName(name);
         menu.setStation(station);
 
-        UCSBDiningCommonsMenu savedMenu = ucsbDiningCommonsMenuRepository.save(menu);
-
-        return savedMenu;
+        return idempotent(UCSBDiningCommonsMenu.class, idempotencyKey, () -> {
+            UCSBDiningCommonsMenu saved = ucsbDiningCommonsMenuRepository.save(menu);
+            entityCreated(UCSBDiningCommonsMenu.class, saved.getId(), saved);
+            return saved;
+        });
     }
 
     @Operation(summary= "Delete a UCSBDiningCommonsMenu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteMenuItem(
-            @Parameter(name="id") @RequestParam Long id) {
+            @Parameter(name="id") @RequestParam Long id,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         UCSBDiningCommonsMenu menu = ucsbDiningCommonsMenuRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenu.class, id));
+        checkIfMatch(UCSBDiningCommonsMenu.class, id, ifMatch, menu.getVersion());
 
         ucsbDiningCommonsMenuRepository.delete(menu);
+        entityDeleted(UCSBDiningCommonsMenu.class, id, menu);
         return genericMessage("UCSBDiningCommonsMenu with id %s deleted".formatted(id));
     }
 
@@ -88,10 +158,12 @@ public class UCSBDiningCommonsMenuController extends ApiController {
     @PutMapping("")
     public UCSBDiningCommonsMenu updateCommons(
             @Parameter(name="id") @RequestParam Long id,
-            @RequestBody @Valid UCSBDiningCommonsMenu incoming) {
+            @RequestBody @Valid UCSBDiningCommonsMenu incoming,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         UCSBDiningCommonsMenu menu = ucsbDiningCommonsMenuRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenu.class, id));
+        checkIfMatch(UCSBDiningCommonsMenu.class, id, ifMatch, menu.getVersion());
 
 
         menu.setDiningCommonsCode(incoming.getDiningCommonsCode());  
@@ -99,6 +171,7 @@ public class UCSBDiningCommonsMenuController extends ApiController {
         menu.setStation(incoming.getStation());
 
         ucsbDiningCommonsMenuRepository.save(menu);
+        entityUpdated(UCSBDiningCommonsMenu.class, id, menu);
 
         return menu;
     }
@@ -2,6 +2,8 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -9,19 +11,28 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.function.Function;
+
 @Tag(name = "UCSBOrganization")
 @RequestMapping("/api/ucsborganization")
 @RestController
@@ -32,20 +43,35 @@ public class UCSBOrganizationController extends ApiController {
     @Operation(summary = "List all ucsb organizations")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
-    public Iterable<UCSBOrganization> allOrganization() {
-        Iterable<UCSBOrganization> organizations = ucsbOrganizationRepository.findAll();
-        return organizations;
+    public ResponseEntity<byte[]> allOrganization(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws JsonProcessingException {
+        return cachedListing(UCSBOrganization.class, acceptEncoding, () -> ucsbOrganizationRepository.findAll());
     }
 
     @Operation(summary = "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBOrganization getById(
-            @Parameter(name="orgCode") @RequestParam String orgCode) {
-        UCSBOrganization organization = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+    public ResponseEntity<byte[]> getById(
+            @Parameter(name="orgCode") @RequestParam String orgCode)
+            throws JsonProcessingException {
+        return cachedEntity(UCSBOrganization.class, orgCode, () -> ucsbOrganizationRepository.findById(orgCode));
+    }
 
-        return organization;
+    @Operation(summary= "Get several organizations at once, in the order requested")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/batch")
+    public BatchResult<UCSBOrganization> getByIds(
+            @Parameter(name="codes", description="comma separated list of orgCodes") @RequestParam List<String> codes) {
+        return batchLookup(codes, ucsbOrganizationRepository::findAllById, UCSBOrganization::getOrgCode);
+    }
+
+    @Operation(summary= "List organizations created, updated or deleted since a sync token")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/changes")
+    public ChangeSet<UCSBOrganization> getChanges(
+            @Parameter(name="since", description="token from the previous call; 0 for everything") @RequestParam(defaultValue = "0") long since) {
+        return changesSince(UCSBOrganization.class, since, ucsbOrganizationRepository::findChangedBetween, UCSBOrganization::getOrgCode, Function.identity());
     }
 
     @Operation(summary = "Create a new organization")
@@ -55,7 +81,8 @@ public class UCSBOrganizationController extends ApiController {
         @Parameter(name="orgCode") @RequestParam String orgCode,
         @Parameter(name="orgTranslationShort") @RequestParam String orgTranslationShort,
         @Parameter(name="orgTranslation") @RequestParam String orgTranslation,
-        @Parameter(name="inactive") @RequestParam boolean inactive
+        @Parameter(name="inactive") @RequestParam boolean inactive,
+        @Parameter(name="Idempotency-Key", description="optional; a retry with the same key returns the first response") @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey
         )
         {
 
@@ -65,20 +92,26 @@ public class UCSBOrganizationController extends ApiController {
         organization.setOrgTranslation(orgTranslation);
         organization.setInactive(inactive);
 
-        UCSBOrganization savedOrganization = ucsbOrganizationRepository.save(organization);
-
-        return savedOrganization;
+        return idempotent(UCSBOrganization.class, idempotencyKey, () -> {
+            UCSBOrganization saved = ucsbOrganizationRepository.save(organization);
+            entityCreated(UCSBOrganization.class, orgCode, saved);
+            return saved;
+        });
     }
 
     @Operation(summary = "Delete a UCSBOrganization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
+    @Transactional
     public Object deleteOrganization(
-            @Parameter(name="orgCode") @RequestParam String orgCode) {
+            @Parameter(name="orgCode") @RequestParam String orgCode,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         UCSBOrganization organization = ucsbOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+        checkIfMatch(UCSBOrganization.class, orgCode, ifMatch, organization.getVersion());
 
         ucsbOrganizationRepository.delete(organization);
+        entityDeleted(UCSBOrganization.class, orgCode, organization);
         return genericMessage("UCSBOrganiztion with id %s deleted".formatted(orgCode));
     }
 
@@ -87,10 +120,12 @@ public class UCSBOrganizationController extends ApiController {
     @PutMapping("")
     public UCSBOrganization updateOrganization(
             @Parameter(name="orgCode") @RequestParam String orgCode,
-            @RequestBody @Valid UCSBOrganization incoming) {
+            @RequestBody @Valid UCSBOrganization incoming,
+            @Parameter(name="If-Match", description="optional; the ETag from a previous read") @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         UCSBOrganization organization = ucsbOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+        checkIfMatch(UCSBOrganization.class, orgCode, ifMatch, organization.getVersion());
 
 
         organization.setOrgCode(incoming.getOrgCode());  
@@ -99,6 +134,11 @@ public class UCSBOrganizationController extends ApiController {
         organization.setInactive(incoming.getInactive());
 
         ucsbOrganizationRepository.save(organization);
+        entityUpdated(UCSBOrganization.class, orgCode, organization);
+        if (!orgCode.equals(organization.getOrgCode())) {
+            // saving under a new code inserts a row with that code
+            entityCreated(UCSBOrganization.class, organization.getOrgCode(), organization);
+        }
 
         return organization;
     }
@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// A solved help request moved out of helperrequest by
+// HelpRequestArchiveService, with its id and every column unchanged, plus
+// when it was moved. Archived requests are read-only; they are served by
+// the HelpRequest reads given ?includeArchived=true.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "archivedhelprequest")
+public class ArchivedHelpRequest {
+    @Id
+    private Long id;
+
+    private String requesterEmail;
+    private String teamId;
+    private String tableOrBreakoutRoom;
+    private LocalDateTime requestTime;
+    private String explanation;
+    private boolean solved;
+    private Instant solvedAt;
+    private String claimedBy;
+    private Instant claimedAt;
+    private Instant lastModified;
+    private long version;
+
+    private Instant archivedAt;
+
+    public HelpRequest toHelpRequest() {
+        return HelpRequest.builder()
+                .id(id)
+                .requesterEmail(requesterEmail)
+                .teamId(teamId)
+                .tableOrBreakoutRoom(tableOrBreakoutRoom)
+                .requestTime(requestTime)
+                .explanation(explanation)
+                .solved(solved)
+                .solvedAt(solvedAt)
+                .claimedBy(claimedBy)
+                .claimedAt(claimedAt)
+                .lastModified(lastModified)
+                .version(version)
+                .build();
+    }
+}
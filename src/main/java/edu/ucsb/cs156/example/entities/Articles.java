@@ -1,12 +1,21 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,8 +26,10 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "articles")
+@Table(indexes = @Index(columnList = "changeSeq"))
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
 
-public class Articles {
+public class Articles implements Versioned, Synced {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
@@ -28,5 +39,13 @@ public class Articles {
     private String explanation;
     private String email;
     private LocalDateTime dateAdded;
-    
+
+    @LastModifiedDate
+    private Instant lastModified;
+
+    private Long changeSeq;
+
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
 }
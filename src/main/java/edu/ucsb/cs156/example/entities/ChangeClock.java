@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// The single row (id ONLY) holding the last change sequence number handed
+// out by ChangeSequenceService; see Synced.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity(name = "change_clock")
+public class ChangeClock {
+  public static final long ONLY = 1;
+
+  @Id
+  private long id;
+
+  private long seq;
+}
@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+// Leaves every row a write touches for ChangeSequenceService to stamp (see Synced).
+
+public class ChangeSequenceListener {
+  @PrePersist
+  @PreUpdate
+  public void unstamp(Synced entity) {
+    entity.setChangeSeq(null);
+  }
+}
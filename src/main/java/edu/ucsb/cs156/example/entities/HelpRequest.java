@@ -1,12 +1,21 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -15,10 +24,12 @@ import lombok.Builder;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Entity(name = "helperrequest")
+@Table(indexes = { @Index(columnList = "changeSeq"), @Index(columnList = "solved, solvedAt") })
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
 
-public class HelpRequest {
+public class HelpRequest implements Versioned, Synced {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -29,5 +40,21 @@ public class HelpRequest {
     private LocalDateTime requestTime;
     private String explanation;
     private boolean solved;
-    
+
+    // when PUT last changed solved from false to true; null while unsolved,
+    // and for requests created already solved
+    private Instant solvedAt;
+
+    // set once, by POST /api/helprequest/claim
+    private String claimedBy;
+    private Instant claimedAt;
+
+    @LastModifiedDate
+    private Instant lastModified;
+
+    private Long changeSeq;
+
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
 }
@@ -0,0 +1,43 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// One node's sketches of the help requests made on one day, for
+// /api/helprequest/analytics (HelpRequestAnalyticsService): a HyperLogLog
+// of requester emails and a LogHistogram of wait times in seconds, each in
+// its toBytes() form. Each node writes only its own rows; readers merge
+// the rows of every node.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "helprequestdailysketch")
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = { "sketchDate", "node" }))
+public class HelpRequestDailySketch {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private LocalDate sketchDate;
+  private String node;
+
+  @Column(length = 65536)
+  private byte[] requesters;
+
+  @Column(length = 65536)
+  private byte[] waits;
+}
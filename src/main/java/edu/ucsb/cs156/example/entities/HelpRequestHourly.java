@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Help requests rolled up by the hour of their requestTime, for
+// /api/helprequest/heatmap (HelpRequestRollupService). Solve times are only
+// known for requests with a solvedAt, so the average solve time is
+// solveSeconds / timedSolves rather than / solved.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "helprequesthourly")
+public class HelpRequestHourly {
+  @Id
+  private LocalDateTime hourStart;
+
+  private long requests;
+  private long solved;
+  private long timedSolves;
+  private long solveSeconds;
+
+  // counters only ever change through HelpRequestHourlyRepository.increment,
+  // which leaves this alone; it is here so that save() can tell a new row
+  // (null) from an existing one without a select
+  @Version
+  private Long version;
+}
@@ -1,11 +1,20 @@
 package edu.ucsb.cs156.example.entities;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import java.time.Instant;
 import java.time.LocalDateTime;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -14,10 +23,12 @@ import lombok.Builder;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 
 @Entity(name = "MenuItemReview")
-public class MenuItemReview {
+@Table(indexes = { @Index(columnList = "changeSeq"), @Index(columnList = "dateReviewed") })
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
+public class MenuItemReview implements Versioned, Synced {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
@@ -26,5 +37,17 @@ public class MenuItemReview {
     private int stars;
     private LocalDateTime dateReviewed;
     private String comments;
-    
+
+    // set when it arrived during a suspected review-bombing burst (ReviewBombingService)
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean flagged;
+
+    @LastModifiedDate
+    private Instant lastModified;
+
+    private Long changeSeq;
+
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
 }
@@ -1,12 +1,21 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,7 +26,9 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recrequest")
-public class RecRequest {
+@Table(indexes = @Index(columnList = "changeSeq"))
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
+public class RecRequest implements Versioned, Synced {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private long id;
@@ -27,4 +38,13 @@ public class RecRequest {
   private LocalDateTime dateRequested;
   private LocalDateTime dateNeeded;
   private boolean done;
-}
\ No newline at end of file
+
+  @LastModifiedDate
+  private Instant lastModified;
+
+  private Long changeSeq;
+
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+}
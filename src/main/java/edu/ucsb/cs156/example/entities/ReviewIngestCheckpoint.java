@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// How far a node's write-behind review queue (ReviewIngestionService) has
+// got: the sequence number of the last spill-file record inserted. It is
+// written in the same transaction as the reviews, so after a crash the
+// spill file is replayed from exactly the first record not yet inserted.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "reviewingestcheckpoint")
+public class ReviewIngestCheckpoint {
+  @Id
+  private String node;
+
+  private long lastSeq;
+}
@@ -0,0 +1,13 @@
+package edu.ucsb.cs156.example.entities;
+
+// Entities served by a /changes feed. Every write clears changeSeq
+// (ChangeSequenceListener, or the bulk UPDATE itself), and once the write
+// has committed ChangeSequenceService stamps the row with the next value
+// of the change clock. The feed reads rows by changeSeq, so a write is
+// reported after its commit, however long its transaction ran.
+
+public interface Synced {
+  Long getChangeSeq();
+
+  void setChangeSeq(Long changeSeq);
+}
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Left behind when a row is deleted, so /changes can report the delete.
+// entityType is the entity class's simple name; entityId is its id as a string.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "tombstones")
+@Table(indexes = @Index(columnList = "entityType, changeSeq"))
+@EntityListeners(ChangeSequenceListener.class)
+public class Tombstone implements Synced {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private String entityType;
+  private String entityId;
+  private Instant deletedAt;
+  private Long changeSeq;
+}
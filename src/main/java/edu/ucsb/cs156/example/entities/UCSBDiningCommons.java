@@ -1,8 +1,18 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.Id;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -13,7 +23,9 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommons")
-public class UCSBDiningCommons {
+@Table(indexes = @Index(columnList = "changeSeq"))
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
+public class UCSBDiningCommons implements Versioned, Synced {
   @Id
   private String code;
   private String name;
@@ -22,4 +34,13 @@ public class UCSBDiningCommons {
   private boolean hasDiningCam;
   private Double latitude;
   private Double longitude;
-}
\ No newline at end of file
+
+  @LastModifiedDate
+  private Instant lastModified;
+
+  private Long changeSeq;
+
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+}
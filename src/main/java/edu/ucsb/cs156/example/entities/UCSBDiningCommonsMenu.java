@@ -1,10 +1,20 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -15,7 +25,9 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommonsmenu")
-public class UCSBDiningCommonsMenu {
+@Table(indexes = @Index(columnList = "changeSeq"))
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
+public class UCSBDiningCommonsMenu implements Versioned, Synced {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id; 
@@ -23,4 +35,13 @@ public class UCSBDiningCommonsMenu {
   private String diningCommonsCode;
   private String name;
   private String station;
-}
\ No newline at end of file
+
+  @LastModifiedDate
+  private Instant lastModified;
+
+  private Long changeSeq;
+
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
+}
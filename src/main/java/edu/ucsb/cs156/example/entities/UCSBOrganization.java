@@ -1,8 +1,18 @@
 package edu.ucsb.cs156.example.entities;
 
+import java.time.Instant;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.persistence.Id;
 
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -13,12 +23,23 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsborganization")
+@Table(indexes = @Index(columnList = "changeSeq"))
+@EntityListeners({ AuditingEntityListener.class, ChangeSequenceListener.class })
 
-public class UCSBOrganization {
+public class UCSBOrganization implements Versioned, Synced {
   @Id
 
   private String orgCode;
   private String orgTranslationShort;
   private String orgTranslation;
   private boolean inactive;
+
+  @LastModifiedDate
+  private Instant lastModified;
+
+  private Long changeSeq;
+
+  @Version
+  @Column(nullable = false, columnDefinition = "bigint default 0")
+  private long version;
 }
@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.entities;
+
+// Entities with a JPA @Version column. The version is sent as the ETag of
+// single-entity reads and checked against If-Match on writes.
+
+public interface Versioned {
+  long getVersion();
+}
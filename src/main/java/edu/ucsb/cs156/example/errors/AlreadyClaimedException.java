@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.errors;
+
+public class AlreadyClaimedException extends RuntimeException {
+  public AlreadyClaimedException(Class<?> entityType, Object id, String claimedBy) {
+    // losing a claim race is routine when several TAs grab the queue at once
+    super("%s with id %s was already claimed by %s"
+      .formatted(entityType.getSimpleName(), id.toString(), claimedBy), null, false, false);
+  }
+}
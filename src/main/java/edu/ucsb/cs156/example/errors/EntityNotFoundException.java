@@ -2,7 +2,9 @@ package edu.ucsb.cs156.example.errors;
 
 public class EntityNotFoundException extends RuntimeException {
   public EntityNotFoundException(Class<?> entityType, Object id) {
+    // 404s are routine (and can be a flood from bad clients); the stack
+    // trace is never logged or returned, so don't pay to capture it
     super("%s with id %s not found"
-      .formatted(entityType.getSimpleName(), id.toString()));
+      .formatted(entityType.getSimpleName(), id.toString()), null, false, false);
   }
 }
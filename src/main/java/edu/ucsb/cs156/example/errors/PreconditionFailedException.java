@@ -0,0 +1,9 @@
+package edu.ucsb.cs156.example.errors;
+
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(Class<?> entityType, Object id, String currentETag) {
+    // like EntityNotFoundException, an expected outcome that never needs a stack trace
+    super("%s with id %s has changed; its current ETag is %s"
+      .formatted(entityType.getSimpleName(), id.toString(), currentETag), null, false, false);
+  }
+}
@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// One step of a POST /api/batch request, written the way the same call
+// would be made on its own: e.g. method "PUT", path "/api/ucsbdates?id=7",
+// body { "name": ... }. Query parameter values must be percent-encoded.
+// headers may hold the operation's own Idempotency-Key, If-Match and
+// If-None-Match; those of the batch request itself are not passed on.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class BatchOperation {
+  private String method;
+  private String path;
+  private JsonNode body;
+  private Map<String, String> headers;
+}
@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// The status and body the operation would have returned as its own request.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class BatchOperationResult {
+  private int status;
+  private JsonNode body;
+}
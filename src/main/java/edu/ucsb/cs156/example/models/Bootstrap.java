@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// Everything the frontend needs on page load, in one response.
+// currentUser is null when nobody is logged in.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class Bootstrap {
+  private CurrentUser currentUser;
+  private SystemInfo systemInfo;
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.List;
+
+// Result of a /changes call: rows created or updated since the token that
+// was passed in, ids deleted since then, and the token to pass next time.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ChangeSet<T> {
+  private List<T> changed;
+  private List<Object> deleted;
+  private long token;
+}
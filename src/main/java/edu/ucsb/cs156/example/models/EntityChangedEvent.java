@@ -0,0 +1,41 @@
+package edu.ucsb.cs156.example.models;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.core.ResolvableTypeProvider;
+
+// Published by the entity*() hooks of ApiController (and by the review
+// writer for the reviews it inserts) for every write. previous is the
+// entity before an update or delete, current the entity after a create or
+// update; previous is null when the write handler kept no copy.
+//
+// Services keeping derived state in memory listen with
+// @TransactionalEventListener(fallbackExecution = true): after the commit
+// when the write ran in a transaction (e.g. inside POST /api/batch), so a
+// rolled back write leaves nothing behind, and right away otherwise.
+// Listeners are matched on the entity type, e.g.
+// EntityChangedEvent<HelpRequest>.
+
+public record EntityChangedEvent<T>(Kind kind, Class<T> entityType, Object id, T previous, T current)
+    implements ResolvableTypeProvider {
+
+  public enum Kind {
+    CREATED, UPDATED, DELETED
+  }
+
+  public static <T> EntityChangedEvent<T> created(Class<T> entityType, Object id, T created) {
+    return new EntityChangedEvent<>(Kind.CREATED, entityType, id, null, created);
+  }
+
+  public static <T> EntityChangedEvent<T> updated(Class<T> entityType, Object id, T previous, T current) {
+    return new EntityChangedEvent<>(Kind.UPDATED, entityType, id, previous, current);
+  }
+
+  public static <T> EntityChangedEvent<T> deleted(Class<T> entityType, Object id, T deleted) {
+    return new EntityChangedEvent<>(Kind.DELETED, entityType, id, deleted, null);
+  }
+
+  @Override
+  public ResolvableType getResolvableType() {
+    return ResolvableType.forClassWithGenerics(EntityChangedEvent.class, entityType);
+  }
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Help requests between two dates (inclusive) by day of week and hour of
+// requestTime: all 168 cells, Monday 00:00 first, zeros included.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class Heatmap {
+  private LocalDate from;
+  private LocalDate to;
+  private long requests;
+  private long solved;
+  private List<HeatmapCell> cells;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.DayOfWeek;
+
+// One hour of the week in a Heatmap; averageSolveMinutes is null when none
+// of its solved requests has a known solve time.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class HeatmapCell {
+  private DayOfWeek dayOfWeek;
+  private int hour;
+  private long requests;
+  private long solved;
+  private Double averageSolveMinutes;
+}
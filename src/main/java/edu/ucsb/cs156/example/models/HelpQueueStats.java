@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Snapshot of the help queue for the instructor dashboard. "Open" means
+// not yet solved; the per-team and per-table maps leave out zero counts.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class HelpQueueStats {
+  private long open;
+  private Map<String, Long> openByTeam;
+  private Map<String, Long> openByTable;
+  private Long oldestOpenId;
+  private LocalDateTime oldestOpenRequestTime;
+  private long solvesLastMinute;
+  private double solvesPerMinute;
+  private int solvesPerMinuteWindowMinutes;
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.LocalDate;
+
+// Approximate figures for help requests made between two dates (inclusive).
+// distinctRequesters has a relative standard error of
+// distinctRequestersError; the wait percentiles (time from requestTime to
+// the first claim, or to the solve if nobody claimed it) are within about
+// 1% and are null when no wait has ended.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class HelpRequestAnalytics {
+  private LocalDate from;
+  private LocalDate to;
+  private long distinctRequesters;
+  private double distinctRequestersError;
+  private long waits;
+  private Long waitSecondsP50;
+  private Long waitSecondsP90;
+  private Long waitSecondsP99;
+}
@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// A menu item found by GET /api/ucsbdiningcommonsmenu/search: the typos
+// between the query and its name, and how alike their trigrams are (0 to 1).
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class MenuSearchHit {
+  private long id;
+  private String name;
+  private String diningCommonsCode;
+  private String station;
+  private int distance;
+  private double similarity;
+}
@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+// Raised once for a help request still unsolved app.helpQueue.slaMinutes
+// after its requestTime (see SlaAlarmService).
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class OverdueAlarm {
+  private Long id;
+  private String teamId;
+  private String tableOrBreakoutRoom;
+  private LocalDateTime requestTime;
+  private Instant dueAt;
+  private Instant raisedAt;
+}
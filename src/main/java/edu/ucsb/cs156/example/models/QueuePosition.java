@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// Where an unsolved help request stands in line. position is 1 for the
+// oldest; estimatedWaitSeconds is null until a few requests have been
+// solved and there's a rate to go on.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class QueuePosition {
+  private Long id;
+  private int position;
+  private int waiting;
+  private Long estimatedWaitSeconds;
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+import java.util.List;
+
+// Reviewed menu items of one dining commons (or of all, when commons is
+// null), best first, as ranked at computedAt. Each score is the item's
+// average stars pulled towards priorMean as if it had priorReviews more
+// reviews of exactly priorMean stars.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class RankedMenu {
+  private String commons;
+  private Instant computedAt;
+  private double priorMean;
+  private double priorReviews;
+  private List<RankedMenuItem> items;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// One menu item of a RankedMenu: its reviews, their plain average and the
+// smoothed score it is ranked by.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class RankedMenuItem {
+  private long id;
+  private String name;
+  private String diningCommonsCode;
+  private String station;
+  private long reviews;
+  private double averageStars;
+  private double score;
+}
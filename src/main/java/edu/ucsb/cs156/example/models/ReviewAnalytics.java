@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+import java.util.List;
+
+// The answer to a group-by query over the in-memory copy of the reviews as
+// of asOf: rows reviews were scanned, matched passed the filters, and
+// groups (sorted by their keys) has at most app.reviews.columns.maxGroups
+// entries, truncated saying whether any were left out.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ReviewAnalytics {
+  private List<String> groupBy;
+  private Instant asOf;
+  private long rows;
+  private long matched;
+  private long elapsedMicros;
+  private boolean truncated;
+  private List<ReviewGroup> groups;
+}
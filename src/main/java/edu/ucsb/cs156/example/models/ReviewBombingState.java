@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+import java.util.List;
+
+// What the review-bombing detector is doing as of asOf: its settings, how
+// many new reviews it has screened, flagged and refused since the last
+// restart, and the items and reviewers currently under suspicion.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ReviewBombingState {
+  private Instant asOf;
+  private int windowMinutes;
+  private String action;
+  private long screened;
+  private long flagged;
+  private long throttled;
+  private List<SuspectItem> items;
+  private List<SuspectReviewer> reviewers;
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.util.Map;
+
+// One group of a ReviewAnalytics answer. key has a value for each groupBy
+// dimension, in order: an itemId, a commons code, a station, a day, the
+// Monday of a week, a month or a number of stars (null for reviews without
+// a date, or of items not on the menu).
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ReviewGroup {
+  private Map<String, Object> key;
+  private long reviews;
+  private double averageStars;
+}
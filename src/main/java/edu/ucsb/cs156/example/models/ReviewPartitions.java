@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.YearMonth;
+import java.util.List;
+
+// The months menu item reviews are stored by. mode is "native" (one
+// Postgres partition per month) or "emulated" (H2: a single table, with
+// the months kept as a catalog); retentionMonths is null when months are
+// never dropped automatically.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ReviewPartitions {
+  private String mode;
+  private List<YearMonth> months;
+  private Integer retentionMonths;
+}
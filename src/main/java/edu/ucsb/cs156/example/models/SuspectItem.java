@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+
+// A menu item getting a burst of bad reviews. badReviews and reviews are
+// the (over-)estimates for the window when it was last seen; new bad
+// reviews of it are flagged or refused until the suspicion ends.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class SuspectItem {
+  private long itemId;
+  private long badReviews;
+  private long reviews;
+  private Instant since;
+  private Instant until;
+}
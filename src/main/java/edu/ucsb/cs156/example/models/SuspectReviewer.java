@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+
+// A reviewer posting more reviews per window than anyone plausibly eats
+// meals; their new reviews are refused until the suspicion ends.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class SuspectReviewer {
+  private String reviewerEmail;
+  private long reviews;
+  private Instant since;
+  private Instant until;
+}
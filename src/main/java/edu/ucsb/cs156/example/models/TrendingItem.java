@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// One trending menu item. score is the total stars of its reviews in the
+// window (an upper bound); reviews and averageStars cover its reviews
+// since it was last among the items being counted.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class TrendingItem {
+  private long itemId;
+  private long score;
+  private long reviews;
+  private double averageStars;
+}
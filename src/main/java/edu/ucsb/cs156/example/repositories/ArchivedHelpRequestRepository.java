@@ -0,0 +1,34 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedHelpRequestRepository extends CrudRepository<ArchivedHelpRequest, Long> {
+
+    @Query("select min(e.id) from #{#entityName} e")
+    Long findMinId();
+
+    @Query("select max(e.id) from #{#entityName} e")
+    Long findMaxId();
+
+    List<ArchivedHelpRequest> findByIdBetween(Long from, Long to);
+
+    // Copies hot rows in one INSERT ... SELECT, without loading them. Native,
+    // because JPQL can't bind a parameter in the select list of an insert.
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into archivedhelprequest (id, requester_email, team_id,"
+            + " table_or_breakout_room, request_time, explanation, solved, solved_at, claimed_by, claimed_at,"
+            + " last_modified, version, archived_at)"
+            + " select id, requester_email, team_id, table_or_breakout_room, request_time, explanation, solved,"
+            + " solved_at, claimed_by, claimed_at, last_modified, version, ?2 from helperrequest where id in ?1")
+    int copyFromHelpRequests(Collection<Long> ids, Instant archivedAt);
+}
@@ -2,10 +2,22 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Articles;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ArticlesRepository extends CrudRepository<Articles, Long> {
-    
+
+    @Query("select e.id from #{#entityName} e")
+    List<Long> findAllIds();
+
+    @Query("select e from #{#entityName} e where e.changeSeq > ?1 and e.changeSeq <= ?2")
+    List<Articles> findChangedBetween(long since, long until);
+
+    // rows stamped after since, and rows written but not stamped yet
+    @Query("select e.id from #{#entityName} e where e.changeSeq > ?1 or e.changeSeq is null")
+    List<Long> findIdsChangedAfter(long since);
 }
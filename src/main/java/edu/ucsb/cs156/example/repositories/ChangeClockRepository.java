@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ChangeClock;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ChangeClockRepository extends CrudRepository<ChangeClock, Long> {
+  // also locks the clock until the transaction ends; 0 if there is no clock yet
+  @Modifying
+  @Query("update change_clock c set c.seq = c.seq + 1 where c.id = " + ChangeClock.ONLY)
+  int tick();
+
+  // the last committed value; empty until the first stamp
+  @Query("select c.seq from change_clock c where c.id = " + ChangeClock.ONLY)
+  Optional<Long> current();
+}
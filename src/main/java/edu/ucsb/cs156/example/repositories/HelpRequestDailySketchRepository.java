@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.HelpRequestDailySketch;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface HelpRequestDailySketchRepository extends CrudRepository<HelpRequestDailySketch, Long> {
+
+    List<HelpRequestDailySketch> findByNode(String node);
+
+    List<HelpRequestDailySketch> findBySketchDateBetweenAndNodeNot(LocalDate from, LocalDate to, String node);
+}
@@ -0,0 +1,30 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.HelpRequestHourly;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface HelpRequestHourlyRepository extends CrudRepository<HelpRequestHourly, LocalDateTime> {
+
+    List<HelpRequestHourly> findByHourStartBetween(LocalDateTime from, LocalDateTime to);
+
+    // Adds to the counters of an existing hour in one statement, so concurrent
+    // writers never lose each other's updates; 0 means the hour has no row yet.
+    @Transactional
+    @Modifying
+    @Query("update #{#entityName} h set h.requests = h.requests + ?2, h.solved = h.solved + ?3,"
+            + " h.timedSolves = h.timedSolves + ?4, h.solveSeconds = h.solveSeconds + ?5 where h.hourStart = ?1")
+    int increment(LocalDateTime hourStart, long requests, long solved, long timedSolves, long solveSeconds);
+
+    @Modifying
+    @Query("delete from #{#entityName} h")
+    void deleteAllRows();
+}
@@ -2,10 +2,65 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {
-    
+
+    @Query("select e.id from #{#entityName} e")
+    List<Long> findAllIds();
+
+    @Query("select e from #{#entityName} e where e.changeSeq > ?1 and e.changeSeq <= ?2")
+    List<HelpRequest> findChangedBetween(long since, long until);
+
+    // rows stamped after since, and rows written but not stamped yet
+    @Query("select e.id from #{#entityName} e where e.changeSeq > ?1 or e.changeSeq is null")
+    List<Long> findIdsChangedAfter(long since);
+
+    List<HelpRequest> findBySolvedFalse();
+
+    @Query("select min(e.id) from #{#entityName} e")
+    Long findMinId();
+
+    @Query("select max(e.id) from #{#entityName} e")
+    Long findMaxId();
+
+    List<HelpRequest> findByIdBetween(Long from, Long to);
+
+    // Solved before solvedBefore, judged by solvedAt, else lastModified, else
+    // requestTime for rows older than both columns. The rows stay locked
+    // until the caller's transaction ends, so they can't be reopened
+    // between being copied to the archive and deleted here.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from #{#entityName} e where e.solved = true and (e.solvedAt < ?1"
+            + " or (e.solvedAt is null and e.lastModified < ?1)"
+            + " or (e.solvedAt is null and e.lastModified is null and e.requestTime < ?2)) order by e.id")
+    List<HelpRequest> findArchivable(Instant solvedBefore, LocalDateTime requestedBefore, Pageable page);
+
+    @Modifying
+    @Query("delete from #{#entityName} e where e.id in ?1")
+    int deleteByIds(Collection<Long> ids);
+
+    // A single conditional UPDATE: of any number of concurrent claims on a
+    // request, exactly one sees claimedBy null and gets 1 back; the rest get 0.
+    // Bulk updates skip auditing, entity listeners and @Version, so
+    // lastModified, changeSeq and version are all set here.
+    @Transactional
+    @Modifying
+    @Query("update #{#entityName} e set e.claimedBy = ?2, e.claimedAt = ?3, e.lastModified = ?3, e.changeSeq = null,"
+            + " e.version = e.version + 1 where e.id = ?1 and e.claimedBy is null")
+    int claim(Long id, String claimedBy, Instant claimedAt);
 }
@@ -2,11 +2,30 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
 
 @Repository
 public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
 
-}
\ No newline at end of file
+    @Query("select e.id from #{#entityName} e")
+    List<Long> findAllIds();
+
+    @Query("select e from #{#entityName} e where e.changeSeq > ?1 and e.changeSeq <= ?2")
+    List<MenuItemReview> findChangedBetween(long since, long until);
+
+    // rows stamped after since, and rows written but not stamped yet
+    @Query("select e.id from #{#entityName} e where e.changeSeq > ?1 or e.changeSeq is null")
+    List<Long> findIdsChangedAfter(long since);
+
+    // a range on the partition key, so Postgres only reads the recent months
+    List<MenuItemReview> findByDateReviewedGreaterThanEqual(LocalDateTime since);
+
+    List<MenuItemReview> findByLastModifiedGreaterThanEqual(Instant since);
+}
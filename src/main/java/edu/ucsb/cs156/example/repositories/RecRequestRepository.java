@@ -2,11 +2,23 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.RecRequest;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 
 @Repository
 public interface RecRequestRepository extends CrudRepository<RecRequest, Long> {
-    
-}
\ No newline at end of file
+
+    @Query("select e.id from #{#entityName} e")
+    List<Long> findAllIds();
+
+    @Query("select e from #{#entityName} e where e.changeSeq > ?1 and e.changeSeq <= ?2")
+    List<RecRequest> findChangedBetween(long since, long until);
+
+    // rows stamped after since, and rows written but not stamped yet
+    @Query("select e.id from #{#entityName} e where e.changeSeq > ?1 or e.changeSeq is null")
+    List<Long> findIdsChangedAfter(long since);
+}
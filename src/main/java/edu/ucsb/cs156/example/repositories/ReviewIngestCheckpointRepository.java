@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ReviewIngestCheckpoint;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReviewIngestCheckpointRepository extends CrudRepository<ReviewIngestCheckpoint, String> {
+}
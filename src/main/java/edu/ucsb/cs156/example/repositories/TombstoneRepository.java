@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.Tombstone;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TombstoneRepository extends CrudRepository<Tombstone, Long> {
+  @Query("select t from tombstones t where t.entityType = ?1 and t.changeSeq > ?2 and t.changeSeq <= ?3")
+  List<Tombstone> findDeletedBetween(String entityType, long since, long until);
+
+  // one per help request, in one statement, for the archiver's bulk delete
+  // of rows it never loads; run before the delete
+  @Modifying
+  @Query(nativeQuery = true, value = "insert into tombstones (entity_type, entity_id, deleted_at)"
+      + " select 'HelpRequest', cast(id as varchar(255)), ?2 from helperrequest where id in ?1")
+  int recordHelpRequestsDeleted(Collection<Long> ids, Instant deletedAt);
+
+  // likewise for the reviews an expiry of monthly partitions is about to drop
+  @Modifying
+  @Query(nativeQuery = true, value = "insert into tombstones (entity_type, entity_id, deleted_at)"
+      + " select 'MenuItemReview', cast(id as varchar(255)), ?2 from menu_item_review where date_reviewed < ?1")
+  int recordReviewsDeleted(LocalDateTime reviewedBefore, Instant deletedAt);
+}
@@ -2,11 +2,24 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 
 @Repository
 public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  @Query("select e.id from #{#entityName} e")
+  List<Long> findAllIds();
+
+  @Query("select e from #{#entityName} e where e.changeSeq > ?1 and e.changeSeq <= ?2")
+  List<UCSBDate> findChangedBetween(long since, long until);
+
+  // rows stamped after since, and rows written but not stamped yet
+  @Query("select e.id from #{#entityName} e where e.changeSeq > ?1 or e.changeSeq is null")
+  List<Long> findIdsChangedAfter(long since);
+}
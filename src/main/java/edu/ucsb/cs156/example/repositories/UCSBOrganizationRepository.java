@@ -1,11 +1,20 @@
 package edu.ucsb.cs156.example.repositories;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 
 @Repository
 public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
-    
-}
\ No newline at end of file
+
+    @Query("select e from #{#entityName} e where e.changeSeq > ?1 and e.changeSeq <= ?2")
+    List<UCSBOrganization> findChangedBetween(long since, long until);
+
+    // rows stamped after since, and rows written but not stamped yet
+    @Query("select e.orgCode from #{#entityName} e where e.changeSeq > ?1 or e.changeSeq is null")
+    List<String> findIdsChangedAfter(long since);
+}
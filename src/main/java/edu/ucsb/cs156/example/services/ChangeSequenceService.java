@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.ChangeClock;
+import edu.ucsb.cs156.example.entities.Synced;
+import edu.ucsb.cs156.example.repositories.ChangeClockRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Hands out the change sequence the /changes feeds read by (see Synced).
+//
+// Every app.sync.stampMillis a daemon thread, in one transaction, ticks
+// the change clock and stamps every committed row of a Synced entity that
+// has no changeSeq yet with the new value. Rows written by a transaction
+// still open are invisible to the stamp and get a later value once it
+// commits, so a reader that has everything up to the clock's current
+// value never misses them, however long that transaction runs. Ticking
+// first holds the clock's row lock until the stamps commit, so stamps
+// (from any node) commit in the order of their values, and a reader never
+// sees a value whose rows aren't all visible yet.
+//
+// A /changes call therefore lags a write by up to app.sync.stampMillis
+// after its commit.
+
+@Slf4j
+@Service("changeSequence")
+public class ChangeSequenceService {
+
+  @Autowired
+  ChangeClockRepository changeClockRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @PersistenceContext
+  EntityManager entityManager;
+
+  @Value("${app.sync.stampMillis:200}")
+  private long stampMillis;
+
+  private List<String> synced;
+  private ScheduledExecutorService stamper;
+
+  @PostConstruct
+  public void start() {
+    synced = entityManager.getMetamodel().getEntities().stream()
+        .filter(entity -> Synced.class.isAssignableFrom(entity.getJavaType()))
+        .map(EntityType::getName)
+        .sorted()
+        .collect(Collectors.toList());
+    stamper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "change-sequence-stamper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    stamper.scheduleWithFixedDelay(() -> {
+      try {
+        stamp();
+      } catch (RuntimeException e) {
+        log.error("stamping changed rows failed; will retry", e);
+      }
+    }, stampMillis, stampMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    stamper.shutdownNow();
+  }
+
+  // stamps the rows committed since the last stamp; returns how many
+  public int stamp() {
+    return new TransactionTemplate(transactionManager).execute(status -> {
+      long seq;
+      if (changeClockRepository.tick() == 1) {
+        seq = changeClockRepository.current().orElseThrow();
+      } else {
+        // the first stamp ever; should another node's insert win, the next stamp ticks it
+        seq = changeClockRepository.save(new ChangeClock(ChangeClock.ONLY, 1)).getSeq();
+      }
+      int stamped = 0;
+      for (String entityName : synced) {
+        stamped += entityManager.createQuery("update " + entityName + " e set e.changeSeq = ?1 where e.changeSeq is null")
+            .setParameter(1, seq)
+            .executeUpdate();
+      }
+      if (stamped == 0) {
+        // nothing to hand the value out to; keep it
+        status.setRollbackOnly();
+      }
+      return stamped;
+    });
+  }
+}
@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.services;
+
+import static edu.ucsb.cs156.example.services.MenuItemReviewPartitionService.MONTH_OF_REVIEW;
+import static edu.ucsb.cs156.example.services.MenuItemReviewPartitionService.TABLE;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Databases without partitioning (H2): one table with an index on
+// dateReviewed, the months only a catalog, and expiring a month a range
+// DELETE.
+
+class EmulatedReviewPartitions implements ReviewPartitionStrategy {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  EmulatedReviewPartitions(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  @Override
+  public String mode() {
+    return "emulated";
+  }
+
+  @Override
+  public List<YearMonth> load() {
+    return jdbcTemplate.queryForList("select distinct " + MONTH_OF_REVIEW + " from " + TABLE
+        + " where date_reviewed is not null", Integer.class).stream()
+        .map(MenuItemReviewPartitionService::yearMonth)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public boolean create(YearMonth month) {
+    return true;
+  }
+
+  @Override
+  public List<YearMonth> misplaced() {
+    return List.of();
+  }
+
+  @Override
+  public void expire(List<YearMonth> months, LocalDateTime cutoff) {
+    jdbcTemplate.update("delete from " + TABLE + " where date_reviewed < ?", cutoff);
+  }
+}
@@ -0,0 +1,117 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.Versioned;
+import edu.ucsb.cs156.example.models.EntityCacheStats;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// LRU cache of the JSON bytes of single entities, keyed by (entity type, id)
+// and bounded by the total size of the cached bodies (app.entityCache.maxBytes).
+// The @Version of Versioned entities is kept alongside, for the ETag.
+
+@Slf4j
+@Service("entityCache")
+public class EntityCacheService {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Value("${app.entityCache.maxBytes:16777216}")
+  private long maxBytes;
+
+  private record Key(Class<?> type, Object id) {
+  }
+
+  // version is null for entities that aren't Versioned
+  public record CachedEntity(byte[] body, Long version) {
+  }
+
+  private final LinkedHashMap<Key, CachedEntity> entries = new LinkedHashMap<>(256, 0.75f, true);
+  private long bytes;
+
+  // bumped by every invalidation; a load that raced with one is not cached
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Returns the cached JSON for (type, id), or serializes what loader returns
+   * and caches it. Exceptions thrown by loader propagate and nothing is cached.
+   */
+  public CachedEntity get(Class<?> type, Object id, Supplier<?> loader) throws JsonProcessingException {
+    Key key = new Key(type, id);
+    synchronized (this) {
+      CachedEntity cached = entries.get(key);
+      if (cached != null) {
+        hits.increment();
+        return cached;
+      }
+    }
+    misses.increment();
+
+    long seen = invalidations.get();
+    Object entity = loader.get();
+    CachedEntity loaded = new CachedEntity(mapper.writeValueAsBytes(entity),
+        entity instanceof Versioned versioned ? versioned.getVersion() : null);
+    synchronized (this) {
+      if (seen == invalidations.get() && loaded.body().length <= maxBytes) {
+        put(key, loaded);
+      }
+    }
+    return loaded;
+  }
+
+  public void invalidate(Class<?> type, Object id) {
+    Key key = new Key(type, id);
+    synchronized (this) {
+      invalidations.incrementAndGet();
+      CachedEntity removed = entries.remove(key);
+      if (removed != null) {
+        bytes -= removed.body().length;
+      }
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    invalidations.incrementAndGet();
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized EntityCacheStats getStats() {
+    return EntityCacheStats.builder()
+        .entries(entries.size())
+        .bytes(bytes)
+        .maxBytes(maxBytes)
+        .hits(hits.sum())
+        .misses(misses.sum())
+        .evictions(evictions.sum())
+        .build();
+  }
+
+  private void put(Key key, CachedEntity entry) {
+    CachedEntity previous = entries.put(key, entry);
+    bytes += entry.body().length - (previous == null ? 0 : previous.body().length);
+    Iterator<Map.Entry<Key, CachedEntity>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes && eldest.hasNext()) {
+      bytes -= eldest.next().getValue().body().length;
+      eldest.remove();
+      evictions.increment();
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.QueuePosition;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.FairShareQueue;
+import edu.ucsb.cs156.example.structures.OrderStatisticTree;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory view of the help queue, kept in step with help request writes
+// once they commit (see EntityChangedEvent).
+//
+// Dispatch (POST /api/helprequest/next) draws from the requests waiting for
+// a TA, i.e. unsolved and unclaimed.
+// Teams (team id + table/breakout room) take turns, each team's requests
+// oldest first; a request that has waited app.helpQueue.maxWaitMinutes goes
+// next regardless of whose turn it is. The database stays the source of
+// truth: dispatching claims the request with the same conditional UPDATE
+// as /claim, a request claimed or deleted behind the queue's back is
+// simply skipped, and one whose claim is rolled back goes back in line.
+//
+// Position (GET /api/helprequest/position) is a request's rank by
+// requestTime among all unsolved requests, claimed or not, read from an
+// order-statistic tree. The wait estimate multiplies the number ahead by a
+// moving average of the time between solves.
+
+@Slf4j
+@Service("helpQueue")
+public class HelpQueueService {
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Value("${app.helpQueue.maxWaitMinutes:15}")
+  private long maxWaitMinutes;
+
+  private final FairShareQueue<HelpRequest> queue = new FairShareQueue<>(
+      HelpRequest::getId,
+      helpRequest -> Arrays.asList(helpRequest.getTeamId(), helpRequest.getTableOrBreakoutRoom()),
+      Comparator.comparing(HelpRequest::getRequestTime, Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparing(HelpRequest::getId));
+
+  // unsolved requests by (requestTime, id); the map remembers each id's key
+  // so it can be found in the tree again after requestTime changes
+  private record Key(LocalDateTime requestTime, Long id) {
+  }
+
+  private final OrderStatisticTree<Key> unsolved = new OrderStatisticTree<>(
+      Comparator.comparing(Key::requestTime, Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparing(Key::id));
+  private final Map<Long, Key> unsolvedKeys = new ConcurrentHashMap<>();
+
+  // weight of the newest gap in the moving average of seconds between solves
+  private static final double SOLVE_RATE_SMOOTHING = 0.2;
+  private long lastSolveNanos;
+  private volatile double secondsPerSolve = Double.NaN;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void load() {
+    queue.clear();
+    unsolved.clear();
+    unsolvedKeys.clear();
+    lastSolveNanos = 0;
+    secondsPerSolve = Double.NaN;
+    helpRequestRepository.findBySolvedFalse().forEach(this::offer);
+    log.info("help queue loaded with {} unsolved requests, {} waiting for a TA", unsolved.size(), queue.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void helpRequestChanged(EntityChangedEvent<HelpRequest> event) {
+    if (event.kind() == EntityChangedEvent.Kind.DELETED) {
+      remove((Long) event.id());
+    } else {
+      offer(event.current());
+    }
+  }
+
+  public synchronized void offer(HelpRequest helpRequest) {
+    if (helpRequest.getSolved() || helpRequest.getClaimedBy() != null) {
+      queue.remove(helpRequest.getId());
+    } else {
+      queue.put(helpRequest);
+    }
+
+    boolean wasUnsolved = removeUnsolved(helpRequest.getId());
+    if (!helpRequest.getSolved()) {
+      Key key = new Key(helpRequest.getRequestTime(), helpRequest.getId());
+      unsolved.add(key);
+      unsolvedKeys.put(key.id(), key);
+    } else if (wasUnsolved) {
+      recordSolve();
+    }
+  }
+
+  public synchronized void remove(Long id) {
+    queue.remove(id);
+    removeUnsolved(id);
+  }
+
+  public int size() {
+    return queue.size();
+  }
+
+  /**
+   * Where an unsolved request stands in line, or empty if it isn't an
+   * unsolved request (solved, deleted or never existed).
+   */
+  public Optional<QueuePosition> position(Long id) {
+    Key key = unsolvedKeys.get(id);
+    if (key == null) {
+      return Optional.empty();
+    }
+    int ahead = unsolved.rank(key);
+    double perSolve = secondsPerSolve;
+    return Optional.of(QueuePosition.builder()
+        .id(id)
+        .position(ahead + 1)
+        .waiting(unsolved.size())
+        .estimatedWaitSeconds(Double.isNaN(perSolve) ? null : Math.round(ahead * perSolve))
+        .build());
+  }
+
+  private boolean removeUnsolved(Long id) {
+    Key key = unsolvedKeys.remove(id);
+    return key != null && unsolved.remove(key);
+  }
+
+  private void recordSolve() {
+    long now = System.nanoTime();
+    if (lastSolveNanos != 0) {
+      double gap = (now - lastSolveNanos) / 1e9;
+      secondsPerSolve = Double.isNaN(secondsPerSolve)
+          ? gap
+          : SOLVE_RATE_SMOOTHING * gap + (1 - SOLVE_RATE_SMOOTHING) * secondsPerSolve;
+    }
+    lastSolveNanos = now;
+  }
+
+  /**
+   * Claims the next waiting request for the given TA and returns it as
+   * stored after the claim; empty if nothing is waiting.
+   */
+  public Optional<HelpRequest> dispatch(String claimedBy) {
+    LocalDateTime overdueBefore = LocalDateTime.now().minusMinutes(maxWaitMinutes);
+    HelpRequest next;
+    while ((next = queue.poll(helpRequest -> helpRequest.getRequestTime() != null
+        && helpRequest.getRequestTime().isBefore(overdueBefore))) != null) {
+      if (helpRequestRepository.claim(next.getId(), claimedBy, Instant.now()) == 1) {
+        offerAgainOnRollback(next);
+        return helpRequestRepository.findById(next.getId());
+      }
+      log.debug("help request {} was claimed or deleted while queued", next.getId());
+    }
+    return Optional.empty();
+  }
+
+  private void offerAgainOnRollback(HelpRequest polled) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status == STATUS_ROLLED_BACK) {
+          offer(polled);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,157 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.HelpQueueStats;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.SlidingWindowCounter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+// Live counts for the help queue dashboard (GET /api/helprequest/stats),
+// kept in memory and updated as help request writes commit.
+//
+// Everything here is lock-free: LongAdder counters per team and per table,
+// a concurrent skip list ordered by requestTime for the oldest open request,
+// and a SlidingWindowCounter of one-second buckets for the solve rate over
+// the last app.helpQueue.rateWindowMinutes. Reads never block writers.
+
+@Slf4j
+@Service("helpQueueStats")
+public class HelpQueueStatsService {
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Value("${app.helpQueue.rateWindowMinutes:15}")
+  private int rateWindowMinutes;
+
+  private record Open(Long id, String teamId, String table, LocalDateTime requestTime) {
+  }
+
+  private final Map<Long, Open> open = new ConcurrentHashMap<>();
+  private final LongAdder openCount = new LongAdder();
+  private final Map<String, LongAdder> openByTeam = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> openByTable = new ConcurrentHashMap<>();
+  // may briefly hold an entry that open no longer does (see oldestOpen)
+  private final ConcurrentSkipListSet<Open> byRequestTime = new ConcurrentSkipListSet<>(
+      Comparator.comparing(Open::requestTime, Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparing(Open::id));
+  private volatile SlidingWindowCounter solves;
+
+  @PostConstruct
+  public void createSolveCounter() {
+    solves = new SlidingWindowCounter(1000, rateWindowMinutes * 60);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    open.keySet().forEach(this::removed);
+    createSolveCounter();
+    helpRequestRepository.findBySolvedFalse().forEach(this::record);
+    log.info("help queue stats loaded with {} open requests", openCount.sum());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void helpRequestChanged(EntityChangedEvent<HelpRequest> event) {
+    if (event.kind() == EntityChangedEvent.Kind.DELETED) {
+      removed((Long) event.id());
+    } else {
+      record(event.current());
+    }
+  }
+
+  public void record(HelpRequest helpRequest) {
+    if (helpRequest.getSolved()) {
+      Open previous = open.remove(helpRequest.getId());
+      if (previous != null) {
+        leave(previous);
+        solves.increment(System.currentTimeMillis());
+      }
+    } else {
+      Open next = new Open(helpRequest.getId(), Objects.toString(helpRequest.getTeamId(), ""),
+          Objects.toString(helpRequest.getTableOrBreakoutRoom(), ""), helpRequest.getRequestTime());
+      Open previous = open.put(next.id(), next);
+      if (previous != null) {
+        leave(previous);
+      }
+      enter(next);
+    }
+  }
+
+  public void removed(Long id) {
+    Open previous = open.remove(id);
+    if (previous != null) {
+      leave(previous);
+    }
+  }
+
+  public HelpQueueStats getStats() {
+    long now = System.currentTimeMillis();
+    Open oldest = oldestOpen();
+    return HelpQueueStats.builder()
+        .open(openCount.sum())
+        .openByTeam(nonZero(openByTeam))
+        .openByTable(nonZero(openByTable))
+        .oldestOpenId(oldest == null ? null : oldest.id())
+        .oldestOpenRequestTime(oldest == null ? null : oldest.requestTime())
+        .solvesLastMinute(solves.sum(now, 60))
+        .solvesPerMinute((double) solves.sum(now, rateWindowMinutes * 60) / rateWindowMinutes)
+        .solvesPerMinuteWindowMinutes(rateWindowMinutes)
+        .build();
+  }
+
+  private void enter(Open entry) {
+    openCount.increment();
+    openByTeam.computeIfAbsent(entry.teamId(), k -> new LongAdder()).increment();
+    openByTable.computeIfAbsent(entry.table(), k -> new LongAdder()).increment();
+    byRequestTime.add(entry);
+  }
+
+  private void leave(Open entry) {
+    openCount.decrement();
+    openByTeam.get(entry.teamId()).decrement();
+    openByTable.get(entry.table()).decrement();
+    byRequestTime.remove(entry);
+  }
+
+  // Two racing updates of one request can leave an entry in the skip list
+  // after it was replaced in open; such entries are dropped here on sight.
+  private Open oldestOpen() {
+    for (Open entry : byRequestTime) {
+      if (entry.equals(open.get(entry.id()))) {
+        return entry;
+      }
+      byRequestTime.remove(entry);
+    }
+    return null;
+  }
+
+  private static Map<String, Long> nonZero(Map<String, LongAdder> counters) {
+    Map<String, Long> result = new TreeMap<>();
+    counters.forEach((key, counter) -> {
+      long count = counter.sum();
+      if (count > 0) {
+        result.put(key, count);
+      }
+    });
+    return result;
+  }
+}
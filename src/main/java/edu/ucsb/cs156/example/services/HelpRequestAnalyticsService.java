@@ -0,0 +1,230 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequestDailySketch;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.HelpRequestAnalytics;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestDailySketchRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.HyperLogLog;
+import edu.ucsb.cs156.example.structures.LogHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Approximate help request figures for /api/helprequest/analytics without
+// scanning the table: per day of requestTime, a HyperLogLog of requester
+// emails (distinct students) and a LogHistogram of wait times (requestTime
+// to the first claim, or to the solve for requests nobody claimed).
+//
+// This node's sketches live in memory and are updated as help request
+// writes commit; a daemon thread saves the days that changed every
+// app.analytics.flushSeconds (and at shutdown), one row per day and node.
+// A report merges the days in its range, taking this node's from memory
+// and every other node's from the table. Updates since the last save are
+// lost if the process dies, which approximate figures can live with.
+
+@Slf4j
+@Service("helpRequestAnalytics")
+public class HelpRequestAnalyticsService {
+
+  private static final int PRECISION = 12;
+
+  private static final class DaySketch {
+    final HyperLogLog requesters;
+    final LogHistogram waits;
+    final AtomicBoolean dirty = new AtomicBoolean();
+    volatile Long id;
+
+    DaySketch(HyperLogLog requesters, LogHistogram waits, Long id) {
+      this.requesters = requesters;
+      this.waits = waits;
+      this.id = id;
+    }
+  }
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  HelpRequestDailySketchRepository helpRequestDailySketchRepository;
+
+  @Value("${app.analytics.node:${HOSTNAME:local}}")
+  private String node;
+
+  @Value("${app.analytics.flushSeconds:30}")
+  private long flushSeconds;
+
+  private final Map<LocalDate, DaySketch> days = new ConcurrentHashMap<>();
+  private ScheduledExecutorService flusher;
+
+  @PostConstruct
+  public void start() {
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "analytics-flush");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(() -> {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        log.error("saving help request analytics sketches failed; will retry", e);
+      }
+    }, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    flusher.shutdownNow();
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      log.error("saving help request analytics sketches at shutdown failed", e);
+    }
+  }
+
+  // the only full scan: the first time any node starts with analytics
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    days.clear();
+    List<HelpRequestDailySketch> rows = helpRequestDailySketchRepository.findByNode(node);
+    if (rows.isEmpty() && helpRequestDailySketchRepository.count() == 0) {
+      helpRequestRepository.findAll().forEach(this::sketch);
+      archivedHelpRequestRepository.findAll().forEach(archived -> sketch(archived.toHelpRequest()));
+      flush();
+    } else {
+      rows.forEach(row -> days.put(row.getSketchDate(), new DaySketch(
+          HyperLogLog.fromBytes(row.getRequesters()), LogHistogram.fromBytes(row.getWaits()), row.getId())));
+    }
+    log.info("loaded help request analytics sketches for {} days", days.size());
+  }
+
+  private void sketch(HelpRequest helpRequest) {
+    requested(helpRequest);
+    Instant waitEnded = helpRequest.getClaimedAt() != null ? helpRequest.getClaimedAt() : helpRequest.getSolvedAt();
+    if (waitEnded != null) {
+      waited(helpRequest, waitEnded);
+    }
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void helpRequestChanged(EntityChangedEvent<HelpRequest> event) {
+    HelpRequest previous = event.previous();
+    HelpRequest current = event.current();
+    if (event.kind() == EntityChangedEvent.Kind.CREATED) {
+      requested(current);
+    } else if (event.kind() == EntityChangedEvent.Kind.UPDATED && previous != null) {
+      if (previous.getClaimedAt() == null && current.getClaimedAt() != null) {
+        waited(current, current.getClaimedAt());
+      } else if (!previous.getSolved() && current.getSolved() && current.getClaimedAt() == null) {
+        // a request nobody claimed waited until it was solved
+        waited(current, current.getSolvedAt());
+      }
+    }
+  }
+
+  public void requested(HelpRequest helpRequest) {
+    if (helpRequest.getRequestTime() == null || helpRequest.getRequesterEmail() == null) {
+      return;
+    }
+    DaySketch day = dayOf(helpRequest);
+    day.requesters.add(helpRequest.getRequesterEmail().trim().toLowerCase());
+    day.dirty.set(true);
+  }
+
+  // once per help request, when it is first claimed (or solved, if nobody claimed it)
+  public void waited(HelpRequest helpRequest, Instant waitEnded) {
+    if (helpRequest.getRequestTime() == null || waitEnded == null) {
+      return;
+    }
+    Instant requested = helpRequest.getRequestTime().atZone(ZoneId.systemDefault()).toInstant();
+    DaySketch day = dayOf(helpRequest);
+    day.waits.record(Duration.between(requested, waitEnded).getSeconds());
+    day.dirty.set(true);
+  }
+
+  private DaySketch dayOf(HelpRequest helpRequest) {
+    return days.computeIfAbsent(helpRequest.getRequestTime().toLocalDate(),
+        date -> new DaySketch(new HyperLogLog(PRECISION), new LogHistogram(), null));
+  }
+
+  // saves the days changed since the last flush
+  public synchronized void flush() {
+    int saved = 0;
+    for (Map.Entry<LocalDate, DaySketch> entry : days.entrySet()) {
+      DaySketch day = entry.getValue();
+      // cleared before reading, so an update racing with the save is saved next time
+      if (!day.dirty.getAndSet(false)) {
+        continue;
+      }
+      try {
+        HelpRequestDailySketch row = helpRequestDailySketchRepository.save(HelpRequestDailySketch.builder()
+            .id(day.id)
+            .sketchDate(entry.getKey())
+            .node(node)
+            .requesters(day.requesters.toBytes())
+            .waits(day.waits.toBytes())
+            .build());
+        day.id = row.getId();
+        saved++;
+      } catch (RuntimeException e) {
+        day.dirty.set(true);
+        throw e;
+      }
+    }
+    log.debug("saved help request analytics sketches for {} days", saved);
+  }
+
+  public HelpRequestAnalytics analytics(LocalDate from, LocalDate to) {
+    HyperLogLog requesters = new HyperLogLog(PRECISION);
+    LogHistogram waits = new LogHistogram();
+    days.forEach((date, day) -> {
+      if (!date.isBefore(from) && !date.isAfter(to)) {
+        requesters.merge(day.requesters);
+        waits.merge(day.waits);
+      }
+    });
+    for (HelpRequestDailySketch row : helpRequestDailySketchRepository.findBySketchDateBetweenAndNodeNot(from, to, node)) {
+      requesters.merge(HyperLogLog.fromBytes(row.getRequesters()));
+      waits.merge(LogHistogram.fromBytes(row.getWaits()));
+    }
+
+    boolean anyWaits = waits.count() > 0;
+    return HelpRequestAnalytics.builder()
+        .from(from)
+        .to(to)
+        .distinctRequesters(requesters.estimate())
+        .distinctRequestersError(requesters.getStandardError())
+        .waits(waits.count())
+        .waitSecondsP50(anyWaits ? waits.valueAtPercentile(50) : null)
+        .waitSecondsP90(anyWaits ? waits.valueAtPercentile(90) : null)
+        .waitSecondsP99(anyWaits ? waits.valueAtPercentile(99) : null)
+        .build();
+  }
+}
@@ -0,0 +1,136 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Keeps helperrequest small by moving solved requests older than
+// app.archive.afterDays into archivedhelprequest, every
+// app.archive.intervalMinutes on a daemon thread.
+//
+// Each chunk of app.archive.chunkSize rows is its own short transaction:
+// lock the oldest archivable rows, copy them with one INSERT ... SELECT,
+// leave a tombstone for each with another, so /changes reports them gone
+// like any delete, and delete them with one DELETE. A PUT racing with a
+// chunk waits for it and then fails its version check; other rows are
+// never held up. The caches in front of HelpRequest reads are told about
+// every chunk. No DELETED events are published: the rows were solved, so
+// the queue, SLA alarms and similar-question index dropped them already,
+// and the hourly rollups count archived requests too.
+
+@Slf4j
+@Service("helpRequestArchive")
+public class HelpRequestArchiveService {
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  EntityCacheService entityCacheService;
+
+  @Autowired
+  ResponseCacheService responseCacheService;
+
+  @Autowired
+  NegativeLookupService negativeLookupService;
+
+  @Value("${app.archive.afterDays:30}")
+  private long afterDays;
+
+  @Value("${app.archive.chunkSize:500}")
+  private int chunkSize;
+
+  @Value("${app.archive.intervalMinutes:60}")
+  private long intervalMinutes;
+
+  private ScheduledExecutorService archiver;
+
+  @PostConstruct
+  public void start() {
+    archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "help-request-archiver");
+      thread.setDaemon(true);
+      return thread;
+    });
+    archiver.scheduleWithFixedDelay(() -> {
+      try {
+        archive(Instant.now().minus(Duration.ofDays(afterDays)));
+      } catch (RuntimeException e) {
+        log.error("archiving solved help requests failed; will retry", e);
+      }
+    }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  public void stop() {
+    archiver.shutdownNow();
+  }
+
+  // moves every request solved before solvedBefore; returns how many
+  public int archive(Instant solvedBefore) {
+    LocalDateTime requestedBefore = LocalDateTime.ofInstant(solvedBefore, ZoneId.systemDefault());
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    int archived = 0;
+    List<Long> chunk;
+    do {
+      chunk = transaction.execute(status -> {
+        List<Long> ids = helpRequestRepository.findArchivable(solvedBefore, requestedBefore, PageRequest.of(0, chunkSize))
+            .stream()
+            .map(HelpRequest::getId)
+            .collect(Collectors.toList());
+        if (!ids.isEmpty()) {
+          Instant archivedAt = Instant.now();
+          archivedHelpRequestRepository.copyFromHelpRequests(ids, archivedAt);
+          tombstoneRepository.recordHelpRequestsDeleted(ids, archivedAt);
+          helpRequestRepository.deleteByIds(ids);
+        }
+        return ids;
+      });
+      for (Long id : chunk) {
+        entityCacheService.invalidate(HelpRequest.class, id);
+        negativeLookupService.recordCreated(ArchivedHelpRequest.class, id);
+      }
+      if (!chunk.isEmpty()) {
+        responseCacheService.invalidate(HelpRequest.class.getSimpleName());
+      }
+      archived += chunk.size();
+    } while (chunk.size() == chunkSize);
+
+    if (archived > 0) {
+      log.info("archived {} help requests solved before {}", archived, solvedBefore);
+    }
+    return archived;
+  }
+}
@@ -0,0 +1,262 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequestHourly;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.Heatmap;
+import edu.ucsb.cs156.example.models.HeatmapCell;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestHourlyRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+// Pre-aggregated history of help requests for /api/helprequest/heatmap:
+// one HelpRequestHourly row per hour of requestTime. The heatmap folds the
+// rows of a date range into day-of-week x hour-of-day cells, reading at
+// most 24 rows per day of the range instead of every help request in it.
+//
+// Writes keep the rows current: each create, update and delete of a help
+// request applies the difference between its Contribution before and after
+// with atomic increments, in the transaction of the write, so a rollback
+// takes it back too (archiving a request changes nothing). backfill() rebuilds all rows from the help requests,
+// archived ones included, reading them in id ranges in parallel on a
+// fork/join pool; it runs at startup when there are no rows yet. Writes
+// that land while a backfill is reading can be lost by it, so rebuild
+// when the queue is quiet.
+
+@Slf4j
+@Service("helpRequestRollups")
+public class HelpRequestRollupService {
+
+  // what one help request adds to the row of its hour; solveSeconds is null
+  // when it is unsolved or its solve time isn't known
+  public record Contribution(LocalDateTime hourStart, boolean solved, Long solveSeconds) {
+  }
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  HelpRequestHourlyRepository helpRequestHourlyRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Value("${app.heatmap.backfillChunkSize:5000}")
+  private int backfillChunkSize;
+
+  @Value("${app.heatmap.backfillParallelism:4}")
+  private int backfillParallelism;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    if (helpRequestHourlyRepository.count() == 0) {
+      backfill();
+    }
+  }
+
+  // null for no help request (before a create, after a delete)
+  public static Contribution contributionOf(HelpRequest helpRequest) {
+    if (helpRequest == null || helpRequest.getRequestTime() == null) {
+      return null;
+    }
+    Long solveSeconds = null;
+    if (helpRequest.getSolved() && helpRequest.getSolvedAt() != null) {
+      Duration solveTime = Duration.between(
+          helpRequest.getRequestTime().atZone(ZoneId.systemDefault()).toInstant(), helpRequest.getSolvedAt());
+      solveSeconds = Math.max(0, solveTime.getSeconds());
+    }
+    return new Contribution(helpRequest.getRequestTime().truncatedTo(ChronoUnit.HOURS),
+        helpRequest.getSolved(), solveSeconds);
+  }
+
+  // a plain listener, so the increments join the transaction of the write;
+  // updates of help requests always carry the request before the update
+  @EventListener
+  public void helpRequestChanged(EntityChangedEvent<HelpRequest> event) {
+    changed(contributionOf(event.previous()), contributionOf(event.current()));
+  }
+
+  // the contributions of the help request before and after a write
+  public void changed(Contribution before, Contribution after) {
+    if (Objects.equals(before, after)) {
+      return;
+    }
+    if (before != null) {
+      add(before, -1);
+    }
+    if (after != null) {
+      add(after, 1);
+    }
+  }
+
+  private void add(Contribution contribution, int sign) {
+    LocalDateTime hourStart = contribution.hourStart();
+    long solved = contribution.solved() ? sign : 0;
+    long timedSolves = contribution.solveSeconds() == null ? 0 : sign;
+    long solveSeconds = contribution.solveSeconds() == null ? 0 : sign * contribution.solveSeconds();
+
+    if (helpRequestHourlyRepository.increment(hourStart, sign, solved, timedSolves, solveSeconds) > 0) {
+      return;
+    }
+    try {
+      helpRequestHourlyRepository.save(new HelpRequestHourly(hourStart, sign, solved, timedSolves, solveSeconds, null));
+    } catch (DataIntegrityViolationException e) {
+      // another write inserted the hour's row between our update and insert
+      helpRequestHourlyRepository.increment(hourStart, sign, solved, timedSolves, solveSeconds);
+    }
+  }
+
+  // replaces every row with one computed from the help requests; returns the number of rows
+  public int backfill() {
+    long started = System.nanoTime();
+    Map<LocalDateTime, HelpRequestHourly> hours = new HashMap<>();
+    ForkJoinPool pool = new ForkJoinPool(backfillParallelism);
+    try {
+      Long minId = helpRequestRepository.findMinId();
+      if (minId != null) {
+        merge(hours, pool.invoke(new Backfill(minId, helpRequestRepository.findMaxId(),
+            helpRequestRepository::findByIdBetween)));
+      }
+      Long minArchivedId = archivedHelpRequestRepository.findMinId();
+      if (minArchivedId != null) {
+        merge(hours, pool.invoke(new Backfill(minArchivedId, archivedHelpRequestRepository.findMaxId(),
+            (from, to) -> archivedHelpRequestRepository.findByIdBetween(from, to).stream()
+                .map(ArchivedHelpRequest::toHelpRequest)
+                .collect(Collectors.toList()))));
+      }
+    } finally {
+      pool.shutdown();
+    }
+    Iterable<HelpRequestHourly> rows = hours.values();
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      helpRequestHourlyRepository.deleteAllRows();
+      helpRequestHourlyRepository.saveAll(rows);
+    });
+    log.info("backfilled {} hourly help request rollups in {}ms", hours.size(),
+        (System.nanoTime() - started) / 1_000_000);
+    return hours.size();
+  }
+
+  // rollups of the help requests with ids fromId..toId, split in half until
+  // a range is at most backfillChunkSize ids (one finder query)
+  private class Backfill extends RecursiveTask<Map<LocalDateTime, HelpRequestHourly>> {
+    private final long fromId;
+    private final long toId;
+    private final BiFunction<Long, Long, List<HelpRequest>> finder;
+
+    Backfill(long fromId, long toId, BiFunction<Long, Long, List<HelpRequest>> finder) {
+      this.fromId = fromId;
+      this.toId = toId;
+      this.finder = finder;
+    }
+
+    @Override
+    protected Map<LocalDateTime, HelpRequestHourly> compute() {
+      if (toId - fromId < backfillChunkSize) {
+        Map<LocalDateTime, HelpRequestHourly> hours = new HashMap<>();
+        for (HelpRequest helpRequest : finder.apply(fromId, toId)) {
+          Contribution contribution = contributionOf(helpRequest);
+          if (contribution != null) {
+            HelpRequestHourly hour = hours.computeIfAbsent(contribution.hourStart(),
+                hourStart -> new HelpRequestHourly(hourStart, 0, 0, 0, 0, null));
+            addTo(hour, 1, contribution.solved() ? 1 : 0,
+                contribution.solveSeconds() == null ? 0 : 1,
+                contribution.solveSeconds() == null ? 0 : contribution.solveSeconds());
+          }
+        }
+        return hours;
+      }
+      long middle = fromId + (toId - fromId) / 2;
+      Backfill lower = new Backfill(fromId, middle, finder);
+      lower.fork();
+      Map<LocalDateTime, HelpRequestHourly> upper = new Backfill(middle + 1, toId, finder).compute();
+      Map<LocalDateTime, HelpRequestHourly> merged = lower.join();
+      merge(merged, upper);
+      return merged;
+    }
+  }
+
+  private static void merge(Map<LocalDateTime, HelpRequestHourly> into, Map<LocalDateTime, HelpRequestHourly> from) {
+    from.forEach((hourStart, hour) -> into.merge(hourStart, hour, (a, b) -> {
+      addTo(a, b.getRequests(), b.getSolved(), b.getTimedSolves(), b.getSolveSeconds());
+      return a;
+    }));
+  }
+
+  private static void addTo(HelpRequestHourly hour, long requests, long solved, long timedSolves, long solveSeconds) {
+    hour.setRequests(hour.getRequests() + requests);
+    hour.setSolved(hour.getSolved() + solved);
+    hour.setTimedSolves(hour.getTimedSolves() + timedSolves);
+    hour.setSolveSeconds(hour.getSolveSeconds() + solveSeconds);
+  }
+
+  // help requests from the start of from to the end of to, by day of week and hour
+  public Heatmap heatmap(LocalDate from, LocalDate to) {
+    HelpRequestHourly[][] cells = new HelpRequestHourly[7][24];
+    for (HelpRequestHourly hour : helpRequestHourlyRepository.findByHourStartBetween(from.atStartOfDay(), to.atTime(23, 0))) {
+      int day = hour.getHourStart().getDayOfWeek().getValue() - 1;
+      int hourOfDay = hour.getHourStart().getHour();
+      if (cells[day][hourOfDay] == null) {
+        cells[day][hourOfDay] = new HelpRequestHourly(null, 0, 0, 0, 0, null);
+      }
+      addTo(cells[day][hourOfDay], hour.getRequests(), hour.getSolved(), hour.getTimedSolves(), hour.getSolveSeconds());
+    }
+
+    List<HeatmapCell> heatmapCells = new ArrayList<>();
+    long requests = 0;
+    long solved = 0;
+    for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+      for (int hourOfDay = 0; hourOfDay < 24; hourOfDay++) {
+        HelpRequestHourly cell = cells[dayOfWeek.getValue() - 1][hourOfDay];
+        HeatmapCell.HeatmapCellBuilder builder = HeatmapCell.builder().dayOfWeek(dayOfWeek).hour(hourOfDay);
+        if (cell != null) {
+          requests += cell.getRequests();
+          solved += cell.getSolved();
+          builder.requests(cell.getRequests())
+              .solved(cell.getSolved())
+              .averageSolveMinutes(cell.getTimedSolves() > 0
+                  ? cell.getSolveSeconds() / 60.0 / cell.getTimedSolves()
+                  : null);
+        }
+        heatmapCells.add(builder.build());
+      }
+    }
+    return Heatmap.builder()
+        .from(from)
+        .to(to)
+        .requests(requests)
+        .solved(solved)
+        .cells(heatmapCells)
+        .build();
+  }
+}
@@ -0,0 +1,134 @@
+package edu.ucsb.cs156.example.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+// Remembers the result of each create call made with an Idempotency-Key,
+// so a client retrying after a dropped response gets the original result
+// instead of a duplicate row.
+//
+// Keys live for app.idempotency.ttlSeconds after the call completes, and
+// at most app.idempotency.maxKeys are kept (oldest dropped first). A
+// duplicate that arrives while the first call is still running waits for
+// it; if the first call fails nothing is remembered and the waiter runs
+// the call itself.
+//
+// A call made inside a transaction (a POST /api/batch) only completes
+// when that transaction commits: if it rolls back, the row the result
+// names was never stored, so the key is forgotten like a failed call.
+// The same key again inside that transaction gets the pending result.
+
+@Slf4j
+@Service("idempotency")
+public class IdempotencyService {
+
+  @Value("${app.idempotency.ttlSeconds:86400}")
+  private long ttlSeconds;
+
+  @Value("${app.idempotency.maxKeys:10000}")
+  private int maxKeys;
+
+  private static class Entry {
+    final CompletableFuture<Object> result = new CompletableFuture<>();
+    // in flight until the call completes
+    volatile long expires = Long.MAX_VALUE;
+    // the thread whose transaction has yet to commit the result, and the result
+    volatile Thread committing;
+    volatile Object uncommitted;
+  }
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, false) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxKeys;
+    }
+  };
+
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String key, Supplier<T> action) {
+    while (true) {
+      Entry entry;
+      boolean first = false;
+      synchronized (entries) {
+        entry = entries.get(key);
+        if (entry != null && entry.expires - System.nanoTime() < 0) {
+          entries.remove(key);
+          entry = null;
+        }
+        if (entry == null) {
+          entry = new Entry();
+          entries.put(key, entry);
+          first = true;
+        }
+      }
+
+      if (first) {
+        return run(key, entry, action);
+      }
+      if (entry.committing == Thread.currentThread()) {
+        return (T) entry.uncommitted;
+      }
+      try {
+        return (T) entry.result.join();
+      } catch (CompletionException e) {
+        log.debug("call with idempotency key {} failed; retrying it", key);
+      }
+    }
+  }
+
+  private <T> T run(String key, Entry entry, Supplier<T> action) {
+    T result;
+    try {
+      result = action.get();
+    } catch (RuntimeException | Error e) {
+      forget(key, entry, e);
+      throw e;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      remember(entry, result);
+      return result;
+    }
+    entry.uncommitted = result;
+    entry.committing = Thread.currentThread();
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        entry.committing = null;
+        if (status == STATUS_COMMITTED) {
+          remember(entry, result);
+        } else {
+          forget(key, entry, new IllegalStateException("the transaction was rolled back"));
+        }
+      }
+    });
+    return result;
+  }
+
+  private void remember(Entry entry, Object result) {
+    entry.expires = System.nanoTime() + ttlSeconds * 1_000_000_000L;
+    entry.result.complete(result);
+  }
+
+  private void forget(String key, Entry entry, Throwable failure) {
+    synchronized (entries) {
+      entries.remove(key, entry);
+    }
+    entry.result.completeExceptionally(failure);
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+public class LoggingSlaAlarmSink implements SlaAlarmSink {
+
+  @Override
+  public void overdue(OverdueAlarm alarm) {
+    log.warn("help request {} (team {}, {}) requested at {} is overdue",
+        alarm.getId(), alarm.getTeamId(), alarm.getTableOrBreakoutRoom(), alarm.getRequestTime());
+  }
+}
@@ -0,0 +1,152 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.RecRequest;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.repositories.ChangeClockRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.RecRequestRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Primes NegativeLookupService with the ids that exist at startup, then
+// every app.negativeLookup.refreshMillis adds the ids of rows written since,
+// from any node, as read off the change sequence: rows stamped after the
+// clock value the last pass started from, and rows not stamped yet. Every
+// app.negativeLookup.reprimeSeconds the filters are rebuilt from scratch so
+// deleted ids drop out. Until the first run, lookups simply aren't filtered
+// by the Bloom filters. Dining commons and organizations are keyed by codes,
+// which the filters can't bound, so they aren't primed, but the refresh
+// still clears misses remembered for codes created since.
+
+@Slf4j
+@Component
+public class LookupFilterLoader {
+
+  @Autowired
+  NegativeLookupService negativeLookupService;
+
+  @Autowired
+  ChangeClockRepository changeClockRepository;
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  RecRequestRepository recRequestRepository;
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Value("${app.negativeLookup.refreshMillis:1000}")
+  private long refreshMillis;
+
+  @Value("${app.negativeLookup.reprimeSeconds:300}")
+  private long reprimeSeconds;
+
+  // every row stamped up to this value is in the filters
+  private volatile long coveredSeq;
+
+  private ScheduledExecutorService reprimer;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    primeLookupFilters();
+    reprimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "lookup-filter-prime");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // one thread, so a refresh never runs into a prime
+    reprimer.scheduleWithFixedDelay(this::refresh, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    reprimer.scheduleWithFixedDelay(this::reprime, reprimeSeconds, reprimeSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (reprimer != null) {
+      reprimer.shutdownNow();
+    }
+  }
+
+  public void reprime() {
+    try {
+      primeLookupFilters();
+    } catch (RuntimeException e) {
+      // the old filters, and their bounds, stay in use
+      log.error("priming lookup filters failed; will retry", e);
+    }
+  }
+
+  public void refresh() {
+    try {
+      refreshLookupFilters();
+    } catch (RuntimeException e) {
+      // the next pass reads from the same clock value
+      log.error("refreshing lookup filters failed; will retry", e);
+    }
+  }
+
+  public void primeLookupFilters() {
+    // read first: a row stamped later is read again by the next refresh
+    long seq = changeClockRepository.current().orElse(0L);
+    negativeLookupService.prime(Articles.class, articlesRepository.count(), articlesRepository::findAllIds);
+    negativeLookupService.prime(HelpRequest.class, helpRequestRepository.count(), helpRequestRepository::findAllIds);
+    negativeLookupService.prime(MenuItemReview.class, menuItemReviewRepository.count(), menuItemReviewRepository::findAllIds);
+    negativeLookupService.prime(RecRequest.class, recRequestRepository.count(), recRequestRepository::findAllIds);
+    negativeLookupService.prime(UCSBDate.class, ucsbDateRepository.count(), ucsbDateRepository::findAllIds);
+    negativeLookupService.prime(UCSBDiningCommonsMenu.class, ucsbDiningCommonsMenuRepository.count(), ucsbDiningCommonsMenuRepository::findAllIds);
+    coveredSeq = seq;
+  }
+
+  public void refreshLookupFilters() {
+    long seq = changeClockRepository.current().orElse(0L);
+    long since = coveredSeq;
+    negativeLookupService.refresh(Articles.class, articlesRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(HelpRequest.class, helpRequestRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(MenuItemReview.class, menuItemReviewRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(RecRequest.class, recRequestRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(UCSBDate.class, ucsbDateRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(UCSBDiningCommonsMenu.class, ucsbDiningCommonsMenuRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(UCSBDiningCommons.class, ucsbDiningCommonsRepository.findIdsChangedAfter(since));
+    negativeLookupService.refresh(UCSBOrganization.class, ucsbOrganizationRepository.findIdsChangedAfter(since));
+    coveredSeq = seq;
+  }
+}
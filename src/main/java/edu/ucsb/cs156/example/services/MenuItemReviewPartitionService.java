@@ -0,0 +1,205 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ReviewPartitions;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+// Stores menu item reviews by dateReviewed month.
+//
+// On Postgres the table is natively partitioned by month
+// (PostgresReviewPartitions); H2 has no partitioning, so there it is
+// emulated (EmulatedReviewPartitions): same API, same routing, none of the
+// savings. This class keeps the catalog of months and decides when each
+// is created or expired.
+//
+// Writes call route() with the review's date first, which creates the
+// month's partition if it doesn't exist yet. A daemon thread keeps
+// app.reviews.partitionMonthsAhead months created in advance, moves
+// reviews that landed in the default partition into their month, and
+// drops months older than app.reviews.retentionMonths (0 keeps them all).
+// An expiry leaves a tombstone for each review it drops, in its
+// transaction, so /changes reports them like any delete. No events are
+// published for them, so afterwards the review columns, the menu ranking
+// and trending are rebuilt from what is left.
+
+@Slf4j
+@Service("menuItemReviewPartitions")
+public class MenuItemReviewPartitionService {
+
+  static final String TABLE = "menu_item_review";
+  static final String MONTH_OF_REVIEW =
+      "cast(extract(year from date_reviewed) * 100 + extract(month from date_reviewed) as integer)";
+
+  // databases with native partitioning, by JDBC product name; the rest are emulated
+  private static final Map<String, BiFunction<JdbcTemplate, PlatformTransactionManager, ReviewPartitionStrategy>> NATIVE =
+      Map.of("PostgreSQL", PostgresReviewPartitions::new);
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  EntityCacheService entityCacheService;
+
+  @Autowired
+  ResponseCacheService responseCacheService;
+
+  @Autowired
+  ReviewColumnStoreService reviewColumns;
+
+  @Autowired
+  MenuRankingService menuRanking;
+
+  @Autowired
+  TrendingService trending;
+
+  @Value("${app.reviews.partitionMonthsAhead:2}")
+  private int monthsAhead;
+
+  @Value("${app.reviews.retentionMonths:0}")
+  private int retentionMonths;
+
+  @Value("${app.reviews.partitionMaintenanceMinutes:360}")
+  private long maintenanceMinutes;
+
+  private final NavigableSet<YearMonth> months = new ConcurrentSkipListSet<>();
+  private volatile ReviewPartitionStrategy strategy;
+  private ScheduledExecutorService maintainer;
+
+  // a MONTH_OF_REVIEW value, e.g. 202203
+  static YearMonth yearMonth(int month) {
+    return YearMonth.of(month / 100, month % 100);
+  }
+
+  @PostConstruct
+  public void start() {
+    maintainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "review-partitions");
+      thread.setDaemon(true);
+      return thread;
+    });
+    maintainer.scheduleWithFixedDelay(() -> {
+      try {
+        maintain();
+      } catch (RuntimeException e) {
+        log.error("maintaining menu item review partitions failed; will retry", e);
+      }
+    }, maintenanceMinutes, maintenanceMinutes, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  public void stop() {
+    maintainer.shutdownNow();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    String database = jdbcTemplate.execute(
+        (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+    ReviewPartitionStrategy loading = NATIVE
+        .getOrDefault(database, (jdbc, transactions) -> new EmulatedReviewPartitions(jdbc))
+        .apply(jdbcTemplate, transactionManager);
+    months.clear();
+    months.addAll(loading.load());
+    strategy = loading;
+    maintain();
+    log.info("menu item reviews are stored in {} monthly partitions ({})", months.size(), loading.mode());
+  }
+
+  // call before saving a review with this dateReviewed
+  public void route(LocalDateTime dateReviewed) {
+    if (dateReviewed == null || strategy == null) {
+      return;
+    }
+    YearMonth month = YearMonth.from(dateReviewed);
+    if (!months.contains(month)) {
+      createPartition(month);
+    }
+  }
+
+  public void maintain() {
+    YearMonth current = YearMonth.now();
+    for (int ahead = 0; ahead <= monthsAhead; ahead++) {
+      route(current.plusMonths(ahead).atDay(1).atStartOfDay());
+    }
+    strategy.misplaced().forEach(this::createPartition);
+    if (retentionMonths > 0) {
+      expire(current.minusMonths(retentionMonths));
+    }
+  }
+
+  // drops every month before the given one; returns how many
+  public int expire(YearMonth before) {
+    List<YearMonth> expired = new ArrayList<>(months.headSet(before));
+    LocalDateTime cutoff = before.atDay(1).atStartOfDay();
+    int dropped = new TransactionTemplate(transactionManager).execute(status -> {
+      int reviews = tombstoneRepository.recordReviewsDeleted(cutoff, Instant.now());
+      strategy.expire(expired, cutoff);
+      return reviews;
+    });
+    months.removeAll(expired);
+    // the dropped ids aren't known without reading them, so drop everything
+    entityCacheService.invalidateAll();
+    responseCacheService.invalidate(MenuItemReview.class.getSimpleName());
+    if (dropped > 0) {
+      reviewColumns.load();
+      menuRanking.rank();
+      trending.rebuild(menuItemReviewRepository.findByLastModifiedGreaterThanEqual(
+          Instant.now().minus(trending.getLongestWindow())));
+    }
+    log.info("expired {} monthly partitions of menu item reviews before {} ({} reviews)", expired.size(), before,
+        dropped);
+    return expired.size();
+  }
+
+  public ReviewPartitions partitions() {
+    return ReviewPartitions.builder()
+        .mode(strategy == null ? null : strategy.mode())
+        .months(new ArrayList<>(months))
+        .retentionMonths(retentionMonths > 0 ? retentionMonths : null)
+        .build();
+  }
+
+  // a month the database couldn't create is tried again by the next write or maintain()
+  private synchronized void createPartition(YearMonth month) {
+    if (!months.contains(month) && strategy.create(month)) {
+      months.add(month);
+    }
+  }
+}
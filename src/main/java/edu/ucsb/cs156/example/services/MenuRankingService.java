@@ -0,0 +1,168 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
+import edu.ucsb.cs156.example.models.RankedMenu;
+import edu.ucsb.cs156.example.models.RankedMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Menu items ranked by a Bayesian average of their review stars, for
+// GET /api/ucsbdiningcommonsmenu/ranked, so one 5-star review doesn't put
+// an item above one with hundreds of 4.8s.
+//
+// An item with n reviews totalling s stars scores (C * m + s) / (C + n):
+// m is the mean of all reviews and C is app.ranking.priorReviews (or, if
+// that is 0, the mean number of reviews per reviewed item). Every
+// app.ranking.refreshSeconds a daemon thread takes each item's review
+// count and star total from the in-memory review columns, summed over
+// their chunks in parallel on their fork/join pool, scores and sorts the
+// reviewed menu items and swaps in an immutable snapshot of the ranking,
+// overall and per dining commons. Reads only follow that reference, so
+// they never wait and never see half a ranking.
+
+@Slf4j
+@Service("menuRanking")
+public class MenuRankingService {
+
+  private record Ranking(Instant computedAt, double priorMean, double priorReviews, List<RankedMenuItem> all,
+      Map<String, List<RankedMenuItem>> byCommons) {
+  }
+
+  private static final Comparator<RankedMenuItem> BEST_FIRST = Comparator
+      .comparingDouble(RankedMenuItem::getScore).reversed()
+      .thenComparing(Comparator.comparingLong(RankedMenuItem::getReviews).reversed())
+      .thenComparingLong(RankedMenuItem::getId);
+
+  @Autowired
+  ReviewColumnStoreService reviewColumns;
+
+  @Autowired
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Value("${app.ranking.refreshSeconds:60}")
+  private long refreshSeconds;
+
+  @Value("${app.ranking.priorReviews:0}")
+  private double priorReviews;
+
+  @Value("${app.ranking.maxLimit:1000}")
+  private int maxLimit;
+
+  private final AtomicReference<Ranking> ranking = new AtomicReference<>(
+      new Ranking(Instant.EPOCH, 0, 0, List.of(), Map.of()));
+  private ScheduledExecutorService ranker;
+
+  @PostConstruct
+  public void start() {
+    ranker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "menu-ranking");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ranker.scheduleWithFixedDelay(() -> {
+      try {
+        rank();
+      } catch (RuntimeException e) {
+        log.error("ranking menu items failed; will retry", e);
+      }
+    }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    ranker.shutdownNow();
+  }
+
+  // once the review columns have loaded
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(1)
+  public void load() {
+    rank();
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public void rank() {
+    long started = System.nanoTime();
+    ReviewColumnStoreService.ItemTotals totals = reviewColumns.itemTotals();
+    Map<Long, Integer> indexOf = new HashMap<>();
+    long reviews = 0;
+    long stars = 0;
+    for (int i = 0; i < totals.itemIds().length; i++) {
+      if (totals.reviews()[i] > 0) {
+        indexOf.put(totals.itemIds()[i], i);
+        reviews += totals.reviews()[i];
+        stars += totals.stars()[i];
+      }
+    }
+    double mean = reviews == 0 ? 0 : (double) stars / reviews;
+    double prior = priorReviews > 0 ? priorReviews : indexOf.isEmpty() ? 0 : (double) reviews / indexOf.size();
+
+    List<RankedMenuItem> all = new ArrayList<>();
+    for (UCSBDiningCommonsMenu menu : ucsbDiningCommonsMenuRepository.findAll()) {
+      Integer i = indexOf.get(menu.getId());
+      if (i == null) {
+        continue;
+      }
+      long n = totals.reviews()[i];
+      long s = totals.stars()[i];
+      all.add(RankedMenuItem.builder()
+          .id(menu.getId())
+          .name(menu.getName())
+          .diningCommonsCode(menu.getDiningCommonsCode())
+          .station(menu.getStation())
+          .reviews(n)
+          .averageStars((double) s / n)
+          .score((prior * mean + s) / (prior + n))
+          .build());
+    }
+    all.sort(BEST_FIRST);
+
+    Map<String, List<RankedMenuItem>> byCommons = new LinkedHashMap<>();
+    for (RankedMenuItem item : all) {
+      if (item.getDiningCommonsCode() != null) {
+        byCommons.computeIfAbsent(item.getDiningCommonsCode(), commons -> new ArrayList<>()).add(item);
+      }
+    }
+    byCommons.replaceAll((commons, items) -> List.copyOf(items));
+    ranking.set(new Ranking(totals.asOf(), mean, prior, List.copyOf(all), Map.copyOf(byCommons)));
+    log.debug("ranked {} menu items in {}ms", all.size(), (System.nanoTime() - started) / 1_000_000);
+  }
+
+  // the best limit items of a dining commons, or of all of them if commons is null
+  public RankedMenu ranked(String commons, int limit) {
+    Ranking current = ranking.get();
+    List<RankedMenuItem> items = commons == null ? current.all() : current.byCommons().getOrDefault(commons, List.of());
+    return RankedMenu.builder()
+        .commons(commons)
+        .computedAt(current.computedAt())
+        .priorMean(current.priorMean())
+        .priorReviews(current.priorReviews())
+        .items(items.subList(0, Math.min(limit, items.size())))
+        .build();
+  }
+}
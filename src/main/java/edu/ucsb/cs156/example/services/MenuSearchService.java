@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.MenuSearchHit;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import edu.ucsb.cs156.example.structures.TrigramIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+// Typo-tolerant search of menu item names, for
+// /api/ucsbdiningcommonsmenu/search, so "chiken" finds "Orange Chicken"
+// without downloading the whole menu.
+//
+// Every menu item is indexed by name in a TrigramIndex at startup and then
+// again whenever a create, update or delete of one commits; a search
+// never reads the table. The app.menuSearch.candidates names sharing the
+// most trigrams with the query are re-ranked by edit distance, fewest
+// typos first. The index is per node, like the similar questions index.
+
+@Slf4j
+@Service("menuSearch")
+public class MenuSearchService {
+
+  @Autowired
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Value("${app.menuSearch.candidates:100}")
+  private int candidates;
+
+  @Value("${app.menuSearch.maxLimit:50}")
+  private int maxLimit;
+
+  private TrigramIndex<Long, UCSBDiningCommonsMenu> index;
+
+  @PostConstruct
+  public void start() {
+    index = new TrigramIndex<>(candidates);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    long started = System.nanoTime();
+    ucsbDiningCommonsMenuRepository.findAll().forEach(this::index);
+    log.info("indexed {} menu item names for search in {}ms", index.size(), (System.nanoTime() - started) / 1_000_000);
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void menuChanged(EntityChangedEvent<UCSBDiningCommonsMenu> event) {
+    if (event.kind() == EntityChangedEvent.Kind.DELETED) {
+      remove((Long) event.id());
+    } else {
+      index(event.current());
+    }
+  }
+
+  public void index(UCSBDiningCommonsMenu menu) {
+    // a copy, so later changes to the entity only show up when it is indexed again
+    UCSBDiningCommonsMenu copy = UCSBDiningCommonsMenu.builder()
+        .id(menu.getId())
+        .diningCommonsCode(menu.getDiningCommonsCode())
+        .name(menu.getName())
+        .station(menu.getStation())
+        .build();
+    index.put(copy.getId(), copy.getName(), copy);
+  }
+
+  public void remove(Long id) {
+    index.remove(id);
+  }
+
+  // diningCommonsCode and station are ignored when null, and compared ignoring case
+  public List<MenuSearchHit> search(String query, String diningCommonsCode, String station, int limit) {
+    Predicate<UCSBDiningCommonsMenu> filter = null;
+    if (diningCommonsCode != null || station != null) {
+      filter = menu -> (diningCommonsCode == null || diningCommonsCode.equalsIgnoreCase(menu.getDiningCommonsCode()))
+          && (station == null || station.equalsIgnoreCase(menu.getStation()));
+    }
+    return index.search(query, filter, limit).stream()
+        .map(match -> MenuSearchHit.builder()
+            .id(match.value().getId())
+            .name(match.value().getName())
+            .diningCommonsCode(match.value().getDiningCommonsCode())
+            .station(match.value().getStation())
+            .distance(match.distance())
+            .similarity(match.similarity())
+            .build())
+        .toList();
+  }
+}
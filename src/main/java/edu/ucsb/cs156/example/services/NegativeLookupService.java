@@ -0,0 +1,190 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.structures.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Answers "is this id known not to exist?" for getById without a database round trip.
+//
+// Two layers per entity type:
+//  - a Bloom filter of every id that existed when it was primed (see
+//    LookupFilterLoader), plus those the loader has since read off the change
+//    sequence and those created through this node; an id the filter has
+//    never seen cannot be in the table, but only if it is at most the
+//    settled bound. Generated ids only grow, so a row that isn't in the
+//    filter yet either has an id above every one seen so far or belongs to
+//    a transaction that took its id before a larger one committed and
+//    hasn't committed itself. The bound is the largest id seen at a refresh
+//    at least app.negativeLookup.settleSeconds ago, and moves only when the
+//    filter is refreshed, so such a transaction would have to have held its
+//    id for that long and committed since the last refresh. Anything above
+//    the bound is looked up. Ids that aren't numbers have no bound and are
+//    never rejected by the filter.
+//  - a small TTL cache of ids recently looked up and not found, which catches
+//    repeated misses on ids the Bloom filter can't rule out (e.g. deleted rows)
+// Creating an entity, here or (by way of a refresh) on another node, adds its
+// id to the filter and clears any remembered miss.
+
+@Slf4j
+@Service("negativeLookup")
+public class NegativeLookupService {
+
+  @Value("${app.negativeLookup.ttlSeconds:60}")
+  private long ttlSeconds;
+
+  @Value("${app.negativeLookup.maxMisses:10000}")
+  private int maxMisses;
+
+  @Value("${app.negativeLookup.settleSeconds:60}")
+  private long settleSeconds;
+
+  private final Map<Class<?>, TypeState> states = new ConcurrentHashMap<>();
+
+  private class TypeState {
+    volatile BloomFilter known = new BloomFilter(1024, 0.01);
+    volatile BloomFilter pending;
+    volatile boolean primed;
+    // written after known, read before it
+    volatile long bound = Long.MIN_VALUE;
+    // the largest id seen by prime() and refresh(), and when each call that
+    // hasn't settled yet saw it
+    long seenMaxId = Long.MIN_VALUE;
+    final ArrayDeque<long[]> seen = new ArrayDeque<>();
+
+    final LinkedHashMap<Object, Long> misses = new LinkedHashMap<>(64, 0.75f, false) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Long> eldest) {
+        return size() > maxMisses;
+      }
+    };
+  }
+
+  private TypeState stateOf(Class<?> entityType) {
+    return states.computeIfAbsent(entityType, t -> new TypeState());
+  }
+
+  public boolean isKnownMissing(Class<?> entityType, Object id) {
+    TypeState state = stateOf(entityType);
+    if (state.primed && id instanceof Number number && number.longValue() <= state.bound
+        && !state.known.mightContain(id)) {
+      return true;
+    }
+    synchronized (state.misses) {
+      Long expires = state.misses.get(id);
+      if (expires == null) {
+        return false;
+      }
+      if (expires < System.nanoTime()) {
+        state.misses.remove(id);
+        return false;
+      }
+      return true;
+    }
+  }
+
+  public void recordMiss(Class<?> entityType, Object id) {
+    TypeState state = stateOf(entityType);
+    synchronized (state.misses) {
+      state.misses.put(id, System.nanoTime() + ttlSeconds * 1_000_000_000L);
+    }
+  }
+
+  public void recordCreated(Class<?> entityType, Object id) {
+    if (id == null) {
+      return;
+    }
+    TypeState state = stateOf(entityType);
+    state.known.add(id);
+    BloomFilter pending = state.pending;
+    if (pending != null) {
+      pending.add(id);
+    }
+    // prime() may have swapped filters since the first add
+    state.known.add(id);
+    synchronized (state.misses) {
+      state.misses.remove(id);
+    }
+  }
+
+  /**
+   * Builds a Bloom filter of every existing id of entityType (read through
+   * idLoader) and starts using it to reject lookups of ids up to the settled
+   * bound. Ids created while the load is running are added to the new filter
+   * as well. Called again, it replaces the filter, dropping deleted ids.
+   */
+  public void prime(Class<?> entityType, long expectedCount, Supplier<? extends Iterable<?>> idLoader) {
+    TypeState state = stateOf(entityType);
+    BloomFilter filter = new BloomFilter(Math.max(1024, expectedCount * 2), 0.01);
+    state.pending = filter;
+    long maxId = Long.MIN_VALUE;
+    for (Object id : idLoader.get()) {
+      filter.add(id);
+      if (id instanceof Number number) {
+        maxId = Math.max(maxId, number.longValue());
+      }
+    }
+    state.known = filter;
+    settle(state, maxId);
+    state.pending = null;
+    state.primed = true;
+    log.info("primed {} lookup filter with {} ids up to {} ({} bits)", entityType.getSimpleName(), expectedCount,
+        maxId, filter.getBitCount());
+  }
+
+  /**
+   * Adds ids written since the last prime() or refresh() (as read off the
+   * change sequence by LookupFilterLoader) to the filter, forgets any misses
+   * on them, and moves the bound up to the largest id that has settled.
+   */
+  public void refresh(Class<?> entityType, Iterable<?> ids) {
+    TypeState state = stateOf(entityType);
+    long maxId = Long.MIN_VALUE;
+    for (Object id : ids) {
+      state.known.add(id);
+      BloomFilter pending = state.pending;
+      if (pending != null) {
+        pending.add(id);
+      }
+      synchronized (state.misses) {
+        state.misses.remove(id);
+      }
+      if (id instanceof Number number) {
+        maxId = Math.max(maxId, number.longValue());
+      }
+    }
+    settle(state, maxId);
+  }
+
+  // Called once every committed id up to maxId is in known; the bound
+  // becomes the largest id seen by a call at least settleSeconds before
+  // this one.
+  private void settle(TypeState state, long maxId) {
+    long now = System.nanoTime();
+    long settleNanos = settleSeconds * 1_000_000_000L;
+    synchronized (state.seen) {
+      state.seenMaxId = Math.max(state.seenMaxId, maxId);
+      state.seen.addLast(new long[] { now, state.seenMaxId });
+      while (!state.seen.isEmpty() && now - state.seen.getFirst()[0] >= settleNanos) {
+        state.bound = state.seen.removeFirst()[1];
+      }
+    }
+  }
+
+  // For writes whose ids can't be passed to recordCreated: stops trusting
+  // the Bloom filter of entityType until the next prime().
+  public void unprime(Class<?> entityType) {
+    stateOf(entityType).primed = false;
+  }
+
+  public void clear() {
+    states.clear();
+  }
+}
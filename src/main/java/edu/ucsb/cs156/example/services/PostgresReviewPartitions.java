@@ -0,0 +1,177 @@
+package edu.ucsb.cs156.example.services;
+
+import static edu.ucsb.cs156.example.services.MenuItemReviewPartitionService.MONTH_OF_REVIEW;
+import static edu.ucsb.cs156.example.services.MenuItemReviewPartitionService.TABLE;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Native partitioning on Postgres: menu_item_review is partitioned by
+// range of date_reviewed into menu_item_review_2022_01 and so on, plus
+// menu_item_review_default for reviews without a date (or of a month that
+// has no partition yet). Hibernate creates the table unpartitioned, so the
+// first start converts it, copying the rows across in one transaction.
+// Queries with a range on dateReviewed only read the months in range, each
+// partition has its own small indexes, and expiring a month is a DROP
+// TABLE.
+//
+// Only runs against Postgres, so the unit tests (on H2) can't reach it and
+// it is left out of the coverage check; everything it decides is in
+// MenuItemReviewPartitionService.
+
+@Slf4j
+class PostgresReviewPartitions implements ReviewPartitionStrategy {
+
+  static final String DEFAULT_PARTITION = TABLE + "_default";
+  private static final Pattern PARTITION_NAME = Pattern.compile(TABLE + "_(\\d{4})_(\\d{2})");
+  // the primary key can't be kept on a partitioned table unless it includes
+  // date_reviewed, so this takes its place
+  private static final String UNIQUE_ID = TABLE + "_id_date_reviewed_key";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  PostgresReviewPartitions(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionManager = transactionManager;
+  }
+
+  static String partitionName(YearMonth month) {
+    return "%s_%04d_%02d".formatted(TABLE, month.getYear(), month.getMonthValue());
+  }
+
+  // FOR VALUES bounds of a month's partition
+  static String boundsOf(YearMonth month) {
+    return "from ('%s') to ('%s')".formatted(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+  }
+
+  @Override
+  public String mode() {
+    return "native";
+  }
+
+  @Override
+  public List<YearMonth> load() {
+    if (!isPartitioned()) {
+      partitionTable();
+    }
+    // tables partitioned before the unique index was added only had a plain index on id
+    jdbcTemplate.execute("create unique index if not exists " + UNIQUE_ID + " on " + TABLE + " (id, date_reviewed)");
+    jdbcTemplate.execute("drop index if exists " + TABLE + "_id_idx");
+    return attachedMonths();
+  }
+
+  @Override
+  public boolean create(YearMonth month) {
+    String partition = partitionName(month);
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    // its own transaction: route() may be called inside a batch that later rolls back
+    transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    try {
+      transaction.executeWithoutResult(status -> {
+        // attaching locks the default partition, which a transaction still
+        // writing to it would hold up; that write's review then waits in
+        // the default partition for the next maintain()
+        jdbcTemplate.execute("set local lock_timeout = '5s'");
+        jdbcTemplate.execute("create table " + partition + " (like " + TABLE + " including defaults)");
+        jdbcTemplate.update("with moved as (delete from " + DEFAULT_PARTITION
+            + " where date_reviewed >= ? and date_reviewed < ? returning *) insert into " + partition
+            + " select * from moved",
+            month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+        jdbcTemplate.execute("alter table " + TABLE + " attach partition " + partition + " for values " + boundsOf(month));
+      });
+      log.info("created menu item review partition {}", partition);
+      return true;
+    } catch (DataAccessException e) {
+      // another node may have created it first
+      if (attachedMonths().contains(month)) {
+        return true;
+      }
+      log.warn("could not create menu item review partition {}; its reviews stay in {} for now",
+          partition, DEFAULT_PARTITION, e);
+      return false;
+    }
+  }
+
+  @Override
+  public List<YearMonth> misplaced() {
+    return jdbcTemplate.queryForList("select distinct " + MONTH_OF_REVIEW + " from " + DEFAULT_PARTITION
+        + " where date_reviewed is not null", Integer.class).stream()
+        .map(MenuItemReviewPartitionService::yearMonth)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void expire(List<YearMonth> months, LocalDateTime cutoff) {
+    for (YearMonth month : months) {
+      jdbcTemplate.execute("drop table if exists " + partitionName(month));
+    }
+    jdbcTemplate.update("delete from " + DEFAULT_PARTITION + " where date_reviewed < ?", cutoff);
+  }
+
+  private boolean isPartitioned() {
+    return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+        "select exists (select 1 from pg_partitioned_table where partrelid = to_regclass(?))", Boolean.class, TABLE));
+  }
+
+  private List<YearMonth> attachedMonths() {
+    List<YearMonth> attached = new ArrayList<>();
+    for (String name : jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid"
+        + " where i.inhparent = to_regclass(?)", String.class, TABLE)) {
+      Matcher matcher = PARTITION_NAME.matcher(name);
+      if (matcher.matches()) {
+        attached.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+      }
+    }
+    return attached;
+  }
+
+  // One-off conversion of the table Hibernate created. The primary key
+  // gives way to a unique index on (id, date_reviewed), created by load();
+  // the sequence behind id still hands out unique ids.
+  private void partitionTable() {
+    long started = System.nanoTime();
+    String unpartitioned = TABLE + "_unpartitioned";
+    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      String sequence = jdbcTemplate.queryForObject("select pg_get_serial_sequence(?, 'id')", String.class, TABLE);
+      // Hibernate's own indexes, recreated under the same names once the old table is gone
+      List<Map<String, Object>> indexes = jdbcTemplate.queryForList("select indexname, indexdef from pg_indexes"
+          + " where tablename = ? and indexdef not like 'CREATE UNIQUE%'", TABLE);
+
+      jdbcTemplate.execute("alter table " + TABLE + " rename to " + unpartitioned);
+      jdbcTemplate.execute("create table " + TABLE + " (like " + unpartitioned + " including defaults)"
+          + " partition by range (date_reviewed)");
+      jdbcTemplate.execute("create table " + DEFAULT_PARTITION + " partition of " + TABLE + " default");
+      for (Integer month : jdbcTemplate.queryForList("select distinct " + MONTH_OF_REVIEW + " from " + unpartitioned
+          + " where date_reviewed is not null", Integer.class)) {
+        YearMonth yearMonth = MenuItemReviewPartitionService.yearMonth(month);
+        jdbcTemplate.execute("create table " + partitionName(yearMonth) + " partition of " + TABLE
+            + " for values " + boundsOf(yearMonth));
+      }
+      int rows = jdbcTemplate.update("insert into " + TABLE + " select * from " + unpartitioned);
+      if (sequence != null) {
+        jdbcTemplate.execute("alter sequence " + sequence + " owned by " + TABLE + ".id");
+      }
+      jdbcTemplate.execute("drop table " + unpartitioned);
+      for (Map<String, Object> index : indexes) {
+        jdbcTemplate.execute((String) index.get("indexdef"));
+      }
+      log.info("partitioned {} by month of date_reviewed, moving {} reviews", TABLE, rows);
+    });
+    log.info("partitioning {} took {}ms", TABLE, (System.nanoTime() - started) / 1_000_000);
+  }
+}
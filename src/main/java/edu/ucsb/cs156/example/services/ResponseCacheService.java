@@ -0,0 +1,136 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// Caches the serialized JSON body of read endpoints whose result only changes
+// when one of our own write handlers runs (e.g. the /all listings).
+//
+// Each key carries a data version that the write handlers bump through
+// invalidate(); a body is rendered (and gzipped) at most once per version and
+// then served as raw bytes, picking the variant from Accept-Encoding.
+
+@Slf4j
+@Service("responseCache")
+public class ResponseCacheService {
+
+  @Autowired
+  ObjectMapper mapper;
+
+  private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  private final Map<String, CachedResponse> responses = new ConcurrentHashMap<>();
+
+  private record CachedResponse(long version, byte[] identity, byte[] gzip) {
+  }
+
+  public ResponseEntity<byte[]> serve(String key, String acceptEncoding, Supplier<?> loader)
+      throws JsonProcessingException {
+    long version = versionOf(key).get();
+    CachedResponse cached = responses.get(key);
+    if (cached == null || cached.version() != version) {
+      cached = render(version, loader.get());
+      responses.put(key, cached);
+      log.debug("rendered {} (version {}, {} bytes)", key, version, cached.identity().length);
+    }
+
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (cached.gzip() != null && accepts(acceptEncoding, "gzip")) {
+      return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cached.gzip());
+    }
+    return builder.body(cached.identity());
+  }
+
+  /**
+   * Drops the cached body for key, and for any variant of it
+   * registered as "key:variant".
+   */
+  public void invalidate(String key) {
+    versionOf(key).incrementAndGet();
+    responses.remove(key);
+    String prefix = key + ":";
+    versions.forEach((k, v) -> {
+      if (k.startsWith(prefix)) {
+        v.incrementAndGet();
+        responses.remove(k);
+      }
+    });
+  }
+
+  public void invalidateAll() {
+    versions.values().forEach(AtomicLong::incrementAndGet);
+    responses.clear();
+  }
+
+  private AtomicLong versionOf(String key) {
+    return versions.computeIfAbsent(key, k -> new AtomicLong());
+  }
+
+  private CachedResponse render(long version, Object body) throws JsonProcessingException {
+    byte[] identity = mapper.writeValueAsBytes(body);
+    byte[] gzip = gzip(identity);
+    // tiny bodies (e.g. "[]") get bigger when compressed; only keep gzip when it pays off
+    return new CachedResponse(version, identity, gzip.length < identity.length ? gzip : null);
+  }
+
+  static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+    try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+      gz.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  static boolean accepts(String acceptEncoding, String coding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    boolean wildcard = false;
+    for (String part : acceptEncoding.split(",")) {
+      String[] tokens = part.trim().split(";");
+      String name = tokens[0].trim();
+      boolean allowed = true;
+      for (int i = 1; i < tokens.length; i++) {
+        String param = tokens[i].trim();
+        if (param.startsWith("q=")) {
+          allowed = qualityOf(param.substring(2)) > 0;
+        }
+      }
+      if (name.equalsIgnoreCase(coding)) {
+        return allowed;
+      }
+      if (name.equals("*")) {
+        wildcard = allowed;
+      }
+    }
+    return wildcard;
+  }
+
+  private static double qualityOf(String value) {
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ReviewBombingState;
+import edu.ucsb.cs156.example.models.SuspectItem;
+import edu.ucsb.cs156.example.models.SuspectReviewer;
+import edu.ucsb.cs156.example.structures.CountMinSketch;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Catches review bombing (a flood of bad reviews of one menu item, often
+// from several reviewer emails) as the reviews arrive, without reading the
+// reviews table: postItemReview asks screen() about every new review.
+//
+// New reviews are counted in a ring of one-minute buckets, each holding
+// three count-min sketches: reviews per item, bad reviews (at most
+// app.reviews.bombing.badStars) per item, and reviews per reviewer. The
+// counts over the last app.reviews.bombing.windowMinutes are the sums over
+// the buckets, so screening costs the same however many items and
+// reviewers there are. Sketches only over-count, which errs towards
+// suspicion; app.reviews.bombing.width keeps that rare.
+//
+// An item with at least app.reviews.bombing.itemBadReviews bad reviews in
+// the window, making up at least app.reviews.bombing.itemBadShare of its
+// reviews, is suspect for app.reviews.bombing.suspectMinutes after the
+// last such review; its new bad reviews are flagged for moderation, or
+// refused if app.reviews.bombing.action is "throttle". A reviewer with more
+// than app.reviews.bombing.reviewerReviews reviews in the window is suspect
+// likewise and every new review of theirs is refused. Only reviews let in
+// (allowed or flagged) are counted. Counts are per node and start from
+// nothing at every restart.
+
+@Slf4j
+@Service("reviewBombing")
+public class ReviewBombingService {
+
+  public enum Verdict {
+    ALLOW, FLAG, REFUSE
+  }
+
+  private static final long MINUTE_MILLIS = 60_000;
+  // expired suspicions are only swept out past this many
+  private static final int SWEEP_ABOVE = 10_000;
+
+  private record Bucket(long slot, CountMinSketch itemReviews, CountMinSketch itemBadReviews,
+      CountMinSketch reviewerReviews) {
+  }
+
+  private record Suspicion(long reviews, long badReviews, long sinceMillis, long untilMillis) {
+  }
+
+  @Value("${app.reviews.bombing.windowMinutes:10}")
+  private int windowMinutes;
+
+  @Value("${app.reviews.bombing.suspectMinutes:30}")
+  private long suspectMinutes;
+
+  @Value("${app.reviews.bombing.badStars:2}")
+  private int badStars;
+
+  @Value("${app.reviews.bombing.itemBadReviews:15}")
+  private long itemBadReviews;
+
+  @Value("${app.reviews.bombing.itemBadShare:0.7}")
+  private double itemBadShare;
+
+  @Value("${app.reviews.bombing.reviewerReviews:20}")
+  private long reviewerReviews;
+
+  @Value("${app.reviews.bombing.action:flag}")
+  private String action;
+
+  @Value("${app.reviews.bombing.width:2048}")
+  private int width;
+
+  @Value("${app.reviews.bombing.depth:4}")
+  private int depth;
+
+  private AtomicReferenceArray<Bucket> buckets;
+  private final Map<Long, Suspicion> suspectItems = new ConcurrentHashMap<>();
+  private final Map<String, Suspicion> suspectReviewers = new ConcurrentHashMap<>();
+  private final LongAdder screened = new LongAdder();
+  private final LongAdder flagged = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+
+  @PostConstruct
+  public void start() {
+    if (!action.equals("flag") && !action.equals("throttle")) {
+      throw new IllegalStateException("app.reviews.bombing.action must be flag or throttle, not " + action);
+    }
+    if (windowMinutes < 1) {
+      throw new IllegalStateException("app.reviews.bombing.windowMinutes must be at least 1");
+    }
+    buckets = new AtomicReferenceArray<>(windowMinutes + 1);
+    suspectItems.clear();
+    suspectReviewers.clear();
+    screened.reset();
+    flagged.reset();
+    throttled.reset();
+  }
+
+  // call once per new review, before it is saved
+  public Verdict screen(MenuItemReview review) {
+    return screen(review, System.currentTimeMillis());
+  }
+
+  Verdict screen(MenuItemReview review, long nowMillis) {
+    screened.increment();
+    long slot = nowMillis / MINUTE_MILLIS;
+    Bucket bucket = bucketAt(slot);
+    long itemId = review.getItemId();
+    String item = Long.toString(itemId);
+    String reviewer = review.getReviewerEmail() == null ? "" : review.getReviewerEmail().trim().toLowerCase(Locale.ROOT);
+    boolean bad = review.getStars() <= badStars;
+
+    // the counts include this review, but it only goes into the buckets if
+    // it is let in: refused attempts would otherwise keep a burst going
+    // (and the reviewer refused) for as long as they keep trying
+    long byReviewer = inWindow(slot, Bucket::reviewerReviews, reviewer) + 1;
+    if (byReviewer > reviewerReviews) {
+      suspect(suspectReviewers, reviewer, byReviewer, 0, nowMillis);
+    }
+    if (isSuspect(suspectReviewers, reviewer, nowMillis)) {
+      throttled.increment();
+      return Verdict.REFUSE;
+    }
+
+    Verdict verdict = Verdict.ALLOW;
+    if (bad) {
+      long badOfItem = inWindow(slot, Bucket::itemBadReviews, item) + 1;
+      if (badOfItem >= itemBadReviews) {
+        long ofItem = inWindow(slot, Bucket::itemReviews, item) + 1;
+        if (badOfItem >= itemBadShare * ofItem) {
+          suspect(suspectItems, itemId, ofItem, badOfItem, nowMillis);
+        }
+      }
+      if (isSuspect(suspectItems, itemId, nowMillis)) {
+        verdict = action.equals("throttle") ? Verdict.REFUSE : Verdict.FLAG;
+      }
+    }
+    if (verdict == Verdict.REFUSE) {
+      throttled.increment();
+      return verdict;
+    }
+
+    bucket.itemReviews().add(item, 1);
+    if (bad) {
+      bucket.itemBadReviews().add(item, 1);
+    }
+    bucket.reviewerReviews().add(reviewer, 1);
+    if (verdict == Verdict.FLAG) {
+      flagged.increment();
+    }
+    return verdict;
+  }
+
+  private Bucket bucketAt(long slot) {
+    int index = (int) (slot % buckets.length());
+    while (true) {
+      Bucket bucket = buckets.get(index);
+      if (bucket != null && bucket.slot() == slot) {
+        return bucket;
+      }
+      // an empty slot or one left over from an earlier lap of the ring
+      Bucket fresh = new Bucket(slot, new CountMinSketch(width, depth), new CountMinSketch(width, depth),
+          new CountMinSketch(width, depth));
+      if (buckets.compareAndSet(index, bucket, fresh)) {
+        return fresh;
+      }
+    }
+  }
+
+  private long inWindow(long nowSlot, Function<Bucket, CountMinSketch> sketch, String key) {
+    long total = 0;
+    for (long slot = nowSlot - windowMinutes + 1; slot <= nowSlot; slot++) {
+      Bucket bucket = buckets.get((int) (slot % buckets.length()));
+      if (bucket != null && bucket.slot() == slot) {
+        total += sketch.apply(bucket).estimate(key);
+      }
+    }
+    return total;
+  }
+
+  private <K> void suspect(Map<K, Suspicion> suspects, K key, long reviews, long badReviews, long nowMillis) {
+    long until = nowMillis + suspectMinutes * MINUTE_MILLIS;
+    Suspicion previous = suspects.get(key);
+    if (previous == null || previous.untilMillis() <= nowMillis) {
+      log.warn("review bombing suspected: {} with {} reviews ({} bad) in {} minutes", key, reviews, badReviews,
+          windowMinutes);
+    }
+    suspects.merge(key, new Suspicion(reviews, badReviews, nowMillis, until),
+        (old, fresh) -> old.untilMillis() <= nowMillis ? fresh
+            : new Suspicion(reviews, badReviews, old.sinceMillis(), until));
+    if (suspects.size() > SWEEP_ABOVE) {
+      suspects.values().removeIf(suspicion -> suspicion.untilMillis() <= nowMillis);
+    }
+  }
+
+  private static <K> boolean isSuspect(Map<K, Suspicion> suspects, K key, long nowMillis) {
+    Suspicion suspicion = suspects.get(key);
+    return suspicion != null && suspicion.untilMillis() > nowMillis;
+  }
+
+  public ReviewBombingState state() {
+    return state(System.currentTimeMillis());
+  }
+
+  ReviewBombingState state(long nowMillis) {
+    List<SuspectItem> items = suspectItems.entrySet().stream()
+        .filter(entry -> entry.getValue().untilMillis() > nowMillis)
+        .map(entry -> SuspectItem.builder()
+            .itemId(entry.getKey())
+            .badReviews(entry.getValue().badReviews())
+            .reviews(entry.getValue().reviews())
+            .since(Instant.ofEpochMilli(entry.getValue().sinceMillis()))
+            .until(Instant.ofEpochMilli(entry.getValue().untilMillis()))
+            .build())
+        .sorted(Comparator.comparingLong(SuspectItem::getBadReviews).reversed())
+        .toList();
+    List<SuspectReviewer> reviewers = suspectReviewers.entrySet().stream()
+        .filter(entry -> entry.getValue().untilMillis() > nowMillis)
+        .map(entry -> SuspectReviewer.builder()
+            .reviewerEmail(entry.getKey())
+            .reviews(entry.getValue().reviews())
+            .since(Instant.ofEpochMilli(entry.getValue().sinceMillis()))
+            .until(Instant.ofEpochMilli(entry.getValue().untilMillis()))
+            .build())
+        .sorted(Comparator.comparingLong(SuspectReviewer::getReviews).reversed())
+        .toList();
+    return ReviewBombingState.builder()
+        .asOf(Instant.ofEpochMilli(nowMillis))
+        .windowMinutes(windowMinutes)
+        .action(action)
+        .screened(screened.sum())
+        .flagged(flagged.sum())
+        .throttled(throttled.sum())
+        .items(items)
+        .reviewers(reviewers)
+        .build();
+  }
+}
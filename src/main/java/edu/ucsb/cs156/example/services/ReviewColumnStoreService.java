@@ -0,0 +1,660 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
+import edu.ucsb.cs156.example.models.ReviewAnalytics;
+import edu.ucsb.cs156.example.models.ReviewGroup;
+import edu.ucsb.cs156.example.repositories.ChangeClockRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// An in-memory, column-wise copy of the menu item reviews for ad hoc
+// questions such as "average stars by station by week"
+// (GET /api/menuitemreview/analytics), answered without reading the table.
+//
+// Each review is a row across primitive columns: a dictionary code for its
+// itemId, stars, dateReviewed as an epoch day and a dictionary code for its
+// reviewerEmail. Beside them the menu is a small dimension table, each item
+// code's dining commons and station (both dictionary codes too), so a
+// group by station is an array lookup instead of a join. Reviews flagged
+// as suspected review bombing are kept, with a flag bit, but left out of
+// every query and of itemTotals() until an admin clears the flag (PUT
+// /api/menuitemreview/unflag) and a refresh picks the row up. Rows live in
+// chunks of CHUNK_ROWS; a query filters and groups the chunks in parallel
+// on a fork/join pool, each task summing into its own groups, merged on
+// the way back up.
+//
+// load() reads every review once through plain JDBC, at startup and after
+// monthly partitions are dropped. Between loads a daemon thread applies
+// the reviews and menu items changed or deleted (by tombstone) every
+// app.reviews.columns.refreshSeconds, read by change sequence number from
+// the same feed /changes serves, so a long transaction (a full write-behind
+// batch, say) is applied once it commits rather than skipped.
+// A published chunk is never written again: a refresh copies the chunks
+// it touches and then swaps in a new snapshot, so a query sees a single
+// consistent state and never waits for a refresh. Deleted rows are masked
+// until the next load() drops them.
+
+@Slf4j
+@Service("reviewColumns")
+public class ReviewColumnStoreService {
+
+  public enum Dimension {
+    ITEM, COMMONS, STATION, DAY, WEEK, MONTH, STARS;
+
+    // "station" and so on; IllegalArgumentException for anything else
+    public static Dimension of(String name) {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public String getName() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  // reviews and total stars of the item with id itemIds[i] at index i, as of asOf
+  public record ItemTotals(long[] itemIds, long[] reviews, long[] stars, Instant asOf) {
+  }
+
+  // null for no filter on that column
+  public record Filter(LocalDate from, LocalDate to, Long itemId, String commons, String station,
+      String reviewerEmail) {
+  }
+
+  public static final int MAX_GROUP_BY = 3;
+
+  static final int CHUNK_BITS = 14;
+  static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+
+  private static final int NONE = -1;
+  private static final int ANY = -2;
+  private static final int NO_DAY = Integer.MIN_VALUE;
+  // group keys pack up to MAX_GROUP_BY values of KEY_BITS each into a long
+  private static final int KEY_BITS = 21;
+  private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+  private static final long DAY_BASE = LocalDate.of(1900, 1, 1).toEpochDay();
+  private static final int MONTH_BASE = 1900 * 12;
+
+  private static final String LOAD = "select id, item_id, stars, date_reviewed, reviewer_email, flagged from menu_item_review";
+
+  private static final class Chunk {
+    final long[] ids = new long[CHUNK_ROWS];
+    final int[] items = new int[CHUNK_ROWS];
+    final int[] stars = new int[CHUNK_ROWS];
+    final int[] days = new int[CHUNK_ROWS];
+    final int[] reviewers = new int[CHUNK_ROWS];
+    final long[] deleted = new long[CHUNK_ROWS / 64];
+    final long[] flagged = new long[CHUNK_ROWS / 64];
+    int size;
+
+    Chunk copy() {
+      Chunk copy = new Chunk();
+      System.arraycopy(ids, 0, copy.ids, 0, size);
+      System.arraycopy(items, 0, copy.items, 0, size);
+      System.arraycopy(stars, 0, copy.stars, 0, size);
+      System.arraycopy(days, 0, copy.days, 0, size);
+      System.arraycopy(reviewers, 0, copy.reviewers, 0, size);
+      System.arraycopy(deleted, 0, copy.deleted, 0, deleted.length);
+      System.arraycopy(flagged, 0, copy.flagged, 0, flagged.length);
+      copy.size = size;
+      return copy;
+    }
+
+    // neither deleted nor flagged
+    boolean isCounted(int row) {
+      return ((deleted[row >>> 6] | flagged[row >>> 6]) & (1L << row)) == 0;
+    }
+  }
+
+  // what queries read; nothing reachable from here changes once published
+  private record Columns(List<Chunk> chunks, long[] itemIds, int[] itemCommons, int[] itemStations,
+      List<String> commons, List<String> stations, Map<String, Integer> reviewers, long rows, Instant asOf) {
+  }
+
+  // a Filter turned into codes; ANY matches everything
+  private record Scan(Columns columns, Dimension[] groupBy, int fromDay, int toDay, int item, int commons,
+      int station, int reviewer) {
+  }
+
+  private static final class Partial {
+    final Map<Long, long[]> groups = new HashMap<>();
+    long matched;
+
+    void merge(Partial other) {
+      matched += other.matched;
+      other.groups.forEach((key, sums) -> groups.merge(key, sums, (a, b) -> {
+        a[0] += b[0];
+        a[1] += b[1];
+        return a;
+      }));
+    }
+  }
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  ChangeClockRepository changeClockRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Value("${app.reviews.columns.refreshSeconds:5}")
+  private long refreshSeconds;
+
+  // 0 for one thread per processor
+  @Value("${app.reviews.columns.parallelism:0}")
+  private int parallelism;
+
+  @Value("${app.reviews.columns.maxGroups:5000}")
+  private int maxGroups;
+
+
+  // written only by load() and refresh(), which hold the lock
+  private List<Chunk> chunks = new ArrayList<>();
+  private final Set<Integer> unpublished = new HashSet<>();
+  private final Map<Long, Integer> rowOf = new HashMap<>();
+  private final Map<Long, Integer> itemCodes = new HashMap<>();
+  private long[] itemIds = new long[16];
+  private int[] itemCommons = new int[16];
+  private int[] itemStations = new int[16];
+  private final Map<String, Integer> commonsCodes = new HashMap<>();
+  private final List<String> commonsNames = new ArrayList<>();
+  private final Map<String, Integer> stationCodes = new HashMap<>();
+  private final List<String> stationNames = new ArrayList<>();
+  private boolean menuChanged;
+  private long rows;
+  // change sequence number the columns are up to date with; null before the first load
+  private Long since;
+
+  // shared with the snapshots, which only look up codes their rows already use
+  private Map<String, Integer> reviewerCodes = new ConcurrentHashMap<>();
+
+  private volatile Columns columns = new Columns(List.of(), new long[0], new int[0], new int[0], List.of(), List.of(),
+      Map.of(), 0, Instant.EPOCH);
+  private ForkJoinPool pool;
+  private ScheduledExecutorService refresher;
+
+  @PostConstruct
+  public void start() {
+    pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "review-columns-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    refresher.scheduleWithFixedDelay(() -> {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        log.error("refreshing the in-memory review columns failed; will retry", e);
+      }
+    }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    refresher.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  // reads every review; queries keep answering from the old copy meanwhile
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(0)
+  public synchronized void load() {
+    long started = System.nanoTime();
+    Instant loadedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    // every row stamped up to here committed before we read
+    long loadedSeq = changeClockRepository.current().orElse(0L);
+    chunks = new ArrayList<>();
+    unpublished.clear();
+    rowOf.clear();
+    itemCodes.clear();
+    commonsCodes.clear();
+    commonsNames.clear();
+    stationCodes.clear();
+    stationNames.clear();
+    reviewerCodes = new ConcurrentHashMap<>();
+    rows = 0;
+    menuChanged = true;
+
+    ucsbDiningCommonsMenuRepository.findAll().forEach(this::putMenuItem);
+    jdbcTemplate.query(LOAD, (RowCallbackHandler) rs -> {
+      Timestamp dateReviewed = rs.getTimestamp(4);
+      put(rs.getLong(1), rs.getLong(2), rs.getInt(3),
+          dateReviewed == null ? NO_DAY : epochDay(dateReviewed.toLocalDateTime()), rs.getString(5), rs.getBoolean(6));
+    });
+    // anything written while we read is stamped later and comes round again in a refresh
+    since = loadedSeq;
+    publish(loadedAt);
+    log.info("loaded {} menu item reviews into {} column chunks in {}ms", rows, chunks.size(),
+        (System.nanoTime() - started) / 1_000_000);
+  }
+
+  public synchronized void refresh() {
+    if (since == null) {
+      return;
+    }
+    long until = changeClockRepository.current().orElse(0L);
+    if (until <= since) {
+      return;
+    }
+    ucsbDiningCommonsMenuRepository.findChangedBetween(since, until).forEach(this::putMenuItem);
+    for (Tombstone tombstone : tombstoneRepository.findDeletedBetween(UCSBDiningCommonsMenu.class.getSimpleName(), since, until)) {
+      removeMenuItem(Long.parseLong(tombstone.getEntityId()));
+    }
+    for (MenuItemReview review : menuItemReviewRepository.findChangedBetween(since, until)) {
+      put(review.getId(), review.getItemId(), review.getStars(),
+          review.getDateReviewed() == null ? NO_DAY : epochDay(review.getDateReviewed()), review.getReviewerEmail(),
+          review.getFlagged());
+    }
+    for (Tombstone tombstone : tombstoneRepository.findDeletedBetween(MenuItemReview.class.getSimpleName(), since, until)) {
+      remove(Long.parseLong(tombstone.getEntityId()));
+    }
+    since = until;
+    publish(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+  }
+
+  private static int epochDay(LocalDateTime dateTime) {
+    return (int) dateTime.toLocalDate().toEpochDay();
+  }
+
+  private void put(long id, long itemId, int stars, int day, String reviewerEmail, boolean flagged) {
+    int item = itemCode(itemId);
+    int reviewer = NONE;
+    if (reviewerEmail != null) {
+      String email = reviewerEmail.trim().toLowerCase(Locale.ROOT);
+      Integer code = reviewerCodes.get(email);
+      if (code == null) {
+        code = reviewerCodes.size();
+        reviewerCodes.put(email, code);
+      }
+      reviewer = code;
+    }
+
+    Chunk chunk;
+    int offset;
+    Integer row = rowOf.get(id);
+    if (row == null) {
+      if (chunks.isEmpty() || chunks.get(chunks.size() - 1).size == CHUNK_ROWS) {
+        chunks.add(new Chunk());
+        unpublished.add(chunks.size() - 1);
+      }
+      int index = chunks.size() - 1;
+      chunk = writable(index);
+      offset = chunk.size++;
+      rowOf.put(id, index << CHUNK_BITS | offset);
+      rows++;
+    } else {
+      chunk = writable(row >>> CHUNK_BITS);
+      offset = row & (CHUNK_ROWS - 1);
+    }
+    chunk.ids[offset] = id;
+    chunk.items[offset] = item;
+    chunk.stars[offset] = stars;
+    chunk.days[offset] = day;
+    chunk.reviewers[offset] = reviewer;
+    if (flagged) {
+      chunk.flagged[offset >>> 6] |= 1L << offset;
+    } else {
+      chunk.flagged[offset >>> 6] &= ~(1L << offset);
+    }
+  }
+
+  private void remove(long id) {
+    Integer row = rowOf.remove(id);
+    if (row == null) {
+      return;
+    }
+    int offset = row & (CHUNK_ROWS - 1);
+    writable(row >>> CHUNK_BITS).deleted[offset >>> 6] |= 1L << offset;
+    rows--;
+  }
+
+  // the chunk at index, copied first if queries may be reading it
+  private Chunk writable(int index) {
+    if (unpublished.add(index)) {
+      chunks.set(index, chunks.get(index).copy());
+    }
+    return chunks.get(index);
+  }
+
+  private int itemCode(long itemId) {
+    Integer code = itemCodes.get(itemId);
+    if (code != null) {
+      return code;
+    }
+    int next = itemCodes.size();
+    if (next > KEY_MASK) {
+      throw new IllegalStateException("more than %d distinct menu items".formatted(KEY_MASK));
+    }
+    if (next == itemIds.length) {
+      itemIds = Arrays.copyOf(itemIds, next * 2);
+      itemCommons = Arrays.copyOf(itemCommons, next * 2);
+      itemStations = Arrays.copyOf(itemStations, next * 2);
+    }
+    itemIds[next] = itemId;
+    itemCommons[next] = NONE;
+    itemStations[next] = NONE;
+    itemCodes.put(itemId, next);
+    menuChanged = true;
+    return next;
+  }
+
+  private void putMenuItem(UCSBDiningCommonsMenu menu) {
+    int item = itemCode(menu.getId());
+    itemCommons[item] = code(commonsCodes, commonsNames, menu.getDiningCommonsCode());
+    itemStations[item] = code(stationCodes, stationNames, menu.getStation());
+    menuChanged = true;
+  }
+
+  private void removeMenuItem(long menuId) {
+    Integer item = itemCodes.get(menuId);
+    if (item != null) {
+      itemCommons[item] = NONE;
+      itemStations[item] = NONE;
+      menuChanged = true;
+    }
+  }
+
+  private static int code(Map<String, Integer> codes, List<String> names, String value) {
+    if (value == null) {
+      return NONE;
+    }
+    return codes.computeIfAbsent(value, v -> {
+      names.add(v);
+      return names.size() - 1;
+    });
+  }
+
+  private void publish(Instant asOf) {
+    Columns previous = columns;
+    int items = itemCodes.size();
+    columns = menuChanged
+        ? new Columns(List.copyOf(chunks), Arrays.copyOf(itemIds, items), Arrays.copyOf(itemCommons, items),
+            Arrays.copyOf(itemStations, items), List.copyOf(commonsNames), List.copyOf(stationNames), reviewerCodes,
+            rows, asOf)
+        : new Columns(List.copyOf(chunks), previous.itemIds(), previous.itemCommons(), previous.itemStations(),
+            previous.commons(), previous.stations(), reviewerCodes, rows, asOf);
+    unpublished.clear();
+    menuChanged = false;
+  }
+
+  public ReviewAnalytics query(List<Dimension> groupBy, Filter filter) {
+    if (groupBy.size() > MAX_GROUP_BY) {
+      throw new IllegalArgumentException("at most %d dimensions to group by".formatted(MAX_GROUP_BY));
+    }
+    long started = System.nanoTime();
+    Columns snapshot = columns;
+    Dimension[] dimensions = groupBy.toArray(new Dimension[0]);
+
+    Partial partial = new Partial();
+    Scan scan = scanFor(snapshot, dimensions, filter);
+    if (scan != null && !snapshot.chunks().isEmpty()) {
+      partial = pool.invoke(new Aggregate(scan, 0, snapshot.chunks().size()));
+    }
+
+    List<Map.Entry<List<Object>, long[]>> decoded = new ArrayList<>(partial.groups.size());
+    partial.groups.forEach((key, sums) -> decoded.add(Map.entry(decode(snapshot, dimensions, key), sums)));
+    decoded.sort(Map.Entry.comparingByKey(ReviewColumnStoreService::compareKeys));
+
+    List<ReviewGroup> groups = new ArrayList<>();
+    for (Map.Entry<List<Object>, long[]> entry : decoded.subList(0, Math.min(maxGroups, decoded.size()))) {
+      Map<String, Object> key = new LinkedHashMap<>();
+      for (int i = 0; i < dimensions.length; i++) {
+        key.put(dimensions[i].getName(), entry.getKey().get(i));
+      }
+      long[] sums = entry.getValue();
+      groups.add(ReviewGroup.builder().key(key).reviews(sums[0]).averageStars((double) sums[1] / sums[0]).build());
+    }
+    return ReviewAnalytics.builder()
+        .groupBy(groupBy.stream().map(Dimension::getName).toList())
+        .asOf(snapshot.asOf())
+        .rows(snapshot.rows())
+        .matched(partial.matched)
+        .elapsedMicros((System.nanoTime() - started) / 1000)
+        .truncated(decoded.size() > maxGroups)
+        .groups(groups)
+        .build();
+  }
+
+  // per item code instead of hashed group keys: a few tasks per thread, as
+  // each sums into arrays as long as the item dictionary
+  public ItemTotals itemTotals() {
+    Columns snapshot = columns;
+    int chunkCount = snapshot.chunks().size();
+    long[][] totals = new long[2][snapshot.itemIds().length];
+    if (chunkCount > 0) {
+      int grain = Math.max(1, chunkCount / (pool.getParallelism() * 4));
+      totals = pool.invoke(new Totals(snapshot, 0, chunkCount, grain));
+    }
+    return new ItemTotals(snapshot.itemIds().clone(), totals[0], totals[1], snapshot.asOf());
+  }
+
+  // { reviews, stars } per item code over chunks fromChunk (inclusive) to toChunk (exclusive)
+  private static final class Totals extends RecursiveTask<long[][]> {
+    private final Columns snapshot;
+    private final int fromChunk;
+    private final int toChunk;
+    private final int grain;
+
+    Totals(Columns snapshot, int fromChunk, int toChunk, int grain) {
+      this.snapshot = snapshot;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+      this.grain = grain;
+    }
+
+    @Override
+    protected long[][] compute() {
+      if (toChunk - fromChunk <= grain) {
+        long[] reviews = new long[snapshot.itemIds().length];
+        long[] stars = new long[reviews.length];
+        for (Chunk chunk : snapshot.chunks().subList(fromChunk, toChunk)) {
+          for (int row = 0; row < chunk.size; row++) {
+            if (chunk.isCounted(row)) {
+              reviews[chunk.items[row]]++;
+              stars[chunk.items[row]] += chunk.stars[row];
+            }
+          }
+        }
+        return new long[][] { reviews, stars };
+      }
+      int middle = (fromChunk + toChunk) >>> 1;
+      Totals lower = new Totals(snapshot, fromChunk, middle, grain);
+      lower.fork();
+      long[][] upper = new Totals(snapshot, middle, toChunk, grain).compute();
+      long[][] merged = lower.join();
+      for (int item = 0; item < merged[0].length; item++) {
+        merged[0][item] += upper[0][item];
+        merged[1][item] += upper[1][item];
+      }
+      return merged;
+    }
+  }
+
+  // null when a filter names something no review has, so nothing matches
+  private Scan scanFor(Columns snapshot, Dimension[] dimensions, Filter filter) {
+    int item = ANY;
+    if (filter.itemId() != null) {
+      item = NONE;
+      for (int code = 0; code < snapshot.itemIds().length; code++) {
+        if (snapshot.itemIds()[code] == filter.itemId()) {
+          item = code;
+          break;
+        }
+      }
+    }
+    int commons = filter.commons() == null ? ANY : snapshot.commons().indexOf(filter.commons());
+    int station = filter.station() == null ? ANY : snapshot.stations().indexOf(filter.station());
+    int reviewer = filter.reviewerEmail() == null ? ANY
+        : snapshot.reviewers().getOrDefault(filter.reviewerEmail().trim().toLowerCase(Locale.ROOT), NONE);
+    if (item == NONE || commons == NONE || station == NONE || reviewer == NONE) {
+      return null;
+    }
+    return new Scan(snapshot, dimensions,
+        filter.from() == null ? NO_DAY : (int) filter.from().toEpochDay(),
+        filter.to() == null ? Integer.MAX_VALUE : (int) filter.to().toEpochDay(),
+        item, commons, station, reviewer);
+  }
+
+  // the groups of chunks fromChunk (inclusive) to toChunk (exclusive), a task per chunk
+  private static final class Aggregate extends RecursiveTask<Partial> {
+    private final Scan scan;
+    private final int fromChunk;
+    private final int toChunk;
+
+    Aggregate(Scan scan, int fromChunk, int toChunk) {
+      this.scan = scan;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected Partial compute() {
+      if (toChunk - fromChunk == 1) {
+        return aggregate(scan, scan.columns().chunks().get(fromChunk));
+      }
+      int middle = (fromChunk + toChunk) >>> 1;
+      Aggregate lower = new Aggregate(scan, fromChunk, middle);
+      lower.fork();
+      Partial upper = new Aggregate(scan, middle, toChunk).compute();
+      Partial merged = lower.join();
+      merged.merge(upper);
+      return merged;
+    }
+  }
+
+  private static Partial aggregate(Scan scan, Chunk chunk) {
+    Partial partial = new Partial();
+    int[] itemCommons = scan.columns().itemCommons();
+    int[] itemStations = scan.columns().itemStations();
+    // reviews arrive roughly in date order, so months repeat row after row
+    int monthDay = NO_DAY;
+    long month = 0;
+    for (int row = 0; row < chunk.size; row++) {
+      int day = chunk.days[row];
+      int item = chunk.items[row];
+      if (!chunk.isCounted(row)
+          || day < scan.fromDay() || day > scan.toDay()
+          || (scan.item() != ANY && item != scan.item())
+          || (scan.commons() != ANY && itemCommons[item] != scan.commons())
+          || (scan.station() != ANY && itemStations[item] != scan.station())
+          || (scan.reviewer() != ANY && chunk.reviewers[row] != scan.reviewer())) {
+        continue;
+      }
+      long key = 0;
+      for (Dimension dimension : scan.groupBy()) {
+        long value = switch (dimension) {
+          case ITEM -> item;
+          case COMMONS -> itemCommons[item] + 1;
+          case STATION -> itemStations[item] + 1;
+          case DAY -> dayKey(day);
+          case WEEK -> day == NO_DAY ? 0 : dayKey(day - Math.floorMod(day + 3, 7));
+          case MONTH -> {
+            if (day != monthDay) {
+              monthDay = day;
+              month = monthKey(day);
+            }
+            yield month;
+          }
+          case STARS -> Math.max(0, Math.min(chunk.stars[row], KEY_MASK));
+        };
+        key = key << KEY_BITS | value;
+      }
+      long[] sums = partial.groups.computeIfAbsent(key, k -> new long[2]);
+      sums[0]++;
+      sums[1] += chunk.stars[row];
+      partial.matched++;
+    }
+    return partial;
+  }
+
+  // 0 for no date (or one outside 1900 to about 7600)
+  private static long dayKey(int day) {
+    long key = day - DAY_BASE + 1;
+    return day == NO_DAY || key < 1 || key > KEY_MASK ? 0 : key;
+  }
+
+  private static long monthKey(int day) {
+    if (dayKey(day) == 0) {
+      return 0;
+    }
+    LocalDate date = LocalDate.ofEpochDay(day);
+    return date.getYear() * 12L + date.getMonthValue() - 1 - MONTH_BASE + 1;
+  }
+
+  private static List<Object> decode(Columns snapshot, Dimension[] dimensions, long key) {
+    Object[] values = new Object[dimensions.length];
+    for (int i = dimensions.length - 1; i >= 0; i--) {
+      int value = (int) (key & KEY_MASK);
+      key >>>= KEY_BITS;
+      values[i] = switch (dimensions[i]) {
+        case ITEM -> snapshot.itemIds()[value];
+        case COMMONS -> value == 0 ? null : snapshot.commons().get(value - 1);
+        case STATION -> value == 0 ? null : snapshot.stations().get(value - 1);
+        case DAY, WEEK -> value == 0 ? null : LocalDate.ofEpochDay(value - 1 + DAY_BASE);
+        case MONTH -> value == 0 ? null : YearMonth.of((value - 1 + MONTH_BASE) / 12, (value - 1 + MONTH_BASE) % 12 + 1);
+        case STARS -> value;
+      };
+    }
+    return Arrays.asList(values);
+  }
+
+  // dimension by dimension, nulls first
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static int compareKeys(List<Object> a, List<Object> b) {
+    for (int i = 0; i < a.size(); i++) {
+      Object x = a.get(i);
+      Object y = b.get(i);
+      int order = x == null ? (y == null ? 0 : -1) : y == null ? 1 : ((Comparable) x).compareTo(y);
+      if (order != 0) {
+        return order;
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,370 @@
+package edu.ucsb.cs156.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.ReviewIngestCheckpoint;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.ReviewIngestCheckpointRepository;
+import edu.ucsb.cs156.example.structures.SpillLog;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Write-behind ingestion of new menu item reviews, for meal-time rushes
+// where one insert (and one pooled connection) per POST is too many. Off
+// unless app.reviews.ingestion.async is set.
+//
+// offer() appends the review to a spill file on disk and then to a
+// bounded in-memory queue (an ArrayBlockingQueue, i.e. a ring buffer),
+// and the POST answers 202 straight away. A single writer thread takes up
+// to app.reviews.ingestion.batchSize reviews at a time, or whatever has
+// arrived after app.reviews.ingestion.flushMillis, and inserts them as
+// one JDBC batch in one transaction on one connection. The same
+// transaction records the last spill record inserted
+// (ReviewIngestCheckpoint), after which the spill segments holding only
+// inserted reviews are deleted.
+//
+// So an accepted review survives a crash of the process: at the next
+// start every spill record after the checkpoint is inserted before any
+// new one, and none twice. (Surviving a crash of the machine also needs
+// app.reviews.ingestion.fsync, at the cost of a disk flush per review.)
+// Those left over are queued ahead of any new review, so the writer
+// inserts them like the rest; a database that is down at start doesn't
+// keep the application from starting.
+// At shutdown new reviews are refused and the queue is drained for up to
+// app.reviews.ingestion.drainSeconds; anything left is in the spill file.
+// A full queue refuses reviews too, so the client can back off and retry.
+//
+// A batch that fails for a passing reason (the database is down, a
+// deadlock) is retried with a growing backoff. One the database refuses
+// for what it holds (a value too long, a constraint) is tried one review
+// at a time instead, and a review refused on its own is appended to
+// dead-letter.jsonl in the spill directory, so it can't hold up the
+// reviews behind it.
+// Each inserted review is published as an EntityChangedEvent once its
+// batch commits, like a review saved by the controller.
+
+@Slf4j
+@Service("reviewIngestion")
+public class ReviewIngestionService {
+
+  private static final String INSERT = "insert into menu_item_review"
+      + " (item_id, reviewer_email, stars, date_reviewed, comments, flagged, last_modified, version)"
+      + " values (?, ?, ?, ?, ?, ?, ?, 0)";
+
+  static final String DEAD_LETTER = "dead-letter.jsonl";
+
+  private record Pending(long seq, MenuItemReview review) {
+  }
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @Autowired
+  ReviewIngestCheckpointRepository checkpointRepository;
+
+  @Autowired
+  NegativeLookupService negativeLookupService;
+
+  @Autowired
+  ResponseCacheService responseCacheService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  ApplicationEventPublisher eventPublisher;
+
+  @Value("${app.reviews.ingestion.async:false}")
+  private boolean async;
+
+  @Value("${app.reviews.ingestion.capacity:10000}")
+  private int capacity;
+
+  @Value("${app.reviews.ingestion.batchSize:500}")
+  private int batchSize;
+
+  @Value("${app.reviews.ingestion.flushMillis:200}")
+  private long flushMillis;
+
+  @Value("${app.reviews.ingestion.spillDirectory:./review-spill}")
+  private String spillDirectory;
+
+  @Value("${app.reviews.ingestion.fsync:false}")
+  private boolean fsync;
+
+  @Value("${app.reviews.ingestion.drainSeconds:30}")
+  private long drainSeconds;
+
+  @Value("${app.reviews.ingestion.node:${HOSTNAME:local}}")
+  private String node;
+
+  private BlockingQueue<Pending> queue;
+  private List<Pending> recovered;
+  private SpillLog spill;
+  private Thread writer;
+  private volatile boolean accepting;
+  private volatile long insertedSeq;
+
+  @PostConstruct
+  public void start() {
+    if (!async) {
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(capacity);
+    spill = new SpillLog(Path.of(spillDirectory), Math.max(batchSize, 1000), fsync);
+    insertedSeq = checkpointRepository.findById(node).map(ReviewIngestCheckpoint::getLastSeq).orElse(0L);
+    spill.skipTo(insertedSeq);
+    recovered = recover();
+
+    writer = new Thread(this::write, "review-writer");
+    writer.setDaemon(true);
+    writer.start();
+    accepting = true;
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (!async) {
+      return;
+    }
+    accepting = false;
+    writer.join(TimeUnit.SECONDS.toMillis(drainSeconds));
+    if (writer.isAlive()) {
+      writer.interrupt();
+      log.warn("{} menu item reviews were not inserted before shutdown; they will be at the next start", queue.size());
+      // it may be inside an insert, which the interrupt doesn't cut short
+      writer.join();
+    }
+    spill.close();
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+
+  // Queues a review for the writer; false if the queue is full or shutting down.
+  public boolean offer(MenuItemReview review) {
+    String json;
+    try {
+      json = mapper.writeValueAsString(review);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException(e);
+    }
+    // producers take turns, so the room checked for is still there at add()
+    synchronized (this) {
+      if (!accepting || queue.remainingCapacity() == 0) {
+        return false;
+      }
+      long seq = spill.append(json);
+      queue.add(new Pending(seq, review));
+      return true;
+    }
+  }
+
+  public int getQueued() {
+    return queue == null ? 0 : queue.size();
+  }
+
+  // reviews accepted before the last stop (or crash) but never inserted
+  private List<Pending> recover() {
+    List<Pending> unsaved = new ArrayList<>();
+    spill.replay(insertedSeq, (seq, json) -> {
+      try {
+        unsaved.add(new Pending(seq, mapper.readValue(json, MenuItemReview.class)));
+      } catch (JsonProcessingException e) {
+        log.error("skipping unreadable menu item review #{} in the spill file: {}", seq, json, e);
+      }
+    });
+    if (!unsaved.isEmpty()) {
+      log.info("{} menu item reviews left in the spill file are inserted first", unsaved.size());
+    }
+    return unsaved;
+  }
+
+  private void write() {
+    try {
+      for (int from = 0; from < recovered.size(); from += batchSize) {
+        insertWithRetry(recovered.subList(from, Math.min(recovered.size(), from + batchSize)));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    recovered = List.of();
+    // segments of reviews inserted just before a crash, or unreadable
+    spill.release(insertedSeq);
+
+    List<Pending> batch = new ArrayList<>(batchSize);
+    while (accepting || !queue.isEmpty()) {
+      try {
+        Pending first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        while (batch.size() < batchSize) {
+          queue.drainTo(batch, batchSize - batch.size());
+          long left = deadline - System.nanoTime();
+          if (batch.size() >= batchSize || left <= 0) {
+            break;
+          }
+          Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+        insertWithRetry(batch);
+        batch.clear();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  // the batch stays at the head of the line until every review in it is
+  // inserted or set aside
+  private void insertWithRetry(List<Pending> batch) throws InterruptedException {
+    long backoffMillis = 100;
+    List<Pending> left = batch;
+    while (!left.isEmpty()) {
+      try {
+        insertOrSetAside(left);
+      } catch (RuntimeException e) {
+        log.error("inserting {} menu item reviews failed; retrying in {}ms", left.size(), backoffMillis, e);
+        Thread.sleep(backoffMillis);
+        backoffMillis = Math.min(backoffMillis * 2, 10_000);
+      }
+      // what a failed attempt had already inserted one by one isn't tried again
+      left = batch.stream().filter(pending -> pending.seq() > insertedSeq).toList();
+    }
+  }
+
+  private void insertOrSetAside(List<Pending> batch) {
+    try {
+      insert(batch);
+    } catch (RuntimeException e) {
+      if (!isRefused(e)) {
+        throw e;
+      }
+      if (batch.size() == 1) {
+        setAside(batch.get(0), e);
+        return;
+      }
+      log.warn("inserting {} menu item reviews was refused; trying them one at a time", batch.size(), e);
+      for (Pending pending : batch) {
+        insertOrSetAside(List.of(pending));
+      }
+    }
+  }
+
+  // refused for what the reviews hold, so trying them again won't help
+  private static boolean isRefused(RuntimeException e) {
+    return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+  }
+
+  // appends the review to the dead-letter file and moves past it
+  private void setAside(Pending pending, RuntimeException refused) {
+    try {
+      Files.writeString(Path.of(spillDirectory, DEAD_LETTER), mapper.writeValueAsString(pending.review()) + "\n",
+          StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    } catch (IOException e) {
+      throw new UncheckedIOException("could not set aside menu item review #%d".formatted(pending.seq()), e);
+    }
+    log.error("menu item review #{} was refused and is set aside in {}", pending.seq(), DEAD_LETTER, refused);
+    new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+        checkpointRepository.save(new ReviewIngestCheckpoint(node, pending.seq())));
+    insertedSeq = pending.seq();
+    spill.release(pending.seq());
+  }
+
+  private void insert(List<Pending> batch) {
+    long lastSeq = batch.get(batch.size() - 1).seq();
+    Timestamp now = Timestamp.from(Instant.now());
+    List<Long> ids = new TransactionTemplate(transactionManager).execute(status -> {
+      List<Long> generated = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT, new String[] { "id" })) {
+          for (Pending pending : batch) {
+            MenuItemReview review = pending.review();
+            insert.setLong(1, review.getItemId());
+            insert.setString(2, review.getReviewerEmail());
+            insert.setInt(3, review.getStars());
+            if (review.getDateReviewed() == null) {
+              insert.setNull(4, Types.TIMESTAMP);
+            } else {
+              insert.setTimestamp(4, Timestamp.valueOf(review.getDateReviewed()));
+            }
+            insert.setString(5, review.getComments());
+            insert.setBoolean(6, review.getFlagged());
+            insert.setTimestamp(7, now);
+            insert.addBatch();
+          }
+          insert.executeBatch();
+          List<Long> keys = new ArrayList<>();
+          try (ResultSet rs = insert.getGeneratedKeys()) {
+            while (rs.next()) {
+              keys.add(rs.getLong(1));
+            }
+          }
+          return keys;
+        }
+      });
+      checkpointRepository.save(new ReviewIngestCheckpoint(node, lastSeq));
+      for (int i = 0; i < batch.size(); i++) {
+        MenuItemReview review = batch.get(i).review();
+        if (generated.size() == batch.size()) {
+          review.setId(generated.get(i));
+        }
+        eventPublisher.publishEvent(EntityChangedEvent.created(MenuItemReview.class, review.getId(), review));
+      }
+      return generated;
+    });
+    insertedSeq = lastSeq;
+    spill.release(lastSeq);
+
+    if (ids.size() == batch.size()) {
+      ids.forEach(id -> negativeLookupService.recordCreated(MenuItemReview.class, id));
+    } else {
+      // the driver didn't report the ids of a batch insert
+      negativeLookupService.unprime(MenuItemReview.class);
+    }
+    responseCacheService.invalidate(MenuItemReview.class.getSimpleName());
+  }
+}
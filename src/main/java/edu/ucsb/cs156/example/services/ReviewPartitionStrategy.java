@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.services;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+// How MenuItemReviewPartitionService keeps the months of menu item
+// reviews apart in one particular database.
+
+interface ReviewPartitionStrategy {
+  // "native" or "emulated"
+  String mode();
+
+  // readies the table; returns the months that already have a partition
+  List<YearMonth> load();
+
+  // creates the month's partition unless it exists; false if it still doesn't
+  boolean create(YearMonth month);
+
+  // months of reviews that were stored outside their month's partition
+  List<YearMonth> misplaced();
+
+  // removes these months and every other review before cutoff, in the caller's transaction
+  void expire(List<YearMonth> months, LocalDateTime cutoff);
+}
@@ -0,0 +1,78 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.MinHashLsh;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+// Near-duplicate detection over the explanations of open (unsolved) help
+// requests, for /api/helprequest/{id}/similar and /api/helprequest/clusters.
+//
+// Each explanation is indexed once, when the request is created or edited,
+// as a MinHash signature in a MinHashLsh index (16 bands of 4 rows, which
+// puts the LSH threshold near a Jaccard similarity of 0.5); a lookup only
+// compares against the requests sharing a band bucket. Solved and deleted
+// requests leave the index.
+
+@Slf4j
+@Service("similarQuestions")
+public class SimilarQuestionsService {
+
+  private static final int BANDS = 16;
+  private static final int ROWS = 4;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Value("${app.similarQuestions.threshold:0.5}")
+  private double threshold;
+
+  private final MinHashLsh<Long> index = new MinHashLsh<>(BANDS, ROWS);
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    helpRequestRepository.findBySolvedFalse().forEach(this::index);
+    log.info("indexed {} open help request explanations for similarity", index.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void helpRequestChanged(EntityChangedEvent<HelpRequest> event) {
+    if (event.kind() == EntityChangedEvent.Kind.DELETED) {
+      remove((Long) event.id());
+    } else {
+      index(event.current());
+    }
+  }
+
+  public void index(HelpRequest helpRequest) {
+    if (helpRequest.getSolved()) {
+      index.remove(helpRequest.getId());
+    } else {
+      index.put(helpRequest.getId(), helpRequest.getExplanation());
+    }
+  }
+
+  public void remove(Long id) {
+    index.remove(id);
+  }
+
+  // open requests similar to helpRequest (which needn't be open itself), most similar first
+  public List<MinHashLsh.Match<Long>> similar(HelpRequest helpRequest, int limit) {
+    int[] signature = index.signature(helpRequest.getExplanation());
+    return signature == null ? List.of() : index.similar(signature, helpRequest.getId(), threshold, limit);
+  }
+
+  public List<List<Long>> clusters() {
+    return index.clusters(threshold);
+  }
+}
@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.TimerWheel;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Raises an OverdueAlarm for each help request still unsolved
+// app.helpQueue.slaMinutes after its requestTime, without polling the
+// database: every unsolved request has a timer in a TimerWheel, set when it
+// is created and cancelled when it is solved or deleted. One daemon thread
+// advances the wheel every app.helpQueue.slaTickMillis and hands what came
+// due to every SlaAlarmSink bean.
+
+@Slf4j
+@Service("slaAlarms")
+public class SlaAlarmService {
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  List<SlaAlarmSink> sinks;
+
+  @Value("${app.helpQueue.slaMinutes:20}")
+  private long slaMinutes;
+
+  @Value("${app.helpQueue.slaTickMillis:100}")
+  private long tickMillis;
+
+  private TimerWheel<Long, OverdueAlarm> wheel;
+  private ScheduledExecutorService ticker;
+
+  @PostConstruct
+  public void start() {
+    wheel = new TimerWheel<>(tickMillis, System.currentTimeMillis());
+    ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "sla-alarms");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ticker.scheduleAtFixedRate(() -> fire(System.currentTimeMillis()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    ticker.shutdownNow();
+  }
+
+  // requests that went overdue while the app was down are raised on the first tick
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    helpRequestRepository.findBySolvedFalse().forEach(this::track);
+    log.info("tracking {} unsolved help requests for overdue alarms", wheel.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void helpRequestChanged(EntityChangedEvent<HelpRequest> event) {
+    if (event.kind() == EntityChangedEvent.Kind.DELETED) {
+      cancel((Long) event.id());
+    } else {
+      track(event.current());
+    }
+  }
+
+  public void track(HelpRequest helpRequest) {
+    if (helpRequest.getSolved() || helpRequest.getRequestTime() == null) {
+      wheel.cancel(helpRequest.getId());
+      return;
+    }
+    Instant dueAt = helpRequest.getRequestTime().atZone(ZoneId.systemDefault()).toInstant()
+        .plusSeconds(slaMinutes * 60);
+    wheel.schedule(helpRequest.getId(), OverdueAlarm.builder()
+        .id(helpRequest.getId())
+        .teamId(helpRequest.getTeamId())
+        .tableOrBreakoutRoom(helpRequest.getTableOrBreakoutRoom())
+        .requestTime(helpRequest.getRequestTime())
+        .dueAt(dueAt)
+        .build(), dueAt.toEpochMilli());
+  }
+
+  public void cancel(Long id) {
+    wheel.cancel(id);
+  }
+
+  public int getPendingCount() {
+    return wheel.size();
+  }
+
+  void fire(long nowMillis) {
+    for (OverdueAlarm alarm : wheel.advance(nowMillis)) {
+      alarm.setRaisedAt(Instant.ofEpochMilli(nowMillis));
+      for (SlaAlarmSink sink : sinks) {
+        try {
+          sink.overdue(alarm);
+        } catch (RuntimeException e) {
+          log.error("{} failed on overdue alarm for help request {}", sink.getClass().getSimpleName(), alarm.getId(), e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+
+// Somewhere SlaAlarmService delivers overdue alarms. Every sink bean gets
+// every alarm, on the timer thread, so implementations must not block.
+
+public interface SlaAlarmSink {
+  void overdue(OverdueAlarm alarm);
+}
@@ -0,0 +1,47 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Pushes overdue alarms to dashboards subscribed through
+// GET /api/helprequest/overdue/stream as server-sent events.
+
+@Slf4j
+@Component
+public class SseSlaAlarmSink implements SlaAlarmSink {
+
+  private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+  public SseEmitter subscribe() {
+    // no timeout; the emitter goes away when the client disconnects
+    SseEmitter emitter = new SseEmitter(0L);
+    emitters.add(emitter);
+    emitter.onCompletion(() -> emitters.remove(emitter));
+    emitter.onTimeout(() -> emitters.remove(emitter));
+    emitter.onError(e -> emitters.remove(emitter));
+    return emitter;
+  }
+
+  @Override
+  public void overdue(OverdueAlarm alarm) {
+    for (SseEmitter emitter : emitters) {
+      try {
+        emitter.send(SseEmitter.event().name("overdue").data(alarm));
+      } catch (IOException | IllegalStateException e) {
+        log.debug("dropping overdue alarm subscriber: {}", e.getMessage());
+        emitters.remove(emitter);
+      }
+    }
+  }
+
+  public int getSubscriberCount() {
+    return emitters.size();
+  }
+}
@@ -3,6 +3,9 @@ package edu.ucsb.cs156.example.services;
 
 import edu.ucsb.cs156.example.models.SystemInfo;
 import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Service;
@@ -21,13 +24,20 @@ public class SystemInfoServiceImpl extends SystemInfoService {
   @Value("${app.showSwaggerUILink:false}")
   private boolean showSwaggerUILink;
 
-  public SystemInfo getSystemInfo() {
-    SystemInfo si = SystemInfo.builder()
+  // the properties can't change while the app is running, so this is built once
+  private SystemInfo systemInfo;
+
+  @PostConstruct
+  void buildSystemInfo() {
+    systemInfo = SystemInfo.builder()
     .springH2ConsoleEnabled(this.springH2ConsoleEnabled)
     .showSwaggerUILink(this.showSwaggerUILink)
     .build();
-  log.info("getSystemInfo returns {}",si);
-  return si;
+    log.info("systemInfo is {}",systemInfo);
+  }
+
+  public SystemInfo getSystemInfo() {
+    return systemInfo;
   }
 
 }
@@ -0,0 +1,225 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.Trending;
+import edu.ucsb.cs156.example.models.TrendingItem;
+import edu.ucsb.cs156.example.structures.SpaceSaving;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// "Trending now" menu items for GET /api/menuitemreview/trending, from the
+// stream of new reviews alone; the reviews table is never read.
+//
+// Each new review counts once its insert commits, unless it was flagged as
+// part of a review bombing (it then counts when an admin clears the flag,
+// PUT /api/menuitemreview/unflag), for its item with a weight of its stars, so an
+// item trends by having many reviews, good ones counting for more. Reviews
+// go into a ring of app.trending.bucketSeconds time buckets, each a
+// SpaceSaving summary of at most app.trending.capacity items. Every
+// app.trending.refreshSeconds a daemon thread merges the buckets of each
+// window in app.trending.windows and keeps its app.trending.maxK heaviest
+// items as an immutable list; a read only copies the first k of them.
+//
+// Counts are per node and start from nothing at every restart; an item's
+// reviews and average are over the reviews since it entered the summary,
+// so they can undercount items that only just made the list.
+
+@Slf4j
+@Service("trending")
+public class TrendingService {
+
+  private static final Pattern WINDOW = Pattern.compile("(\\d+)([mh])");
+
+  private record Bucket(long slot, SpaceSaving<Long> items) {
+  }
+
+  @Value("${app.trending.windows:5m,15m,1h,6h,24h}")
+  private String[] windowNames;
+
+  @Value("${app.trending.bucketSeconds:60}")
+  private long bucketSeconds;
+
+  @Value("${app.trending.capacity:200}")
+  private int capacity;
+
+  @Value("${app.trending.maxK:50}")
+  private int maxK;
+
+  @Value("${app.trending.refreshSeconds:5}")
+  private long refreshSeconds;
+
+  private final Map<String, Duration> windows = new HashMap<>();
+  private volatile AtomicReferenceArray<Bucket> buckets;
+  private final AtomicReference<Map<String, Trending>> snapshots = new AtomicReference<>(Map.of());
+  private ScheduledExecutorService refresher;
+
+  @PostConstruct
+  public void start() {
+    long longestSeconds = 0;
+    for (String name : windowNames) {
+      Duration window = parseWindow(name.trim());
+      if (window == null || window.getSeconds() < bucketSeconds) {
+        throw new IllegalStateException("app.trending.windows: can't use " + name);
+      }
+      windows.put(name.trim(), window);
+      longestSeconds = Math.max(longestSeconds, window.getSeconds());
+    }
+    buckets = new AtomicReferenceArray<>((int) (longestSeconds / bucketSeconds) + 1);
+    refresh();
+
+    refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "trending-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    refresher.scheduleWithFixedDelay(() -> {
+      try {
+        refresh();
+      } catch (RuntimeException e) {
+        log.error("refreshing trending menu items failed; will retry", e);
+      }
+    }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    refresher.shutdownNow();
+  }
+
+  // "30m", "1h" and so on; null if that isn't a duration
+  static Duration parseWindow(String name) {
+    Matcher matcher = WINDOW.matcher(name);
+    if (!matcher.matches()) {
+      return null;
+    }
+    long amount = Long.parseLong(matcher.group(1));
+    return matcher.group(2).equals("h") ? Duration.ofHours(amount) : Duration.ofMinutes(amount);
+  }
+
+  public boolean isWindow(String name) {
+    return windows.containsKey(name);
+  }
+
+  public List<String> getWindows() {
+    return Arrays.stream(windowNames).map(String::trim).toList();
+  }
+
+  public int getMaxK() {
+    return maxK;
+  }
+
+  public Duration getLongestWindow() {
+    return windows.values().stream().max(Comparator.naturalOrder()).orElse(Duration.ZERO);
+  }
+
+  // Starts over from these reviews, each counted at its lastModified, after
+  // reviews were removed in bulk without events (expired partitions).
+  // Reviews that arrive meanwhile count in the new buckets.
+  public void rebuild(List<MenuItemReview> reviews) {
+    buckets = new AtomicReferenceArray<>(buckets.length());
+    for (MenuItemReview review : reviews) {
+      if (!review.getFlagged() && review.getLastModified() != null) {
+        reviewed(review, review.getLastModified().toEpochMilli());
+      }
+    }
+    refresh();
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void reviewChanged(EntityChangedEvent<MenuItemReview> event) {
+    if (event.kind() == EntityChangedEvent.Kind.CREATED && !event.current().getFlagged()) {
+      reviewed(event.current());
+    } else if (event.kind() == EntityChangedEvent.Kind.UPDATED && event.previous() != null
+        && event.previous().getFlagged() && !event.current().getFlagged()) {
+      reviewed(event.current());
+    }
+  }
+
+  public void reviewed(MenuItemReview review) {
+    reviewed(review, System.currentTimeMillis());
+  }
+
+  void reviewed(MenuItemReview review, long nowMillis) {
+    bucketAt(nowMillis / 1000 / bucketSeconds).items().offer(review.getItemId(), Math.max(0, review.getStars()));
+  }
+
+  private Bucket bucketAt(long slot) {
+    int index = (int) (slot % buckets.length());
+    while (true) {
+      Bucket bucket = buckets.get(index);
+      if (bucket != null && bucket.slot() == slot) {
+        return bucket;
+      }
+      // an empty slot or one left over from an earlier lap of the ring
+      Bucket fresh = new Bucket(slot, new SpaceSaving<>(capacity));
+      if (buckets.compareAndSet(index, bucket, fresh)) {
+        return fresh;
+      }
+    }
+  }
+
+  // the last refresh's k heaviest items of a window from getWindows(), k at most getMaxK()
+  public Trending trending(String window, int k) {
+    Trending snapshot = snapshots.get().get(window);
+    List<TrendingItem> items = snapshot.getItems();
+    return Trending.builder()
+        .window(window)
+        .computedAt(snapshot.getComputedAt())
+        .items(items.subList(0, Math.min(k, items.size())))
+        .build();
+  }
+
+  public void refresh() {
+    refresh(System.currentTimeMillis());
+  }
+
+  void refresh(long nowMillis) {
+    long nowSlot = nowMillis / 1000 / bucketSeconds;
+    Instant computedAt = Instant.ofEpochMilli(nowMillis);
+    Map<String, Trending> next = new HashMap<>();
+    windows.forEach((name, window) -> {
+      long slots = window.getSeconds() / bucketSeconds;
+      SpaceSaving<Long> merged = new SpaceSaving<>(capacity);
+      for (long slot = nowSlot - slots + 1; slot <= nowSlot; slot++) {
+        Bucket bucket = buckets.get((int) (Math.floorMod(slot, (long) buckets.length())));
+        if (bucket != null && bucket.slot() == slot) {
+          merged.merge(bucket.items());
+        }
+      }
+      List<TrendingItem> items = new ArrayList<>();
+      for (SpaceSaving.Entry<Long> entry : merged.top(maxK)) {
+        items.add(TrendingItem.builder()
+            .itemId(entry.key())
+            .score(entry.weight())
+            .reviews(entry.hits())
+            .averageStars((double) (entry.weight() - entry.error()) / entry.hits())
+            .build());
+      }
+      next.put(name, Trending.builder().window(name).computedAt(computedAt).items(List.copyOf(items)).build());
+    });
+    snapshots.set(Map.copyOf(next));
+  }
+}
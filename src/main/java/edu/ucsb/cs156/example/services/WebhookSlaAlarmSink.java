@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+import lombok.extern.slf4j.Slf4j;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Stub for delivering overdue alarms to a webhook: only enabled when
+// app.helpQueue.slaWebhookUrl is set, and for now it logs the payload it
+// would POST rather than making the call.
+
+@Slf4j
+@Component
+@ConditionalOnProperty("app.helpQueue.slaWebhookUrl")
+public class WebhookSlaAlarmSink implements SlaAlarmSink {
+
+  @Value("${app.helpQueue.slaWebhookUrl}")
+  private String webhookUrl;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Override
+  public void overdue(OverdueAlarm alarm) {
+    try {
+      log.info("would POST to {}: {}", webhookUrl, mapper.writeValueAsString(alarm));
+    } catch (JsonProcessingException e) {
+      log.error("couldn't serialize overdue alarm for help request {}", alarm.getId(), e);
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe, lock-free count-min sketch (Cormode and Muthukrishnan) of
+ * how often each key occurs in a stream, in a fixed depth x width table of
+ * counters. Each key adds to one counter per row, and its estimate is the
+ * smallest of them, so a key is never under-counted; with n counted in
+ * total it is over-counted by more than e * n / width with probability at
+ * most e^-depth.
+ *
+ * <p>Adding and estimating both cost depth counter operations whatever the
+ * number of keys seen.
+ */
+public class CountMinSketch {
+
+  private final int width;
+  private final int depth;
+  private final AtomicLongArray counters;
+
+  public CountMinSketch(int width, int depth) {
+    if (width < 1 || depth < 1) {
+      throw new IllegalArgumentException("width and depth must be at least 1");
+    }
+    this.width = width;
+    this.depth = depth;
+    this.counters = new AtomicLongArray(width * depth);
+  }
+
+  /** Counts count (non-negative) more occurrences of key; returns its new estimate. */
+  public long add(String key, long count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("count must not be negative");
+    }
+    long hash = hash(key);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters.addAndGet(index(hash, row), count));
+    }
+    return estimate;
+  }
+
+  /** An upper bound on the number of occurrences of key counted so far. */
+  public long estimate(String key) {
+    long hash = hash(key);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters.get(index(hash, row)));
+    }
+    return estimate;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  // row i uses h1 + i * h2 (Kirsch and Mitzenmacher), both halves of one hash
+  private int index(long hash, int row) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    return row * width + Math.floorMod(h1 + row * h2, width);
+  }
+
+  // 64-bit FNV-1a of the UTF-8 bytes, then a finalizer so every bit avalanches
+  private static long hash(String key) {
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+    }
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+}
@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe queue that takes turns between groups of items (round robin),
+ * serving each group's items oldest first. An item that has waited too long
+ * (see poll) jumps the rotation, so a busy group can't starve a quiet one,
+ * and the other way around.
+ *
+ * put and remove are O(log n); poll is O(log n) for the removal and O(1)
+ * for choosing the group.
+ *
+ * @param <T> item type; items are identified by idOf, so putting an item
+ *            with an existing id replaces the old one
+ */
+public class FairShareQueue<T> {
+
+  private final Function<T, ?> idOf;
+  private final Function<T, ?> groupOf;
+  private final Comparator<T> oldestFirst;
+
+  private final Map<Object, T> byId = new HashMap<>();
+  private final Map<Object, TreeSet<T>> byGroup = new HashMap<>();
+  // groups with at least one item, in the order they get their next turn
+  private final LinkedHashSet<Object> rotation = new LinkedHashSet<>();
+  private final TreeSet<T> all;
+
+  /**
+   * @param oldestFirst order within a group; ties must be broken by id so
+   *                    that distinct items never compare equal
+   */
+  public FairShareQueue(Function<T, ?> idOf, Function<T, ?> groupOf, Comparator<T> oldestFirst) {
+    this.idOf = idOf;
+    this.groupOf = groupOf;
+    this.oldestFirst = oldestFirst;
+    this.all = new TreeSet<>(oldestFirst);
+  }
+
+  public synchronized void put(T item) {
+    remove(idOf.apply(item));
+    Object group = groupOf.apply(item);
+    byId.put(idOf.apply(item), item);
+    byGroup.computeIfAbsent(group, g -> new TreeSet<>(oldestFirst)).add(item);
+    rotation.add(group);
+    all.add(item);
+  }
+
+  public synchronized boolean remove(Object id) {
+    T item = byId.remove(id);
+    if (item == null) {
+      return false;
+    }
+    Object group = groupOf.apply(item);
+    TreeSet<T> items = byGroup.get(group);
+    items.remove(item);
+    if (items.isEmpty()) {
+      byGroup.remove(group);
+      rotation.remove(group);
+    }
+    all.remove(item);
+    return true;
+  }
+
+  /**
+   * Removes and returns the next item: the oldest item overall if overdue
+   * says it has waited too long, otherwise the oldest item of the group
+   * whose turn it is. The group served goes to the back of the rotation.
+   * Returns null when the queue is empty.
+   */
+  public synchronized T poll(Predicate<T> overdue) {
+    if (all.isEmpty()) {
+      return null;
+    }
+    T oldest = all.first();
+    T next = overdue.test(oldest) ? oldest : byGroup.get(rotation.iterator().next()).first();
+    Object group = groupOf.apply(next);
+    remove(idOf.apply(next));
+    if (rotation.remove(group)) {
+      rotation.add(group);
+    }
+    return next;
+  }
+
+  public synchronized void clear() {
+    byId.clear();
+    byGroup.clear();
+    rotation.clear();
+    all.clear();
+  }
+
+  public synchronized int size() {
+    return byId.size();
+  }
+}
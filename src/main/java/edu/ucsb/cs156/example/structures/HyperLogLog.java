@@ -0,0 +1,146 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thread-safe HyperLogLog sketch: estimates how many distinct strings were
+ * added, to within a standard error of about 1.04 / sqrt(2^precision) (1.6%
+ * at precision 12), in 2^precision bytes however many strings there are.
+ *
+ * Merging two sketches of the same precision gives the sketch of the union,
+ * so sketches kept per day (or per node) add up to any range of them.
+ * toBytes() only writes the non-empty registers while that is shorter,
+ * which for a few hundred distinct strings is a few hundred bytes.
+ */
+public class HyperLogLog {
+
+  private static final int SPARSE = 0;
+  private static final int DENSE = 1;
+
+  private final int precision;
+  private final byte[] registers;
+
+  /**
+   * @param precision log2 of the number of registers, 4..16
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("precision must be between 4 and 16, was " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public double getStandardError() {
+    return 1.04 / Math.sqrt(registers.length);
+  }
+
+  public synchronized void add(String value) {
+    long hash = hash(value);
+    int index = (int) (hash >>> (64 - precision));
+    // the sentinel bit caps the rank at 64 - precision + 1
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  public synchronized long estimate() {
+    double m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+    // small cardinalities: linear counting of the empty registers is more accurate
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log(m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * Adds everything in other to this sketch.
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("cannot merge precision " + other.precision + " into " + precision);
+    }
+    byte[] theirs;
+    synchronized (other) {
+      theirs = other.registers.clone();
+    }
+    synchronized (this) {
+      for (int i = 0; i < registers.length; i++) {
+        if (theirs[i] > registers[i]) {
+          registers[i] = theirs[i];
+        }
+      }
+    }
+  }
+
+  public synchronized byte[] toBytes() {
+    int nonEmpty = 0;
+    for (byte register : registers) {
+      if (register != 0) {
+        nonEmpty++;
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(precision);
+    // a sparse entry is an index gap (1-2 bytes) and a rank
+    if (nonEmpty * 3 < registers.length) {
+      out.write(SPARSE);
+      Varints.write(out, nonEmpty);
+      int previous = 0;
+      for (int i = 0; i < registers.length; i++) {
+        if (registers[i] != 0) {
+          Varints.write(out, i - previous);
+          out.write(registers[i]);
+          previous = i;
+        }
+      }
+    } else {
+      out.write(DENSE);
+      out.write(registers, 0, registers.length);
+    }
+    return out.toByteArray();
+  }
+
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    HyperLogLog sketch = new HyperLogLog(in.get());
+    if (in.get() == SPARSE) {
+      long entries = Varints.read(in);
+      int index = 0;
+      for (long i = 0; i < entries; i++) {
+        index += (int) Varints.read(in);
+        sketch.registers[index] = in.get();
+      }
+    } else {
+      in.get(sketch.registers);
+    }
+    return sketch;
+  }
+
+  // 64-bit FNV-1a of the UTF-8 bytes, then a finalizer so every bit avalanches
+  private static long hash(String value) {
+    long hash = 0xCBF29CE484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+    }
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+}
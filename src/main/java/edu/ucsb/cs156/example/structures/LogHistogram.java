@@ -0,0 +1,129 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Thread-safe histogram of non-negative longs with bounded relative error,
+ * in the manner of HdrHistogram: values below 64 are counted exactly, and
+ * each power of two above that is split into 64 equal buckets, so a
+ * percentile is reported to within 1/64 (1.6%) of a recorded value.
+ *
+ * Recording is O(1), a percentile O(buckets), and memory grows with the
+ * largest value (about 64 counts per power of two), not with the number
+ * of values. Histograms merge by adding counts, and toBytes() writes only
+ * the non-empty buckets.
+ */
+public class LogHistogram {
+
+  private static final int SUB_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  private long[] counts = new long[SUB_BUCKETS];
+  private long total;
+
+  public synchronized void record(long value) {
+    recordCount(bucketOf(Math.max(0, value)), 1);
+  }
+
+  public synchronized long count() {
+    return total;
+  }
+
+  /**
+   * Smallest recorded value (to within a bucket) that at least percentile
+   * percent of the recorded values are at or below; 0 if nothing was
+   * recorded.
+   */
+  public synchronized long valueAtPercentile(double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      seen += counts[bucket];
+      if (seen >= target) {
+        return valueOf(bucket);
+      }
+    }
+    return valueOf(counts.length - 1);
+  }
+
+  /**
+   * Adds everything in other to this histogram.
+   */
+  public void merge(LogHistogram other) {
+    long[] theirs;
+    synchronized (other) {
+      theirs = other.counts.clone();
+    }
+    synchronized (this) {
+      for (int bucket = 0; bucket < theirs.length; bucket++) {
+        if (theirs[bucket] != 0) {
+          recordCount(bucket, theirs[bucket]);
+        }
+      }
+    }
+  }
+
+  public synchronized byte[] toBytes() {
+    int nonEmpty = 0;
+    for (long count : counts) {
+      if (count != 0) {
+        nonEmpty++;
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Varints.write(out, nonEmpty);
+    int previous = 0;
+    for (int bucket = 0; bucket < counts.length; bucket++) {
+      if (counts[bucket] != 0) {
+        Varints.write(out, bucket - previous);
+        Varints.write(out, counts[bucket]);
+        previous = bucket;
+      }
+    }
+    return out.toByteArray();
+  }
+
+  public static LogHistogram fromBytes(byte[] bytes) {
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+    LogHistogram histogram = new LogHistogram();
+    long entries = Varints.read(in);
+    int bucket = 0;
+    for (long i = 0; i < entries; i++) {
+      bucket += (int) Varints.read(in);
+      histogram.recordCount(bucket, Varints.read(in));
+    }
+    return histogram;
+  }
+
+  private void recordCount(int bucket, long count) {
+    if (bucket >= counts.length) {
+      counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length * 2));
+    }
+    counts[bucket] += count;
+    total += count;
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    // (value >>> shift) is in [64, 128): its low 6 bits pick the bucket
+    return SUB_BUCKETS * (shift + 1) + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  // the middle of the bucket's range
+  static long valueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lowest + ((1L << shift) >>> 1);
+  }
+}
@@ -0,0 +1,209 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Thread-safe index of short texts for finding near-duplicates: each text
+ * is reduced to a MinHash signature over its character 4-grams, and the
+ * signatures are bucketed by locality-sensitive hashing (bands x rows).
+ *
+ * Two texts share a bucket with high probability when the Jaccard
+ * similarity of their 4-gram sets is above roughly (1/bands)^(1/rows), so a
+ * lookup only compares against the few texts in its own buckets instead of
+ * the whole index. Similarities reported are estimates: the fraction of
+ * signature positions that agree.
+ *
+ * @param <K> key of an indexed text
+ */
+public class MinHashLsh<K> {
+
+  public record Match<K>(K key, double similarity) {
+  }
+
+  private static final int SHINGLE_LENGTH = 4;
+  private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final int bands;
+  private final int rows;
+  // hash i of a shingle hash x is the high 32 bits of multipliers[i] * x + addends[i]
+  private final long[] multipliers;
+  private final long[] addends;
+
+  private final Map<K, int[]> signatures = new HashMap<>();
+  private final List<Map<Long, Set<K>>> buckets = new ArrayList<>();
+
+  public MinHashLsh(int bands, int rows) {
+    this.bands = bands;
+    this.rows = rows;
+    SplittableRandom random = new SplittableRandom(0x5EED);
+    this.multipliers = new long[bands * rows];
+    this.addends = new long[bands * rows];
+    for (int i = 0; i < multipliers.length; i++) {
+      multipliers[i] = random.nextLong() | 1;
+      addends[i] = random.nextLong();
+    }
+    for (int band = 0; band < bands; band++) {
+      buckets.add(new HashMap<>());
+    }
+  }
+
+  /**
+   * MinHash signature of text, or null if it has no letters or digits.
+   * Case, punctuation and runs of whitespace don't matter.
+   */
+  public int[] signature(String text) {
+    String normalized = text == null ? "" : NOT_WORD.matcher(text.toLowerCase()).replaceAll(" ").trim();
+    if (normalized.isEmpty()) {
+      return null;
+    }
+    int[] signature = new int[multipliers.length];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    int shingles = Math.max(1, normalized.length() - SHINGLE_LENGTH + 1);
+    for (int start = 0; start < shingles; start++) {
+      long shingle = mix(normalized.substring(start, Math.min(normalized.length(), start + SHINGLE_LENGTH)).hashCode());
+      for (int i = 0; i < signature.length; i++) {
+        int h = (int) ((multipliers[i] * shingle + addends[i]) >>> 32);
+        if (h < signature[i]) {
+          signature[i] = h;
+        }
+      }
+    }
+    return signature;
+  }
+
+  public static double similarity(int[] a, int[] b) {
+    int same = 0;
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] == b[i]) {
+        same++;
+      }
+    }
+    return (double) same / a.length;
+  }
+
+  /**
+   * Indexes text under key, replacing what was there; a text without
+   * letters or digits just removes key.
+   */
+  public synchronized void put(K key, String text) {
+    remove(key);
+    int[] signature = signature(text);
+    if (signature == null) {
+      return;
+    }
+    signatures.put(key, signature);
+    for (int band = 0; band < bands; band++) {
+      buckets.get(band).computeIfAbsent(bandHash(signature, band), h -> new HashSet<>()).add(key);
+    }
+  }
+
+  public synchronized boolean remove(K key) {
+    int[] signature = signatures.remove(key);
+    if (signature == null) {
+      return false;
+    }
+    for (int band = 0; band < bands; band++) {
+      Map<Long, Set<K>> bandBuckets = buckets.get(band);
+      long hash = bandHash(signature, band);
+      Set<K> bucket = bandBuckets.get(hash);
+      bucket.remove(key);
+      if (bucket.isEmpty()) {
+        bandBuckets.remove(hash);
+      }
+    }
+    return true;
+  }
+
+  public synchronized int size() {
+    return signatures.size();
+  }
+
+  /**
+   * Indexed texts (other than exclude) whose estimated similarity to the
+   * signature is at least threshold, most similar first, at most limit.
+   */
+  public synchronized List<Match<K>> similar(int[] signature, K exclude, double threshold, int limit) {
+    List<Match<K>> matches = new ArrayList<>();
+    for (K candidate : candidates(signature)) {
+      if (!candidate.equals(exclude)) {
+        double similarity = similarity(signature, signatures.get(candidate));
+        if (similarity >= threshold) {
+          matches.add(new Match<>(candidate, similarity));
+        }
+      }
+    }
+    matches.sort(Comparator.comparingDouble((Match<K> match) -> match.similarity()).reversed());
+    return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+  }
+
+  /**
+   * Groups of two or more indexed texts linked by estimated similarity of
+   * at least threshold (directly or through other members), largest first.
+   */
+  public synchronized List<List<K>> clusters(double threshold) {
+    Map<K, K> parents = new HashMap<>();
+    for (Map.Entry<K, int[]> entry : signatures.entrySet()) {
+      for (K candidate : candidates(entry.getValue())) {
+        if (!candidate.equals(entry.getKey())
+            && similarity(entry.getValue(), signatures.get(candidate)) >= threshold) {
+          parents.put(find(parents, entry.getKey()), find(parents, candidate));
+        }
+      }
+    }
+    Map<K, List<K>> groups = new HashMap<>();
+    for (K key : signatures.keySet()) {
+      groups.computeIfAbsent(find(parents, key), root -> new ArrayList<>()).add(key);
+    }
+    List<List<K>> clusters = new ArrayList<>(groups.values());
+    clusters.removeIf(cluster -> cluster.size() < 2);
+    clusters.sort(Comparator.comparingInt((List<K> cluster) -> cluster.size()).reversed());
+    return clusters;
+  }
+
+  private Set<K> candidates(int[] signature) {
+    Set<K> candidates = new LinkedHashSet<>();
+    for (int band = 0; band < bands; band++) {
+      Set<K> bucket = buckets.get(band).get(bandHash(signature, band));
+      if (bucket != null) {
+        candidates.addAll(bucket);
+      }
+    }
+    return candidates;
+  }
+
+  // union-find root, halving the path on the way
+  private static <K> K find(Map<K, K> parents, K key) {
+    K parent = parents.getOrDefault(key, key);
+    while (!parent.equals(key)) {
+      K grandparent = parents.getOrDefault(parent, parent);
+      parents.put(key, grandparent);
+      key = grandparent;
+      parent = parents.getOrDefault(key, key);
+    }
+    return key;
+  }
+
+  private long bandHash(int[] signature, int band) {
+    long hash = band;
+    for (int i = band * rows; i < (band + 1) * rows; i++) {
+      hash = hash * 0x100000001B3L + signature[i];
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+    z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return z ^ (z >>> 33);
+  }
+}
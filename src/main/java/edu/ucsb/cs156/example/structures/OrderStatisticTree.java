@@ -0,0 +1,160 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+/**
+ * Thread-safe sorted set that can also say how many elements sort before a
+ * given one (its rank). A treap with subtree sizes: add, remove and rank are
+ * all O(log n) expected.
+ */
+public class OrderStatisticTree<T> {
+
+  private static final class Node<T> {
+    final T value;
+    final int priority;
+    int size = 1;
+    Node<T> left;
+    Node<T> right;
+
+    Node(T value, int priority) {
+      this.value = value;
+      this.priority = priority;
+    }
+  }
+
+  private final Comparator<? super T> comparator;
+  private final SplittableRandom random = new SplittableRandom();
+  private Node<T> root;
+
+  /**
+   * @param comparator total order; elements comparing equal are duplicates
+   */
+  public OrderStatisticTree(Comparator<? super T> comparator) {
+    this.comparator = comparator;
+  }
+
+  public synchronized boolean add(T value) {
+    int before = size(root);
+    root = insert(root, value);
+    return size(root) > before;
+  }
+
+  public synchronized boolean remove(T value) {
+    int before = size(root);
+    root = delete(root, value);
+    return size(root) < before;
+  }
+
+  /**
+   * Number of elements that sort before value, whether or not value itself
+   * is in the tree.
+   */
+  public synchronized int rank(T value) {
+    int rank = 0;
+    Node<T> node = root;
+    while (node != null) {
+      if (comparator.compare(value, node.value) <= 0) {
+        node = node.left;
+      } else {
+        rank += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return rank;
+  }
+
+  public synchronized boolean contains(T value) {
+    Node<T> node = root;
+    while (node != null) {
+      int c = comparator.compare(value, node.value);
+      if (c == 0) {
+        return true;
+      }
+      node = c < 0 ? node.left : node.right;
+    }
+    return false;
+  }
+
+  public synchronized int size() {
+    return size(root);
+  }
+
+  public synchronized void clear() {
+    root = null;
+  }
+
+  private Node<T> insert(Node<T> node, T value) {
+    if (node == null) {
+      return new Node<>(value, random.nextInt());
+    }
+    int c = comparator.compare(value, node.value);
+    if (c == 0) {
+      return node;
+    }
+    if (c < 0) {
+      node.left = insert(node.left, value);
+      if (node.left.priority > node.priority) {
+        node = rotateRight(node);
+      }
+    } else {
+      node.right = insert(node.right, value);
+      if (node.right.priority > node.priority) {
+        node = rotateLeft(node);
+      }
+    }
+    resize(node);
+    return node;
+  }
+
+  private Node<T> delete(Node<T> node, T value) {
+    if (node == null) {
+      return null;
+    }
+    int c = comparator.compare(value, node.value);
+    if (c < 0) {
+      node.left = delete(node.left, value);
+    } else if (c > 0) {
+      node.right = delete(node.right, value);
+    } else if (node.left == null) {
+      return node.right;
+    } else if (node.right == null) {
+      return node.left;
+    } else if (node.left.priority > node.right.priority) {
+      // rotate the node down until it has at most one child
+      node = rotateRight(node);
+      node.right = delete(node.right, value);
+    } else {
+      node = rotateLeft(node);
+      node.left = delete(node.left, value);
+    }
+    resize(node);
+    return node;
+  }
+
+  private Node<T> rotateRight(Node<T> node) {
+    Node<T> left = node.left;
+    node.left = left.right;
+    left.right = node;
+    resize(node);
+    resize(left);
+    return left;
+  }
+
+  private Node<T> rotateLeft(Node<T> node) {
+    Node<T> right = node.right;
+    node.right = right.left;
+    right.left = node;
+    resize(node);
+    resize(right);
+    return right;
+  }
+
+  private static int size(Node<?> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static void resize(Node<?> node) {
+    node.size = size(node.left) + size(node.right) + 1;
+  }
+}
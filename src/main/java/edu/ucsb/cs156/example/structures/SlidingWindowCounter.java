@@ -0,0 +1,66 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count of events over a sliding time window, kept as a ring of
+ * fixed-width time buckets. Each bucket packs its time slot and its count
+ * into one long, so a bucket left over from an earlier lap of the ring is
+ * reset by the same compare-and-set that counts the new event; neither
+ * add nor sum ever blocks.
+ */
+public class SlidingWindowCounter {
+
+  private static final int COUNT_BITS = 24;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  private final long bucketMillis;
+  private final AtomicLongArray buckets;
+
+  /**
+   * @param bucketMillis width of one bucket; at least 10, so the slot
+   *                     number of an epoch-millis time fits in its 40 bits
+   * @param bucketCount  number of buckets; sums can cover at most this many
+   */
+  public SlidingWindowCounter(long bucketMillis, int bucketCount) {
+    this.bucketMillis = bucketMillis;
+    this.buckets = new AtomicLongArray(bucketCount);
+  }
+
+  public void increment(long nowMillis) {
+    long slot = nowMillis / bucketMillis;
+    int index = (int) (slot % buckets.length());
+    while (true) {
+      long current = buckets.get(index);
+      long next;
+      if ((current >>> COUNT_BITS) != slot) {
+        next = (slot << COUNT_BITS) | 1;
+      } else if ((current & COUNT_MASK) == COUNT_MASK) {
+        return; // saturated
+      } else {
+        next = current + 1;
+      }
+      if (buckets.compareAndSet(index, current, next)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Events in the last windowBuckets buckets, counting the current,
+   * partly filled one.
+   */
+  public long sum(long nowMillis, int windowBuckets) {
+    long nowSlot = nowMillis / bucketMillis;
+    int window = Math.min(windowBuckets, buckets.length());
+    long total = 0;
+    for (int i = 0; i < window; i++) {
+      long slot = nowSlot - i;
+      long bucket = buckets.get((int) (slot % buckets.length()));
+      if ((bucket >>> COUNT_BITS) == slot) {
+        total += bucket & COUNT_MASK;
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,168 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Thread-safe space-saving summary (Metwally et al.) of the heaviest keys
+ * in a stream of weighted events, in at most capacity counters. A key not
+ * being counted takes over the counter with the smallest weight, inheriting
+ * that weight as its error, so a key's weight is never under-counted and is
+ * over-counted by at most its error. Any key with a true weight above
+ * total / capacity is guaranteed to be present.
+ *
+ * <p>Each counter also tracks the number of events (and their weight, i.e.
+ * weight minus error) since its key took it over, so the average weight of
+ * a key's recent events can be reported exactly.
+ *
+ * @param <K> key being counted
+ */
+public class SpaceSaving<K> {
+
+  /**
+   * A key's counter: weight is an upper bound on its true total, weight -
+   * error a lower bound, and hits the number of events since the counter
+   * was taken over (all of which are in weight - error).
+   */
+  public record Entry<K>(K key, long weight, long error, long hits) {
+  }
+
+  private static final class Counter<K> {
+    final K key;
+    long weight;
+    long error;
+    long hits;
+    final long order;
+
+    Counter(K key, long weight, long error, long hits, long order) {
+      this.key = key;
+      this.weight = weight;
+      this.error = error;
+      this.hits = hits;
+      this.order = order;
+    }
+  }
+
+  private final int capacity;
+  private final Map<K, Counter<K>> counters = new HashMap<>();
+  // smallest weight first; order breaks ties so distinct counters never compare equal
+  private final TreeSet<Counter<K>> byWeight = new TreeSet<>(
+      Comparator.<Counter<K>>comparingLong(c -> c.weight).thenComparingLong(c -> c.order));
+  private long nextOrder;
+  private long total;
+
+  public SpaceSaving(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    this.capacity = capacity;
+  }
+
+  /** Counts one event of key with the given (non-negative) weight. */
+  public synchronized void offer(K key, long weight) {
+    if (weight < 0) {
+      throw new IllegalArgumentException("weight must not be negative");
+    }
+    total += weight;
+    Counter<K> counter = counters.get(key);
+    if (counter != null) {
+      byWeight.remove(counter);
+      counter.weight += weight;
+      counter.hits++;
+      byWeight.add(counter);
+      return;
+    }
+    if (counters.size() < capacity) {
+      put(new Counter<>(key, weight, 0, 1, nextOrder++));
+      return;
+    }
+    Counter<K> smallest = byWeight.pollFirst();
+    counters.remove(smallest.key);
+    put(new Counter<>(key, smallest.weight + weight, smallest.weight, 1, nextOrder++));
+  }
+
+  /**
+   * Adds the counts of other into this summary (Agarwal et al.'s merge). A
+   * key missing from a full summary may have been counted up to that
+   * summary's smallest weight, which is added to its weight and error;
+   * afterwards only the capacity heaviest counters are kept.
+   */
+  public void merge(SpaceSaving<K> other) {
+    List<Entry<K>> theirs;
+    long theirFloor;
+    long theirTotal;
+    synchronized (other) {
+      theirs = other.entries();
+      theirFloor = other.floor();
+      theirTotal = other.total;
+    }
+    synchronized (this) {
+      long ourFloor = floor();
+      Map<K, Entry<K>> their = new HashMap<>();
+      theirs.forEach(entry -> their.put(entry.key(), entry));
+
+      List<Counter<K>> merged = new ArrayList<>();
+      for (Counter<K> ours : counters.values()) {
+        Entry<K> match = their.remove(ours.key);
+        merged.add(match == null
+            ? new Counter<>(ours.key, ours.weight + theirFloor, ours.error + theirFloor, ours.hits, 0)
+            : new Counter<>(ours.key, ours.weight + match.weight(), ours.error + match.error(),
+                ours.hits + match.hits(), 0));
+      }
+      for (Entry<K> entry : their.values()) {
+        merged.add(new Counter<>(entry.key(), entry.weight() + ourFloor, entry.error() + ourFloor, entry.hits(), 0));
+      }
+      merged.sort(Comparator.<Counter<K>>comparingLong(c -> c.weight).reversed());
+
+      counters.clear();
+      byWeight.clear();
+      for (Counter<K> counter : merged.subList(0, Math.min(capacity, merged.size()))) {
+        put(new Counter<>(counter.key, counter.weight, counter.error, counter.hits, nextOrder++));
+      }
+      total += theirTotal;
+    }
+  }
+
+  /** The k heaviest keys, heaviest first. */
+  public synchronized List<Entry<K>> top(int k) {
+    List<Entry<K>> top = new ArrayList<>(Math.min(k, counters.size()));
+    for (Counter<K> counter : byWeight.descendingSet()) {
+      if (top.size() >= k) {
+        break;
+      }
+      top.add(new Entry<>(counter.key, counter.weight, counter.error, counter.hits));
+    }
+    return top;
+  }
+
+  /** Sum of the weights of every event offered (or merged in). */
+  public synchronized long getTotal() {
+    return total;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public synchronized int size() {
+    return counters.size();
+  }
+
+  private List<Entry<K>> entries() {
+    return top(counters.size());
+  }
+
+  // the most an uncounted key can have had: 0 until every counter is in use
+  private long floor() {
+    return counters.size() < capacity ? 0 : byWeight.first().weight;
+  }
+
+  private void put(Counter<K> counter) {
+    counters.put(counter.key, counter);
+    byWeight.add(counter);
+  }
+}
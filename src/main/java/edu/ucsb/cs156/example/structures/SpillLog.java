@@ -0,0 +1,209 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of text records on disk, each numbered with an
+ * increasing sequence number, kept as a series of segment files named
+ * after the first sequence number in them. Records are written straight
+ * to the file (so they outlive a crash of the process, though not of the
+ * machine unless sync is on); once the reader has dealt with every record
+ * up to some number, {@link #release} deletes the segments holding only
+ * those, so the log only ever holds the records still outstanding.
+ *
+ * <p>A record is one line, "sequence TAB text", and must not contain a
+ * newline itself. A line cut short by a crash is skipped on replay.
+ */
+public class SpillLog implements AutoCloseable {
+
+  private static final String SUFFIX = ".log";
+
+  private record Segment(Path path, long firstSeq) {
+  }
+
+  private final Path directory;
+  private final int recordsPerSegment;
+  private final boolean sync;
+
+  // closed segments, oldest first, then the one being written
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private FileChannel current;
+  private int currentRecords;
+  private long lastSeq;
+
+  /**
+   * Opens the log in directory (created if missing), continuing the
+   * numbering of any segments already there.
+   *
+   * @param recordsPerSegment records written to a segment before the next is started
+   * @param sync              force every record to the disk before append returns
+   */
+  public SpillLog(Path directory, int recordsPerSegment, boolean sync) {
+    this.directory = directory;
+    this.recordsPerSegment = recordsPerSegment;
+    this.sync = sync;
+    try {
+      Files.createDirectories(directory);
+      for (Path path : segmentFiles()) {
+        segments.add(new Segment(path, firstSeqOf(path)));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    replay(0, (seq, text) -> lastSeq = Math.max(lastSeq, seq));
+    if (!segments.isEmpty()) {
+      lastSeq = Math.max(lastSeq, segments.peekLast().firstSeq() - 1);
+    }
+  }
+
+  /** Writes a record and returns its sequence number. */
+  public synchronized long append(String text) {
+    if (text.indexOf('\n') >= 0) {
+      throw new IllegalArgumentException("a record can't contain a newline");
+    }
+    try {
+      if (current == null || currentRecords >= recordsPerSegment) {
+        startSegment(lastSeq + 1);
+      }
+      long seq = lastSeq + 1;
+      ByteBuffer line = ByteBuffer.wrap((seq + "\t" + text + "\n").getBytes(StandardCharsets.UTF_8));
+      while (line.hasRemaining()) {
+        current.write(line);
+      }
+      if (sync) {
+        current.force(false);
+      }
+      currentRecords++;
+      lastSeq = seq;
+      return seq;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Deletes the segments whose records all have sequence numbers up to
+   * upToSeq. When that is every record, the segment being written is
+   * closed and deleted as well, and the next append starts a new one.
+   */
+  public synchronized void release(long upToSeq) {
+    try {
+      while (segments.size() > 1) {
+        Segment oldest = segments.peekFirst();
+        Segment next = segments.stream().skip(1).findFirst().orElseThrow();
+        if (next.firstSeq() - 1 > upToSeq) {
+          break;
+        }
+        Files.deleteIfExists(oldest.path());
+        segments.removeFirst();
+      }
+      if (upToSeq >= lastSeq && !segments.isEmpty()) {
+        closeCurrent();
+        Files.deleteIfExists(segments.removeFirst().path());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Calls action with every record numbered above afterSeq, in order. */
+  public synchronized void replay(long afterSeq, BiConsumer<Long, String> action) {
+    for (Segment segment : segments) {
+      String content;
+      try {
+        content = Files.readString(segment.path(), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      // anything after the last newline is a record whose write was cut short
+      int start = 0;
+      for (int end = content.indexOf('\n'); end >= 0; start = end + 1, end = content.indexOf('\n', start)) {
+        String line = content.substring(start, end);
+        int tab = line.indexOf('\t');
+        long seq;
+        try {
+          seq = Long.parseLong(line.substring(0, Math.max(tab, 0)));
+        } catch (NumberFormatException e) {
+          continue;
+        }
+        if (seq > afterSeq) {
+          action.accept(seq, line.substring(tab + 1));
+        }
+      }
+    }
+  }
+
+  /**
+   * Numbers the next record above seq at least, for a reader that keeps
+   * its own record of the last number it has seen (the log forgets once
+   * every segment is released).
+   */
+  public synchronized void skipTo(long seq) {
+    lastSeq = Math.max(lastSeq, seq);
+  }
+
+  public synchronized long getLastSeq() {
+    return lastSeq;
+  }
+
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      closeCurrent();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void startSegment(long firstSeq) throws IOException {
+    closeCurrent();
+    Path path = directory.resolve("%020d%s".formatted(firstSeq, SUFFIX));
+    current = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    currentRecords = 0;
+    segments.add(new Segment(path, firstSeq));
+  }
+
+  private void closeCurrent() throws IOException {
+    if (current != null) {
+      current.close();
+      current = null;
+    }
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> paths = new ArrayList<>(files
+          .filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+          .filter(path -> firstSeqOf(path) >= 0)
+          .toList());
+      paths.sort((a, b) -> Long.compare(firstSeqOf(a), firstSeqOf(b)));
+      return paths;
+    }
+  }
+
+  private static long firstSeqOf(Path path) {
+    String name = path.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread-safe hierarchical timer wheel: schedule and cancel are O(1), and
+ * advancing the clock costs O(1) per tick plus O(1) per timer that fires or
+ * moves down a level. Holding many pending timers costs memory, not CPU.
+ *
+ * Time is divided into ticks of tickMillis. Level 0 has a slot per tick for
+ * the next 64 ticks, level 1 a slot per 64 ticks for the next 64^2, and so
+ * on for LEVELS levels (about 19 days at 100ms ticks; later deadlines wait
+ * in the top level and are re-placed as it turns). A timer fires on the
+ * first advance at or after its deadline, rounded up to a whole tick.
+ *
+ * @param <K> timer key; scheduling an existing key replaces its timer
+ * @param <V> value handed back when the timer fires
+ */
+public class TimerWheel<K, V> {
+
+  private static final int LEVELS = 4;
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+
+  private static final class Timer<K, V> {
+    final K key;
+    final V value;
+    final long deadlineTick;
+    Timer<K, V> previous;
+    Timer<K, V> next;
+    Timer<K, V>[] slotList;
+    int slot;
+
+    Timer(K key, V value, long deadlineTick) {
+      this.key = key;
+      this.value = value;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+
+  private final long tickMillis;
+  // wheels[level][slot] is the head of a doubly linked list of timers
+  private final Timer<K, V>[][] wheels;
+  private final Map<K, Timer<K, V>> timers = new HashMap<>();
+  private long currentTick;
+
+  @SuppressWarnings("unchecked")
+  public TimerWheel(long tickMillis, long nowMillis) {
+    this.tickMillis = tickMillis;
+    this.wheels = new Timer[LEVELS][SLOTS];
+    this.currentTick = nowMillis / tickMillis;
+  }
+
+  public synchronized void schedule(K key, V value, long deadlineMillis) {
+    cancel(key);
+    long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+    Timer<K, V> timer = new Timer<>(key, value, Math.max(deadlineTick, currentTick + 1));
+    timers.put(key, timer);
+    place(timer);
+  }
+
+  public synchronized boolean cancel(K key) {
+    Timer<K, V> timer = timers.remove(key);
+    if (timer == null) {
+      return false;
+    }
+    unlink(timer);
+    return true;
+  }
+
+  public synchronized int size() {
+    return timers.size();
+  }
+
+  /**
+   * Moves the clock forward to nowMillis and returns the values of the
+   * timers that came due, earliest tick first.
+   */
+  public List<V> advance(long nowMillis) {
+    List<V> due = new ArrayList<>();
+    synchronized (this) {
+      long targetTick = nowMillis / tickMillis;
+      while (currentTick < targetTick) {
+        currentTick++;
+        // higher levels first, so their timers can land in a lower-level
+        // slot that is about to be cascaded on this same tick
+        for (int level = LEVELS - 1; level > 0; level--) {
+          if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+            cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+          }
+        }
+        Timer<K, V> timer = wheels[0][(int) (currentTick & SLOT_MASK)];
+        while (timer != null) {
+          Timer<K, V> next = timer.next;
+          unlink(timer);
+          timers.remove(timer.key);
+          due.add(timer.value);
+          timer = next;
+        }
+      }
+    }
+    return due;
+  }
+
+  private void cascade(int level, int slot) {
+    Timer<K, V> timer = wheels[level][slot];
+    while (timer != null) {
+      Timer<K, V> next = timer.next;
+      unlink(timer);
+      place(timer);
+      timer = next;
+    }
+  }
+
+  private void place(Timer<K, V> timer) {
+    long delta = timer.deadlineTick - currentTick;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    // beyond the top level's reach: park in the slot that turns last
+    long placeAt = delta >= 1L << (SLOT_BITS * LEVELS)
+        ? currentTick + (1L << (SLOT_BITS * LEVELS)) - 1
+        : timer.deadlineTick;
+    int slot = (int) ((placeAt >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+    Timer<K, V>[] slots = wheels[level];
+    timer.slotList = slots;
+    timer.slot = slot;
+    timer.previous = null;
+    timer.next = slots[slot];
+    if (timer.next != null) {
+      timer.next.previous = timer;
+    }
+    slots[slot] = timer;
+  }
+
+  private void unlink(Timer<K, V> timer) {
+    if (timer.previous != null) {
+      timer.previous.next = timer.next;
+    } else {
+      timer.slotList[timer.slot] = timer.next;
+    }
+    if (timer.next != null) {
+      timer.next.previous = timer.previous;
+    }
+    timer.previous = null;
+    timer.next = null;
+  }
+}
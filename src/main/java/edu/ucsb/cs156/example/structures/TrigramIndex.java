@@ -0,0 +1,470 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Thread-safe index of short texts (names, titles) for typo-tolerant
+ * search. A text is lower-cased and split into words of letters and
+ * digits, and each word into its trigrams padded with two spaces in front
+ * and one behind ("tofu" has "  t", " to", "tof", "ofu" and "fu "); every
+ * trigram keeps a posting list of the texts that have it. Keys with the
+ * same text (after lower-casing) share one entry, so a name indexed many
+ * times costs no more to search than one indexed once.
+ *
+ * <p>A search counts how many of its trigrams each text shares, keeps the
+ * texts sharing the most (at most {@code candidates} of them) and re-ranks
+ * those by edit distance: for each query word, the fewest edits turning it
+ * into some substring of the text, so "chiken" is one edit from "orange
+ * chicken". A text matches when each query word is within the typos it
+ * allows: none for words of up to two characters, one up to five, two
+ * beyond; fewer typos in all ranks first.
+ *
+ * <p>Counting walks the rarer posting lists of the query's trigrams. Lists
+ * holding more than a sixteenth of all texts (a trigram like "  c") are
+ * also kept as bitsets; a text found through the rare lists is looked up
+ * in those instead, and a common list is only walked while a text missing
+ * from every list walked so far could still make the candidates, so a
+ * search rarely costs more than its rare lists. A text sharing fewer than a
+ * third of the query's trigrams, and only common ones, is never a
+ * candidate.
+ *
+ * <p>Searches share a read lock; {@link #put} and {@link #remove} take the
+ * write lock and only touch the posting lists of their own trigrams.
+ *
+ * @param <K> key of an indexed text
+ * @param <V> value kept with it, which searches filter on and return
+ */
+public class TrigramIndex<K, V> {
+
+  /** An indexed value, the edits between the query and its text, and the Jaccard similarity of their trigrams. */
+  public record Match<V>(V value, int distance, double similarity) {
+  }
+
+  private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final long[] NO_TRIGRAMS = new long[0];
+  // a list gets a bitset above 1/16 of all texts, and loses it below 1/32
+  private static final int DENSE_SHIFT = 4;
+  private static final int MIN_DENSE = 1024;
+  // the count of a text a filter turned down
+  private static final int FILTERED = -1;
+
+  // a posting list, unordered since a search only counts, and its bitset when dense
+  private static final class Postings {
+    int[] slots = new int[4];
+    int size;
+    long[] bits;
+
+    void add(int slot, int slotCount) {
+      if (size == slots.length) {
+        slots = Arrays.copyOf(slots, size * 2);
+      }
+      slots[size++] = slot;
+      if (bits != null) {
+        if (slot >>> 6 >= bits.length) {
+          bits = Arrays.copyOf(bits, Math.max(bits.length * 2, (slot >>> 6) + 1));
+        }
+        bits[slot >>> 6] |= 1L << slot;
+      } else if (size >= MIN_DENSE && size >= slotCount >>> DENSE_SHIFT) {
+        bits = new long[(slotCount >>> 6) + 1];
+        for (int i = 0; i < size; i++) {
+          bits[slots[i] >>> 6] |= 1L << slots[i];
+        }
+      }
+    }
+
+    void remove(int slot, int slotCount) {
+      for (int i = 0; i < size; i++) {
+        if (slots[i] == slot) {
+          slots[i] = slots[--size];
+          break;
+        }
+      }
+      if (bits != null) {
+        bits[slot >>> 6] &= ~(1L << slot);
+        if (size < MIN_DENSE || size < slotCount >>> (DENSE_SHIFT + 1)) {
+          bits = null;
+        }
+      }
+    }
+
+    boolean contains(int slot) {
+      return slot >>> 6 < bits.length && (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+  }
+
+  // per-search counters, reused between searches; all zero when not in use
+  private static final class Scratch {
+    int[] counts = new int[0];
+    int[] touched = new int[64];
+    int touchedCount;
+
+    void touch(int slot) {
+      if (touchedCount == touched.length) {
+        touched = Arrays.copyOf(touched, touchedCount * 2);
+      }
+      touched[touchedCount++] = slot;
+    }
+  }
+
+  private record Entry<K, V>(K key, V value) {
+  }
+
+  // a text sharing trigrams with a query, and once re-ranked its edits from it
+  private record Candidate(int slot, int shared, int distance, double similarity) {
+  }
+
+  private final int candidates;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ConcurrentLinkedQueue<Scratch> spareScratch = new ConcurrentLinkedQueue<>();
+
+  // distinct texts live in numbered slots, reused once removed
+  private final Map<K, Integer> slotOf = new HashMap<>();
+  private final Map<String, Integer> slotOfText = new HashMap<>();
+  private final Map<Long, Postings> postings = new HashMap<>();
+  private Object[] entries = new Object[16];
+  private String[] texts = new String[16];
+  private int[] trigramCounts = new int[16];
+  private int[] freeSlots = new int[16];
+  private int freeCount;
+  private int slotCount;
+
+  /** candidates: how many of the texts sharing the most trigrams with a query are re-ranked by edit distance. */
+  public TrigramIndex(int candidates) {
+    if (candidates < 1) {
+      throw new IllegalArgumentException("candidates must be at least 1");
+    }
+    this.candidates = candidates;
+  }
+
+  /** Lower case, with runs of anything but letters and digits as single spaces. */
+  public static String normalize(String text) {
+    return text == null ? "" : NOT_WORD.matcher(text.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+  }
+
+  /** The distinct padded trigrams of the words of normalized text, three chars to a long. */
+  static long[] trigrams(String normalized) {
+    if (normalized.isEmpty()) {
+      return NO_TRIGRAMS;
+    }
+    long[] trigrams = new long[normalized.length() + 1];
+    int count = 0;
+    char before2 = ' ';
+    char before1 = ' ';
+    for (int i = 0; i <= normalized.length(); i++) {
+      char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+      trigrams[count++] = ((long) before2 << 32) | ((long) before1 << 16) | c;
+      // a space ends the word, and the next starts padded afresh
+      before2 = c == ' ' ? ' ' : before1;
+      before1 = c;
+    }
+    Arrays.sort(trigrams, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || trigrams[distinct - 1] != trigrams[i]) {
+        trigrams[distinct++] = trigrams[i];
+      }
+    }
+    return Arrays.copyOf(trigrams, distinct);
+  }
+
+  /** Typos tolerated in a query word of this many characters. */
+  static int allowedEdits(int length) {
+    return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+  }
+
+  /**
+   * The fewest insertions, deletions and substitutions turning word into
+   * some substring of text (Sellers' variant of Levenshtein distance).
+   */
+  static int substringDistance(String word, String text) {
+    int[] row = new int[text.length() + 1];
+    for (int i = 1; i <= word.length(); i++) {
+      char c = word.charAt(i - 1);
+      int diagonal = row[0];
+      row[0] = i;
+      for (int j = 1; j <= text.length(); j++) {
+        int above = row[j];
+        row[j] = Math.min(diagonal + (c == text.charAt(j - 1) ? 0 : 1), Math.min(above, row[j - 1]) + 1);
+        diagonal = above;
+      }
+    }
+    int best = word.length();
+    for (int distance : row) {
+      best = Math.min(best, distance);
+    }
+    return best;
+  }
+
+  /** Indexes text and value under key, replacing what was there; a text without letters or digits just removes key. */
+  public void put(K key, String text, V value) {
+    String normalized = normalize(text);
+    lock.writeLock().lock();
+    try {
+      removeLocked(key);
+      if (normalized.isEmpty()) {
+        return;
+      }
+      Integer slot = slotOfText.get(normalized);
+      if (slot == null) {
+        slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        slotOfText.put(normalized, slot);
+        entries[slot] = new ArrayList<Entry<K, V>>(1);
+        texts[slot] = normalized;
+        long[] trigrams = trigrams(normalized);
+        trigramCounts[slot] = trigrams.length;
+        for (long trigram : trigrams) {
+          postings.computeIfAbsent(trigram, t -> new Postings()).add(slot, slotCount);
+        }
+      }
+      entriesAt(slot).add(new Entry<>(key, value));
+      slotOf.put(key, slot);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public boolean remove(K key) {
+    lock.writeLock().lock();
+    try {
+      return removeLocked(key);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return slotOf.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Entry<K, V>> entriesAt(int slot) {
+    return (List<Entry<K, V>>) entries[slot];
+  }
+
+  private int newSlot() {
+    if (slotCount == entries.length) {
+      int capacity = entries.length * 2;
+      entries = Arrays.copyOf(entries, capacity);
+      texts = Arrays.copyOf(texts, capacity);
+      trigramCounts = Arrays.copyOf(trigramCounts, capacity);
+      freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+    return slotCount++;
+  }
+
+  private boolean removeLocked(K key) {
+    Integer slot = slotOf.remove(key);
+    if (slot == null) {
+      return false;
+    }
+    List<Entry<K, V>> sameText = entriesAt(slot);
+    sameText.removeIf(entry -> entry.key().equals(key));
+    if (!sameText.isEmpty()) {
+      return true;
+    }
+    slotOfText.remove(texts[slot]);
+    for (long trigram : trigrams(texts[slot])) {
+      Postings list = postings.get(trigram);
+      list.remove(slot, slotCount);
+      if (list.size == 0) {
+        postings.remove(trigram);
+      }
+    }
+    entries[slot] = null;
+    texts[slot] = null;
+    freeSlots[freeCount++] = slot;
+    return true;
+  }
+
+  /**
+   * Values whose texts match query within its allowed typos and pass filter
+   * (null for all), fewest edits first, then by similarity; at most limit.
+   */
+  public List<Match<V>> search(String query, Predicate<? super V> filter, int limit) {
+    String normalized = normalize(query);
+    long[] queryTrigrams = trigrams(normalized);
+    if (queryTrigrams.length == 0 || limit < 1) {
+      return List.of();
+    }
+    String[] words = normalized.split(" ");
+
+    lock.readLock().lock();
+    try {
+      List<Candidate> ranked = new ArrayList<>();
+      for (Candidate candidate : candidates(queryTrigrams, filter)) {
+        String text = texts[candidate.slot()];
+        int distance = 0;
+        boolean matched = true;
+        for (int w = 0; w < words.length && matched; w++) {
+          int edits = substringDistance(words[w], text);
+          matched = edits <= allowedEdits(words[w].length());
+          distance += edits;
+        }
+        if (matched) {
+          double similarity = (double) candidate.shared()
+              / (queryTrigrams.length + trigramCounts[candidate.slot()] - candidate.shared());
+          ranked.add(new Candidate(candidate.slot(), candidate.shared(), distance, similarity));
+        }
+      }
+      ranked.sort(Comparator.comparingInt(Candidate::distance)
+          .thenComparing(Comparator.comparingDouble(Candidate::similarity).reversed())
+          .thenComparing(candidate -> texts[candidate.slot()]));
+
+      // the values of each text in the order they were put
+      List<Match<V>> matches = new ArrayList<>();
+      for (Candidate candidate : ranked) {
+        for (Entry<K, V> entry : entriesAt(candidate.slot())) {
+          if (matches.size() == limit) {
+            return matches;
+          }
+          if (filter == null || filter.test(entry.value())) {
+            matches.add(new Match<>(entry.value(), candidate.distance(), candidate.similarity()));
+          }
+        }
+      }
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // the (at most candidates) texts with a value passing filter that share the most of
+  // queryTrigrams; under the read lock
+  private List<Candidate> candidates(long[] queryTrigrams, Predicate<? super V> filter) {
+    Scratch scratch = spareScratch.poll();
+    if (scratch == null) {
+      scratch = new Scratch();
+    }
+    boolean zeroed = false;
+    try {
+      if (scratch.counts.length < entries.length) {
+        scratch.counts = new int[entries.length];
+      }
+      int[] counts = scratch.counts;
+      List<Postings> rare = new ArrayList<>();
+      List<Postings> common = new ArrayList<>();
+      for (long trigram : queryTrigrams) {
+        Postings list = postings.get(trigram);
+        if (list != null) {
+          (list.bits == null ? rare : common).add(list);
+        }
+      }
+      common.sort(Comparator.comparingInt(list -> list.size));
+      int minShared = (queryTrigrams.length + 2) / 3;
+
+      for (Postings list : rare) {
+        for (int i = 0; i < list.size; i++) {
+          int slot = list.slots[i];
+          if (counts[slot] == 0) {
+            scratch.touch(slot);
+            counts[slot] = passes(slot, filter) ? 1 : FILTERED;
+          } else if (counts[slot] > 0) {
+            counts[slot]++;
+          }
+        }
+      }
+      for (int i = 0; i < scratch.touchedCount; i++) {
+        int slot = scratch.touched[i];
+        if (counts[slot] > 0) {
+          counts[slot] += commonHaving(common, 0, slot);
+        }
+      }
+
+      // how many texts share each number of trigrams, so a cut-off takes one pass
+      int[] sharing = new int[queryTrigrams.length + 1];
+      int cutoff = cutoff(scratch, sharing);
+      // a text not touched yet is in none of the lists walked, so it shares at most unwalked
+      for (int walked = 0; walked < common.size() && common.size() - walked >= Math.max(cutoff, minShared); walked++) {
+        Postings list = common.get(walked);
+        for (int i = 0; i < list.size; i++) {
+          int slot = list.slots[i];
+          if (counts[slot] == 0) {
+            scratch.touch(slot);
+            counts[slot] = passes(slot, filter) ? commonHaving(common, walked, slot) : FILTERED;
+          }
+        }
+        cutoff = cutoff(scratch, sharing);
+      }
+      // room for all the texts above the cut-off and some of those at it
+      int roomAtCutoff = candidates;
+      for (int shared = sharing.length - 1; shared > cutoff; shared--) {
+        roomAtCutoff -= sharing[shared];
+      }
+
+      List<Candidate> found = new ArrayList<>(Math.min(candidates, scratch.touchedCount));
+      for (int i = 0; i < scratch.touchedCount; i++) {
+        int slot = scratch.touched[i];
+        int shared = counts[slot];
+        counts[slot] = 0;
+        if (shared > cutoff || (shared == cutoff && roomAtCutoff-- > 0)) {
+          found.add(new Candidate(slot, shared, 0, 0));
+        }
+      }
+      scratch.touchedCount = 0;
+      zeroed = true;
+      return found;
+    } finally {
+      // a filter that threw leaves counts behind; let that scratch go
+      if (zeroed) {
+        spareScratch.offer(scratch);
+      }
+    }
+  }
+
+  private boolean passes(int slot, Predicate<? super V> filter) {
+    if (filter == null) {
+      return true;
+    }
+    for (Entry<K, V> entry : entriesAt(slot)) {
+      if (filter.test(entry.value())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // how many of common, from index from on, have slot
+  private static int commonHaving(List<Postings> common, int from, int slot) {
+    int having = 0;
+    for (int i = from; i < common.size(); i++) {
+      if (common.get(i).contains(slot)) {
+        having++;
+      }
+    }
+    return having;
+  }
+
+  // the fewest shared trigrams among the candidates texts touched sharing the most
+  // (at least 1), after filling in sharing
+  private int cutoff(Scratch scratch, int[] sharing) {
+    Arrays.fill(sharing, 0);
+    int[] counts = scratch.counts;
+    for (int i = 0; i < scratch.touchedCount; i++) {
+      int shared = counts[scratch.touched[i]];
+      if (shared > 0) {
+        sharing[shared]++;
+      }
+    }
+    int cutoff = sharing.length - 1;
+    int above = 0;
+    while (cutoff > 1 && above + sharing[cutoff] < candidates) {
+      above += sharing[cutoff--];
+    }
+    return cutoff;
+  }
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.structures;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+// LEB128 variable-length encoding of non-negative longs (7 bits per byte,
+// high bit set on all but the last), shared by the sketches' toBytes.
+
+final class Varints {
+
+  private Varints() {
+  }
+
+  static void write(ByteArrayOutputStream out, long value) {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  static long read(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = in.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+}
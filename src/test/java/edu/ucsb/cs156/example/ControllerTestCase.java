@@ -3,13 +3,22 @@ package edu.ucsb.cs156.example;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import edu.ucsb.cs156.example.repositories.ChangeClockRepository;
+import edu.ucsb.cs156.example.repositories.TombstoneRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.EntityCacheService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.IdempotencyService;
+import edu.ucsb.cs156.example.services.NegativeLookupService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+import edu.ucsb.cs156.example.testconfig.ControllerTestConfig;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -17,7 +26,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
 @ActiveProfiles("test")
-@Import(TestConfig.class)
+@Import({ TestConfig.class, ControllerTestConfig.class })
 public abstract class ControllerTestCase {
   @Autowired
   public CurrentUserService currentUserService;
@@ -31,6 +40,40 @@ public abstract class ControllerTestCase {
   @Autowired
   public ObjectMapper mapper;
 
+  @Autowired
+  public ResponseCacheService responseCacheService;
+
+  @Autowired
+  public EntityCacheService entityCacheService;
+
+  @Autowired
+  public NegativeLookupService negativeLookupService;
+
+  @Autowired
+  public IdempotencyService idempotencyService;
+
+  // every ApiController records deletes here
+  @MockBean
+  public TombstoneRepository tombstoneRepository;
+
+  // and reads /changes up to the change clock
+  @MockBean
+  public ChangeClockRepository changeClockRepository;
+
+  // the context (and its caches) is shared by every test in a class,
+  // but each test stubs its own repository data; subclasses that only borrow
+  // the helpers run without a context, so there is nothing to clear
+  @BeforeEach
+  public void clearCaches() {
+    if (responseCacheService == null) {
+      return;
+    }
+    responseCacheService.invalidateAll();
+    entityCacheService.invalidateAll();
+    negativeLookupService.clear();
+    idempotencyService.clear();
+  }
+
   protected Map<String, Object> responseToJson(MvcResult result) throws UnsupportedEncodingException, JsonProcessingException {
     String responseString = result.getResponse().getContentAsString();
     return mapper.readValue(responseString, Map.class);
@@ -6,10 +6,15 @@ import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Articles;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -333,5 +338,70 @@ public class ArticlesControllerTests extends ControllerTestCase{
                 assertEquals("Articles with id 67 not found", json.get("message"));
 
         }
-    
+
+        // Tests for /api/articles/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/articles/batch?ids=1,2"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_ids_reported() throws Exception {
+
+                // arrange
+                Articles first = Articles.builder().id(1L).title("First").url("https://example.org/1").build();
+                Articles second = Articles.builder().id(2L).title("Second").url("https://example.org/2").build();
+
+                // repository returns rows in its own order
+                when(articlesRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/batch?ids=2,3,1,2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of(2L, 3L, 1L))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<Articles>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of(3L))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/articles/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/articles/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                Articles changed = Articles.builder().id(1L).title("First").url("https://example.org/1").build();
+                Tombstone tombstone = Tombstone.builder().entityType("Articles").entityId("2").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(articlesRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("Articles", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/articles/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<Articles>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of(2L))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
@@ -0,0 +1,354 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.BatchOperation;
+import edu.ucsb.cs156.example.models.BatchOperationResult;
+import edu.ucsb.cs156.example.models.BatchResponse;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = { BatchController.class, UCSBDatesController.class })
+@Import(TestConfig.class)
+public class BatchControllerTests extends ControllerTestCase {
+
+  @MockBean
+  UCSBDateRepository ucsbDateRepository;
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  SimpleTransactionStatus transaction;
+
+  @BeforeEach
+  public void stubTransactions() {
+    transaction = new SimpleTransactionStatus();
+    when(transactionManager.getTransaction(any())).thenReturn(transaction);
+  }
+
+  private MvcResult runBatch(List<BatchOperation> operations) throws Exception {
+    return mockMvc.perform(
+        post("/api/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .characterEncoding("utf-8")
+            .content(mapper.writeValueAsString(operations))
+            .with(csrf()))
+        .andExpect(status().isOk()).andReturn();
+  }
+
+  private BatchOperationResult result(int status, Object body) {
+    return BatchOperationResult.builder().status(status).body(mapper.valueToTree(body)).build();
+  }
+
+  @Test
+  public void logged_out_users_cannot_run_a_batch() throws Exception {
+    mockMvc.perform(post("/api/batch").contentType(MediaType.APPLICATION_JSON).content("[]").with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void admin_can_create_update_and_delete_in_one_batch() throws Exception {
+
+    // arrange
+    UCSBDate existing = UCSBDate.builder()
+        .id(7L)
+        .name("firstDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+    UCSBDate edited = UCSBDate.builder()
+        .id(7L)
+        .name("lastDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-03-11T00:00:00"))
+        .build();
+    UCSBDate created = UCSBDate.builder()
+        .name("finals")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-03-14T08:00:00"))
+        .build();
+
+    when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+    when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(existing));
+    when(ucsbDateRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    List<BatchOperation> operations = List.of(
+        BatchOperation.builder().method("POST")
+            .path("/api/ucsbdates/post?quarterYYYYQ=20222&name=finals&localDateTime=2022-03-14T08%3A00%3A00")
+            .build(),
+        BatchOperation.builder().method("put")
+            .path("/api/ucsbdates?id=7")
+            .body(mapper.valueToTree(edited))
+            .build(),
+        BatchOperation.builder().method("DELETE")
+            .path("/api/ucsbdates?id=15")
+            .build());
+
+    // act
+    MvcResult response = runBatch(operations);
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(BatchResponse.builder()
+        .committed(true)
+        .results(List.of(
+            result(200, created),
+            result(200, edited),
+            result(200, Map.of("message", "UCSBDate with id 15 deleted"))))
+        .build());
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+    verify(ucsbDateRepository, times(2)).save(any());
+    verify(ucsbDateRepository, times(1)).delete(any());
+    verify(transactionManager, times(1)).commit(transaction);
+    assertFalse(transaction.isRollbackOnly());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void each_operation_keeps_its_own_authorization() throws Exception {
+
+    // act
+    MvcResult response = runBatch(List.of(
+        BatchOperation.builder().method("GET").path("/api/ucsbdates/all").build(),
+        BatchOperation.builder().method("DELETE").path("/api/ucsbdates?id=15").build()));
+
+    // assert
+    BatchResponse batch = mapper.readValue(response.getResponse().getContentAsString(), BatchResponse.class);
+    assertFalse(batch.getCommitted());
+    assertEquals(2, batch.getResults().size());
+    assertEquals(200, batch.getResults().get(0).getStatus());
+    assertEquals(403, batch.getResults().get(1).getStatus());
+    assertEquals("AccessDeniedException", batch.getResults().get(1).getBody().get("type").asText());
+    verify(ucsbDateRepository, times(0)).delete(any());
+    assertTrue(transaction.isRollbackOnly());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void a_failed_operation_stops_the_batch_and_rolls_back() throws Exception {
+
+    // arrange
+    when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response = runBatch(List.of(
+        BatchOperation.builder().method("DELETE").path("/api/ucsbdates?id=15").build(),
+        BatchOperation.builder().method("DELETE").path("/api/ucsbdates?id=16").build()));
+
+    // assert
+    String expectedJson = mapper.writeValueAsString(BatchResponse.builder()
+        .committed(false)
+        .results(List.of(result(404,
+            Map.of("type", "EntityNotFoundException", "message", "UCSBDate with id 15 not found"))))
+        .build());
+    assertEquals(mapper.readTree(expectedJson), mapper.readTree(response.getResponse().getContentAsString()));
+    verify(ucsbDateRepository, times(0)).findById(eq(16L));
+    assertTrue(transaction.isRollbackOnly());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void binding_errors_are_reported_per_operation() throws Exception {
+
+    // act
+    MvcResult response = runBatch(List.of(
+        BatchOperation.builder().method("DELETE").path("/api/ucsbdates").build()));
+
+    // assert
+    BatchResponse batch = mapper.readValue(response.getResponse().getContentAsString(), BatchResponse.class);
+    assertFalse(batch.getCommitted());
+    BatchOperationResult result = batch.getResults().get(0);
+    assertEquals(400, result.getStatus());
+    assertEquals("Required request parameter 'id' for method parameter type Long is not present",
+        result.getBody().get("message").asText());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void unknown_paths_and_methods_are_rejected() throws Exception {
+
+    // act
+    List<BatchOperationResult> results = List.of(
+        batchOf(BatchOperation.builder().method("GET").path("/api/nothing-here").build()),
+        batchOf(BatchOperation.builder().method("PATCH").path("/api/ucsbdates?id=7").build()),
+        batchOf(BatchOperation.builder().method("POST").path("/api/batch").build()),
+        batchOf(BatchOperation.builder().path("/api/ucsbdates/all").build()),
+        batchOf(BatchOperation.builder().method("GET").build()),
+        batchOf(BatchOperation.builder().method("POST").path("/api/ucsbdates/all").build()));
+
+    // assert
+    assertEquals(404, results.get(0).getStatus());
+    assertEquals("NoHandlerFound", results.get(0).getBody().get("type").asText());
+    assertEquals(400, results.get(1).getStatus());
+    assertEquals("BadOperation", results.get(1).getBody().get("type").asText());
+    assertEquals(400, results.get(2).getStatus());
+    assertEquals(400, results.get(3).getStatus());
+    assertEquals(400, results.get(4).getStatus());
+    assertEquals(405, results.get(5).getStatus());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void operations_do_not_inherit_the_batch_requests_idempotency_key_or_if_match() throws Exception {
+
+    // arrange
+    UCSBDate existing = UCSBDate.builder()
+        .id(7L)
+        .name("firstDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+    when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+    when(ucsbDateRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    List<BatchOperation> operations = List.of(
+        BatchOperation.builder().method("POST")
+            .path("/api/ucsbdates/post?quarterYYYYQ=20222&name=finals&localDateTime=2022-03-14T08%3A00%3A00")
+            .build(),
+        BatchOperation.builder().method("POST")
+            .path("/api/ucsbdates/post?quarterYYYYQ=20222&name=commencement&localDateTime=2022-06-11T09%3A00%3A00")
+            .build(),
+        BatchOperation.builder().method("PUT")
+            .path("/api/ucsbdates?id=7")
+            .body(mapper.valueToTree(existing))
+            .build());
+
+    // act
+    MvcResult response = mockMvc.perform(
+        post("/api/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .header("Idempotency-Key", "batch-1")
+            .header("If-Match", "\"99\"")
+            .content(mapper.writeValueAsString(operations))
+            .with(csrf()))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    BatchResponse batch = mapper.readValue(response.getResponse().getContentAsString(), BatchResponse.class);
+    assertTrue(batch.getCommitted());
+    assertEquals("finals", batch.getResults().get(0).getBody().get("name").asText());
+    assertEquals("commencement", batch.getResults().get(1).getBody().get("name").asText());
+    assertEquals(200, batch.getResults().get(2).getStatus());
+    verify(ucsbDateRepository, times(3)).save(any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void operations_can_carry_their_own_idempotency_key_and_if_match() throws Exception {
+
+    // arrange
+    UCSBDate existing = UCSBDate.builder()
+        .id(7L)
+        .name("firstDayOfClasses")
+        .quarterYYYYQ("20222")
+        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+        .build();
+    when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+    when(ucsbDateRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    String path = "/api/ucsbdates/post?quarterYYYYQ=20222&name=finals&localDateTime=2022-03-14T08%3A00%3A00";
+
+    // act
+    MvcResult response = runBatch(List.of(
+        BatchOperation.builder().method("POST").path(path).headers(Map.of("Idempotency-Key", "op-1")).build(),
+        BatchOperation.builder().method("POST").path(path).headers(Map.of("idempotency-key", "op-1")).build(),
+        BatchOperation.builder().method("PUT")
+            .path("/api/ucsbdates?id=7")
+            .headers(Map.of("If-Match", "\"99\""))
+            .body(mapper.valueToTree(existing))
+            .build()));
+
+    // assert
+    BatchResponse batch = mapper.readValue(response.getResponse().getContentAsString(), BatchResponse.class);
+    assertFalse(batch.getCommitted());
+    assertEquals(batch.getResults().get(0).getBody(), batch.getResults().get(1).getBody());
+    assertEquals(412, batch.getResults().get(2).getStatus());
+    verify(ucsbDateRepository, times(1)).save(any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void other_operation_headers_are_rejected() throws Exception {
+
+    // act
+    BatchOperationResult result = batchOf(BatchOperation.builder().method("GET").path("/api/ucsbdates/all")
+        .headers(Map.of("Authorization", "Bearer x")).build());
+
+    // assert
+    assertEquals(400, result.getStatus());
+    assertEquals("BadOperation", result.getBody().get("type").asText());
+    assertTrue(result.getBody().get("message").asText().startsWith("unsupported header Authorization"));
+  }
+
+  private BatchOperationResult batchOf(BatchOperation operation) throws Exception {
+    MvcResult response = runBatch(List.of(operation));
+    BatchResponse batch = mapper.readValue(response.getResponse().getContentAsString(), BatchResponse.class);
+    return batch.getResults().get(0);
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void batches_over_the_limit_are_rejected() throws Exception {
+    List<BatchOperation> operations = Collections.nCopies(BatchController.MAX_OPERATIONS + 1,
+        BatchOperation.builder().method("GET").path("/api/ucsbdates/all").build());
+
+    mockMvc.perform(
+        post("/api/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(mapper.writeValueAsString(operations))
+            .with(csrf()))
+        .andExpect(status().isBadRequest());
+
+    verify(transactionManager, times(0)).getTransaction(any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void json_results_are_embedded_as_json() throws Exception {
+
+    // arrange
+    when(ucsbDateRepository.findAll()).thenReturn(List.of());
+
+    // act
+    BatchOperationResult result = batchOf(BatchOperation.builder().method("GET").path("/api/ucsbdates/all").build());
+
+    // assert
+    JsonNode body = result.getBody();
+    assertTrue(body.isArray());
+    assertEquals(0, body.size());
+  }
+}
@@ -0,0 +1,121 @@
+package edu.ucsb.cs156.example.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchOperationRequestTests {
+
+  private MockHttpServletRequest batchRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/batch");
+    request.setContentType("application/json");
+    request.addHeader("Content-Length", "999");
+    request.addHeader("Accept-Encoding", "gzip");
+    request.addHeader("Accept", "application/json");
+    request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, "context");
+    request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, "from the batch request");
+    return request;
+  }
+
+  @Test
+  public void method_path_and_parameters_come_from_the_operation() {
+    BatchOperationRequest request = new BatchOperationRequest(batchRequest(), "DELETE",
+        "/api/ucsbdates?id=7&name=a%20b&name=c&flag", null, null);
+
+    assertEquals("DELETE", request.getMethod());
+    assertEquals("/api/ucsbdates", request.getRequestURI());
+    assertEquals("/api/ucsbdates", request.getServletPath());
+    assertNull(request.getPathInfo());
+    assertEquals("id=7&name=a%20b&name=c&flag", request.getQueryString());
+    assertEquals("7", request.getParameter("id"));
+    assertNull(request.getParameter("missing"));
+    assertArrayEquals(new String[] { "a b", "c" }, request.getParameterValues("name"));
+    assertArrayEquals(new String[] { "" }, request.getParameterValues("flag"));
+    assertEquals(List.of("id", "name", "flag"), Collections.list(request.getParameterNames()));
+    assertEquals(3, request.getParameterMap().size());
+  }
+
+  @Test
+  public void body_and_its_headers_come_from_the_operation() throws Exception {
+    byte[] body = "{\"name\":\"x\"}".getBytes(StandardCharsets.UTF_8);
+    BatchOperationRequest request = new BatchOperationRequest(batchRequest(), "PUT", "/api/ucsbdates?id=7", body, null);
+
+    assertEquals("application/json", request.getContentType());
+    assertEquals(body.length, request.getContentLength());
+    assertEquals(body.length, request.getContentLengthLong());
+    assertEquals("application/json", request.getHeader("Content-Type"));
+    assertEquals(Integer.toString(body.length), request.getHeader("content-length"));
+    assertNull(request.getHeader("Accept-Encoding"));
+    assertEquals(List.of(), Collections.list(request.getHeaders("Accept-Encoding")));
+    assertEquals("application/json", request.getHeader("Accept"));
+    assertEquals(List.of("application/json"), Collections.list(request.getHeaders("Accept")));
+    assertArrayEquals(body, request.getInputStream().readAllBytes());
+    assertEquals("{\"name\":\"x\"}", request.getReader().readLine());
+  }
+
+  @Test
+  public void idempotency_key_and_preconditions_come_only_from_the_operation() {
+    MockHttpServletRequest batchRequest = batchRequest();
+    batchRequest.addHeader("Idempotency-Key", "batch-1");
+    batchRequest.addHeader("If-Match", "\"3\"");
+    batchRequest.addHeader("If-None-Match", "\"3\"");
+
+    BatchOperationRequest inherits = new BatchOperationRequest(batchRequest, "PUT", "/api/ucsbdates?id=7", null, null);
+    assertNull(inherits.getHeader("Idempotency-Key"));
+    assertNull(inherits.getHeader("if-match"));
+    assertEquals(List.of(), Collections.list(inherits.getHeaders("If-None-Match")));
+
+    BatchOperationRequest own = new BatchOperationRequest(batchRequest, "PUT", "/api/ucsbdates?id=7", null,
+        Map.of("idempotency-key", "op-1", "If-Match", "\"4\""));
+    assertEquals("op-1", own.getHeader("Idempotency-Key"));
+    assertEquals(List.of("\"4\""), Collections.list(own.getHeaders("IF-MATCH")));
+    assertNull(own.getHeader("If-None-Match"));
+    assertEquals("application/json", own.getHeader("Accept"));
+  }
+
+  @Test
+  public void an_operation_without_a_body_has_an_empty_one() throws Exception {
+    BatchOperationRequest request = new BatchOperationRequest(batchRequest(), "GET", "/api/ucsbdates/all", null, null);
+
+    assertNull(request.getContentType());
+    assertEquals(-1, request.getContentLength());
+    assertNull(request.getHeader("Content-Type"));
+    assertNull(request.getHeader("Content-Length"));
+    assertTrue(request.getInputStream().isFinished());
+    assertTrue(request.getInputStream().isReady());
+    assertEquals(-1, request.getInputStream().read());
+    assertThrows(UnsupportedOperationException.class, () -> request.getInputStream().setReadListener(null));
+  }
+
+  @Test
+  public void attributes_are_kept_per_operation() {
+    MockHttpServletRequest batchRequest = batchRequest();
+    BatchOperationRequest request = new BatchOperationRequest(batchRequest, "GET", "/api/ucsbdates/all", null, null);
+
+    assertEquals("context", request.getAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE));
+    assertNull(request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+
+    request.setAttribute("a", "b");
+    assertEquals("b", request.getAttribute("a"));
+    assertNull(batchRequest.getAttribute("a"));
+    assertTrue(Collections.list(request.getAttributeNames()).contains("a"));
+
+    request.setAttribute("a", null);
+    assertNull(request.getAttribute("a"));
+    request.setAttribute("c", "d");
+    request.removeAttribute("c");
+    assertNull(request.getAttribute("c"));
+  }
+}
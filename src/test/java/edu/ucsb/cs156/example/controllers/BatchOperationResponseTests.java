@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchOperationResponseTests {
+
+  @Test
+  public void nothing_reaches_the_batch_response() throws Exception {
+    MockHttpServletResponse batchResponse = new MockHttpServletResponse();
+    BatchOperationResponse response = new BatchOperationResponse(batchResponse);
+
+    response.setStatus(201);
+    response.setContentType("application/json");
+    response.setContentLength(2);
+    response.setContentLengthLong(2);
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Vary", "Accept-Encoding");
+    response.addHeader("Vary", "Origin");
+    response.setIntHeader("X-Count", 1);
+    response.addIntHeader("X-Count", 2);
+    response.setDateHeader("Expires", 0);
+    response.addDateHeader("Last-Modified", 0);
+    response.getOutputStream().write("{}".getBytes(StandardCharsets.UTF_8));
+    response.flushBuffer();
+
+    assertEquals(201, response.getStatus());
+    assertEquals("application/json", response.getContentType());
+    assertTrue(response.containsHeader("Vary"));
+    assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    assertEquals(List.of("Accept-Encoding", "Origin"), response.getHeaders("Vary"));
+    assertEquals(List.of("1", "2"), response.getHeaders("X-Count"));
+    assertTrue(response.getHeaderNames().contains("Expires"));
+    assertTrue(response.getHeaderNames().contains("Last-Modified"));
+    assertFalse(response.isCommitted());
+    assertEquals("{}", new String(response.getContentAsByteArray(), StandardCharsets.UTF_8));
+
+    assertEquals(200, batchResponse.getStatus());
+    assertTrue(batchResponse.getHeaderNames().isEmpty());
+    assertEquals(0, batchResponse.getContentAsByteArray().length);
+  }
+
+  @Test
+  public void writer_output_is_captured() {
+    BatchOperationResponse response = new BatchOperationResponse(new MockHttpServletResponse());
+
+    assertSame(response.getWriter(), response.getWriter());
+    response.getWriter().write("héllo");
+
+    assertEquals("héllo", new String(response.getContentAsByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void errors_are_captured() {
+    BatchOperationResponse response = new BatchOperationResponse(new MockHttpServletResponse());
+
+    response.sendError(404);
+    assertEquals(404, response.getStatus());
+    assertNull(response.getErrorMessage());
+
+    response.sendError(400, "bad");
+    assertEquals(400, response.getStatus());
+    assertEquals("bad", response.getErrorMessage());
+  }
+
+  @Test
+  public void reset_discards_everything() throws Exception {
+    BatchOperationResponse response = new BatchOperationResponse(new MockHttpServletResponse());
+    response.setStatus(500);
+    response.setHeader("Vary", "Origin");
+    response.getOutputStream().write(1);
+    response.getOutputStream().write(new byte[] { 2, 3 }, 0, 2);
+
+    response.reset();
+
+    assertEquals(200, response.getStatus());
+    assertFalse(response.containsHeader("Vary"));
+    assertEquals(0, response.getContentAsByteArray().length);
+    assertTrue(response.getOutputStream().isReady());
+    assertThrows(UnsupportedOperationException.class, () -> response.getOutputStream().setWriteListener(null));
+  }
+}
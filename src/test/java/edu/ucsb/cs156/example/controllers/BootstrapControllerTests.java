@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.models.Bootstrap;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.SystemInfo;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.SystemInfoService;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = BootstrapController.class)
+@Import(TestConfig.class)
+public class BootstrapControllerTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  SystemInfoService mockSystemInfoService;
+
+  private SystemInfo systemInfo = SystemInfo
+      .builder()
+      .showSwaggerUILink(true)
+      .springH2ConsoleEnabled(false)
+      .build();
+
+  @Test
+  public void bootstrap__logged_out() throws Exception {
+
+    // arrange
+    when(mockSystemInfoService.getSystemInfo()).thenReturn(systemInfo);
+    String expectedJson = mapper.writeValueAsString(Bootstrap.builder().systemInfo(systemInfo).build());
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/bootstrap"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void bootstrap__logged_in() throws Exception {
+
+    // arrange
+    when(mockSystemInfoService.getSystemInfo()).thenReturn(systemInfo);
+    CurrentUser currentUser = currentUserService.getCurrentUser();
+    String expectedJson = mapper.writeValueAsString(
+        Bootstrap.builder().currentUser(currentUser).systemInfo(systemInfo).build());
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/bootstrap"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+}
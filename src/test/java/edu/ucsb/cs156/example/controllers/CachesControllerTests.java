@@ -0,0 +1,57 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.models.EntityCacheStats;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.Map;
+
+@WebMvcTest(controllers = CachesController.class)
+@Import(TestConfig.class)
+public class CachesControllerTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void entity_cache_stats__logged_out() throws Exception {
+    mockMvc.perform(get("/api/admin/caches/entities"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void entity_cache_stats__user_logged_in() throws Exception {
+    mockMvc.perform(get("/api/admin/caches/entities"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void entity_cache_stats__admin_logged_in() throws Exception {
+    // arrange
+    entityCacheService.get(UCSBDate.class, 1L, () -> Map.of("name", "firstDayOfClasses"));
+    EntityCacheStats expected = entityCacheService.getStats();
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/caches/entities"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(1, expected.getEntries());
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+  }
+}
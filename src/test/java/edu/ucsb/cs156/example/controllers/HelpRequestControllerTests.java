@@ -1,24 +1,52 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.Heatmap;
+import edu.ucsb.cs156.example.models.HelpQueueStats;
+import edu.ucsb.cs156.example.models.HelpRequestAnalytics;
+import edu.ucsb.cs156.example.models.QueuePosition;
+import edu.ucsb.cs156.example.models.SimilarHelpRequest;
+import edu.ucsb.cs156.example.structures.MinHashLsh;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.HelpQueueService;
+import edu.ucsb.cs156.example.services.HelpQueueStatsService;
+import edu.ucsb.cs156.example.services.HelpRequestAnalyticsService;
+import edu.ucsb.cs156.example.services.HelpRequestRollupService;
+import edu.ucsb.cs156.example.services.SimilarQuestionsService;
+import edu.ucsb.cs156.example.services.SlaAlarmService;
+import edu.ucsb.cs156.example.services.SseSlaAlarmSink;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,6 +57,7 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
@@ -37,13 +66,41 @@ import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = HelpRequestController.class)
 @Import(TestConfig.class)
+@RecordApplicationEvents
 public class HelpRequestControllerTests extends ControllerTestCase{
+    @Autowired
+    ApplicationEvents events;
+
     @MockBean
     HelpRequestRepository helpRequestRepository;
 
+    @MockBean
+    ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    HelpQueueService helpQueueService;
+
+    @MockBean
+    HelpQueueStatsService helpQueueStatsService;
+
+    @MockBean
+    SlaAlarmService slaAlarmService;
+
+    @MockBean
+    SseSlaAlarmSink sseSlaAlarmSink;
+
+    @MockBean
+    SimilarQuestionsService similarQuestionsService;
+
+    @MockBean
+    HelpRequestRollupService helpRequestRollupService;
+
+    @MockBean
+    HelpRequestAnalyticsService helpRequestAnalyticsService;
+
     // Authorization tests for /api/helprequest/admin/all
 
     @Test
@@ -132,6 +189,72 @@ public class HelpRequestControllerTests extends ControllerTestCase{
              assertEquals("HelpRequest with id 7 not found", json.get("message"));
     }
 
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_only_falls_back_to_the_archive_when_asked() throws Exception {
+            ArchivedHelpRequest archived = ArchivedHelpRequest.builder()
+                            .id(7L)
+                            .requesterEmail("hiyori@azarashiparadise.org")
+                            .teamId("6")
+                            .tableOrBreakoutRoom("3")
+                            .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                            .explanation("azarashi!")
+                            .solved(true)
+                            .archivedAt(Instant.parse("2022-03-01T00:00:00Z"))
+                            .build();
+            when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+            when(archivedHelpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(archived));
+
+            mockMvc.perform(get("/api/helprequest?id=7")).andExpect(status().isNotFound());
+            verify(archivedHelpRequestRepository, times(0)).findById(any());
+
+            MvcResult response = mockMvc.perform(get("/api/helprequest?id=7&includeArchived=true"))
+                            .andExpect(status().isOk()).andReturn();
+
+            assertEquals(mapper.writeValueAsString(archived), response.getResponse().getContentAsString());
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void get_by_id_missing_from_both_tables_is_not_found_as_a_help_request() throws Exception {
+            when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+            when(archivedHelpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+            MvcResult response = mockMvc.perform(get("/api/helprequest?id=7&includeArchived=true"))
+                            .andExpect(status().isNotFound()).andReturn();
+
+            assertEquals("HelpRequest with id 7 not found", responseToJson(response).get("message"));
+            verify(archivedHelpRequestRepository, times(1)).findById(7L);
+    }
+
+    @WithMockUser(roles = { "USER" })
+    @Test
+    public void all_lists_the_archive_only_when_asked() throws Exception {
+            HelpRequest hot = HelpRequest.builder()
+                            .id(8L)
+                            .requesterEmail("kyoro@azarashiparadise.org")
+                            .requestTime(LocalDateTime.parse("2022-03-11T00:00:00"))
+                            .build();
+            ArchivedHelpRequest archived = ArchivedHelpRequest.builder()
+                            .id(7L)
+                            .requesterEmail("hiyori@azarashiparadise.org")
+                            .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                            .solved(true)
+                            .archivedAt(Instant.parse("2022-03-01T00:00:00Z"))
+                            .build();
+            when(helpRequestRepository.findAll()).thenReturn(List.of(hot));
+            when(archivedHelpRequestRepository.findAll()).thenReturn(List.of(archived));
+
+            MvcResult hotOnly = mockMvc.perform(get("/api/helprequest/all"))
+                            .andExpect(status().isOk()).andReturn();
+            MvcResult both = mockMvc.perform(get("/api/helprequest/all?includeArchived=true"))
+                            .andExpect(status().isOk()).andReturn();
+
+            assertEquals(mapper.writeValueAsString(List.of(hot)), hotOnly.getResponse().getContentAsString());
+            assertEquals(mapper.writeValueAsString(List.of(hot, archived)), both.getResponse().getContentAsString());
+            verify(archivedHelpRequestRepository, times(1)).findAll();
+    }
+
     @WithMockUser(roles = { "USER" })
     @Test
     public void logged_in_user_can_get_all_helprequests() throws Exception {
@@ -207,6 +330,40 @@ public class HelpRequestControllerTests extends ControllerTestCase{
             assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_retried_post_with_the_same_idempotency_key_is_only_saved_once() throws Exception {
+            // arrange
+            HelpRequest helpRequest1 = HelpRequest.builder()
+                            .id(12L)
+                            .requesterEmail("hiyori@azarashiparadise.org")
+                            .teamId("6")
+                            .tableOrBreakoutRoom("3")
+                            .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                            .explanation("azarashi!")
+                            .solved(true)
+                            .build();
+
+            when(helpRequestRepository.save(any())).thenReturn(helpRequest1);
+            String url = "/api/helprequest/post?requesterEmail=hiyori@azarashiparadise.org&teamId=6&tableOrBreakoutRoom=3&requestTime=2022-01-03T00:00:00&explanation=azarashi!&solved=true";
+
+            // act
+            MvcResult first = mockMvc.perform(post(url).header("Idempotency-Key", "abc").with(csrf()))
+                            .andExpect(status().isOk()).andReturn();
+            MvcResult retry = mockMvc.perform(post(url).header("Idempotency-Key", "abc").with(csrf()))
+                            .andExpect(status().isOk()).andReturn();
+            mockMvc.perform(post(url).header("Idempotency-Key", "def").with(csrf()))
+                            .andExpect(status().isOk());
+
+            // assert
+            verify(helpRequestRepository, times(2)).save(any());
+            EntityChangedEvent<HelpRequest> created = EntityChangedEvent.created(HelpRequest.class, 12L, helpRequest1);
+            assertEquals(List.of(created, created), events.stream(EntityChangedEvent.class).toList());
+            String expectedJson = mapper.writeValueAsString(helpRequest1);
+            assertEquals(expectedJson, first.getResponse().getContentAsString());
+            assertEquals(expectedJson, retry.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_delete_a_helpRequest() throws Exception {
@@ -239,6 +396,30 @@ public class HelpRequestControllerTests extends ControllerTestCase{
                 assertEquals("HelpRequest with id 15 deleted", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_a_helpRequest_with_a_stale_if_match() throws Exception {
+                HelpRequest helpRequest1 = HelpRequest.builder()
+                            .requesterEmail("hiyori@azarashiparadise.org")
+                            .teamId("6")
+                            .tableOrBreakoutRoom("3")
+                            .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                            .explanation("azarashi!")
+                            .solved(true)
+                            .version(2)
+                            .build();
+
+                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest1));
+
+                mockMvc.perform(
+                                delete("/api/helprequest?id=15")
+                                                .header("If-Match", "\"1\"")
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                verify(helpRequestRepository, times(0)).delete(any());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_tries_to_delete_non_existant_helprequest_and_gets_right_error_message()
@@ -341,4 +522,461 @@ public class HelpRequestControllerTests extends ControllerTestCase{
 
         }
 
+        // Tests for /api/helprequest/claim
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_claim() throws Exception {
+                mockMvc.perform(post("/api/helprequest/claim?id=7").with(csrf()))
+                                .andExpect(status().is(403));
+                verify(helpRequestRepository, times(0)).claim(any(), any(), any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_claim_an_unclaimed_request() throws Exception {
+                HelpRequest claimed = HelpRequest.builder()
+                                .id(7L)
+                                .requesterEmail("hiyori@azarashiparadise.org")
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("azarashi!")
+                                .claimedBy("user@example.org")
+                                .claimedAt(Instant.parse("2022-01-03T00:05:00Z"))
+                                .version(1)
+                                .build();
+
+                when(helpRequestRepository.claim(eq(7L), eq("user@example.org"), any())).thenReturn(1);
+                when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(claimed));
+
+                MvcResult response = mockMvc.perform(post("/api/helprequest/claim?id=7").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                verify(helpRequestRepository, times(1)).claim(eq(7L), eq("user@example.org"), any());
+                HelpRequest unclaimed = claimed.toBuilder().claimedBy(null).claimedAt(null).build();
+                assertEquals(List.of(EntityChangedEvent.updated(HelpRequest.class, 7L, unclaimed, claimed)),
+                                events.stream(EntityChangedEvent.class).toList());
+                assertEquals(mapper.writeValueAsString(claimed), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void claiming_a_request_someone_else_has_is_a_conflict() throws Exception {
+                HelpRequest taken = HelpRequest.builder()
+                                .id(7L)
+                                .requesterEmail("hiyori@azarashiparadise.org")
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("azarashi!")
+                                .claimedBy("ta@example.org")
+                                .build();
+
+                when(helpRequestRepository.claim(eq(7L), eq("user@example.org"), any())).thenReturn(0);
+                when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(taken));
+
+                MvcResult response = mockMvc.perform(post("/api/helprequest/claim?id=7").with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("AlreadyClaimedException", json.get("type"));
+                assertEquals("HelpRequest with id 7 was already claimed by ta@example.org", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void claiming_a_missing_request_is_not_found() throws Exception {
+                when(helpRequestRepository.claim(eq(7L), any(), any())).thenReturn(0);
+                when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                mockMvc.perform(post("/api/helprequest/claim?id=7").with(csrf()))
+                                .andExpect(status().isNotFound());
+        }
+
+        // Tests for /api/helprequest/stats
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_get_stats() throws Exception {
+                mockMvc.perform(get("/api/helprequest/stats"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_stats_without_a_database_query() throws Exception {
+                HelpQueueStats stats = HelpQueueStats.builder()
+                                .open(3)
+                                .openByTeam(Map.of("6", 3L))
+                                .openByTable(Map.of("3", 3L))
+                                .oldestOpenId(15L)
+                                .oldestOpenRequestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .solvesLastMinute(2)
+                                .solvesPerMinute(1.5)
+                                .solvesPerMinuteWindowMinutes(15)
+                                .build();
+                when(helpQueueStatsService.getStats()).thenReturn(stats);
+
+                MvcResult response = mockMvc.perform(get("/api/helprequest/stats"))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals(mapper.writeValueAsString(stats), response.getResponse().getContentAsString());
+                verify(helpRequestRepository, times(0)).findAll();
+        }
+
+        // Tests for /api/helprequest/heatmap
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_get_the_heatmap() throws Exception {
+                mockMvc.perform(get("/api/helprequest/heatmap?from=2022-01-03&to=2022-01-09"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_the_heatmap_from_the_rollups() throws Exception {
+                LocalDate from = LocalDate.parse("2022-01-03");
+                LocalDate to = LocalDate.parse("2022-01-09");
+                Heatmap heatmap = Heatmap.builder().from(from).to(to).requests(3).solved(1).cells(List.of()).build();
+                when(helpRequestRollupService.heatmap(from, to)).thenReturn(heatmap);
+
+                MvcResult response = mockMvc.perform(get("/api/helprequest/heatmap?from=2022-01-03&to=2022-01-09"))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals(mapper.writeValueAsString(heatmap), response.getResponse().getContentAsString());
+                verify(helpRequestRepository, times(0)).findAll();
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_heatmap_that_ends_before_it_starts_is_a_bad_request() throws Exception {
+                mockMvc.perform(get("/api/helprequest/heatmap?from=2022-01-09&to=2022-01-03"))
+                                .andExpect(status().isBadRequest());
+                verify(helpRequestRollupService, times(0)).heatmap(any(), any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_rebuild_the_heatmap_rollups() throws Exception {
+                when(helpRequestRollupService.backfill()).thenReturn(42);
+
+                MvcResult response = mockMvc.perform(post("/api/helprequest/heatmap/rebuild").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals("rebuilt 42 hourly rollups", responseToJson(response).get("message"));
+        }
+
+        // Tests for /api/helprequest/analytics
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_get_analytics() throws Exception {
+                mockMvc.perform(get("/api/helprequest/analytics?from=2022-01-03&to=2022-03-18"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_analytics_from_the_sketches() throws Exception {
+                LocalDate from = LocalDate.parse("2022-01-03");
+                LocalDate to = LocalDate.parse("2022-03-18");
+                HelpRequestAnalytics analytics = HelpRequestAnalytics.builder()
+                                .from(from)
+                                .to(to)
+                                .distinctRequesters(212)
+                                .distinctRequestersError(0.01625)
+                                .waits(1830)
+                                .waitSecondsP50(302L)
+                                .waitSecondsP90(1204L)
+                                .waitSecondsP99(3624L)
+                                .build();
+                when(helpRequestAnalyticsService.analytics(from, to)).thenReturn(analytics);
+
+                MvcResult response = mockMvc.perform(get("/api/helprequest/analytics?from=2022-01-03&to=2022-03-18"))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals(mapper.writeValueAsString(analytics), response.getResponse().getContentAsString());
+                verify(helpRequestRepository, times(0)).findAll();
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void analytics_that_end_before_they_start_are_a_bad_request() throws Exception {
+                mockMvc.perform(get("/api/helprequest/analytics?from=2022-03-18&to=2022-01-03"))
+                                .andExpect(status().isBadRequest());
+                verify(helpRequestAnalyticsService, times(0)).analytics(any(), any());
+        }
+
+        // Tests for /api/helprequest/overdue/stream
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_stream_overdue_alarms() throws Exception {
+                mockMvc.perform(get("/api/helprequest/overdue/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_subscribe_to_overdue_alarms() throws Exception {
+                when(sseSlaAlarmSink.subscribe()).thenReturn(new SseEmitter(0L));
+
+                mockMvc.perform(get("/api/helprequest/overdue/stream"))
+                                .andExpect(request().asyncStarted());
+                verify(sseSlaAlarmSink, times(1)).subscribe();
+        }
+
+        // Tests for /api/helprequest/{id}/similar and /api/helprequest/clusters
+
+        @Test
+        public void logged_out_users_cannot_get_similar_requests() throws Exception {
+                mockMvc.perform(get("/api/helprequest/7/similar"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_similar_requests_most_similar_first() throws Exception {
+                HelpRequest asked = HelpRequest.builder().id(7L).explanation("storybook won't build").build();
+                HelpRequest close = HelpRequest.builder().id(8L).explanation("storybook wont build").build();
+                HelpRequest closer = HelpRequest.builder().id(9L).explanation("Storybook won't build").build();
+                when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.of(asked));
+                when(similarQuestionsService.similar(eq(asked), eq(10)))
+                                .thenReturn(List.of(new MinHashLsh.Match<>(9L, 0.95), new MinHashLsh.Match<>(8L, 0.7)));
+                when(helpRequestRepository.findAllById(any())).thenReturn(List.of(close, closer));
+
+                MvcResult response = mockMvc.perform(get("/api/helprequest/7/similar"))
+                                .andExpect(status().isOk()).andReturn();
+
+                String expectedJson = mapper.writeValueAsString(List.of(
+                                SimilarHelpRequest.builder().helpRequest(closer).similarity(0.95).build(),
+                                SimilarHelpRequest.builder().helpRequest(close).similarity(0.7).build()));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+                verify(helpRequestRepository, times(1)).findAllById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void similar_requests_of_a_missing_request_is_not_found() throws Exception {
+                when(helpRequestRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                mockMvc.perform(get("/api/helprequest/7/similar"))
+                                .andExpect(status().isNotFound());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_gets_clusters() throws Exception {
+                when(similarQuestionsService.clusters()).thenReturn(List.of(List.of(1L, 2L, 3L), List.of(5L, 8L)));
+
+                MvcResult response = mockMvc.perform(get("/api/helprequest/clusters"))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals("[[1,2,3],[5,8]]", response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/helprequest/position
+
+        @Test
+        public void logged_out_users_cannot_get_a_position() throws Exception {
+                mockMvc.perform(get("/api/helprequest/position?id=7"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_position_without_a_database_query() throws Exception {
+                QueuePosition position = QueuePosition.builder()
+                                .id(7L).position(3).waiting(12).estimatedWaitSeconds(240L).build();
+                when(helpQueueService.position(eq(7L))).thenReturn(Optional.of(position));
+
+                MvcResult response = mockMvc.perform(get("/api/helprequest/position?id=7"))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals(mapper.writeValueAsString(position), response.getResponse().getContentAsString());
+                verify(helpRequestRepository, times(0)).findById(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void position_of_a_request_that_is_not_waiting_is_not_found() throws Exception {
+                when(helpQueueService.position(eq(7L))).thenReturn(Optional.empty());
+
+                mockMvc.perform(get("/api/helprequest/position?id=7"))
+                                .andExpect(status().isNotFound());
+        }
+
+        // Tests for /api/helprequest/next
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_take_the_next_request() throws Exception {
+                mockMvc.perform(post("/api/helprequest/next").with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_the_next_waiting_request_claimed_for_them() throws Exception {
+                HelpRequest next = HelpRequest.builder()
+                                .id(7L)
+                                .requesterEmail("hiyori@azarashiparadise.org")
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .explanation("azarashi!")
+                                .claimedBy("user@example.org")
+                                .claimedAt(Instant.parse("2022-01-03T00:05:00Z"))
+                                .build();
+
+                when(helpQueueService.dispatch(eq("user@example.org"))).thenReturn(Optional.of(next));
+
+                MvcResult response = mockMvc.perform(post("/api/helprequest/next").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                assertEquals(mapper.writeValueAsString(next), response.getResponse().getContentAsString());
+                HelpRequest unclaimed = next.toBuilder().claimedBy(null).claimedAt(null).build();
+                assertEquals(List.of(EntityChangedEvent.updated(HelpRequest.class, 7L, unclaimed, next)),
+                                events.stream(EntityChangedEvent.class).toList());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void next_is_no_content_when_nobody_is_waiting() throws Exception {
+                when(helpQueueService.dispatch(any())).thenReturn(Optional.empty());
+
+                mockMvc.perform(post("/api/helprequest/next").with(csrf()))
+                                .andExpect(status().isNoContent());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void creates_and_deletes_are_published() throws Exception {
+                HelpRequest helpRequest = HelpRequest.builder()
+                                .id(15L)
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest));
+                when(helpRequestRepository.save(any())).thenReturn(helpRequest);
+
+                mockMvc.perform(post("/api/helprequest/post?requesterEmail=a@ucsb.edu&teamId=6&tableOrBreakoutRoom=3&explanation=x&solved=false&requestTime=2022-01-03T00:00:00")
+                                .with(csrf())).andExpect(status().isOk());
+                mockMvc.perform(delete("/api/helprequest?id=15").with(csrf())).andExpect(status().isOk());
+
+                assertEquals(List.of(
+                                EntityChangedEvent.created(HelpRequest.class, 15L, helpRequest),
+                                EntityChangedEvent.deleted(HelpRequest.class, 15L, helpRequest)),
+                                events.stream(EntityChangedEvent.class).toList());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void solving_a_request_by_put_records_when_it_was_solved() throws Exception {
+                LocalDateTime requestTime = LocalDateTime.parse("2022-01-03T00:00:00");
+                HelpRequest helpRequest = HelpRequest.builder()
+                                .id(15L)
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(requestTime)
+                                .solved(false)
+                                .build();
+                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest));
+                HelpRequest solved = HelpRequest.builder()
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(requestTime)
+                                .solved(true)
+                                .build();
+
+                Instant before = Instant.now();
+                mockMvc.perform(put("/api/helprequest?id=15")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(mapper.writeValueAsString(solved))
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                ArgumentCaptor<HelpRequest> saved = ArgumentCaptor.forClass(HelpRequest.class);
+                verify(helpRequestRepository).save(saved.capture());
+                Instant solvedAt = saved.getValue().getSolvedAt();
+                assertTrue(!solvedAt.isBefore(before) && !solvedAt.isAfter(Instant.now()));
+                HelpRequest previous = HelpRequest.builder()
+                                .id(15L)
+                                .teamId("6")
+                                .tableOrBreakoutRoom("3")
+                                .requestTime(requestTime)
+                                .solved(false)
+                                .build();
+                assertEquals(List.of(EntityChangedEvent.updated(HelpRequest.class, 15L, previous, saved.getValue())),
+                                events.stream(EntityChangedEvent.class).toList());
+        }
+
+        // Tests for /api/helprequest/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/helprequest/batch?ids=1,2"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_ids_reported() throws Exception {
+
+                // arrange
+                HelpRequest first = HelpRequest.builder().id(1L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-1").build();
+                HelpRequest second = HelpRequest.builder().id(2L).requesterEmail("b@ucsb.edu").teamId("s22-5pm-2").build();
+
+                // repository returns rows in its own order
+                when(helpRequestRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequest/batch?ids=2,3,1,2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of(2L, 3L, 1L))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<HelpRequest>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of(3L))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/helprequest/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/helprequest/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                HelpRequest changed = HelpRequest.builder().id(1L).requesterEmail("a@ucsb.edu").teamId("s22-5pm-1").build();
+                Tombstone tombstone = Tombstone.builder().entityType("HelpRequest").entityId("2").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(helpRequestRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("HelpRequest", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/helprequest/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<HelpRequest>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of(2L))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
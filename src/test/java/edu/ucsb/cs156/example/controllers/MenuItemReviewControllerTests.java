@@ -5,14 +5,40 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
-
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.ReviewAnalytics;
+import edu.ucsb.cs156.example.models.ReviewGroup;
+import edu.ucsb.cs156.example.models.ReviewBombingState;
+import edu.ucsb.cs156.example.models.SuspectItem;
+import edu.ucsb.cs156.example.models.ReviewPartitions;
+import edu.ucsb.cs156.example.models.Trending;
+import edu.ucsb.cs156.example.models.TrendingItem;
+import edu.ucsb.cs156.example.services.MenuItemReviewPartitionService;
+import edu.ucsb.cs156.example.services.ReviewBombingService;
+import edu.ucsb.cs156.example.services.ReviewColumnStoreService;
+import edu.ucsb.cs156.example.services.ReviewIngestionService;
+import edu.ucsb.cs156.example.services.TrendingService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -25,7 +51,9 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -33,14 +61,32 @@ import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = MenuItemReviewController.class)
 @Import(TestConfig.class)
+@RecordApplicationEvents
 public class MenuItemReviewControllerTests extends ControllerTestCase { 
-    
+        @Autowired
+        ApplicationEvents events;
+
         @MockBean
         MenuItemReviewRepository menuItemReviewRepository;
     
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        MenuItemReviewPartitionService menuItemReviewPartitions;
+
+        @MockBean
+        ReviewIngestionService reviewIngestion;
+
+        @MockBean
+        TrendingService trending;
+
+        @MockBean
+        ReviewBombingService reviewBombing;
+
+        @MockBean
+        ReviewColumnStoreService reviewColumns;
+
         @Test
         public void logged_out_users_cannot_get_index() throws Exception {
             mockMvc.perform(get("/api/menuitemreview/all"))
@@ -138,12 +184,181 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 .andExpect(status().is(200)).andReturn();
 
             // assert
+            verify(menuItemReviewPartitions, times(1)).route(LocalDateTime.of(2023, 1, 1, 0, 0, 0));
             verify(menuItemReviewRepository, times(1)).save(first);
+            assertEquals(List.of(EntityChangedEvent.created(MenuItemReview.class, 0L, first)),
+                events.stream(EntityChangedEvent.class).toList());
             String expectedJson = mapper.writeValueAsString(first);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void a_retried_post_with_the_same_idempotency_key_is_only_saved_once() throws Exception {
+            // arrange
+            MenuItemReview first = MenuItemReview.builder()
+                .id(3L)
+                .itemId(1L)
+                .reviewerEmail("a@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2023, 1, 1, 0, 0, 0))
+                .comments("First")
+                .build();
+
+            when(menuItemReviewRepository.save(any())).thenReturn(first);
+            String url = "/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First";
+
+            // act
+            mockMvc.perform(post(url).header("Idempotency-Key", "abc").with(csrf()))
+                .andExpect(status().is(200));
+            MvcResult retry = mockMvc.perform(post(url).header("Idempotency-Key", "abc").with(csrf()))
+                .andExpect(status().is(200)).andReturn();
+
+            // assert
+            verify(menuItemReviewRepository, times(1)).save(any());
+            assertEquals(1, events.stream(EntityChangedEvent.class).count());
+            assertEquals(mapper.writeValueAsString(first), retry.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void a_blank_idempotency_key_is_ignored() throws Exception {
+            // arrange
+            when(menuItemReviewRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+            String url = "/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First";
+
+            // act
+            mockMvc.perform(post(url).header("Idempotency-Key", " ").with(csrf()))
+                .andExpect(status().is(200));
+            mockMvc.perform(post(url).header("Idempotency-Key", " ").with(csrf()))
+                .andExpect(status().is(200));
+
+            // assert
+            verify(menuItemReviewRepository, times(2)).save(any());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void with_async_ingestion_a_post_is_queued_and_accepted() throws Exception {
+            // arrange
+            MenuItemReview first = MenuItemReview.builder()
+                .itemId(1L)
+                .reviewerEmail("a@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2023, 1, 1, 0, 0, 0))
+                .comments("First")
+                .build();
+            when(reviewIngestion.isAsync()).thenReturn(true);
+            when(reviewIngestion.offer(any())).thenReturn(true);
+
+            // act
+            MvcResult response = mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First")
+                    .with(csrf()))
+                .andExpect(status().isAccepted()).andReturn();
+
+            // assert
+            verify(reviewIngestion, times(1)).offer(first);
+            // the writer publishes it once it is inserted
+            assertEquals(0, events.stream(EntityChangedEvent.class).count());
+            verify(menuItemReviewRepository, times(0)).save(any());
+            Map<String, Object> json = responseToJson(response);
+            assertEquals("review of item 1 accepted", json.get("message"));
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void with_async_ingestion_a_full_queue_turns_posts_away() throws Exception {
+            when(reviewIngestion.isAsync()).thenReturn(true);
+            when(reviewIngestion.offer(any())).thenReturn(false);
+
+            mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First")
+                    .with(csrf()))
+                .andExpect(status().isServiceUnavailable());
+
+            verify(menuItemReviewRepository, times(0)).save(any());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void a_review_too_long_to_store_is_refused_before_it_is_queued() throws Exception {
+            when(reviewIngestion.isAsync()).thenReturn(true);
+            String longText = "x".repeat(256);
+
+            MvcResult response = mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=" + longText)
+                    .with(csrf()))
+                .andExpect(status().isBadRequest()).andReturn();
+            mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=" + longText + "&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First")
+                    .with(csrf()))
+                .andExpect(status().isBadRequest());
+
+            verify(reviewIngestion, times(0)).offer(any());
+            verify(reviewBombing, times(0)).screen(any());
+            assertEquals("reviewerEmail and comments must be at most 255 characters", response.getResponse().getErrorMessage());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void a_review_during_a_suspected_bombing_is_saved_flagged() throws Exception {
+            // arrange
+            MenuItemReview flagged = MenuItemReview.builder()
+                .itemId(1L)
+                .reviewerEmail("a@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2023, 1, 1, 0, 0, 0))
+                .comments("First")
+                .flagged(true)
+                .build();
+            when(reviewBombing.screen(any())).thenReturn(ReviewBombingService.Verdict.FLAG);
+            when(menuItemReviewRepository.save(eq(flagged))).thenReturn(flagged);
+
+            // act
+            MvcResult response = mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First")
+                    .with(csrf()))
+                .andExpect(status().is(200)).andReturn();
+
+            // assert
+            verify(menuItemReviewRepository, times(1)).save(flagged);
+            // which keeps it out of trending
+            assertEquals(List.of(EntityChangedEvent.created(MenuItemReview.class, 0L, flagged)),
+                events.stream(EntityChangedEvent.class).toList());
+            assertEquals(mapper.writeValueAsString(flagged), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void a_review_the_detector_refuses_is_turned_away_and_not_saved() throws Exception {
+            when(reviewBombing.screen(any())).thenReturn(ReviewBombingService.Verdict.REFUSE);
+
+            MvcResult response = mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First")
+                    .with(csrf()))
+                .andExpect(status().isTooManyRequests()).andReturn();
+
+            assertEquals("too many reviews like this lately; try again later", response.getResponse().getErrorMessage());
+            verify(menuItemReviewRepository, times(0)).save(any());
+            assertEquals(0, events.stream(EntityChangedEvent.class).count());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void with_async_ingestion_a_refused_review_is_not_queued() throws Exception {
+            when(reviewIngestion.isAsync()).thenReturn(true);
+            when(reviewBombing.screen(any())).thenReturn(ReviewBombingService.Verdict.REFUSE);
+
+            mockMvc.perform(
+                post("/api/menuitemreview/post?itemId=1&reviewerEmail=a@ucsb.edu&stars=1&dateReviewed=2023-01-01T00:00:00&comments=First")
+                    .with(csrf()))
+                .andExpect(status().isTooManyRequests());
+
+            verify(reviewIngestion, times(0)).offer(any());
+        }
+
         @WithMockUser(roles = {"USER"})
         @Test
         public void logged_in_user_can_get_by_id() throws Exception {
@@ -222,11 +437,71 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
             // assert
             verify(menuItemReviewRepository, times(1)).findById(1L);
+            verify(menuItemReviewPartitions, times(1)).route(LocalDateTime.of(2023, 1, 2, 0, 0, 0));
             verify(menuItemReviewRepository, times(1)).save(second);
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void admin_can_clear_a_reviews_flag() throws Exception {
+            // arrange
+            MenuItemReview flagged = MenuItemReview.builder()
+                .id(7L)
+                .itemId(1L)
+                .reviewerEmail("a@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2023, 1, 1, 0, 0, 0))
+                .comments("First")
+                .flagged(true)
+                .build();
+            MenuItemReview cleared = flagged.toBuilder().flagged(false).build();
+            when(menuItemReviewRepository.findById(eq(7L))).thenReturn(Optional.of(flagged.toBuilder().build()));
+
+            // act
+            MvcResult response = mockMvc.perform(put("/api/menuitemreview/unflag?id=7").with(csrf()))
+                .andExpect(status().is(200)).andReturn();
+
+            // assert
+            verify(menuItemReviewRepository, times(1)).save(cleared);
+            assertEquals(List.of(EntityChangedEvent.updated(MenuItemReview.class, 7L, flagged, cleared)),
+                events.stream(EntityChangedEvent.class).toList());
+            assertEquals(mapper.writeValueAsString(cleared), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void clearing_the_flag_of_an_unflagged_review_changes_nothing() throws Exception {
+            // arrange
+            MenuItemReview review = MenuItemReview.builder().id(7L).itemId(1L).stars(4).build();
+            when(menuItemReviewRepository.findById(eq(7L))).thenReturn(Optional.of(review));
+
+            // act
+            mockMvc.perform(put("/api/menuitemreview/unflag?id=7").with(csrf()))
+                .andExpect(status().is(200));
+
+            // assert
+            verify(menuItemReviewRepository, times(0)).save(any());
+            assertEquals(0, events.stream(EntityChangedEvent.class).count());
+        }
+
+        @WithMockUser(roles = {"ADMIN", "USER"})
+        @Test
+        public void admin_cannot_clear_the_flag_of_a_review_that_does_not_exist() throws Exception {
+            when(menuItemReviewRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+            mockMvc.perform(put("/api/menuitemreview/unflag?id=7").with(csrf()))
+                .andExpect(status().isNotFound());
+        }
+
+        @WithMockUser(roles = {"USER"})
+        @Test
+        public void only_admins_can_clear_a_flag() throws Exception {
+            mockMvc.perform(put("/api/menuitemreview/unflag?id=7").with(csrf()))
+                .andExpect(status().is(403));
+        }
+
         @WithMockUser(roles = {"ADMIN", "USER"})
         @Test
         public void admin_cannot_edit_menuitemreview_when_not_found() throws Exception {
@@ -285,6 +560,29 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             assertEquals("MenuItemReview with id 1 deleted", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_delete_menuitemreview_with_a_stale_if_match() throws Exception {
+            MenuItemReview menuItemReview = MenuItemReview.builder()
+                .itemId(1L)
+                .reviewerEmail("a@ucsb.edu")
+                .stars(1)
+                .dateReviewed(LocalDateTime.of(2023, 1, 1, 0, 0, 0))
+                .comments("First")
+                .version(5)
+                .build();
+
+            when(menuItemReviewRepository.findById(eq(1L))).thenReturn(Optional.of(menuItemReview));
+
+            mockMvc.perform(
+                delete("/api/menuitemreview?id=1")
+                    .header("If-Match", "\"4\"")
+                    .with(csrf()))
+                .andExpect(status().isPreconditionFailed());
+
+            verify(menuItemReviewRepository, times(0)).delete(any());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_delete_menuitemreview_not_found() throws Exception {
@@ -302,4 +600,294 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
             Map<String, Object> json = responseToJson(response);
             assertEquals("MenuItemReview with id 1 not found", json.get("message"));
         }
-}
\ No newline at end of file
+
+        // Tests for /api/menuitemreview/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/batch?ids=1,2"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_ids_reported() throws Exception {
+
+                // arrange
+                MenuItemReview first = MenuItemReview.builder().id(1L).itemId(4L).stars(5).build();
+                MenuItemReview second = MenuItemReview.builder().id(2L).itemId(4L).stars(2).build();
+
+                // repository returns rows in its own order
+                when(menuItemReviewRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/batch?ids=2,3,1,2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of(2L, 3L, 1L))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<MenuItemReview>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of(3L))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/menuitemreview/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                MenuItemReview changed = MenuItemReview.builder().id(1L).itemId(4L).stars(5).build();
+                Tombstone tombstone = Tombstone.builder().entityType("MenuItemReview").entityId("2").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(menuItemReviewRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("MenuItemReview", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<MenuItemReview>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of(2L))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/menuitemreview/recent and /partitions
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_recent_reviews() throws Exception {
+
+                // arrange
+                MenuItemReview recent = MenuItemReview.builder().id(1L).itemId(4L).stars(5).build();
+                when(menuItemReviewRepository.findByDateReviewedGreaterThanEqual(any())).thenReturn(List.of(recent));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/recent?days=3"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                ArgumentCaptor<LocalDateTime> since = ArgumentCaptor.forClass(LocalDateTime.class);
+                verify(menuItemReviewRepository, times(1)).findByDateReviewedGreaterThanEqual(since.capture());
+                Duration ago = Duration.between(since.getValue(), LocalDateTime.now());
+                assertTrue(ago.compareTo(Duration.ofDays(3)) >= 0 && ago.compareTo(Duration.ofDays(3).plusMinutes(1)) < 0);
+                assertEquals(mapper.writeValueAsString(List.of(recent)), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void recent_reviews_reject_an_out_of_range_number_of_days() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/recent?days=0"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/menuitemreview/recent?days=367"))
+                                .andExpect(status().isBadRequest());
+                verify(menuItemReviewRepository, times(0)).findByDateReviewedGreaterThanEqual(any());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_users_cannot_see_or_drop_partitions() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/partitions"))
+                                .andExpect(status().is(403));
+                mockMvc.perform(delete("/api/menuitemreview/partitions?before=2023-01").with(csrf()))
+                                .andExpect(status().is(403));
+                verify(menuItemReviewPartitions, times(0)).expire(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_list_partitions() throws Exception {
+
+                // arrange
+                ReviewPartitions partitions = ReviewPartitions.builder()
+                                .mode("native")
+                                .months(List.of(YearMonth.of(2023, 1), YearMonth.of(2023, 2)))
+                                .build();
+                when(menuItemReviewPartitions.partitions()).thenReturn(partitions);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/partitions"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(partitions), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_drop_old_partitions() throws Exception {
+
+                // arrange
+                when(menuItemReviewPartitions.expire(YearMonth.of(2023, 1))).thenReturn(2);
+
+                // act
+                MvcResult response = mockMvc.perform(delete("/api/menuitemreview/partitions?before=2023-01").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("dropped 2 monthly partitions of reviews before 2023-01", json.get("message"));
+        }
+
+        // Tests for /api/menuitemreview/trending
+
+        @Test
+        public void logged_out_users_cannot_get_trending() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/trending"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_top_k_trending_items_of_a_window() throws Exception {
+
+                // arrange
+                Trending top = Trending.builder()
+                                .window("1h")
+                                .computedAt(Instant.parse("2023-01-01T12:00:00Z"))
+                                .items(List.of(TrendingItem.builder().itemId(4L).score(23).reviews(5).averageStars(4.6).build()))
+                                .build();
+                when(trending.isWindow("1h")).thenReturn(true);
+                when(trending.getMaxK()).thenReturn(50);
+                when(trending.trending("1h", 10)).thenReturn(top);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/trending?window=1h&k=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(top), response.getResponse().getContentAsString());
+                verify(menuItemReviewRepository, times(0)).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void trending_rejects_unknown_windows_and_out_of_range_k() throws Exception {
+
+                // arrange
+                when(trending.isWindow("1h")).thenReturn(true);
+                when(trending.getWindows()).thenReturn(List.of("15m", "1h"));
+                when(trending.getMaxK()).thenReturn(50);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/trending?window=2d&k=10"))
+                                .andExpect(status().isBadRequest()).andReturn();
+                mockMvc.perform(get("/api/menuitemreview/trending?window=1h&k=0"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/menuitemreview/trending?window=1h&k=51"))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                assertEquals("window must be one of 15m, 1h", response.getResponse().getErrorMessage());
+                verify(trending, times(0)).trending(any(), anyInt());
+        }
+
+        // Tests for /api/menuitemreview/bombing
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_see_the_bombing_detector() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/bombing"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_see_the_bombing_detector() throws Exception {
+
+                // arrange
+                ReviewBombingState state = ReviewBombingState.builder()
+                                .asOf(Instant.parse("2023-01-01T12:00:00Z"))
+                                .windowMinutes(10)
+                                .action("flag")
+                                .screened(120)
+                                .flagged(4)
+                                .throttled(0)
+                                .items(List.of(SuspectItem.builder().itemId(7L).badReviews(19).reviews(21)
+                                                .since(Instant.parse("2023-01-01T11:55:00Z"))
+                                                .until(Instant.parse("2023-01-01T12:29:00Z")).build()))
+                                .reviewers(List.of())
+                                .build();
+                when(reviewBombing.state()).thenReturn(state);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/bombing"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(state), response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/menuitemreview/analytics
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void regular_users_cannot_run_review_analytics() throws Exception {
+                mockMvc.perform(get("/api/menuitemreview/analytics?groupBy=station"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_get_average_stars_by_station_by_week() throws Exception {
+
+                // arrange
+                ReviewAnalytics answer = ReviewAnalytics.builder()
+                                .groupBy(List.of("station", "week"))
+                                .asOf(Instant.parse("2023-01-09T12:00:00Z"))
+                                .rows(3)
+                                .matched(2)
+                                .elapsedMicros(40)
+                                .truncated(false)
+                                .groups(List.of(ReviewGroup.builder()
+                                                .key(Map.of("station", "Grill", "week", LocalDate.of(2023, 1, 2)))
+                                                .reviews(2)
+                                                .averageStars(3.5)
+                                                .build()))
+                                .build();
+                ReviewColumnStoreService.Filter filter = new ReviewColumnStoreService.Filter(
+                                LocalDate.of(2023, 1, 1), LocalDate.of(2023, 1, 31), null, "ortega", null, null);
+                when(reviewColumns.query(List.of(ReviewColumnStoreService.Dimension.STATION, ReviewColumnStoreService.Dimension.WEEK), filter))
+                                .thenReturn(answer);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/analytics?groupBy=station,week&from=2023-01-01&to=2023-01-31&commons=ortega"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(answer), response.getResponse().getContentAsString());
+                verify(menuItemReviewRepository, times(0)).findAll();
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void review_analytics_rejects_unknown_dimensions_too_many_dimensions_and_backwards_dates() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/menuitemreview/analytics?groupBy=station,flavor"))
+                                .andExpect(status().isBadRequest()).andReturn();
+                mockMvc.perform(get("/api/menuitemreview/analytics?groupBy=station,week,stars,item"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/menuitemreview/analytics?from=2023-02-01&to=2023-01-01"))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                assertEquals("can't group by flavor", response.getResponse().getErrorMessage());
+                verify(reviewColumns, times(0)).query(any(), any());
+        }
+}
@@ -7,9 +7,14 @@ import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
 import edu.ucsb.cs156.example.entities.RecRequest;
 import edu.ucsb.cs156.example.repositories.RecRequestRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -346,4 +351,70 @@ public class RecRequestControllerTests extends ControllerTestCase {
                 assertEquals("RecRequest with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/recommendationrequest/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/recommendationrequest/batch?ids=1,2"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_ids_reported() throws Exception {
+
+                // arrange
+                RecRequest first = RecRequest.builder().id(1L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").build();
+                RecRequest second = RecRequest.builder().id(2L).requesterEmail("b@ucsb.edu").professorEmail("p@ucsb.edu").build();
+
+                // repository returns rows in its own order
+                when(recRequestRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/recommendationrequest/batch?ids=2,3,1,2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recRequestRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of(2L, 3L, 1L))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<RecRequest>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of(3L))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/recommendationrequest/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/recommendationrequest/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                RecRequest changed = RecRequest.builder().id(1L).requesterEmail("a@ucsb.edu").professorEmail("p@ucsb.edu").build();
+                Tombstone tombstone = Tombstone.builder().entityType("RecRequest").entityId("2").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(recRequestRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("RecRequest", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/recommendationrequest/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recRequestRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<RecRequest>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of(2L))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
@@ -5,17 +5,40 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,22 +49,49 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebMvcTest(controllers = UCSBDatesController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, UCSBDatesControllerTests.Transactions.class })
+@RecordApplicationEvents
 public class UCSBDatesControllerTests extends ControllerTestCase {
 
+        // a web slice has no transaction support of its own; this turns on
+        // @Transactional so the tests can see where a delete's transaction ends
+        @TestConfiguration
+        @EnableTransactionManagement
+        static class Transactions {
+        }
+
+        @Autowired
+        ApplicationEvents events;
+
         @MockBean
         UCSBDateRepository ucsbDateRepository;
 
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        PlatformTransactionManager transactionManager;
+
+        SimpleTransactionStatus transaction;
+
+        @BeforeEach
+        public void stubTransactions() {
+                transaction = new SimpleTransactionStatus();
+                when(transactionManager.getTransaction(any())).thenReturn(transaction);
+        }
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -108,6 +158,40 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_is_served_from_cache_until_updated() throws Exception {
+
+                // arrange
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+                MvcResult cached = mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findById(eq(7L));
+                assertEquals(mapper.writeValueAsString(ucsbDate), cached.getResponse().getContentAsString());
+
+                // an update evicts the cached bytes
+                mockMvc.perform(
+                                put("/api/ucsbdates?id=7")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(ucsbDate))
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isOk());
+                verify(ucsbDateRepository, times(3)).findById(eq(7L));
+        }
+
         @WithMockUser(roles = { "USER" })
         @Test
         public void test_that_logged_in_user_can_get_by_id_when_the_id_does_not_exist() throws Exception {
@@ -128,6 +212,25 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 7 not found", json.get("message"));
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void repeated_lookups_of_a_missing_id_only_reach_the_database_once() throws Exception {
+
+                // arrange
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates?id=7")).andExpect(status().isNotFound());
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findById(eq(7L));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("EntityNotFoundException", json.get("type"));
+                assertEquals("UCSBDate with id 7 not found", json.get("message"));
+        }
+
         @WithMockUser(roles = { "USER" })
         @Test
         public void logged_in_user_can_get_all_ucsbdates() throws Exception {
@@ -166,6 +269,66 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_all_is_served_from_cache_until_a_write() throws Exception {
+
+                // arrange
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findAll()).thenReturn(new ArrayList<>(Arrays.asList(ucsbDate1)));
+                when(ucsbDateRepository.save(eq(ucsbDate1))).thenReturn(ucsbDate1);
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates/all")).andExpect(status().isOk());
+                MvcResult cached = mockMvc.perform(get("/api/ucsbdates/all")).andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAll();
+                assertEquals(mapper.writeValueAsString(Arrays.asList(ucsbDate1)), cached.getResponse().getContentAsString());
+
+                // a write invalidates the cached listing
+                mockMvc.perform(
+                                post("/api/ucsbdates/post?name=firstDayOfClasses&quarterYYYYQ=20222&localDateTime=2022-01-03T00:00:00")
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+                mockMvc.perform(get("/api/ucsbdates/all")).andExpect(status().isOk());
+                verify(ucsbDateRepository, times(2)).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_all_is_gzipped_when_the_client_accepts_it() throws Exception {
+
+                // arrange
+                ArrayList<UCSBDate> dates = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                        dates.add(UCSBDate.builder()
+                                        .name("day" + i)
+                                        .quarterYYYYQ("20222")
+                                        .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00").plusDays(i))
+                                        .build());
+                }
+                when(ucsbDateRepository.findAll()).thenReturn(dates);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/all").header("Accept-Encoding", "gzip, deflate"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Encoding", "gzip"))
+                                .andExpect(header().string("Vary", "Accept-Encoding"))
+                                .andReturn();
+
+                // assert
+                byte[] body = response.getResponse().getContentAsByteArray();
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                        assertEquals(mapper.writeValueAsString(dates), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void an_admin_user_can_post_a_new_ucsbdate() throws Exception {
@@ -194,6 +357,34 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_retried_post_with_the_same_idempotency_key_is_created_and_announced_once() throws Exception {
+                // arrange
+
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .id(12L)
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.save(any())).thenReturn(ucsbDate1);
+                String url = "/api/ucsbdates/post?name=firstDayOfClasses&quarterYYYYQ=20222&localDateTime=2022-01-03T00:00:00";
+
+                // act
+                MvcResult first = mockMvc.perform(post(url).header("Idempotency-Key", "abc").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+                MvcResult retry = mockMvc.perform(post(url).header("Idempotency-Key", "abc").with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).save(any());
+                assertEquals(List.of(EntityChangedEvent.created(UCSBDate.class, 12L, ucsbDate1)),
+                                events.stream(EntityChangedEvent.class).toList());
+                assertEquals(first.getResponse().getContentAsString(), retry.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_can_delete_a_date() throws Exception {
@@ -223,6 +414,45 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_delete_and_its_tombstone_commit_together() throws Exception {
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+
+                mockMvc.perform(delete("/api/ucsbdates?id=15").with(csrf()))
+                                .andExpect(status().isOk());
+
+                InOrder order = inOrder(transactionManager, ucsbDateRepository, tombstoneRepository);
+                order.verify(transactionManager).getTransaction(any());
+                order.verify(ucsbDateRepository).delete(ucsbDate1);
+                order.verify(tombstoneRepository).save(any(Tombstone.class));
+                order.verify(transactionManager).commit(transaction);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_tombstone_that_cannot_be_saved_rolls_the_delete_back() throws Exception {
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(tombstoneRepository.save(any())).thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+                assertThrows(Exception.class,
+                                () -> mockMvc.perform(delete("/api/ucsbdates?id=15").with(csrf())));
+
+                verify(transactionManager).rollback(transaction);
+                verify(transactionManager, never()).commit(any());
+                assertEquals(List.of(), events.stream(EntityChangedEvent.class).toList());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_tries_to_delete_non_existant_ucsbdate_and_gets_right_error_message()
@@ -315,4 +545,291 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for ETag / If-Match
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void get_by_id_sends_the_version_as_etag() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(3)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(7L))).thenReturn(Optional.of(ucsbDate));
+
+                mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+                // and again from the cache
+                mockMvc.perform(get("/api/ucsbdates?id=7"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+                verify(ucsbDateRepository, times(1)).findById(eq(7L));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_with_a_matching_if_match() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(3)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDate));
+
+                mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"2\", \"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(ucsbDate))
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                verify(ucsbDateRepository, times(1)).save(ucsbDate);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void edit_with_a_stale_if_match_is_rejected_without_saving() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(3)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDate));
+
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"2\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(ucsbDate))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed()).andReturn();
+
+                verify(ucsbDateRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("PreconditionFailedException", json.get("type"));
+                assertEquals("UCSBDate with id 67 has changed; its current ETag is \"3\"", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void delete_with_a_stale_if_match_is_rejected() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .version(1)
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate));
+
+                mockMvc.perform(
+                                delete("/api/ucsbdates?id=15")
+                                                .header("If-Match", "\"0\"")
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+
+                verify(ucsbDateRepository, times(0)).delete(any());
+                verify(tombstoneRepository, times(0)).save(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void a_concurrent_write_caught_at_save_is_a_precondition_failure() throws Exception {
+                UCSBDate ucsbDate = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(ucsbDate));
+                when(ucsbDateRepository.save(any()))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(UCSBDate.class, 67L));
+
+                mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(ucsbDate))
+                                                .with(csrf()))
+                                .andExpect(status().isPreconditionFailed());
+        }
+
+        // Tests for /api/ucsbdates/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/batch?ids=1,2"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_ids_reported() throws Exception {
+
+                // arrange
+                UCSBDate first = UCSBDate.builder().id(1L).name("firstDayOfClasses").quarterYYYYQ("20222").build();
+                UCSBDate second = UCSBDate.builder().id(2L).name("lastDayOfClasses").quarterYYYYQ("20222").build();
+
+                // repository returns rows in its own order
+                when(ucsbDateRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/batch?ids=2,3,1,2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of(2L, 3L, 1L))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<UCSBDate>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of(3L))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void an_empty_batch_does_not_query_the_database() throws Exception {
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/batch?ids="))
+                                .andExpect(status().isOk()).andReturn();
+
+                verify(ucsbDateRepository, times(0)).findAllById(any());
+                assertEquals("{\"found\":[],\"missing\":[]}", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_batch_of_more_than_the_limit_is_rejected() throws Exception {
+                String ids = LongStream.rangeClosed(1, ApiController.MAX_BATCH_IDS + 1)
+                                .mapToObj(Long::toString)
+                                .collect(Collectors.joining(","));
+
+                mockMvc.perform(get("/api/ucsbdates/batch?ids=" + ids))
+                                .andExpect(status().isBadRequest());
+
+                verify(ucsbDateRepository, times(0)).findAllById(any());
+        }
+
+        // Tests for /api/ucsbdates/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/ucsbdates/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                UCSBDate changed = UCSBDate.builder().id(1L).name("firstDayOfClasses").quarterYYYYQ("20222").build();
+                Tombstone tombstone = Tombstone.builder().entityType("UCSBDate").entityId("2").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(ucsbDateRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("UCSBDate", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<UCSBDate>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of(2L))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void changes_with_a_token_this_database_did_not_hand_out_starts_over() throws Exception {
+
+                // arrange
+                UCSBDate changed = UCSBDate.builder().id(1L).name("noon on Jan 3").build();
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(ucsbDateRepository.findChangedBetween(0L, 1500L)).thenReturn(List.of(changed));
+
+                // act: e.g. a token that was epoch millis before the change clock
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/changes?since=1650000000000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findChangedBetween(0L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<UCSBDate>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of())
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void changes_with_an_up_to_date_token_does_not_query() throws Exception {
+
+                // arrange
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/changes?since=1500"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).findChangedBetween(anyLong(), anyLong());
+                verify(tombstoneRepository, times(0)).findDeletedBetween(any(), anyLong(), anyLong());
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<UCSBDate>builder()
+                                .changed(List.of())
+                                .deleted(List.of())
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void changes_before_anything_was_stamped_is_empty() throws Exception {
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/changes"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).findChangedBetween(anyLong(), anyLong());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(0, ((Number) json.get("token")).longValue());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void deleting_a_date_leaves_a_tombstone() throws Exception {
+
+                // arrange
+                UCSBDate ucsbDate = UCSBDate.builder().id(15L).name("firstDayOfClasses").quarterYYYYQ("20222").build();
+                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate));
+
+                // act
+                mockMvc.perform(delete("/api/ucsbdates?id=15").with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                ArgumentCaptor<Tombstone> tombstone = ArgumentCaptor.forClass(Tombstone.class);
+                verify(tombstoneRepository, times(1)).save(tombstone.capture());
+                assertEquals("UCSBDate", tombstone.getValue().getEntityType());
+                assertEquals("15", tombstone.getValue().getEntityId());
+                assertNotNull(tombstone.getValue().getDeletedAt());
+        }
 }
@@ -5,9 +5,14 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -332,4 +337,70 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdiningcommons/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/batch?codes=ortega,carrillo"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_codes_reported() throws Exception {
+
+                // arrange
+                UCSBDiningCommons first = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+                UCSBDiningCommons second = UCSBDiningCommons.builder().code("carrillo").name("Carrillo").build();
+
+                // repository returns rows in its own order
+                when(ucsbDiningCommonsRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/batch?codes=carrillo,portola,ortega,carrillo"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of("carrillo", "portola", "ortega"))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<UCSBDiningCommons>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of("portola"))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/ucsbdiningcommons/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                UCSBDiningCommons changed = UCSBDiningCommons.builder().code("ortega").name("Ortega").build();
+                Tombstone tombstone = Tombstone.builder().entityType("UCSBDiningCommons").entityId("carrillo").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(ucsbDiningCommonsRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("UCSBDiningCommons", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<UCSBDiningCommons>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of("carrillo"))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
 }
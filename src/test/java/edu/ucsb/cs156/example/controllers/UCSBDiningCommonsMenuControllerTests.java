@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.controllers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -13,15 +14,21 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
@@ -29,18 +36,36 @@ import org.springframework.test.web.servlet.MvcResult;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.MenuSearchHit;
+import edu.ucsb.cs156.example.models.RankedMenu;
+import edu.ucsb.cs156.example.models.RankedMenuItem;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.MenuRankingService;
+import edu.ucsb.cs156.example.services.MenuSearchService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 
 @WebMvcTest(controllers = UCSBDiningCommonsMenuController.class)
 @Import(TestConfig.class)
+@RecordApplicationEvents
 public class UCSBDiningCommonsMenuControllerTests extends ControllerTestCase {
+        @Autowired
+        ApplicationEvents events;
 
         @MockBean
         UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
 
         @MockBean
         UserRepository userRepository;
+
+        @MockBean
+        MenuRankingService menuRanking;
+
+        @MockBean
+        MenuSearchService menuSearch;
         //Authorization tests for /api/ucsbdiningcommonsmenu/admin/all
 
         @Test
@@ -183,6 +208,8 @@ public class UCSBDiningCommonsMenuControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsMenuRepository, times(1)).save(ucsbDiningCommonsMenu1);
+                assertEquals(List.of(EntityChangedEvent.created(UCSBDiningCommonsMenu.class, null, ucsbDiningCommonsMenu1)),
+                                events.stream(EntityChangedEvent.class).toList());
                 String expectedJson = mapper.writeValueAsString(ucsbDiningCommonsMenu1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -210,6 +237,8 @@ public class UCSBDiningCommonsMenuControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDiningCommonsMenuRepository, times(1)).findById(1L);
                 verify(ucsbDiningCommonsMenuRepository, times(1)).delete(any());
+                assertEquals(List.of(EntityChangedEvent.deleted(UCSBDiningCommonsMenu.class, 1L, ucsbDiningCommonsMenu1)),
+                                events.stream(EntityChangedEvent.class).toList());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenu with id 1 deleted", json.get("message"));
@@ -268,6 +297,8 @@ public class UCSBDiningCommonsMenuControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDiningCommonsMenuRepository, times(1)).findById(67L);
                 verify(ucsbDiningCommonsMenuRepository, times(1)).save(ucsbDiningCommonsMenuEdited); // should be saved with correct user
+                assertEquals(List.of(EntityChangedEvent.updated(UCSBDiningCommonsMenu.class, 67L, null, ucsbDiningCommonsMenuEdited)),
+                                events.stream(EntityChangedEvent.class).toList());
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -302,4 +333,200 @@ public class UCSBDiningCommonsMenuControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommonsMenu with id 67 not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsbdiningcommonsmenu/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenu/batch?ids=1,2"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_ids_reported() throws Exception {
+
+                // arrange
+                UCSBDiningCommonsMenu first = UCSBDiningCommonsMenu.builder().id(1L).diningCommonsCode("ortega").name("Tofu").station("Grill").build();
+                UCSBDiningCommonsMenu second = UCSBDiningCommonsMenu.builder().id(2L).diningCommonsCode("ortega").name("Pizza").station("Pizza").build();
+
+                // repository returns rows in its own order
+                when(ucsbDiningCommonsMenuRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/batch?ids=2,3,1,2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of(2L, 3L, 1L))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<UCSBDiningCommonsMenu>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of(3L))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/ucsbdiningcommonsmenu/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenu/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                UCSBDiningCommonsMenu changed = UCSBDiningCommonsMenu.builder().id(1L).diningCommonsCode("ortega").name("Tofu").station("Grill").build();
+                Tombstone tombstone = Tombstone.builder().entityType("UCSBDiningCommonsMenu").entityId("2").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(ucsbDiningCommonsMenuRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("UCSBDiningCommonsMenu", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<UCSBDiningCommonsMenu>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of(2L))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/ucsbdiningcommonsmenu/ranked
+
+        @Test
+        public void logged_out_users_cannot_get_ranked() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenu/ranked"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_the_ranked_items_of_a_dining_commons() throws Exception {
+
+                // arrange
+                RankedMenu ranked = RankedMenu.builder()
+                                .commons("ortega")
+                                .computedAt(Instant.parse("2023-01-01T12:00:00Z"))
+                                .priorMean(3.5)
+                                .priorReviews(12)
+                                .items(List.of(RankedMenuItem.builder().id(1L).name("Tofu").diningCommonsCode("ortega")
+                                                .station("Grill").reviews(40).averageStars(4.5).score(4.27).build()))
+                                .build();
+                when(menuRanking.getMaxLimit()).thenReturn(1000);
+                when(menuRanking.ranked("ortega", 10)).thenReturn(ranked);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/ranked?commons=ortega&limit=10"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(ranked), response.getResponse().getContentAsString());
+                verify(ucsbDiningCommonsMenuRepository, times(0)).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void ranked_defaults_to_the_top_50_of_every_dining_commons() throws Exception {
+
+                // arrange
+                RankedMenu ranked = RankedMenu.builder().computedAt(Instant.EPOCH).items(List.of()).build();
+                when(menuRanking.getMaxLimit()).thenReturn(1000);
+                when(menuRanking.ranked(null, 50)).thenReturn(ranked);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/ranked"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(ranked), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void ranked_rejects_an_out_of_range_limit() throws Exception {
+
+                // arrange
+                when(menuRanking.getMaxLimit()).thenReturn(1000);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/ranked?limit=0"))
+                                .andExpect(status().isBadRequest()).andReturn();
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenu/ranked?limit=1001"))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                assertEquals("limit must be between 1 and 1000", response.getResponse().getErrorMessage());
+                verify(menuRanking, times(0)).ranked(any(), anyInt());
+        }
+
+        // Tests for /api/ucsbdiningcommonsmenu/search
+
+        @Test
+        public void logged_out_users_cannot_search() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenu/search?q=chicken"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_search_menu_items_by_name_with_typos() throws Exception {
+
+                // arrange
+                List<MenuSearchHit> hits = List.of(MenuSearchHit.builder().id(1L).name("Orange Chicken")
+                                .diningCommonsCode("ortega").station("Wok").distance(1).similarity(0.6).build());
+                when(menuSearch.getMaxLimit()).thenReturn(50);
+                when(menuSearch.search("chiken", "ortega", "Wok", 5)).thenReturn(hits);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/search?q=chiken&diningCommonsCode=ortega&station=Wok&limit=5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                assertEquals(mapper.writeValueAsString(hits), response.getResponse().getContentAsString());
+                verify(ucsbDiningCommonsMenuRepository, times(0)).findAll();
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_defaults_to_10_items_from_anywhere() throws Exception {
+
+                // arrange
+                when(menuSearch.getMaxLimit()).thenReturn(50);
+                when(menuSearch.search("tofu", null, null, 10)).thenReturn(List.of());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/search?q=tofu"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuSearch, times(1)).search("tofu", null, null, 10);
+                assertEquals("[]", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_rejects_an_out_of_range_limit() throws Exception {
+
+                // arrange
+                when(menuSearch.getMaxLimit()).thenReturn(50);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommonsmenu/search?q=tofu&limit=51"))
+                                .andExpect(status().isBadRequest()).andReturn();
+                mockMvc.perform(get("/api/ucsbdiningcommonsmenu/search?q=tofu&limit=0"))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                assertEquals("limit must be between 1 and 50", response.getResponse().getErrorMessage());
+                verify(menuSearch, times(0)).search(any(), any(), any(), anyInt());
+        }
 }
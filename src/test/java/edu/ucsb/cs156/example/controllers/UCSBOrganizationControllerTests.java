@@ -9,6 +9,8 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -23,6 +25,9 @@ import org.springframework.test.web.servlet.MvcResult;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.BatchResult;
+import edu.ucsb.cs156.example.models.ChangeSet;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 
@@ -277,6 +282,83 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                 assertEquals(requestBody, responseString);
         }
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void renaming_an_organization_makes_the_new_code_visible() throws Exception {
+                // arrange
+
+                UCSBOrganization krcOrig = UCSBOrganization.builder()
+                                .orgCode("KRC")
+                                .orgTranslationShort("KOREAN RADIO CL")
+                                .orgTranslation("KOREAN RADIO CLUB")
+                                .inactive(false)
+                                .build();
+
+                UCSBOrganization krcEdited = UCSBOrganization.builder()
+                                .orgCode("KRCL")
+                                .orgTranslationShort("KOREAN RADIO CL")
+                                .orgTranslation("KOREAN RADIO CLUB")
+                                .inactive(false)
+                                .build();
+
+                when(ucsbOrganizationRepository.findById(eq("KRCL"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.findById(eq("KRC"))).thenReturn(Optional.of(krcOrig));
+
+                // act: KRCL is looked up and remembered as missing, then KRC is renamed to KRCL
+                mockMvc.perform(get("/api/ucsborganization?orgCode=KRCL")).andExpect(status().isNotFound());
+                mockMvc.perform(
+                                put("/api/ucsborganization?orgCode=KRC")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(mapper.writeValueAsString(krcEdited))
+                                                .with(csrf()))
+                                .andExpect(status().isOk());
+                when(ucsbOrganizationRepository.findById(eq("KRCL"))).thenReturn(Optional.of(krcEdited));
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization?orgCode=KRCL"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(2)).findById("KRCL");
+                assertEquals(mapper.writeValueAsString(krcEdited), response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_an_organization_keeping_its_code() throws Exception {
+                // arrange
+
+                UCSBOrganization krcOrig = UCSBOrganization.builder()
+                                .orgCode("KRC")
+                                .orgTranslationShort("KOREAN RADIO CL")
+                                .orgTranslation("KOREAN RADIO CLUB")
+                                .inactive(false)
+                                .build();
+
+                UCSBOrganization krcEdited = UCSBOrganization.builder()
+                                .orgCode("KRC")
+                                .orgTranslationShort("KOREAN RADIO CL")
+                                .orgTranslation("KOREAN RADIO CLUB")
+                                .inactive(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(krcEdited);
+
+                when(ucsbOrganizationRepository.findById(eq("KRC"))).thenReturn(Optional.of(krcOrig));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsborganization?orgCode=KRC")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).save(krcEdited);
+                assertEquals(requestBody, response.getResponse().getContentAsString());
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
         public void admin_cannot_edit_organization_that_does_not_exist() throws Exception {
@@ -308,4 +390,92 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                 assertEquals("UCSBOrganization with id KRCL not found", json.get("message"));
 
         }
+
+        // Tests for /api/ucsborganization/batch
+
+        @Test
+        public void logged_out_users_cannot_get_a_batch() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/batch?codes=ZPR,SKY"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_a_batch_in_request_order_with_missing_codes_reported() throws Exception {
+
+                // arrange
+                UCSBOrganization first = UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+                UCSBOrganization second = UCSBOrganization.builder().orgCode("SKY").orgTranslationShort("SKYDIVING CLUB").build();
+
+                // repository returns rows in its own order
+                when(ucsbOrganizationRepository.findAllById(any())).thenReturn(Arrays.asList(first, second));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/batch?codes=SKY,KRC,ZPR,SKY"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).findAllById(eq(new LinkedHashSet<>(List.of("SKY", "KRC", "ZPR"))));
+                String expectedJson = mapper.writeValueAsString(BatchResult.<UCSBOrganization>builder()
+                                .found(List.of(second, first))
+                                .missing(List.of("KRC"))
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        // Tests for /api/ucsborganization/changes
+
+        @Test
+        public void logged_out_users_cannot_get_changes() throws Exception {
+                mockMvc.perform(get("/api/ucsborganization/changes?since=0"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_user_can_get_changes_and_deletes_since_a_token() throws Exception {
+
+                // arrange
+                UCSBOrganization changed = UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+                Tombstone tombstone = Tombstone.builder().entityType("UCSBOrganization").entityId("SKY").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(ucsbOrganizationRepository.findChangedBetween(1000L, 1500L)).thenReturn(List.of(changed));
+                when(tombstoneRepository.findDeletedBetween("UCSBOrganization", 1000L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/changes?since=1000"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).findChangedBetween(1000L, 1500L);
+                String expectedJson = mapper.writeValueAsString(ChangeSet.<UCSBOrganization>builder()
+                                .changed(List.of(changed))
+                                .deleted(List.of("SKY"))
+                                .token(1500L)
+                                .build());
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void a_code_deleted_and_then_recreated_is_reported_as_changed_only() throws Exception {
+
+                // arrange
+                UCSBOrganization recreated = UCSBOrganization.builder().orgCode("ZPR").orgTranslationShort("ZETA PHI RHO").build();
+                Tombstone tombstone = Tombstone.builder().entityType("UCSBOrganization").entityId("ZPR").build();
+
+                when(changeClockRepository.current()).thenReturn(Optional.of(1500L));
+                when(ucsbOrganizationRepository.findChangedBetween(0L, 1500L)).thenReturn(List.of(recreated));
+                when(tombstoneRepository.findDeletedBetween("UCSBOrganization", 0L, 1500L)).thenReturn(List.of(tombstone));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsborganization/changes?since=0"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals(List.of(), json.get("deleted"));
+                assertEquals(1, ((List<?>) json.get("changed")).size());
+        }
 }
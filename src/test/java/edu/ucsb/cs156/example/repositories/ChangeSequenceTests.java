@@ -0,0 +1,160 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.Articles;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.services.ChangeSequenceService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// ChangeSequenceService against a real (H2) database: what the /changes
+// feeds read, including writes whose transactions outlast a stamp.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ChangeSequenceService.class)
+@TestPropertySource(properties = "app.sync.stampMillis=3600000")
+public class ChangeSequenceTests {
+
+  @Autowired
+  ChangeSequenceService changeSequenceService;
+
+  @Autowired
+  ChangeClockRepository changeClockRepository;
+
+  @Autowired
+  ArticlesRepository articlesRepository;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  public void emptyTables() {
+    articlesRepository.deleteAll();
+    helpRequestRepository.deleteAll();
+    tombstoneRepository.deleteAll();
+    changeClockRepository.deleteAll();
+  }
+
+  private long clock() {
+    return changeClockRepository.current().orElse(0L);
+  }
+
+  private List<String> titlesChangedBetween(long since, long until) {
+    return articlesRepository.findChangedBetween(since, until).stream()
+        .map(Articles::getTitle)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void writes_are_stamped_in_order_and_an_idle_stamp_leaves_the_clock_alone() {
+    assertEquals(0, clock());
+    Articles first = articlesRepository.save(Articles.builder().title("first").build());
+    assertNull(first.getChangeSeq());
+
+    assertEquals(1, changeSequenceService.stamp());
+    assertEquals(1, clock());
+    assertEquals(0, changeSequenceService.stamp());
+    assertEquals(1, clock());
+    assertEquals(List.of("first"), titlesChangedBetween(0, 1));
+
+    articlesRepository.save(Articles.builder().title("second").build());
+    first = articlesRepository.findById(first.getId()).orElseThrow();
+    first.setTitle("first, edited");
+    articlesRepository.save(first);
+    articlesRepository.delete(articlesRepository.save(Articles.builder().title("gone").build()));
+    tombstoneRepository.save(Tombstone.builder().entityType("Articles").entityId("3").deletedAt(Instant.now()).build());
+
+    assertEquals(3, changeSequenceService.stamp());
+    assertEquals(2, clock());
+    assertEquals(List.of(), titlesChangedBetween(0, 1));
+    assertEquals(List.of("first, edited", "second"), titlesChangedBetween(1, 2));
+    assertEquals(1, tombstoneRepository.findDeletedBetween("Articles", 1, 2).size());
+  }
+
+  @Test
+  public void a_write_is_reported_after_its_transaction_commits_however_long_it_runs() throws Exception {
+    CountDownLatch written = new CountDownLatch(1);
+    CountDownLatch commit = new CountDownLatch(1);
+    Thread longTransaction = new Thread(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+      articlesRepository.save(Articles.builder().title("slow").build());
+      written.countDown();
+      try {
+        commit.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+    longTransaction.start();
+    assertTrue(written.await(10, TimeUnit.SECONDS));
+
+    // another write commits and is stamped while the slow one is still open
+    articlesRepository.save(Articles.builder().title("fast").build());
+    changeSequenceService.stamp();
+    long token = clock();
+    assertEquals(List.of("fast"), titlesChangedBetween(0, token));
+
+    commit.countDown();
+    longTransaction.join();
+    changeSequenceService.stamp();
+    assertEquals(List.of("slow"), titlesChangedBetween(token, clock()));
+  }
+
+  @Test
+  public void ids_changed_after_a_value_include_rows_not_stamped_yet() {
+    Articles old = articlesRepository.save(Articles.builder().title("old").build());
+    changeSequenceService.stamp();
+    long token = clock();
+    Articles stamped = articlesRepository.save(Articles.builder().title("stamped").build());
+    changeSequenceService.stamp();
+    Articles unstamped = articlesRepository.save(Articles.builder().title("unstamped").build());
+
+    List<Long> ids = articlesRepository.findIdsChangedAfter(token);
+
+    assertEquals(List.of(stamped.getId(), unstamped.getId()), ids.stream().sorted().collect(Collectors.toList()));
+    assertEquals(List.of(old.getId(), stamped.getId(), unstamped.getId()),
+        articlesRepository.findIdsChangedAfter(0).stream().sorted().collect(Collectors.toList()));
+  }
+
+  @Test
+  public void a_claim_is_stamped_again() {
+    HelpRequest helpRequest = helpRequestRepository.save(HelpRequest.builder().requesterEmail("a@ucsb.edu").build());
+    changeSequenceService.stamp();
+    assertEquals(1, helpRequestRepository.findChangedBetween(0, clock()).size());
+
+    assertEquals(1, helpRequestRepository.claim(helpRequest.getId(), "ta@ucsb.edu", Instant.now()));
+    assertNull(helpRequestRepository.findById(helpRequest.getId()).orElseThrow().getChangeSeq());
+    long token = clock();
+    changeSequenceService.stamp();
+    assertEquals("ta@ucsb.edu", helpRequestRepository.findChangedBetween(token, clock()).get(0).getClaimedBy());
+
+    // a request is only ever claimed once
+    assertEquals(0, helpRequestRepository.claim(helpRequest.getId(), "other@ucsb.edu", Instant.now()));
+    assertEquals("ta@ucsb.edu", helpRequestRepository.findById(helpRequest.getId()).orElseThrow().getClaimedBy());
+  }
+}
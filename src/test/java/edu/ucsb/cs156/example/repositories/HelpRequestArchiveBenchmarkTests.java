@@ -0,0 +1,205 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.services.EntityCacheService;
+import edu.ucsb.cs156.example.services.HelpRequestArchiveService;
+import edu.ucsb.cs156.example.services.NegativeLookupService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// The archiver against a real (H2) database, and the hot-path reads of
+// helperrequest with and without a million archived rows beside it.
+@Slf4j
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(HelpRequestArchiveService.class)
+@TestPropertySource(properties = { "app.archive.chunkSize=100" })
+public class HelpRequestArchiveBenchmarkTests {
+
+  private static final int HOT = 1000;
+  private static final int ARCHIVED = 1_000_000;
+  private static final int READS = 200;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @Autowired
+  HelpRequestArchiveService helpRequestArchiveService;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @MockBean
+  EntityCacheService entityCacheService;
+
+  @MockBean
+  ResponseCacheService responseCacheService;
+
+  @MockBean
+  NegativeLookupService negativeLookupService;
+
+  // plain DELETEs: deleteAll() would load every archived row first
+  @BeforeEach
+  @AfterEach
+  public void emptyTables() {
+    jdbcTemplate.update("delete from helperrequest");
+    jdbcTemplate.update("delete from archivedhelprequest");
+    jdbcTemplate.update("delete from tombstones");
+  }
+
+  private static HelpRequest request(int i, boolean solved, Instant solvedAt) {
+    return HelpRequest.builder()
+        .requesterEmail("student" + i + "@ucsb.edu")
+        .teamId("team" + (i % 10))
+        .tableOrBreakoutRoom("table" + (i % 5))
+        .requestTime(LocalDateTime.parse("2022-01-03T10:00:00"))
+        .explanation("help")
+        .solved(solved)
+        .solvedAt(solvedAt)
+        .claimedBy(solved ? "ta@ucsb.edu" : null)
+        .build();
+  }
+
+  @Test
+  public void old_solved_requests_move_to_the_archive_in_chunks() {
+    Instant now = Instant.now();
+    List<HelpRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 350; i++) {
+      if (i < 250) {
+        requests.add(request(i, true, now.minus(Duration.ofDays(60))));
+      } else if (i < 300) {
+        requests.add(request(i, true, now.minus(Duration.ofDays(1))));
+      } else {
+        requests.add(request(i, false, null));
+      }
+    }
+    List<String> archivedIds = new ArrayList<>();
+    helpRequestRepository.saveAll(requests).forEach(saved -> {
+      if (saved.getSolved() && saved.getSolvedAt().isBefore(now.minus(Duration.ofDays(30)))) {
+        archivedIds.add(Long.toString(saved.getId()));
+      }
+    });
+
+    assertEquals(250, helpRequestArchiveService.archive(now.minus(Duration.ofDays(30))));
+
+    assertEquals(100, helpRequestRepository.count());
+    assertEquals(250, archivedHelpRequestRepository.count());
+    helpRequestRepository.findAll().forEach(hot -> assertTrue(!hot.getSolved() || hot.getSolvedAt().isAfter(now.minus(Duration.ofDays(30)))));
+    ArchivedHelpRequest archived = archivedHelpRequestRepository.findAll().iterator().next();
+    assertTrue(archived.getSolved());
+    assertEquals("ta@ucsb.edu", archived.getClaimedBy());
+    assertEquals(LocalDateTime.parse("2022-01-03T10:00:00"), archived.getRequestTime());
+    assertNotNull(archived.getArchivedAt());
+    // gone from helperrequest as far as /changes is concerned
+    List<String> tombstoned = new ArrayList<>();
+    tombstoneRepository.findAll().forEach(tombstone -> {
+      assertEquals("HelpRequest", tombstone.getEntityType());
+      assertNotNull(tombstone.getDeletedAt());
+      tombstoned.add(tombstone.getEntityId());
+    });
+    assertEquals(archivedIds, tombstoned);
+    // three chunks of at most 100
+    verify(responseCacheService, times(3)).invalidate("HelpRequest");
+    verify(entityCacheService, times(250)).invalidate(eq(HelpRequest.class), any());
+    verify(negativeLookupService, times(250)).recordCreated(eq(ArchivedHelpRequest.class), any());
+
+    assertEquals(0, helpRequestArchiveService.archive(now.minus(Duration.ofDays(30))));
+  }
+
+  @Test
+  @Tag("benchmark")
+  public void hot_reads_do_not_slow_down_with_a_million_archived_rows() {
+    List<HelpRequest> hot = new ArrayList<>();
+    for (int i = 0; i < HOT; i++) {
+      hot.add(request(i, i % 2 == 0, null));
+    }
+    List<Long> ids = new ArrayList<>();
+    helpRequestRepository.saveAll(hot).forEach(saved -> ids.add(saved.getId()));
+
+    // a first pass only warms up the JIT, or the reads without the archive look slower
+    measure(ids);
+    long[][] before = measure(ids);
+
+    long started = System.nanoTime();
+    jdbcTemplate.update("insert into archivedhelprequest (id, requester_email, team_id, table_or_breakout_room,"
+        + " request_time, explanation, solved, solved_at, last_modified, version, archived_at)"
+        + " select 1000000000 + x, 'student' || mod(x, 5000) || '@ucsb.edu', 'team' || mod(x, 40), 'table' || mod(x, 10),"
+        + " timestamp '2021-01-04 10:00:00', 'help', true, timestamp '2021-01-04 10:30:00', timestamp '2021-01-04 10:30:00',"
+        + " 0, current_timestamp from system_range(1, " + ARCHIVED + ")");
+    log.info("inserted {} archived help requests in {} ms", ARCHIVED, (System.nanoTime() - started) / 1_000_000);
+    assertEquals(ARCHIVED, archivedHelpRequestRepository.count());
+
+    long[][] after = measure(ids);
+
+    log.info("hot findAll ({} rows) p50/p99: {}/{} us without archive, {}/{} us with {} archived rows",
+        HOT, percentile(before[0], 50), percentile(before[0], 99), percentile(after[0], 50), percentile(after[0], 99), ARCHIVED);
+    log.info("hot findById p50/p99: {}/{} us without archive, {}/{} us with {} archived rows",
+        percentile(before[1], 50), percentile(before[1], 99), percentile(after[1], 50), percentile(after[1], 99), ARCHIVED);
+    // generous bounds: the archive is a separate table, so the hot path should not notice it at all
+    assertTrue(percentile(after[0], 50) <= 3 * percentile(before[0], 50) + 5_000);
+    assertTrue(percentile(after[1], 50) <= 3 * percentile(before[1], 50) + 1_000);
+    assertFalse(archivedHelpRequestRepository.findById(1_000_000_000L + ARCHIVED).isEmpty());
+  }
+
+  // microseconds of READS findAll calls, then of READS findById calls
+  private long[][] measure(List<Long> ids) {
+    SplittableRandom random = new SplittableRandom(7);
+    long[] findAll = new long[READS];
+    long[] findById = new long[READS];
+    for (int i = 0; i < READS; i++) {
+      long started = System.nanoTime();
+      List<HelpRequest> all = new ArrayList<>();
+      helpRequestRepository.findAll().forEach(all::add);
+      findAll[i] = (System.nanoTime() - started) / 1000;
+      assertEquals(HOT, all.size());
+
+      started = System.nanoTime();
+      assertTrue(helpRequestRepository.findById(ids.get(random.nextInt(ids.size()))).isPresent());
+      findById[i] = (System.nanoTime() - started) / 1000;
+    }
+    return new long[][] { findAll, findById };
+  }
+
+  private static long percentile(long[] micros, double percentile) {
+    long[] sorted = micros.clone();
+    Arrays.sort(sorted);
+    return sorted[(int) Math.ceil(percentile / 100 * sorted.length) - 1];
+  }
+}
@@ -0,0 +1,99 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// Many TAs contending for a short queue, against a real (H2) database:
+// every request must end up claimed exactly once, whoever wins.
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class HelpRequestClaimBenchmarkTests {
+
+  private static final int TAS = 32;
+  private static final int REQUESTS = 200;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Test
+  public void concurrent_claims_assign_each_request_exactly_once() throws Exception {
+    helpRequestRepository.deleteAll();
+    List<HelpRequest> queue = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      queue.add(HelpRequest.builder()
+          .requesterEmail("student" + i + "@ucsb.edu")
+          .teamId("team" + (i % 10))
+          .tableOrBreakoutRoom("table" + (i % 5))
+          .requestTime(LocalDateTime.now())
+          .explanation("help")
+          .build());
+    }
+    List<Long> ids = new ArrayList<>();
+    helpRequestRepository.saveAll(queue).forEach(saved -> ids.add(saved.getId()));
+
+    AtomicInteger won = new AtomicInteger();
+    AtomicInteger lost = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(TAS);
+    List<Future<?>> tas = new ArrayList<>();
+    for (int ta = 0; ta < TAS; ta++) {
+      String email = "ta" + ta + "@ucsb.edu";
+      tas.add(pool.submit(() -> {
+        start.await();
+        // every TA works down the queue from the front, so each request is contended
+        for (Long id : ids) {
+          if (helpRequestRepository.claim(id, email, Instant.now()) == 1) {
+            won.incrementAndGet();
+          } else {
+            lost.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+
+    long startNanos = System.nanoTime();
+    start.countDown();
+    for (Future<?> ta : tas) {
+      ta.get(60, TimeUnit.SECONDS);
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    pool.shutdown();
+
+    int attempts = won.get() + lost.get();
+    log.info("{} TAs made {} claim attempts on {} requests in {} ms ({} attempts/s)",
+        TAS, attempts, REQUESTS, elapsedNanos / 1_000_000, attempts * 1_000_000_000L / elapsedNanos);
+
+    assertEquals(REQUESTS, won.get());
+    assertEquals(REQUESTS * (TAS - 1), lost.get());
+    StreamSupport.stream(helpRequestRepository.findAllById(ids).spliterator(), false).forEach(helpRequest -> {
+      assertNotNull(helpRequest.getClaimedBy());
+      assertNotNull(helpRequest.getClaimedAt());
+      assertEquals(1, helpRequest.getVersion());
+    });
+  }
+}
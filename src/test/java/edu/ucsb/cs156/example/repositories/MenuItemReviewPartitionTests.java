@@ -0,0 +1,219 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.config.JpaAuditingConfig;
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.ReviewPartitions;
+import edu.ucsb.cs156.example.services.EntityCacheService;
+import edu.ucsb.cs156.example.services.MenuItemReviewPartitionService;
+import edu.ucsb.cs156.example.services.MenuRankingService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+import edu.ucsb.cs156.example.services.ReviewColumnStoreService;
+import edu.ucsb.cs156.example.services.TrendingService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The emulated (H2) side of MenuItemReviewPartitionService against a real
+// database; the native side needs Postgres.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ MenuItemReviewPartitionService.class, JpaAuditingConfig.class })
+@TestPropertySource(properties = { "app.reviews.partitionMonthsAhead=1", "app.reviews.retentionMonths=0" })
+public class MenuItemReviewPartitionTests {
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  MenuItemReviewPartitionService menuItemReviewPartitions;
+
+  @MockBean
+  EntityCacheService entityCacheService;
+
+  @MockBean
+  ResponseCacheService responseCacheService;
+
+  @MockBean
+  ReviewColumnStoreService reviewColumns;
+
+  @MockBean
+  MenuRankingService menuRanking;
+
+  @MockBean
+  TrendingService trending;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @BeforeEach
+  public void emptyTable() {
+    menuItemReviewRepository.deleteAll();
+    tombstoneRepository.deleteAll();
+    when(trending.getLongestWindow()).thenReturn(Duration.ofHours(24));
+  }
+
+  private MenuItemReview review(LocalDateTime dateReviewed) {
+    menuItemReviewPartitions.route(dateReviewed);
+    return menuItemReviewRepository.save(MenuItemReview.builder()
+        .itemId(1L)
+        .reviewerEmail("a@ucsb.edu")
+        .stars(4)
+        .dateReviewed(dateReviewed)
+        .comments("fine")
+        .build());
+  }
+
+  @Test
+  public void load_finds_the_months_already_reviewed_and_creates_the_next_ones() {
+    menuItemReviewRepository.save(MenuItemReview.builder().itemId(1L).dateReviewed(LocalDateTime.parse("2022-03-15T12:00:00")).build());
+    menuItemReviewRepository.save(MenuItemReview.builder().itemId(1L).dateReviewed(LocalDateTime.parse("2022-03-31T23:59:59")).build());
+    menuItemReviewRepository.save(MenuItemReview.builder().itemId(1L).build());
+
+    menuItemReviewPartitions.load();
+
+    ReviewPartitions partitions = menuItemReviewPartitions.partitions();
+    assertEquals("emulated", partitions.getMode());
+    assertNull(partitions.getRetentionMonths());
+    assertEquals(List.of(YearMonth.of(2022, 3), YearMonth.now(), YearMonth.now().plusMonths(1)), partitions.getMonths());
+  }
+
+  @Test
+  public void writes_are_routed_to_their_month() {
+    menuItemReviewPartitions.load();
+
+    review(LocalDateTime.parse("2021-11-02T08:00:00"));
+    review(LocalDateTime.parse("2021-11-20T18:30:00"));
+    review(LocalDateTime.parse("2022-01-01T00:00:00"));
+
+    List<YearMonth> months = menuItemReviewPartitions.partitions().getMonths();
+    assertEquals(YearMonth.of(2021, 11), months.get(0));
+    assertEquals(YearMonth.of(2022, 1), months.get(1));
+  }
+
+  @Test
+  public void expiring_drops_whole_months_and_keeps_the_rest() {
+    menuItemReviewPartitions.load();
+    MenuItemReview november = review(LocalDateTime.parse("2021-11-02T08:00:00"));
+    MenuItemReview december = review(LocalDateTime.parse("2021-12-31T23:59:59"));
+    MenuItemReview kept = review(LocalDateTime.parse("2022-01-01T00:00:00"));
+
+    assertEquals(2, menuItemReviewPartitions.expire(YearMonth.of(2022, 1)));
+
+    // gone as far as /changes is concerned too
+    List<String> tombstoned = new ArrayList<>();
+    tombstoneRepository.findAll().forEach(tombstone -> {
+      assertEquals("MenuItemReview", tombstone.getEntityType());
+      tombstoned.add(tombstone.getEntityId());
+    });
+    assertEquals(List.of(Long.toString(november.getId()), Long.toString(december.getId())), tombstoned);
+    verify(reviewColumns).load();
+    verify(menuRanking).rank();
+
+    List<MenuItemReview> left = new ArrayList<>();
+    menuItemReviewRepository.findAll().forEach(left::add);
+    assertEquals(List.of(kept.getId()), left.stream().map(MenuItemReview::getId).toList());
+    assertEquals(YearMonth.of(2022, 1), menuItemReviewPartitions.partitions().getMonths().get(0));
+    verify(entityCacheService).invalidateAll();
+    verify(responseCacheService).invalidate("MenuItemReview");
+  }
+
+  @Test
+  public void recent_reviews_are_a_range_on_date_reviewed() {
+    menuItemReviewPartitions.load();
+    LocalDateTime now = LocalDateTime.now();
+    review(now.minusDays(40));
+    MenuItemReview recent = review(now.minusDays(2));
+
+    List<MenuItemReview> found = menuItemReviewRepository.findByDateReviewedGreaterThanEqual(now.minusDays(7));
+
+    assertEquals(1, found.size());
+    assertEquals(recent.getId(), found.get(0).getId());
+    assertTrue(menuItemReviewPartitions.partitions().getMonths().contains(YearMonth.from(now.minusDays(40))));
+  }
+
+  @Test
+  public void nothing_is_routed_before_load_or_without_a_date() {
+    ReflectionTestUtils.setField(menuItemReviewPartitions, "strategy", null);
+    menuItemReviewPartitions.route(LocalDateTime.parse("1999-01-02T08:00:00"));
+    assertNull(menuItemReviewPartitions.partitions().getMode());
+
+    menuItemReviewPartitions.load();
+    int months = menuItemReviewPartitions.partitions().getMonths().size();
+    menuItemReviewPartitions.route(null);
+    assertEquals(months, menuItemReviewPartitions.partitions().getMonths().size());
+    assertTrue(!menuItemReviewPartitions.partitions().getMonths().contains(YearMonth.of(1999, 1)));
+  }
+
+  @Test
+  public void maintenance_expires_months_past_retention() {
+    menuItemReviewPartitions.load();
+    YearMonth old = YearMonth.now().minusMonths(3);
+    review(old.atDay(10).atStartOfDay());
+    MenuItemReview kept = review(LocalDateTime.now());
+
+    ReflectionTestUtils.setField(menuItemReviewPartitions, "retentionMonths", 2);
+    try {
+      menuItemReviewPartitions.maintain();
+      ReviewPartitions partitions = menuItemReviewPartitions.partitions();
+      assertEquals(2, partitions.getRetentionMonths());
+      assertTrue(!partitions.getMonths().contains(old));
+    } finally {
+      ReflectionTestUtils.setField(menuItemReviewPartitions, "retentionMonths", 0);
+    }
+
+    List<MenuItemReview> left = new ArrayList<>();
+    menuItemReviewRepository.findAll().forEach(left::add);
+    assertEquals(List.of(kept.getId()), left.stream().map(MenuItemReview::getId).toList());
+  }
+
+  @Test
+  public void trending_is_rebuilt_from_the_reviews_left_after_an_expiry() {
+    menuItemReviewPartitions.load();
+    review(LocalDateTime.parse("2021-11-02T08:00:00"));
+    MenuItemReview kept = review(LocalDateTime.parse("2022-01-01T00:00:00"));
+
+    menuItemReviewPartitions.expire(YearMonth.of(2022, 1));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<MenuItemReview>> rebuiltFrom = ArgumentCaptor.forClass(List.class);
+    verify(trending).rebuild(rebuiltFrom.capture());
+    assertEquals(List.of(kept.getId()), rebuiltFrom.getValue().stream().map(MenuItemReview::getId).toList());
+  }
+
+  @Test
+  public void an_expiry_that_drops_no_reviews_rebuilds_nothing() {
+    menuItemReviewPartitions.load();
+    review(LocalDateTime.parse("2022-01-01T00:00:00"));
+
+    menuItemReviewPartitions.expire(YearMonth.of(2021, 1));
+
+    assertEquals(0, tombstoneRepository.count());
+    verify(reviewColumns, never()).load();
+    verify(menuRanking, never()).rank();
+    verify(trending, never()).rebuild(any());
+  }
+}
@@ -0,0 +1,308 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.Tombstone;
+import edu.ucsb.cs156.example.models.ReviewAnalytics;
+import edu.ucsb.cs156.example.models.ReviewGroup;
+import edu.ucsb.cs156.example.services.ChangeSequenceService;
+import edu.ucsb.cs156.example.services.ReviewColumnStoreService;
+import edu.ucsb.cs156.example.services.ReviewColumnStoreService.Dimension;
+import edu.ucsb.cs156.example.services.ReviewColumnStoreService.Filter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The in-memory review columns against a real (H2) database: the same
+// "average stars by station by week" as SQL over the joined tables and as
+// a JPA full scan, and the incremental refresh from the /changes feed.
+@Slf4j
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ ReviewColumnStoreService.class, ChangeSequenceService.class })
+@TestPropertySource(properties = { "app.reviews.columns.refreshSeconds=3600", "app.sync.stampMillis=3600000" })
+public class ReviewColumnStoreBenchmarkTests {
+
+  private static final int MENU_ITEMS = 200;
+  private static final int REVIEWS = 200_000;
+  private static final int RUNS = 10;
+  private static final LocalDate FIRST_MONDAY = LocalDate.of(1970, 1, 5);
+
+  private static final String BY_STATION_BY_WEEK = "select m.station, datediff('DAY', date '1970-01-05', r.date_reviewed) / 7,"
+      + " count(*), sum(r.stars)"
+      + " from menu_item_review r join ucsbdiningcommonsmenu m on m.id = r.item_id"
+      + " group by m.station, datediff('DAY', date '1970-01-05', r.date_reviewed) / 7";
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Autowired
+  TombstoneRepository tombstoneRepository;
+
+  @Autowired
+  ReviewColumnStoreService reviewColumnStoreService;
+
+  @Autowired
+  ChangeSequenceService changeSequenceService;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  @AfterEach
+  public void emptyTables() {
+    jdbcTemplate.update("delete from menu_item_review");
+    jdbcTemplate.update("delete from ucsbdiningcommonsmenu");
+    tombstoneRepository.deleteAll();
+  }
+
+  private void menuItem(long id, String commons, String station, Instant lastModified) {
+    jdbcTemplate.update("insert into ucsbdiningcommonsmenu (id, dining_commons_code, name, station, last_modified, version)"
+        + " values (?, ?, ?, ?, ?, 0)", id, commons, "item " + id, station, Timestamp.from(lastModified));
+  }
+
+  private void review(long id, long itemId, int stars, String dateReviewed, Instant lastModified) {
+    jdbcTemplate.update("insert into menu_item_review (id, item_id, reviewer_email, stars, date_reviewed, comments, flagged,"
+        + " last_modified, version) values (?, ?, ?, ?, timestamp '" + dateReviewed + " 12:00:00', 'ok', false, ?, 0)",
+        id, itemId, "student" + id + "@ucsb.edu", stars, Timestamp.from(lastModified));
+  }
+
+  // ids count down: H2 moves the identity sequence, and commits, for each id above it
+  private void insertGenerated(int menuItems, int reviews) {
+    jdbcTemplate.update("insert into ucsbdiningcommonsmenu (id, dining_commons_code, name, station, last_modified, version)"
+        + " select 1000000 + x, casewhen(mod(x, 4) = 0, 'ortega', casewhen(mod(x, 4) = 1, 'portola', 'carrillo')),"
+        + " 'item ' || x, 'station' || mod(x, 6), timestamp '2022-09-01 12:00:00', 0"
+        + " from system_range(1, " + menuItems + ")");
+    jdbcTemplate.update("insert into menu_item_review (id, item_id, reviewer_email, stars, date_reviewed, comments, flagged,"
+        + " last_modified, version)"
+        + " select 1000000000 + " + reviews + " - x, 1000001 + mod(x * 7, " + menuItems + "), 'student' || mod(x, 5000) || '@ucsb.edu',"
+        + " 1 + mod(x / 3 + mod(x, 11), 5), dateadd('DAY', mod(x, 180), timestamp '2022-09-01 12:00:00'), 'review', false,"
+        + " timestamp '2022-09-01 12:00:00', 0 from system_range(1, " + reviews + ")");
+  }
+
+  private Map<String, long[]> sqlByStationByWeek() {
+    Map<String, long[]> sql = new HashMap<>();
+    jdbcTemplate.query(BY_STATION_BY_WEEK, rs -> {
+      sql.put(rs.getString(1) + "/" + FIRST_MONDAY.plusWeeks(rs.getLong(2)),
+          new long[] { rs.getLong(3), rs.getLong(4) });
+    });
+    return sql;
+  }
+
+  // station and Monday -> { reviews, total stars }
+  private static Map<String, long[]> byStationByWeek(ReviewAnalytics analytics) {
+    Map<String, long[]> groups = new HashMap<>();
+    for (ReviewGroup group : analytics.getGroups()) {
+      groups.put(group.getKey().get("station") + "/" + group.getKey().get("week"),
+          new long[] { group.getReviews(), Math.round(group.getAverageStars() * group.getReviews()) });
+    }
+    return groups;
+  }
+
+  @Test
+  @Tag("benchmark")
+  public void the_columns_answer_like_sql_and_faster_than_scanning_through_jpa() {
+    insertGenerated(MENU_ITEMS, REVIEWS);
+
+    long started = System.nanoTime();
+    reviewColumnStoreService.load();
+    long loadMillis = (System.nanoTime() - started) / 1_000_000;
+
+    Map<String, long[]> sql = null;
+    long[] sqlMicros = new long[RUNS];
+    for (int run = 0; run < RUNS; run++) {
+      started = System.nanoTime();
+      sql = sqlByStationByWeek();
+      sqlMicros[run] = (System.nanoTime() - started) / 1000;
+    }
+
+    ReviewAnalytics columns = null;
+    long[] columnMicros = new long[RUNS];
+    for (int run = 0; run < RUNS; run++) {
+      started = System.nanoTime();
+      columns = reviewColumnStoreService.query(List.of(Dimension.STATION, Dimension.WEEK),
+          new Filter(null, null, null, null, null, null));
+      columnMicros[run] = (System.nanoTime() - started) / 1000;
+    }
+
+    // what the question costs without either: every review as an entity
+    started = System.nanoTime();
+    Map<Long, String> stations = new HashMap<>();
+    ucsbDiningCommonsMenuRepository.findAll().forEach(menu -> stations.put(menu.getId(), menu.getStation()));
+    Map<String, long[]> jpa = new HashMap<>();
+    for (MenuItemReview review : menuItemReviewRepository.findAll()) {
+      LocalDate day = review.getDateReviewed().toLocalDate();
+      String key = stations.get(review.getItemId()) + "/" + day.minusDays(day.getDayOfWeek().getValue() - 1);
+      long[] sums = jpa.computeIfAbsent(key, k -> new long[2]);
+      sums[0]++;
+      sums[1] += review.getStars();
+    }
+    long jpaMicros = (System.nanoTime() - started) / 1000;
+
+    Map<String, long[]> fromColumns = byStationByWeek(columns);
+    assertEquals(REVIEWS, columns.getRows());
+    assertEquals(REVIEWS, columns.getMatched());
+    assertEquals(sql.keySet(), fromColumns.keySet());
+    assertEquals(sql.keySet(), jpa.keySet());
+    sql.forEach((key, sums) -> {
+      assertTrue(Arrays.equals(sums, fromColumns.get(key)), key);
+      assertTrue(Arrays.equals(sums, jpa.get(key)), key);
+    });
+
+    log.info("average stars by station by week over {} reviews ({} groups): loaded in {}ms;"
+        + " best of {}: {}us SQL, {}us columns; {}us JPA full scan",
+        REVIEWS, sql.size(), loadMillis, RUNS, min(sqlMicros), min(columnMicros), jpaMicros);
+    assertTrue(min(columnMicros) < jpaMicros);
+  }
+
+  @Test
+  public void reviews_across_several_chunks_add_up_like_sql() {
+    // three chunks of 16384 rows, and more menu items than the first dictionary holds
+    int reviews = 3 * 16384;
+    insertGenerated(40, reviews);
+
+    reviewColumnStoreService.load();
+
+    ReviewAnalytics columns = reviewColumnStoreService.query(List.of(Dimension.STATION, Dimension.WEEK),
+        new Filter(null, null, null, null, null, null));
+    Map<String, long[]> sql = sqlByStationByWeek();
+    Map<String, long[]> fromColumns = byStationByWeek(columns);
+    assertEquals(reviews, columns.getMatched());
+    assertEquals(sql.keySet(), fromColumns.keySet());
+    sql.forEach((key, sums) -> assertTrue(Arrays.equals(sums, fromColumns.get(key)), key));
+
+    ReviewColumnStoreService.ItemTotals totals = reviewColumnStoreService.itemTotals();
+    assertEquals(40, totals.itemIds().length);
+    assertEquals(reviews, Arrays.stream(totals.reviews()).sum());
+  }
+
+  @Test
+  public void a_refresh_applies_new_changed_and_deleted_reviews_and_menu_items() {
+    Instant earlier = Instant.now().minusSeconds(3600);
+    menuItem(1, "ortega", "Grill", earlier);
+    menuItem(2, "ortega", "Salad", earlier);
+    review(11, 1, 4, "2023-01-03", earlier);
+    review(12, 1, 2, "2023-01-03", earlier);
+    review(13, 2, 5, "2023-02-07", earlier);
+    review(14, 99, 3, "2023-02-08", earlier);
+
+    reviewColumnStoreService.load();
+
+    ReviewAnalytics byStation = reviewColumnStoreService.query(List.of(Dimension.STATION),
+        new Filter(null, null, null, null, null, null));
+    assertEquals(4, byStation.getRows());
+    assertEquals(3, byStation.getGroups().size());
+    // an item that isn't on the menu has no station, and comes first
+    assertEquals(1, byStation.getGroups().get(0).getReviews());
+    assertNull(byStation.getGroups().get(0).getKey().get("station"));
+    assertEquals("Grill", byStation.getGroups().get(1).getKey().get("station"));
+    assertEquals(2, byStation.getGroups().get(1).getReviews());
+    assertEquals(3.0, byStation.getGroups().get(1).getAverageStars());
+
+    Instant now = Instant.now();
+    review(15, 2, 1, "2023-02-09", now);
+    jdbcTemplate.update("update menu_item_review set stars = 5, last_modified = ?, change_seq = null where id = 11", Timestamp.from(now));
+    jdbcTemplate.update("delete from menu_item_review where id = 13");
+    tombstoneRepository.save(Tombstone.builder().entityType(MenuItemReview.class.getSimpleName()).entityId("13").deletedAt(now).build());
+    jdbcTemplate.update("update ucsbdiningcommonsmenu set station = 'Grill', last_modified = ?, change_seq = null where id = 2", Timestamp.from(now));
+    // nothing is applied before it is stamped
+    reviewColumnStoreService.refresh();
+    assertEquals(4, reviewColumnStoreService.query(List.of(), new Filter(null, null, null, null, null, null)).getRows());
+
+    changeSequenceService.stamp();
+    reviewColumnStoreService.refresh();
+
+    byStation = reviewColumnStoreService.query(List.of(Dimension.STATION),
+        new Filter(null, null, null, "ortega", null, null));
+    assertEquals(4, byStation.getRows());
+    assertEquals(1, byStation.getGroups().size());
+    assertEquals("Grill", byStation.getGroups().get(0).getKey().get("station"));
+    assertEquals(3, byStation.getGroups().get(0).getReviews());
+    assertEquals(8.0 / 3, byStation.getGroups().get(0).getAverageStars(), 1e-9);
+
+    ReviewAnalytics byMonth = reviewColumnStoreService.query(List.of(Dimension.MONTH, Dimension.STARS),
+        new Filter(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 2, 8), null, null, null, null));
+    assertEquals(3, byMonth.getMatched());
+    assertEquals(Map.of("month", YearMonth.of(2023, 1), "stars", 2), byMonth.getGroups().get(0).getKey());
+    assertEquals(Map.of("month", YearMonth.of(2023, 1), "stars", 5), byMonth.getGroups().get(1).getKey());
+    assertEquals(Map.of("month", YearMonth.of(2023, 2), "stars", 3), byMonth.getGroups().get(2).getKey());
+
+    ReviewAnalytics oneReviewer = reviewColumnStoreService.query(List.of(),
+        new Filter(null, null, null, null, null, "Student15@ucsb.edu"));
+    assertEquals(1, oneReviewer.getMatched());
+    assertEquals(1.0, oneReviewer.getGroups().get(0).getAverageStars());
+
+    assertEquals(0, reviewColumnStoreService.query(List.of(Dimension.ITEM),
+        new Filter(null, null, 12345L, null, null, null)).getMatched());
+
+    // what the menu ranking reads: item 1 has reviews 11 (now 5 stars) and 12, item 2 only 15
+    ReviewColumnStoreService.ItemTotals totals = reviewColumnStoreService.itemTotals();
+    Map<Long, long[]> byItem = new HashMap<>();
+    for (int i = 0; i < totals.itemIds().length; i++) {
+      byItem.put(totals.itemIds()[i], new long[] { totals.reviews()[i], totals.stars()[i] });
+    }
+    assertTrue(Arrays.equals(new long[] { 2, 7 }, byItem.get(1L)));
+    assertTrue(Arrays.equals(new long[] { 1, 1 }, byItem.get(2L)));
+    assertTrue(Arrays.equals(new long[] { 1, 3 }, byItem.get(99L)));
+  }
+
+  @Test
+  public void flagged_reviews_are_kept_but_not_counted() {
+    Instant earlier = Instant.now().minusSeconds(3600);
+    menuItem(1, "ortega", "Grill", earlier);
+    review(21, 1, 4, "2023-01-03", earlier);
+    review(22, 1, 1, "2023-01-03", earlier);
+    jdbcTemplate.update("update menu_item_review set flagged = true where id = 22");
+
+    reviewColumnStoreService.load();
+
+    ReviewAnalytics all = reviewColumnStoreService.query(List.of(), new Filter(null, null, null, null, null, null));
+    assertEquals(2, all.getRows());
+    assertEquals(1, all.getMatched());
+    assertEquals(4.0, all.getGroups().get(0).getAverageStars());
+    ReviewColumnStoreService.ItemTotals totals = reviewColumnStoreService.itemTotals();
+    assertEquals(1, totals.reviews()[0]);
+    assertEquals(4, totals.stars()[0]);
+
+    // moderation clears one flag, and another review is flagged
+    jdbcTemplate.update("update menu_item_review set flagged = not flagged, change_seq = null");
+    changeSequenceService.stamp();
+    reviewColumnStoreService.refresh();
+
+    all = reviewColumnStoreService.query(List.of(), new Filter(null, null, null, null, null, null));
+    assertEquals(1, all.getMatched());
+    assertEquals(1.0, all.getGroups().get(0).getAverageStars());
+    totals = reviewColumnStoreService.itemTotals();
+    assertEquals(1, totals.reviews()[0]);
+    assertEquals(1, totals.stars()[0]);
+  }
+
+  private static long min(long[] micros) {
+    return Arrays.stream(micros).min().orElseThrow();
+  }
+}
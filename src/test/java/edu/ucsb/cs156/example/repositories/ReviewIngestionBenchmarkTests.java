@@ -0,0 +1,169 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.services.NegativeLookupService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+import edu.ucsb.cs156.example.services.ReviewIngestionService;
+import lombok.extern.slf4j.Slf4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Lunch rush against a real (H2) database: many clients posting reviews,
+// one insert each versus the write-behind queue, timed until every review
+// is in the table.
+@Slf4j
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ ReviewIngestionService.class, JacksonAutoConfiguration.class })
+@TestPropertySource(properties = {
+    "app.reviews.ingestion.async=true",
+    "app.reviews.ingestion.capacity=5000",
+    "app.reviews.ingestion.batchSize=500",
+    "app.reviews.ingestion.flushMillis=20",
+    "app.reviews.ingestion.spillDirectory=target/review-spill-test",
+    "app.reviews.ingestion.node=benchmark"
+})
+public class ReviewIngestionBenchmarkTests {
+
+  private static final int CLIENTS = 16;
+  private static final int REVIEWS_PER_CLIENT = 1000;
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  ReviewIngestionService reviewIngestionService;
+
+  @MockBean
+  NegativeLookupService negativeLookupService;
+
+  @MockBean
+  ResponseCacheService responseCacheService;
+
+  @BeforeEach
+  public void emptyTable() {
+    menuItemReviewRepository.deleteAll();
+  }
+
+  private static MenuItemReview review(int client, int i) {
+    return MenuItemReview.builder()
+        .itemId(i % 50)
+        .reviewerEmail("student" + client + "@ucsb.edu")
+        .stars(1 + i % 5)
+        .dateReviewed(LocalDateTime.parse("2022-01-03T12:00:00").plusSeconds(i))
+        .comments("review " + client + "/" + i)
+        .build();
+  }
+
+  @Test
+  public void write_behind_and_one_insert_per_post_both_store_every_review() throws Exception {
+    int total = CLIENTS * REVIEWS_PER_CLIENT;
+
+    // a tenth of the load through both first, so neither is measured on a cold JIT
+    oneInsertPerPost(REVIEWS_PER_CLIENT / 10);
+    menuItemReviewRepository.deleteAll();
+    writeBehind(REVIEWS_PER_CLIENT / 10);
+    menuItemReviewRepository.deleteAll();
+
+    long syncNanos = oneInsertPerPost(REVIEWS_PER_CLIENT);
+    assertEquals(total, menuItemReviewRepository.count());
+    menuItemReviewRepository.deleteAll();
+
+    long asyncNanos = writeBehind(REVIEWS_PER_CLIENT);
+
+    assertEquals(total, menuItemReviewRepository.count());
+    Set<String> comments = new HashSet<>();
+    menuItemReviewRepository.findAll().forEach(review -> comments.add(review.getComments()));
+    assertEquals(total, comments.size());
+    assertEquals(0, reviewIngestionService.getQueued());
+
+    double syncRate = total / (syncNanos / 1e9);
+    double asyncRate = total / (asyncNanos / 1e9);
+    log.info("{} reviews from {} clients: {} reviews/s one insert per post, {} reviews/s write-behind ({}x)",
+        total, CLIENTS, Math.round(syncRate), Math.round(asyncRate), Math.round(asyncRate / syncRate * 10) / 10.0);
+  }
+
+  private long oneInsertPerPost(int perClient) throws Exception {
+    return rush(client -> {
+      for (int i = 0; i < perClient; i++) {
+        menuItemReviewRepository.save(review(client, i));
+      }
+    });
+  }
+
+  // until the last review is in the table; one thread waits for that, as
+  // sixteen polling the count would take turns from the writer
+  private long writeBehind(int perClient) throws Exception {
+    long offered = rush(client -> {
+      for (int i = 0; i < perClient; i++) {
+        // a full queue answers 503; a real client backs off and retries
+        while (!reviewIngestionService.offer(review(client, i))) {
+          Thread.onSpinWait();
+        }
+      }
+    });
+    long started = System.nanoTime();
+    awaitCount(CLIENTS * perClient);
+    return offered + System.nanoTime() - started;
+  }
+
+  private void awaitCount(long expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+    while (menuItemReviewRepository.count() < expected) {
+      assertTrue(System.nanoTime() < deadline, "reviews were not all inserted in time");
+      Thread.sleep(5);
+    }
+  }
+
+  private interface Client {
+    void run(int client) throws Exception;
+  }
+
+  // nanoseconds from the start signal until every client is done
+  private long rush(Client client) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(CLIENTS);
+    List<Future<?>> clients = new ArrayList<>();
+    for (int c = 0; c < CLIENTS; c++) {
+      int id = c;
+      clients.add(pool.submit(() -> {
+        start.await();
+        client.run(id);
+        return null;
+      }));
+    }
+    long started = System.nanoTime();
+    start.countDown();
+    for (Future<?> future : clients) {
+      future.get(120, TimeUnit.SECONDS);
+    }
+    long elapsed = System.nanoTime() - started;
+    pool.shutdown();
+    return elapsed;
+  }
+}
@@ -0,0 +1,222 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.entities.ReviewIngestCheckpoint;
+import edu.ucsb.cs156.example.services.NegativeLookupService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+import edu.ucsb.cs156.example.services.ReviewIngestionService;
+import edu.ucsb.cs156.example.structures.SpillLog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+
+// The write-behind queue against a real (H2) database: what happens to
+// reviews left in the spill file by a crash, and to reviews the database
+// won't take.
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ ReviewIngestionService.class, JacksonAutoConfiguration.class })
+@TestPropertySource(properties = {
+    "app.reviews.ingestion.async=true",
+    "app.reviews.ingestion.capacity=50",
+    "app.reviews.ingestion.batchSize=20",
+    "app.reviews.ingestion.flushMillis=20",
+    "app.reviews.ingestion.spillDirectory=target/review-ingestion-test",
+    "app.reviews.ingestion.node=test"
+})
+public class ReviewIngestionTests {
+
+  private static final Path SPILL = Path.of("target/review-ingestion-test");
+  private static final Path DEAD_LETTER = SPILL.resolve("dead-letter.jsonl");
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  ReviewIngestCheckpointRepository checkpointRepository;
+
+  @Autowired
+  ReviewIngestionService reviewIngestionService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @SpyBean
+  JdbcTemplate jdbcTemplate;
+
+  @MockBean
+  NegativeLookupService negativeLookupService;
+
+  @MockBean
+  ResponseCacheService responseCacheService;
+
+  @BeforeEach
+  public void emptyTable() throws Exception {
+    menuItemReviewRepository.deleteAll();
+    Files.deleteIfExists(DEAD_LETTER);
+  }
+
+  private static MenuItemReview review(int i, String comments) {
+    return MenuItemReview.builder()
+        .itemId(i % 50)
+        .reviewerEmail("student@ucsb.edu")
+        .stars(1 + i % 5)
+        .dateReviewed(LocalDateTime.parse("2022-01-03T12:00:00").plusSeconds(i))
+        .comments(comments)
+        .build();
+  }
+
+  // as if the process had died right after accepting these
+  private void crashWith(List<MenuItemReview> reviews) throws Exception {
+    reviewIngestionService.stop();
+    try (SpillLog spill = new SpillLog(SPILL, 1000, false)) {
+      spill.skipTo(checkpointRepository.findById("test").map(ReviewIngestCheckpoint::getLastSeq).orElse(0L));
+      for (MenuItemReview review : reviews) {
+        spill.append(mapper.writeValueAsString(review));
+      }
+    }
+  }
+
+  @Test
+  public void a_restart_inserts_what_the_spill_file_still_holds() throws Exception {
+    crashWith(List.of(review(0, "a"), review(1, "b"), review(2, "c")));
+
+    reviewIngestionService.start();
+
+    awaitCount(3);
+    awaitSpillEmpty();
+    assertTrue(reviewIngestionService.offer(review(3, "d")));
+    awaitCount(4);
+  }
+
+  @Test
+  public void a_review_the_database_refuses_is_set_aside_and_the_rest_go_in() throws Exception {
+    assertTrue(reviewIngestionService.offer(review(0, "fine")));
+    assertTrue(reviewIngestionService.offer(review(1, "x".repeat(300))));
+    assertTrue(reviewIngestionService.offer(review(2, "also fine")));
+
+    awaitCount(2);
+    awaitSpillEmpty();
+    List<String> setAside = Files.readAllLines(DEAD_LETTER);
+    assertEquals(1, setAside.size());
+    assertEquals("x".repeat(300), mapper.readValue(setAside.get(0), MenuItemReview.class).getComments());
+    assertEquals(0, reviewIngestionService.getQueued());
+
+    // and it doesn't hold up what comes after
+    assertTrue(reviewIngestionService.offer(review(3, "later")));
+    awaitCount(3);
+  }
+
+  @Test
+  public void a_batch_that_fails_for_a_passing_reason_is_retried_whole() throws Exception {
+    doThrow(new TransientDataAccessResourceException("the database is restarting"))
+        .doThrow(new DataAccessResourceFailureException("connection refused"))
+        .doCallRealMethod()
+        .when(jdbcTemplate).execute(any(ConnectionCallback.class));
+
+    assertTrue(reviewIngestionService.offer(review(0, "fine")));
+
+    awaitCount(1);
+    assertFalse(Files.exists(DEAD_LETTER));
+  }
+
+  @Test
+  public void a_full_queue_turns_reviews_away_until_the_writer_catches_up() throws Exception {
+    doThrow(new TransientDataAccessResourceException("the database is restarting"))
+        .doThrow(new TransientDataAccessResourceException("the database is restarting"))
+        .doCallRealMethod()
+        .when(jdbcTemplate).execute(any(ConnectionCallback.class));
+
+    int accepted = 0;
+    while (reviewIngestionService.offer(review(accepted, "r" + accepted))) {
+      accepted++;
+      assertTrue(accepted < 1000, "the queue never filled up");
+    }
+
+    // what was accepted goes in, a batch at a time, and there is room again
+    awaitCount(accepted);
+    awaitSpillEmpty();
+    assertTrue(reviewIngestionService.offer(review(accepted, "after")));
+    awaitCount(accepted + 1);
+  }
+
+  @Test
+  public void a_refused_review_that_cannot_be_set_aside_yet_is_retried() throws Exception {
+    // a directory where the file goes, so writing it fails
+    Files.createDirectories(DEAD_LETTER);
+    assertTrue(reviewIngestionService.offer(review(0, "fine")));
+    assertTrue(reviewIngestionService.offer(review(1, "x".repeat(300))));
+    assertTrue(reviewIngestionService.offer(review(2, "also fine")));
+
+    awaitCount(1);
+    Thread.sleep(300);
+    // still held up behind the refused review
+    assertEquals(1, menuItemReviewRepository.count());
+
+    Files.delete(DEAD_LETTER);
+    awaitCount(2);
+    assertEquals(1, Files.readAllLines(DEAD_LETTER).size());
+  }
+
+  @Test
+  public void a_refused_review_left_in_the_spill_file_does_not_stop_a_restart() throws Exception {
+    crashWith(List.of(review(0, "x".repeat(300)), review(1, "fine")));
+
+    reviewIngestionService.start();
+
+    awaitCount(1);
+    awaitSpillEmpty();
+    assertEquals(1, Files.readAllLines(DEAD_LETTER).size());
+    assertEquals("fine", menuItemReviewRepository.findAll().iterator().next().getComments());
+  }
+
+  private void awaitCount(long expected) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+    while (menuItemReviewRepository.count() < expected) {
+      assertTrue(System.nanoTime() < deadline, "reviews were not all inserted in time");
+      Thread.sleep(5);
+    }
+  }
+
+  // segments are released just after the insert commits
+  private void awaitSpillEmpty() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (true) {
+      try (SpillLog spill = new SpillLog(SPILL, 1000, false)) {
+        if (spill.getSegmentCount() == 0) {
+          return;
+        }
+      }
+      assertTrue(System.nanoTime() < deadline, "the spill file still holds inserted reviews");
+      Thread.sleep(5);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.EntityCacheStats;
+
+@ExtendWith(SpringExtension.class)
+@Import({ EntityCacheService.class, JacksonAutoConfiguration.class })
+@TestPropertySource(properties = "app.entityCache.maxBytes=100")
+class EntityCacheServiceTests {
+
+  @Autowired
+  private EntityCacheService entityCacheService;
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private Object load(String value) {
+    loads.incrementAndGet();
+    return Map.of("v", value);
+  }
+
+  @BeforeEach
+  void clear() {
+    entityCacheService.invalidateAll();
+  }
+
+  @Test
+  void hits_skip_the_loader_until_invalidated() throws Exception {
+    byte[] first = entityCacheService.get(UCSBDate.class, 1L, () -> load("a")).body();
+    byte[] second = entityCacheService.get(UCSBDate.class, 1L, () -> load("b")).body();
+
+    assertEquals(1, loads.get());
+    assertEquals("{\"v\":\"a\"}", new String(second));
+    assertEquals(new String(first), new String(second));
+
+    entityCacheService.invalidate(UCSBDate.class, 1L);
+    assertEquals("{\"v\":\"c\"}", new String(entityCacheService.get(UCSBDate.class, 1L, () -> load("c")).body()));
+
+    EntityCacheStats stats = entityCacheService.getStats();
+    assertEquals(1, stats.getHits());
+    assertEquals(2, stats.getMisses());
+    assertEquals(1, stats.getEntries());
+    assertEquals(9, stats.getBytes());
+    assertEquals(100, stats.getMaxBytes());
+  }
+
+  @Test
+  void keys_include_the_entity_type() throws Exception {
+    entityCacheService.get(UCSBDate.class, 1L, () -> load("a"));
+    entityCacheService.get(String.class, 1L, () -> load("b"));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void least_recently_used_entries_are_evicted_past_the_byte_limit() throws Exception {
+    // each body is {"v":"xxxxxxxxxxxxxxxxxxxxxxx"} = 31 bytes; three fit in 100
+    String value = "x".repeat(23);
+    for (long id = 1; id <= 3; id++) {
+      entityCacheService.get(UCSBDate.class, id, () -> load(value));
+    }
+    entityCacheService.get(UCSBDate.class, 1L, () -> load(value)); // touch 1
+    entityCacheService.get(UCSBDate.class, 4L, () -> load(value)); // evicts 2
+
+    EntityCacheStats stats = entityCacheService.getStats();
+    assertEquals(3, stats.getEntries());
+    assertEquals(93, stats.getBytes());
+    assertEquals(1, stats.getEvictions());
+
+    loads.set(0);
+    entityCacheService.get(UCSBDate.class, 1L, () -> load(value));
+    assertEquals(0, loads.get());
+    entityCacheService.get(UCSBDate.class, 2L, () -> load(value));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void bodies_larger_than_the_limit_are_not_cached() throws Exception {
+    entityCacheService.get(UCSBDate.class, 1L, () -> load("y".repeat(200)));
+    assertEquals(0, entityCacheService.getStats().getEntries());
+  }
+
+  @Test
+  void loader_exceptions_are_not_cached() throws Exception {
+    assertThrows(EntityNotFoundException.class, () -> entityCacheService.get(UCSBDate.class, 7L, () -> {
+      throw new EntityNotFoundException(UCSBDate.class, 7L);
+    }));
+    assertEquals(0, entityCacheService.getStats().getEntries());
+  }
+
+  @Test
+  void loads_racing_an_invalidation_are_not_cached() throws Exception {
+    entityCacheService.get(UCSBDate.class, 1L, () -> {
+      entityCacheService.invalidate(UCSBDate.class, 1L);
+      return load("stale");
+    });
+    assertEquals(0, entityCacheService.getStats().getEntries());
+  }
+}
@@ -0,0 +1,223 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListenerFactory;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.QueuePosition;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import({ HelpQueueService.class, TransactionalEventListenerFactory.class })
+@TestPropertySource(properties = { "app.helpQueue.maxWaitMinutes=30" })
+class HelpQueueServiceTests {
+
+  @Autowired
+  private HelpQueueService helpQueueService;
+
+  @Autowired
+  private ApplicationEventPublisher events;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  // enough of a transaction manager to run transaction synchronizations
+  private final TransactionTemplate transaction = new TransactionTemplate(new AbstractPlatformTransactionManager() {
+    @Override
+    protected Object doGetTransaction() {
+      return new Object();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+  });
+
+  private static HelpRequest request(long id, String teamId, int minutesAgo) {
+    return HelpRequest.builder()
+        .id(id)
+        .teamId(teamId)
+        .tableOrBreakoutRoom("1")
+        .requestTime(LocalDateTime.now().minusMinutes(minutesAgo))
+        .build();
+  }
+
+  @Test
+  void dispatch_takes_turns_between_teams_and_claims_each_request() {
+    when(helpRequestRepository.findBySolvedFalse())
+        .thenReturn(List.of(request(1, "a", 3), request(2, "a", 2), request(3, "b", 1)));
+    when(helpRequestRepository.claim(any(), eq("ta@ucsb.edu"), any())).thenReturn(1);
+    when(helpRequestRepository.findById(any()))
+        .thenAnswer(invocation -> Optional.of(request(invocation.getArgument(0), "x", 0)));
+    helpQueueService.load();
+
+    assertEquals(1L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+    assertEquals(3L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+    assertEquals(2L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+    assertTrue(helpQueueService.dispatch("ta@ucsb.edu").isEmpty());
+    verify(helpRequestRepository, times(3)).claim(any(), eq("ta@ucsb.edu"), any());
+  }
+
+  @Test
+  void a_request_waiting_past_the_limit_goes_next() {
+    when(helpRequestRepository.findBySolvedFalse())
+        .thenReturn(List.of(request(1, "a", 5), request(2, "b", 45), request(3, "b", 40)));
+    when(helpRequestRepository.claim(any(), any(), any())).thenReturn(1);
+    when(helpRequestRepository.findById(any()))
+        .thenAnswer(invocation -> Optional.of(request(invocation.getArgument(0), "x", 0)));
+    helpQueueService.load();
+
+    assertEquals(2L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+    assertEquals(3L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+    assertEquals(1L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+  }
+
+  @Test
+  void requests_claimed_elsewhere_are_skipped() {
+    when(helpRequestRepository.findBySolvedFalse())
+        .thenReturn(List.of(request(1, "a", 2), request(2, "b", 1)));
+    when(helpRequestRepository.claim(eq(1L), any(), any())).thenReturn(0);
+    when(helpRequestRepository.claim(eq(2L), any(), any())).thenReturn(1);
+    when(helpRequestRepository.findById(eq(2L))).thenReturn(Optional.of(request(2, "b", 1)));
+    helpQueueService.load();
+
+    assertEquals(2L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+    assertEquals(0, helpQueueService.size());
+  }
+
+  @Test
+  void offer_keeps_the_queue_in_step_with_writes() {
+    when(helpRequestRepository.findBySolvedFalse()).thenReturn(List.of());
+    helpQueueService.load();
+
+    HelpRequest waiting = request(1, "a", 1);
+    helpQueueService.offer(waiting);
+    helpQueueService.offer(request(2, "a", 1));
+    assertEquals(2, helpQueueService.size());
+
+    waiting.setSolved(true);
+    helpQueueService.offer(waiting);
+    assertEquals(1, helpQueueService.size());
+
+    helpQueueService.remove(2L);
+    assertEquals(0, helpQueueService.size());
+  }
+
+  @Test
+  void writes_only_reach_the_queue_once_they_commit() {
+    when(helpRequestRepository.findBySolvedFalse()).thenReturn(List.of());
+    helpQueueService.load();
+    HelpRequest waiting = request(1, "a", 1);
+
+    transaction.executeWithoutResult(status -> {
+      events.publishEvent(EntityChangedEvent.created(HelpRequest.class, 1L, waiting));
+      status.setRollbackOnly();
+    });
+    assertEquals(0, helpQueueService.size());
+
+    transaction.executeWithoutResult(status -> {
+      events.publishEvent(EntityChangedEvent.created(HelpRequest.class, 1L, waiting));
+      assertEquals(0, helpQueueService.size());
+    });
+    assertEquals(1, helpQueueService.size());
+
+    // outside a transaction, straight away
+    events.publishEvent(EntityChangedEvent.deleted(HelpRequest.class, 1L, waiting));
+    assertEquals(0, helpQueueService.size());
+  }
+
+  @Test
+  void a_dispatch_that_is_rolled_back_goes_back_in_line() {
+    when(helpRequestRepository.findBySolvedFalse()).thenReturn(List.of(request(1, "a", 2)));
+    when(helpRequestRepository.claim(eq(1L), any(), any())).thenReturn(1);
+    when(helpRequestRepository.findById(eq(1L))).thenReturn(Optional.of(request(1, "a", 2)));
+    helpQueueService.load();
+
+    transaction.executeWithoutResult(status -> {
+      assertEquals(1L, helpQueueService.dispatch("ta@ucsb.edu").get().getId());
+      assertEquals(0, helpQueueService.size());
+      status.setRollbackOnly();
+    });
+    assertEquals(1, helpQueueService.size());
+
+    transaction.executeWithoutResult(status -> helpQueueService.dispatch("ta@ucsb.edu"));
+    assertEquals(0, helpQueueService.size());
+  }
+
+  @Test
+  void position_is_the_rank_by_request_time_among_unsolved_requests() {
+    HelpRequest claimed = request(2, "b", 20);
+    claimed.setClaimedBy("ta@ucsb.edu");
+    when(helpRequestRepository.findBySolvedFalse())
+        .thenReturn(List.of(request(1, "a", 10), claimed, request(3, "c", 5)));
+    helpQueueService.load();
+
+    QueuePosition position = helpQueueService.position(3L).get();
+    assertEquals(3, position.getPosition());
+    assertEquals(3, position.getWaiting());
+    assertNull(position.getEstimatedWaitSeconds());
+    assertEquals(1, helpQueueService.position(2L).get().getPosition());
+    assertTrue(helpQueueService.position(99L).isEmpty());
+
+    // a newer request goes to the back; deleting one ahead moves everyone up
+    helpQueueService.offer(request(4, "a", 0));
+    assertEquals(4, helpQueueService.position(4L).get().getPosition());
+    helpQueueService.remove(2L);
+    assertEquals(2, helpQueueService.position(3L).get().getPosition());
+    assertEquals(3, helpQueueService.position(4L).get().getWaiting());
+  }
+
+  @Test
+  void solving_requests_leaves_the_line_and_gives_a_wait_estimate() {
+    HelpRequest first = request(1, "a", 10);
+    HelpRequest second = request(2, "b", 5);
+    when(helpRequestRepository.findBySolvedFalse()).thenReturn(List.of(first, second, request(3, "c", 1)));
+    helpQueueService.load();
+
+    first.setSolved(true);
+    helpQueueService.offer(first);
+    second.setSolved(true);
+    helpQueueService.offer(second);
+
+    assertTrue(helpQueueService.position(1L).isEmpty());
+    QueuePosition position = helpQueueService.position(3L).get();
+    assertEquals(1, position.getPosition());
+    // nobody is ahead of it
+    assertNotNull(position.getEstimatedWaitSeconds());
+    assertEquals(0L, position.getEstimatedWaitSeconds());
+  }
+}
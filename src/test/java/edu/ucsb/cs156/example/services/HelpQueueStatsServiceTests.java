@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.HelpQueueStats;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(HelpQueueStatsService.class)
+@TestPropertySource(properties = { "app.helpQueue.rateWindowMinutes=10" })
+class HelpQueueStatsServiceTests {
+
+  @Autowired
+  private HelpQueueStatsService helpQueueStatsService;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  private static HelpRequest request(long id, String teamId, String table, String requestTime) {
+    return HelpRequest.builder()
+        .id(id)
+        .teamId(teamId)
+        .tableOrBreakoutRoom(table)
+        .requestTime(LocalDateTime.parse(requestTime))
+        .build();
+  }
+
+  @BeforeEach
+  void load() {
+    when(helpRequestRepository.findBySolvedFalse()).thenReturn(List.of(
+        request(1, "team1", "table1", "2022-01-03T10:00:00"),
+        request(2, "team1", "table2", "2022-01-03T09:00:00"),
+        request(3, "team2", "table2", "2022-01-03T11:00:00")));
+    helpQueueStatsService.load();
+  }
+
+  @Test
+  void counts_open_requests_per_team_and_table() {
+    HelpQueueStats stats = helpQueueStatsService.getStats();
+
+    assertEquals(3, stats.getOpen());
+    assertEquals(Map.of("team1", 2L, "team2", 1L), stats.getOpenByTeam());
+    assertEquals(Map.of("table1", 1L, "table2", 2L), stats.getOpenByTable());
+    assertEquals(2L, stats.getOldestOpenId());
+    assertEquals(LocalDateTime.parse("2022-01-03T09:00:00"), stats.getOldestOpenRequestTime());
+    assertEquals(0, stats.getSolvesLastMinute());
+  }
+
+  @Test
+  void updates_move_counts_and_solves_are_rated() {
+    // moved to another table
+    helpQueueStatsService.record(request(1, "team1", "table2", "2022-01-03T10:00:00"));
+    HelpRequest oldest = request(2, "team1", "table2", "2022-01-03T09:00:00");
+    oldest.setSolved(true);
+    helpQueueStatsService.record(oldest);
+    // solving it again isn't a second solve
+    helpQueueStatsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, 2L, null, oldest));
+    helpQueueStatsService.helpRequestChanged(EntityChangedEvent.deleted(HelpRequest.class, 3L, null));
+
+    HelpQueueStats stats = helpQueueStatsService.getStats();
+    assertEquals(1, stats.getOpen());
+    assertEquals(Map.of("team1", 1L), stats.getOpenByTeam());
+    assertEquals(Map.of("table2", 1L), stats.getOpenByTable());
+    assertEquals(1L, stats.getOldestOpenId());
+    assertEquals(1, stats.getSolvesLastMinute());
+    assertEquals(0.1, stats.getSolvesPerMinute(), 1e-9);
+    assertEquals(10, stats.getSolvesPerMinuteWindowMinutes());
+  }
+
+  @Test
+  void an_empty_queue_has_no_oldest_request() {
+    helpQueueStatsService.removed(1L);
+    helpQueueStatsService.removed(2L);
+    helpQueueStatsService.removed(3L);
+
+    HelpQueueStats stats = helpQueueStatsService.getStats();
+    assertEquals(0, stats.getOpen());
+    assertEquals(Map.of(), stats.getOpenByTeam());
+    assertNull(stats.getOldestOpenId());
+  }
+}
@@ -0,0 +1,222 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.entities.HelpRequestDailySketch;
+import edu.ucsb.cs156.example.models.HelpRequestAnalytics;
+import edu.ucsb.cs156.example.repositories.HelpRequestDailySketchRepository;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.HyperLogLog;
+import edu.ucsb.cs156.example.structures.LogHistogram;
+
+@ExtendWith(SpringExtension.class)
+@Import(HelpRequestAnalyticsService.class)
+@TestPropertySource(properties = { "app.analytics.node=node-a", "app.analytics.flushSeconds=3600" })
+class HelpRequestAnalyticsServiceTests {
+
+  private static final LocalDate MONDAY = LocalDate.parse("2022-01-03");
+  private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+  @Autowired
+  private HelpRequestAnalyticsService helpRequestAnalyticsService;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @MockBean
+  HelpRequestDailySketchRepository helpRequestDailySketchRepository;
+
+  @MockBean
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @BeforeEach
+  void emptyTables() {
+    when(helpRequestDailySketchRepository.findByNode("node-a")).thenReturn(List.of());
+    when(helpRequestDailySketchRepository.count()).thenReturn(1L);
+    when(helpRequestDailySketchRepository.save(any())).thenAnswer(invocation -> {
+      HelpRequestDailySketch row = invocation.getArgument(0);
+      if (row.getId() == null) {
+        row.setId(row.getSketchDate().toEpochDay());
+      }
+      return row;
+    });
+    helpRequestAnalyticsService.load();
+  }
+
+  private static HelpRequest request(String email, LocalDate day) {
+    return HelpRequest.builder().requesterEmail(email).requestTime(day.atTime(10, 0)).build();
+  }
+
+  private static Instant minutesAfter(HelpRequest helpRequest, long minutes) {
+    return helpRequest.getRequestTime().plusMinutes(minutes).atZone(ZoneId.systemDefault()).toInstant();
+  }
+
+  @Test
+  void counts_distinct_requesters_across_days_and_wait_percentiles() {
+    for (int i = 0; i < 100; i++) {
+      HelpRequest helpRequest = request("Student" + i + "@ucsb.edu", MONDAY);
+      helpRequestAnalyticsService.requested(helpRequest);
+      helpRequestAnalyticsService.waited(helpRequest, minutesAfter(helpRequest, i < 90 ? 5 : 60));
+      // the same students, differently written, come back on Tuesday
+      helpRequestAnalyticsService.requested(request(" student" + i + "@UCSB.edu", TUESDAY));
+    }
+
+    HelpRequestAnalytics analytics = helpRequestAnalyticsService.analytics(MONDAY, TUESDAY);
+
+    assertEquals(100, analytics.getDistinctRequesters(), 2);
+    assertEquals(100, analytics.getWaits());
+    assertEquals(300, analytics.getWaitSecondsP50(), 300 / 64);
+    assertEquals(300, analytics.getWaitSecondsP90(), 300 / 64);
+    assertEquals(3600, analytics.getWaitSecondsP99(), 3600 / 64);
+  }
+
+  @Test
+  void a_wait_ends_at_the_first_claim_or_at_a_solve_nobody_claimed() {
+    HelpRequest claimed = request("a@ucsb.edu", MONDAY);
+    HelpRequest solved = request("b@ucsb.edu", MONDAY);
+    HelpRequest edited = request("c@ucsb.edu", MONDAY);
+    for (HelpRequest helpRequest : List.of(claimed, solved, edited)) {
+      helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.created(HelpRequest.class, null, helpRequest));
+    }
+
+    HelpRequest claimedNow = claimed.toBuilder().claimedAt(minutesAfter(claimed, 5)).build();
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, null, claimed, claimedNow));
+    // solving it later doesn't end its wait again
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, null, claimedNow,
+        claimedNow.toBuilder().solved(true).solvedAt(minutesAfter(claimed, 60)).build()));
+    HelpRequest solvedNow = solved.toBuilder().solved(true).solvedAt(minutesAfter(solved, 5)).build();
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, null, solved, solvedNow));
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, null, solvedNow, solvedNow));
+    // an edit, an update without the request before it and a delete end nothing
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, null, edited, edited));
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, null, null,
+        edited.toBuilder().claimedAt(minutesAfter(edited, 5)).build()));
+    helpRequestAnalyticsService.helpRequestChanged(EntityChangedEvent.deleted(HelpRequest.class, null, edited));
+
+    HelpRequestAnalytics analytics = helpRequestAnalyticsService.analytics(MONDAY, MONDAY);
+
+    assertEquals(3, analytics.getDistinctRequesters());
+    assertEquals(2, analytics.getWaits());
+    assertEquals(300, analytics.getWaitSecondsP99(), 300 / 64);
+  }
+
+  @Test
+  void days_outside_the_range_are_left_out_and_no_waits_means_no_percentiles() {
+    helpRequestAnalyticsService.requested(request("a@ucsb.edu", MONDAY));
+    helpRequestAnalyticsService.requested(request("b@ucsb.edu", TUESDAY));
+
+    HelpRequestAnalytics analytics = helpRequestAnalyticsService.analytics(TUESDAY, TUESDAY);
+
+    assertEquals(1, analytics.getDistinctRequesters());
+    assertEquals(0, analytics.getWaits());
+    assertNull(analytics.getWaitSecondsP50());
+  }
+
+  @Test
+  void other_nodes_sketches_are_merged_from_the_table() {
+    helpRequestAnalyticsService.requested(request("a@ucsb.edu", MONDAY));
+    HyperLogLog theirRequesters = new HyperLogLog(12);
+    theirRequesters.add("a@ucsb.edu");
+    theirRequesters.add("b@ucsb.edu");
+    LogHistogram theirWaits = new LogHistogram();
+    theirWaits.record(120);
+    when(helpRequestDailySketchRepository.findBySketchDateBetweenAndNodeNot(MONDAY, MONDAY, "node-a")).thenReturn(List.of(
+        HelpRequestDailySketch.builder().sketchDate(MONDAY).node("node-b")
+            .requesters(theirRequesters.toBytes()).waits(theirWaits.toBytes()).build()));
+
+    HelpRequestAnalytics analytics = helpRequestAnalyticsService.analytics(MONDAY, MONDAY);
+
+    assertEquals(2, analytics.getDistinctRequesters());
+    assertEquals(1, analytics.getWaits());
+    assertEquals(120, analytics.getWaitSecondsP50());
+  }
+
+  @Test
+  void flush_saves_only_the_days_that_changed_and_updates_their_rows() {
+    helpRequestAnalyticsService.requested(request("a@ucsb.edu", MONDAY));
+    helpRequestAnalyticsService.requested(request("b@ucsb.edu", TUESDAY));
+    helpRequestAnalyticsService.flush();
+    helpRequestAnalyticsService.flush();
+    verify(helpRequestDailySketchRepository, times(2)).save(any());
+
+    helpRequestAnalyticsService.requested(request("c@ucsb.edu", MONDAY));
+    helpRequestAnalyticsService.flush();
+
+    ArgumentCaptor<HelpRequestDailySketch> saved = ArgumentCaptor.forClass(HelpRequestDailySketch.class);
+    verify(helpRequestDailySketchRepository, times(3)).save(saved.capture());
+    HelpRequestDailySketch monday = saved.getAllValues().get(2);
+    assertEquals(MONDAY.toEpochDay(), monday.getId());
+    assertEquals("node-a", monday.getNode());
+    assertEquals(2, HyperLogLog.fromBytes(monday.getRequesters()).estimate());
+  }
+
+  @Test
+  void load_restores_this_nodes_sketches_without_a_scan() {
+    HyperLogLog requesters = new HyperLogLog(12);
+    requesters.add("a@ucsb.edu");
+    when(helpRequestDailySketchRepository.findByNode("node-a")).thenReturn(List.of(
+        HelpRequestDailySketch.builder().id(7L).sketchDate(MONDAY).node("node-a")
+            .requesters(requesters.toBytes()).waits(new LogHistogram().toBytes()).build()));
+
+    helpRequestAnalyticsService.load();
+    helpRequestAnalyticsService.requested(request("b@ucsb.edu", MONDAY));
+    helpRequestAnalyticsService.flush();
+
+    assertEquals(2, helpRequestAnalyticsService.analytics(MONDAY, MONDAY).getDistinctRequesters());
+    verify(helpRequestRepository, times(0)).findAll();
+    ArgumentCaptor<HelpRequestDailySketch> saved = ArgumentCaptor.forClass(HelpRequestDailySketch.class);
+    verify(helpRequestDailySketchRepository).save(saved.capture());
+    assertEquals(7L, saved.getValue().getId());
+  }
+
+  @Test
+  void the_first_load_ever_builds_the_sketches_from_the_help_requests() {
+    HelpRequest claimed = request("a@ucsb.edu", MONDAY);
+    claimed.setClaimedAt(minutesAfter(claimed, 2));
+    claimed.setSolvedAt(minutesAfter(claimed, 30));
+    HelpRequest solved = request("b@ucsb.edu", MONDAY);
+    solved.setSolvedAt(minutesAfter(solved, 10));
+    HelpRequest waiting = request("c@ucsb.edu", TUESDAY);
+    when(helpRequestDailySketchRepository.count()).thenReturn(0L);
+    when(helpRequestRepository.findAll()).thenReturn(List.of(claimed, solved, waiting));
+
+    helpRequestAnalyticsService.load();
+
+    HelpRequestAnalytics analytics = helpRequestAnalyticsService.analytics(MONDAY, TUESDAY);
+    assertEquals(3, analytics.getDistinctRequesters());
+    assertEquals(2, analytics.getWaits());
+    assertEquals(120, analytics.getWaitSecondsP50());
+    assertEquals(600, analytics.getWaitSecondsP90(), 600 / 64);
+    ArgumentCaptor<HelpRequestDailySketch> saved = ArgumentCaptor.forClass(HelpRequestDailySketch.class);
+    verify(helpRequestDailySketchRepository, times(2)).save(saved.capture());
+    Map<LocalDate, String> nodes = saved.getAllValues().stream()
+        .collect(Collectors.toMap(HelpRequestDailySketch::getSketchDate, HelpRequestDailySketch::getNode));
+    assertEquals(Map.of(MONDAY, "node-a", TUESDAY, "node-a"), nodes);
+  }
+}
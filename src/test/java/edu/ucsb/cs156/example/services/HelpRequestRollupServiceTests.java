@@ -0,0 +1,249 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import edu.ucsb.cs156.example.entities.ArchivedHelpRequest;
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.entities.HelpRequestHourly;
+import edu.ucsb.cs156.example.models.Heatmap;
+import edu.ucsb.cs156.example.models.HeatmapCell;
+import edu.ucsb.cs156.example.repositories.HelpRequestHourlyRepository;
+import edu.ucsb.cs156.example.repositories.ArchivedHelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(HelpRequestRollupService.class)
+@TestPropertySource(properties = { "app.heatmap.backfillChunkSize=10", "app.heatmap.backfillParallelism=4" })
+class HelpRequestRollupServiceTests {
+
+  // a Monday
+  private static final LocalDateTime MONDAY_9 = LocalDateTime.parse("2022-01-03T09:00:00");
+
+  @Autowired
+  private HelpRequestRollupService helpRequestRollupService;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @MockBean
+  HelpRequestHourlyRepository helpRequestHourlyRepository;
+
+  @MockBean
+  ArchivedHelpRequestRepository archivedHelpRequestRepository;
+
+  @MockBean
+  PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  void stubTransactions() {
+    when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+  }
+
+  private static HelpRequest request(long id, LocalDateTime requestTime, Integer solvedAfterMinutes) {
+    return HelpRequest.builder()
+        .id(id)
+        .requestTime(requestTime)
+        .solved(solvedAfterMinutes != null)
+        .solvedAt(solvedAfterMinutes == null ? null
+            : requestTime.plusMinutes(solvedAfterMinutes).atZone(ZoneId.systemDefault()).toInstant())
+        .build();
+  }
+
+  @Test
+  void a_contribution_is_the_hour_of_the_request_and_its_solve_time() {
+    HelpRequestRollupService.Contribution contribution =
+        HelpRequestRollupService.contributionOf(request(1, MONDAY_9.plusMinutes(40), 30));
+
+    assertEquals(new HelpRequestRollupService.Contribution(MONDAY_9, true, 1800L), contribution);
+    assertNull(HelpRequestRollupService.contributionOf(null));
+
+    HelpRequest solvedWithoutTime = request(2, MONDAY_9, null);
+    solvedWithoutTime.setSolved(true);
+    assertEquals(new HelpRequestRollupService.Contribution(MONDAY_9, true, null),
+        HelpRequestRollupService.contributionOf(solvedWithoutTime));
+  }
+
+  @Test
+  void a_solve_moves_counts_within_the_hour_with_increments() {
+    when(helpRequestHourlyRepository.increment(any(), anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(1);
+
+    helpRequestRollupService.changed(
+        HelpRequestRollupService.contributionOf(request(1, MONDAY_9, null)),
+        HelpRequestRollupService.contributionOf(request(1, MONDAY_9, 30)));
+
+    verify(helpRequestHourlyRepository).increment(MONDAY_9, -1, 0, 0, 0);
+    verify(helpRequestHourlyRepository).increment(MONDAY_9, 1, 1, 1, 1800);
+    verify(helpRequestHourlyRepository, times(0)).save(any());
+  }
+
+  @Test
+  void writes_apply_the_request_before_and_after_them() {
+    when(helpRequestHourlyRepository.increment(any(), anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(1);
+    HelpRequest open = request(1, MONDAY_9, null);
+
+    helpRequestRollupService.helpRequestChanged(EntityChangedEvent.created(HelpRequest.class, 1L, open));
+    helpRequestRollupService.helpRequestChanged(EntityChangedEvent.deleted(HelpRequest.class, 1L, open));
+
+    verify(helpRequestHourlyRepository).increment(MONDAY_9, 1, 0, 0, 0);
+    verify(helpRequestHourlyRepository).increment(MONDAY_9, -1, 0, 0, 0);
+  }
+
+  @Test
+  void an_unchanged_contribution_writes_nothing() {
+    HelpRequestRollupService.Contribution contribution =
+        HelpRequestRollupService.contributionOf(request(1, MONDAY_9, null));
+
+    helpRequestRollupService.changed(contribution, contribution);
+
+    verifyNoInteractions(helpRequestHourlyRepository);
+  }
+
+  @Test
+  void the_first_request_of_an_hour_inserts_its_row() {
+    when(helpRequestHourlyRepository.increment(any(), anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(0);
+
+    helpRequestRollupService.changed(null, HelpRequestRollupService.contributionOf(request(1, MONDAY_9, null)));
+
+    verify(helpRequestHourlyRepository).save(new HelpRequestHourly(MONDAY_9, 1, 0, 0, 0, null));
+  }
+
+  @Test
+  void losing_the_race_to_insert_an_hour_falls_back_to_an_increment() {
+    when(helpRequestHourlyRepository.increment(any(), anyLong(), anyLong(), anyLong(), anyLong())).thenReturn(0, 1);
+    when(helpRequestHourlyRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+    helpRequestRollupService.changed(null, HelpRequestRollupService.contributionOf(request(1, MONDAY_9, null)));
+
+    verify(helpRequestHourlyRepository, times(2)).increment(MONDAY_9, 1, 0, 0, 0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void backfill_rolls_up_every_request_in_parallel_chunks_and_replaces_the_rows() {
+    List<HelpRequest> helpRequests = new ArrayList<>();
+    for (long id = 1; id <= 100; id++) {
+      // ids 1..100 spread over 4 hours; the even ones solved after 10 minutes
+      helpRequests.add(request(id, MONDAY_9.plusHours(id % 4), id % 2 == 0 ? 10 : null));
+    }
+    when(helpRequestRepository.findMinId()).thenReturn(1L);
+    when(helpRequestRepository.findMaxId()).thenReturn(100L);
+    when(helpRequestRepository.findByIdBetween(anyLong(), anyLong())).thenAnswer(invocation -> {
+      long from = invocation.getArgument(0);
+      long to = invocation.getArgument(1);
+      return helpRequests.stream()
+          .filter(helpRequest -> helpRequest.getId() >= from && helpRequest.getId() <= to)
+          .collect(Collectors.toList());
+    });
+
+    assertEquals(4, helpRequestRollupService.backfill());
+
+    ArgumentCaptor<Iterable<HelpRequestHourly>> rows = ArgumentCaptor.forClass(Iterable.class);
+    InOrder inOrder = inOrder(helpRequestHourlyRepository);
+    inOrder.verify(helpRequestHourlyRepository).deleteAllRows();
+    inOrder.verify(helpRequestHourlyRepository).saveAll(rows.capture());
+    Map<LocalDateTime, HelpRequestHourly> byHour = new HashMap<>();
+    rows.getValue().forEach(row -> byHour.put(row.getHourStart(), row));
+    assertEquals(new HelpRequestHourly(MONDAY_9, 25, 25, 25, 25 * 600, null), byHour.get(MONDAY_9));
+    assertEquals(new HelpRequestHourly(MONDAY_9.plusHours(1), 25, 0, 0, 0, null), byHour.get(MONDAY_9.plusHours(1)));
+    // 100 ids in chunks of at most 10
+    verify(helpRequestRepository, times(16)).findByIdBetween(anyLong(), anyLong());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void backfill_counts_archived_requests_too() {
+    when(helpRequestRepository.findMinId()).thenReturn(1L);
+    when(helpRequestRepository.findMaxId()).thenReturn(1L);
+    when(helpRequestRepository.findByIdBetween(1L, 1L)).thenReturn(List.of(request(1, MONDAY_9, null)));
+    when(archivedHelpRequestRepository.findMinId()).thenReturn(2L);
+    when(archivedHelpRequestRepository.findMaxId()).thenReturn(2L);
+    HelpRequest archived = request(2, MONDAY_9, 20);
+    when(archivedHelpRequestRepository.findByIdBetween(2L, 2L)).thenReturn(List.of(ArchivedHelpRequest.builder()
+        .id(2L).requestTime(archived.getRequestTime()).solved(true).solvedAt(archived.getSolvedAt()).build()));
+
+    assertEquals(1, helpRequestRollupService.backfill());
+
+    ArgumentCaptor<Iterable<HelpRequestHourly>> rows = ArgumentCaptor.forClass(Iterable.class);
+    verify(helpRequestHourlyRepository).saveAll(rows.capture());
+    List<HelpRequestHourly> saved = new ArrayList<>();
+    rows.getValue().forEach(saved::add);
+    assertEquals(List.of(new HelpRequestHourly(MONDAY_9, 2, 1, 1, 1200, null)), saved);
+  }
+
+  @Test
+  void backfill_of_no_requests_just_clears_the_rows() {
+    when(helpRequestRepository.findMinId()).thenReturn(null);
+
+    assertEquals(0, helpRequestRollupService.backfill());
+
+    verify(helpRequestHourlyRepository).deleteAllRows();
+    verify(helpRequestRepository, times(0)).findByIdBetween(anyLong(), anyLong());
+  }
+
+  @Test
+  void load_only_backfills_when_there_are_no_rows() {
+    when(helpRequestHourlyRepository.count()).thenReturn(3L);
+    helpRequestRollupService.load();
+    verify(helpRequestRepository, times(0)).findMinId();
+
+    when(helpRequestHourlyRepository.count()).thenReturn(0L);
+    helpRequestRollupService.load();
+    verify(helpRequestRepository, times(1)).findMinId();
+  }
+
+  @Test
+  void the_heatmap_folds_hours_into_days_of_the_week() {
+    LocalDate from = LocalDate.parse("2022-01-03");
+    LocalDate to = LocalDate.parse("2022-01-16");
+    when(helpRequestHourlyRepository.findByHourStartBetween(from.atStartOfDay(), to.atTime(23, 0))).thenReturn(List.of(
+        new HelpRequestHourly(MONDAY_9, 3, 2, 2, 1200, null),
+        new HelpRequestHourly(MONDAY_9.plusWeeks(1), 1, 1, 0, 0, null),
+        new HelpRequestHourly(MONDAY_9.plusDays(2).plusHours(5), 4, 0, 0, 0, null)));
+
+    Heatmap heatmap = helpRequestRollupService.heatmap(from, to);
+
+    assertEquals(8, heatmap.getRequests());
+    assertEquals(3, heatmap.getSolved());
+    assertEquals(168, heatmap.getCells().size());
+    assertEquals(HeatmapCell.builder().dayOfWeek(DayOfWeek.MONDAY).hour(0).build(), heatmap.getCells().get(0));
+    assertEquals(HeatmapCell.builder().dayOfWeek(DayOfWeek.MONDAY).hour(9).requests(4).solved(3).averageSolveMinutes(10.0).build(),
+        heatmap.getCells().get(9));
+    assertEquals(HeatmapCell.builder().dayOfWeek(DayOfWeek.WEDNESDAY).hour(14).requests(4).build(),
+        heatmap.getCells().get(2 * 24 + 14));
+    verify(helpRequestHourlyRepository, times(1)).findByHourStartBetween(eq(from.atStartOfDay()), eq(to.atTime(23, 0)));
+  }
+}
@@ -0,0 +1,184 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(SpringExtension.class)
+@Import(IdempotencyService.class)
+@TestPropertySource(properties = { "app.idempotency.ttlSeconds=60", "app.idempotency.maxKeys=2" })
+class IdempotencyServiceTests {
+
+  @Autowired
+  private IdempotencyService idempotencyService;
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @BeforeEach
+  void clear() {
+    idempotencyService.clear();
+  }
+
+  @AfterEach
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void a_repeated_key_returns_the_first_result_without_running_again() {
+    AtomicInteger calls = new AtomicInteger();
+
+    Object first = idempotencyService.execute("k", () -> "result " + calls.incrementAndGet());
+    Object second = idempotencyService.execute("k", () -> "result " + calls.incrementAndGet());
+
+    assertEquals("result 1", first);
+    assertSame(first, second);
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void different_keys_run_separately() {
+    assertEquals("a", idempotencyService.execute("k1", () -> "a"));
+    assertEquals("b", idempotencyService.execute("k2", () -> "b"));
+  }
+
+  @Test
+  void a_failed_call_is_not_remembered() {
+    assertThrows(IllegalStateException.class, () -> idempotencyService.execute("k", () -> {
+      throw new IllegalStateException("db down");
+    }));
+
+    assertEquals("ok", idempotencyService.execute("k", () -> "ok"));
+  }
+
+  @Test
+  void keys_expire_after_the_ttl() {
+    ReflectionTestUtils.setField(idempotencyService, "ttlSeconds", 0L);
+    AtomicInteger calls = new AtomicInteger();
+
+    idempotencyService.execute("k", calls::incrementAndGet);
+    idempotencyService.execute("k", calls::incrementAndGet);
+
+    ReflectionTestUtils.setField(idempotencyService, "ttlSeconds", 60L);
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void only_the_most_recent_keys_are_kept() {
+    AtomicInteger calls = new AtomicInteger();
+
+    idempotencyService.execute("k1", calls::incrementAndGet);
+    idempotencyService.execute("k2", calls::incrementAndGet);
+    idempotencyService.execute("k3", calls::incrementAndGet);
+    idempotencyService.execute("k1", calls::incrementAndGet);
+
+    assertEquals(4, calls.get());
+  }
+
+  @Test
+  void a_duplicate_in_flight_waits_for_the_first_call() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+
+    Future<Integer> first = executor.submit(() -> idempotencyService.execute("k", () -> {
+      started.countDown();
+      await(release);
+      return calls.incrementAndGet();
+    }));
+    started.await(5, TimeUnit.SECONDS);
+    Future<Integer> duplicate = executor.submit(() -> idempotencyService.execute("k", calls::incrementAndGet));
+
+    release.countDown();
+
+    assertEquals(1, first.get(5, TimeUnit.SECONDS));
+    assertEquals(1, duplicate.get(5, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void a_duplicate_in_flight_runs_itself_if_the_first_call_fails() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Future<String> first = executor.submit(() -> idempotencyService.execute("k", () -> {
+      started.countDown();
+      await(release);
+      throw new IllegalStateException("db down");
+    }));
+    started.await(5, TimeUnit.SECONDS);
+    Future<String> duplicate = executor.submit(() -> idempotencyService.execute("k", () -> "retried"));
+
+    release.countDown();
+
+    assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+    assertEquals("retried", duplicate.get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void a_call_in_a_transaction_that_rolls_back_is_forgotten() {
+    AtomicInteger calls = new AtomicInteger();
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      assertEquals(1, idempotencyService.execute("k", calls::incrementAndGet));
+      // the same key again in the same transaction
+      assertEquals(1, idempotencyService.execute("k", calls::incrementAndGet));
+      complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals(2, idempotencyService.execute("k", calls::incrementAndGet));
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void a_duplicate_waits_until_the_first_call_commits() throws Exception {
+    TransactionSynchronizationManager.initSynchronization();
+    Future<String> duplicate;
+    try {
+      assertEquals("first", idempotencyService.execute("k", () -> "first"));
+      duplicate = executor.submit(() -> idempotencyService.execute("k", () -> "duplicate"));
+      Thread.sleep(100);
+      assertFalse(duplicate.isDone());
+      complete(TransactionSynchronization.STATUS_COMMITTED);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    assertEquals("first", duplicate.get(5, TimeUnit.SECONDS));
+    assertEquals("first", idempotencyService.execute("k", () -> "again"));
+  }
+
+  private static void complete(int status) {
+    TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(status));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
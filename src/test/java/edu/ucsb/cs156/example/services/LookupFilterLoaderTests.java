@@ -0,0 +1,145 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.ArticlesRepository;
+import edu.ucsb.cs156.example.repositories.ChangeClockRepository;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.repositories.RecRequestRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import({ LookupFilterLoader.class, NegativeLookupService.class })
+@TestPropertySource(properties = { "app.negativeLookup.reprimeSeconds=3600", "app.negativeLookup.refreshMillis=3600000",
+    "app.negativeLookup.settleSeconds=0" })
+class LookupFilterLoaderTests {
+
+  @Autowired
+  private LookupFilterLoader lookupFilterLoader;
+
+  @Autowired
+  private NegativeLookupService negativeLookupService;
+
+  @MockBean
+  ChangeClockRepository changeClockRepository;
+
+  @MockBean
+  ArticlesRepository articlesRepository;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @MockBean
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @MockBean
+  RecRequestRepository recRequestRepository;
+
+  @MockBean
+  UCSBDateRepository ucsbDateRepository;
+
+  @MockBean
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @MockBean
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @MockBean
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @BeforeEach
+  void clear() {
+    negativeLookupService.clear();
+  }
+
+  @Test
+  void primes_every_entity_type_with_existing_ids() {
+    when(helpRequestRepository.count()).thenReturn(2L);
+    when(helpRequestRepository.findAllIds()).thenReturn(List.of(1L, 3L));
+
+    lookupFilterLoader.start();
+    lookupFilterLoader.stop();
+
+    assertFalse(negativeLookupService.isKnownMissing(HelpRequest.class, 1L));
+    assertTrue(negativeLookupService.isKnownMissing(HelpRequest.class, 2L));
+    assertFalse(negativeLookupService.isKnownMissing(HelpRequest.class, 4L));
+  }
+
+  @Test
+  void a_failed_reprime_keeps_the_old_filters() {
+    when(helpRequestRepository.count()).thenReturn(2L);
+    when(helpRequestRepository.findAllIds()).thenReturn(List.of(1L, 3L));
+    lookupFilterLoader.primeLookupFilters();
+
+    when(helpRequestRepository.findAllIds()).thenThrow(new IllegalStateException("database unavailable"));
+    lookupFilterLoader.reprime();
+
+    verify(helpRequestRepository, times(2)).findAllIds();
+    assertTrue(negativeLookupService.isKnownMissing(HelpRequest.class, 2L));
+  }
+
+  @Test
+  void a_refresh_adds_what_was_written_since_the_clock_value_primed_from() {
+    when(changeClockRepository.current()).thenReturn(Optional.of(4L));
+    when(helpRequestRepository.count()).thenReturn(2L);
+    when(helpRequestRepository.findAllIds()).thenReturn(List.of(1L, 3L));
+    lookupFilterLoader.primeLookupFilters();
+    negativeLookupService.recordMiss(UCSBOrganization.class, "ZPR");
+    assertTrue(negativeLookupService.isKnownMissing(HelpRequest.class, 2L));
+
+    // 2 committed after the prime read the table; ZPR was added on another node
+    when(changeClockRepository.current()).thenReturn(Optional.of(6L));
+    when(helpRequestRepository.findIdsChangedAfter(4L)).thenReturn(List.of(2L, 5L));
+    when(ucsbOrganizationRepository.findIdsChangedAfter(4L)).thenReturn(List.of("ZPR"));
+    lookupFilterLoader.refreshLookupFilters();
+
+    assertFalse(negativeLookupService.isKnownMissing(HelpRequest.class, 2L));
+    assertTrue(negativeLookupService.isKnownMissing(HelpRequest.class, 4L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBOrganization.class, "ZPR"));
+
+    lookupFilterLoader.refreshLookupFilters();
+    verify(helpRequestRepository).findIdsChangedAfter(6L);
+  }
+
+  @Test
+  void a_failed_refresh_is_read_again_from_the_same_clock_value() {
+    when(changeClockRepository.current()).thenReturn(Optional.of(4L));
+    lookupFilterLoader.primeLookupFilters();
+
+    when(changeClockRepository.current()).thenReturn(Optional.of(6L));
+    when(helpRequestRepository.findIdsChangedAfter(4L))
+        .thenThrow(new IllegalStateException("database unavailable"))
+        .thenReturn(List.of());
+    lookupFilterLoader.refresh();
+    lookupFilterLoader.refresh();
+
+    verify(helpRequestRepository, times(2)).findIdsChangedAfter(4L);
+  }
+
+  @Test
+  void stopping_before_starting_does_nothing() {
+    new LookupFilterLoader().stop();
+  }
+}
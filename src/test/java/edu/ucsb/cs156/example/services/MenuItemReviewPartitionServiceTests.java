@@ -0,0 +1,55 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// What MenuItemReviewPartitionService decides, whatever the database; the
+// emulated strategy against H2 is in MenuItemReviewPartitionTests.
+class MenuItemReviewPartitionServiceTests {
+
+  private final ReviewPartitionStrategy strategy = mock(ReviewPartitionStrategy.class);
+  private final MenuItemReviewPartitionService menuItemReviewPartitions = new MenuItemReviewPartitionService();
+
+  @BeforeEach
+  void loaded() {
+    ReflectionTestUtils.setField(menuItemReviewPartitions, "strategy", strategy);
+  }
+
+  @Test
+  void a_month_the_database_could_not_create_is_tried_again() {
+    YearMonth march = YearMonth.of(2022, 3);
+    when(strategy.create(march)).thenReturn(false, true);
+
+    menuItemReviewPartitions.route(march.atDay(5).atStartOfDay());
+    assertEquals(List.of(), menuItemReviewPartitions.partitions().getMonths());
+
+    menuItemReviewPartitions.route(march.atDay(6).atStartOfDay());
+    menuItemReviewPartitions.route(march.atDay(7).atStartOfDay());
+    assertEquals(List.of(march), menuItemReviewPartitions.partitions().getMonths());
+    verify(strategy, times(2)).create(march);
+  }
+
+  @Test
+  void maintenance_moves_misplaced_reviews_into_their_month() {
+    YearMonth march = YearMonth.of(2022, 3);
+    when(strategy.create(any())).thenReturn(true);
+    when(strategy.misplaced()).thenReturn(List.of(march, YearMonth.now()));
+
+    menuItemReviewPartitions.maintain();
+
+    assertEquals(List.of(march, YearMonth.now()), menuItemReviewPartitions.partitions().getMonths());
+    verify(strategy, times(1)).create(march);
+    verify(strategy, times(1)).create(YearMonth.now());
+  }
+}
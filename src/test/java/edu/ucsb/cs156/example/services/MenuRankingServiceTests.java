@@ -0,0 +1,114 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
+import edu.ucsb.cs156.example.models.RankedMenu;
+import edu.ucsb.cs156.example.models.RankedMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(MenuRankingService.class)
+@TestPropertySource(properties = { "app.ranking.refreshSeconds=3600", "app.ranking.priorReviews=0" })
+class MenuRankingServiceTests {
+
+  private static final Instant AS_OF = Instant.parse("2023-01-02T12:00:00Z");
+
+  @MockBean
+  ReviewColumnStoreService reviewColumns;
+
+  @MockBean
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Autowired
+  private MenuRankingService menuRankingService;
+
+  private static UCSBDiningCommonsMenu menu(long id, String commons, String name) {
+    return UCSBDiningCommonsMenu.builder().id(id).diningCommonsCode(commons).name(name).station("Grill").build();
+  }
+
+  private void arrange() {
+    // item 1: one perfect review; item 2: a hundred averaging 4.8; item 3: none;
+    // item 4: ten poor ones; item 99: reviewed, but no longer on the menu
+    when(reviewColumns.itemTotals()).thenReturn(new ReviewColumnStoreService.ItemTotals(
+        new long[] { 1, 2, 3, 4, 99 },
+        new long[] { 1, 100, 0, 10, 5 },
+        new long[] { 5, 480, 0, 20, 15 },
+        AS_OF));
+    when(ucsbDiningCommonsMenuRepository.findAll()).thenReturn(List.of(
+        menu(1, "ortega", "Tofu"), menu(2, "ortega", "Burrito"), menu(3, "ortega", "Soup"),
+        menu(4, "carrillo", "Pasta")));
+  }
+
+  @Test
+  void nothing_is_ranked_before_the_first_run() {
+    // the context's service has been ranked by whichever test ran first
+    RankedMenu ranked = new MenuRankingService().ranked(null, 10);
+    assertEquals(Instant.EPOCH, ranked.getComputedAt());
+    assertTrue(ranked.getItems().isEmpty());
+  }
+
+  @Test
+  void many_good_reviews_outrank_one_perfect_one() {
+    arrange();
+
+    menuRankingService.rank();
+    RankedMenu ranked = menuRankingService.ranked(null, 10);
+
+    // 116 reviews of 4 items, 520 stars: m = 520 / 116 and C = 29, so C * m = 130
+    assertEquals(AS_OF, ranked.getComputedAt());
+    assertEquals(520.0 / 116, ranked.getPriorMean(), 1e-9);
+    assertEquals(29.0, ranked.getPriorReviews(), 1e-9);
+    List<RankedMenuItem> items = ranked.getItems();
+    assertEquals(List.of(2L, 1L, 4L), items.stream().map(RankedMenuItem::getId).toList());
+    assertEquals(610.0 / 129, items.get(0).getScore(), 1e-9);
+    assertEquals(4.8, items.get(0).getAverageStars(), 1e-9);
+    assertEquals(100, items.get(0).getReviews());
+    assertEquals("Burrito", items.get(0).getName());
+    assertEquals(135.0 / 30, items.get(1).getScore(), 1e-9);
+    assertEquals(5.0, items.get(1).getAverageStars(), 1e-9);
+    assertEquals(150.0 / 39, items.get(2).getScore(), 1e-9);
+  }
+
+  @Test
+  void a_dining_commons_gets_only_its_own_items_up_to_the_limit() {
+    arrange();
+
+    menuRankingService.rank();
+
+    RankedMenu ortega = menuRankingService.ranked("ortega", 1);
+    assertEquals("ortega", ortega.getCommons());
+    assertEquals(List.of(2L), ortega.getItems().stream().map(RankedMenuItem::getId).toList());
+    assertEquals(List.of(4L),
+        menuRankingService.ranked("carrillo", 10).getItems().stream().map(RankedMenuItem::getId).toList());
+    assertTrue(menuRankingService.ranked("portola", 10).getItems().isEmpty());
+  }
+
+  @Test
+  void a_new_ranking_replaces_the_old_one_whole() {
+    arrange();
+    menuRankingService.rank();
+
+    when(reviewColumns.itemTotals()).thenReturn(new ReviewColumnStoreService.ItemTotals(
+        new long[] { 3 }, new long[] { 2 }, new long[] { 8 }, AS_OF.plusSeconds(60)));
+    menuRankingService.rank();
+
+    RankedMenu ranked = menuRankingService.ranked(null, 10);
+    assertEquals(AS_OF.plusSeconds(60), ranked.getComputedAt());
+    assertEquals(List.of(3L), ranked.getItems().stream().map(RankedMenuItem::getId).toList());
+    assertEquals(4.0, ranked.getItems().get(0).getScore(), 1e-9);
+  }
+}
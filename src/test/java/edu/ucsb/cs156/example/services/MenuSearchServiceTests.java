@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenu;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.MenuSearchHit;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuRepository;
+
+@ExtendWith(SpringExtension.class)
+@Import(MenuSearchService.class)
+@TestPropertySource(properties = { "app.menuSearch.candidates=100", "app.menuSearch.maxLimit=50" })
+class MenuSearchServiceTests {
+
+  @MockBean
+  UCSBDiningCommonsMenuRepository ucsbDiningCommonsMenuRepository;
+
+  @Autowired
+  private MenuSearchService menuSearchService;
+
+  private static UCSBDiningCommonsMenu menu(long id, String commons, String name, String station) {
+    return UCSBDiningCommonsMenu.builder().id(id).diningCommonsCode(commons).name(name).station(station).build();
+  }
+
+  private static List<Long> ids(List<MenuSearchHit> hits) {
+    return hits.stream().map(MenuSearchHit::getId).toList();
+  }
+
+  private void load() {
+    menuSearchService.start();
+    when(ucsbDiningCommonsMenuRepository.findAll()).thenReturn(List.of(
+        menu(1, "ortega", "Orange Chicken", "Wok"),
+        menu(2, "portola", "Orange Chicken", "Entree Specials"),
+        menu(3, "ortega", "Chicken Tenders", "Grill"),
+        menu(4, "carrillo", "Tofu Bowl", "Vegan")));
+    menuSearchService.load();
+  }
+
+  @Test
+  void every_menu_item_is_searchable_after_loading() {
+    load();
+
+    List<MenuSearchHit> hits = menuSearchService.search("orange chiken", null, null, 10);
+
+    assertEquals(List.of(1L, 2L), ids(hits));
+    assertEquals("Orange Chicken", hits.get(0).getName());
+    assertEquals("ortega", hits.get(0).getDiningCommonsCode());
+    assertEquals("Wok", hits.get(0).getStation());
+    assertEquals(1, hits.get(0).getDistance());
+    assertEquals(50, menuSearchService.getMaxLimit());
+  }
+
+  @Test
+  void dining_commons_and_station_filter_ignoring_case() {
+    load();
+
+    assertEquals(List.of(1L, 3L), ids(menuSearchService.search("chicken", "Ortega", null, 10)).stream().sorted().toList());
+    assertEquals(List.of(3L), ids(menuSearchService.search("chicken", "ortega", "grill", 10)));
+    assertEquals(List.of(2L), ids(menuSearchService.search("chicken", null, "Entree Specials", 10)));
+    assertTrue(menuSearchService.search("chicken", "carrillo", null, 10).isEmpty());
+  }
+
+  @Test
+  void writes_update_the_index_as_they_happen() {
+    load();
+    UCSBDiningCommonsMenu tofu = menu(4, "carrillo", "Tofu Bowl", "Vegan");
+
+    menuSearchService.menuChanged(EntityChangedEvent.created(UCSBDiningCommonsMenu.class, 5L,
+        menu(5, "de-la-guerra", "Tofu Scramble", "Breakfast")));
+    menuSearchService.menuChanged(EntityChangedEvent.deleted(UCSBDiningCommonsMenu.class, 1L, null));
+    tofu.setName("Tempeh Bowl");
+    menuSearchService.index(tofu);
+    // not indexed again, so still found as it was
+    tofu.setDiningCommonsCode("portola");
+
+    assertEquals(List.of(5L), ids(menuSearchService.search("tofu", null, null, 10)));
+    assertEquals(List.of(2L), ids(menuSearchService.search("orange chicken", null, null, 10)));
+    assertEquals(List.of(4L), ids(menuSearchService.search("tempe", "carrillo", null, 10)));
+  }
+}
@@ -0,0 +1,169 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+
+@ExtendWith(SpringExtension.class)
+@Import(NegativeLookupService.class)
+@TestPropertySource(properties = { "app.negativeLookup.ttlSeconds=60", "app.negativeLookup.maxMisses=2",
+    "app.negativeLookup.settleSeconds=0" })
+class NegativeLookupServiceTests {
+
+  @Autowired
+  private NegativeLookupService negativeLookupService;
+
+  @BeforeEach
+  void clear() {
+    negativeLookupService.clear();
+    ReflectionTestUtils.setField(negativeLookupService, "settleSeconds", 0L);
+  }
+
+  @Test
+  void nothing_is_known_missing_before_priming() {
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 7L));
+  }
+
+  @Test
+  void recorded_misses_are_remembered_until_the_id_is_created() {
+    negativeLookupService.recordMiss(UCSBDate.class, 7L);
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 7L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDiningCommons.class, 7L));
+
+    negativeLookupService.recordCreated(UCSBDate.class, 7L);
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 7L));
+  }
+
+  @Test
+  void only_the_most_recent_misses_are_kept() {
+    negativeLookupService.recordMiss(UCSBDate.class, 1L);
+    negativeLookupService.recordMiss(UCSBDate.class, 2L);
+    negativeLookupService.recordMiss(UCSBDate.class, 3L);
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 1L));
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+  }
+
+  @Test
+  void primed_filter_rejects_unknown_ids_without_a_recorded_miss() {
+    negativeLookupService.prime(UCSBDate.class, 3, () -> List.of(1L, 2L, 5L));
+
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 2L));
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+
+    negativeLookupService.recordCreated(UCSBDate.class, 3L);
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+  }
+
+  @Test
+  void ids_above_the_largest_primed_one_are_looked_up_until_primed_again() {
+    negativeLookupService.prime(UCSBDate.class, 2, () -> List.of(1L, 2L));
+
+    // e.g. created by another node
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 4L));
+
+    negativeLookupService.prime(UCSBDate.class, 3, () -> List.of(1L, 2L, 4L));
+
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 4L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 5L));
+  }
+
+  @Test
+  void a_refresh_adds_ids_written_elsewhere_and_forgets_their_misses() {
+    negativeLookupService.prime(UCSBDate.class, 3, () -> List.of(1L, 2L, 5L));
+    negativeLookupService.recordMiss(UCSBDate.class, 7L);
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+
+    // 3 committed late on another node, 7 was created there after the miss
+    negativeLookupService.refresh(UCSBDate.class, List.of(3L, 7L));
+
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 7L));
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 6L));
+  }
+
+  @Test
+  void ids_are_only_rejected_below_a_bound_seen_settleSeconds_ago() {
+    ReflectionTestUtils.setField(negativeLookupService, "settleSeconds", 3600L);
+    negativeLookupService.prime(UCSBDate.class, 3, () -> List.of(1L, 2L, 5L));
+    negativeLookupService.refresh(UCSBDate.class, List.of(6L));
+
+    // 3 and 4 may still be held by transactions that haven't committed
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 4L));
+
+    ReflectionTestUtils.setField(negativeLookupService, "settleSeconds", 0L);
+    negativeLookupService.refresh(UCSBDate.class, List.of());
+
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 4L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 6L));
+  }
+
+  @Test
+  void the_bound_settles_in_the_order_ids_were_seen() throws Exception {
+    ReflectionTestUtils.setField(negativeLookupService, "settleSeconds", 1L);
+    negativeLookupService.prime(UCSBDate.class, 2, () -> List.of(1L, 3L));
+    Thread.sleep(1100);
+    negativeLookupService.refresh(UCSBDate.class, List.of(6L));
+
+    // 3 has settled, 6 hasn't yet
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 2L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 4L));
+
+    Thread.sleep(1100);
+    negativeLookupService.refresh(UCSBDate.class, List.of());
+
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 4L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 7L));
+  }
+
+  @Test
+  void ids_that_are_not_numbers_are_never_rejected_by_the_filter() {
+    negativeLookupService.prime(UCSBDiningCommons.class, 2, () -> List.of("ortega", "portola"));
+
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDiningCommons.class, "ortega"));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDiningCommons.class, "carrillo"));
+  }
+
+  @Test
+  void ids_created_while_priming_are_kept() {
+    negativeLookupService.prime(UCSBDate.class, 1, () -> {
+      negativeLookupService.recordCreated(UCSBDate.class, 2L);
+      return List.of(1L);
+    });
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 1L));
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 2L));
+  }
+
+  @Test
+  void an_unprimed_type_only_rejects_recorded_misses() {
+    negativeLookupService.prime(UCSBDate.class, 1, () -> List.of(1L));
+    negativeLookupService.recordMiss(UCSBDate.class, 3L);
+
+    negativeLookupService.unprime(UCSBDate.class);
+
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 2L));
+    assertTrue(negativeLookupService.isKnownMissing(UCSBDate.class, 3L));
+  }
+
+  @Test
+  void null_ids_are_ignored_on_create() {
+    negativeLookupService.recordCreated(UCSBDate.class, null);
+    assertFalse(negativeLookupService.isKnownMissing(UCSBDate.class, 1L));
+  }
+}
@@ -0,0 +1,113 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@Import({ ResponseCacheService.class, JacksonAutoConfiguration.class })
+class ResponseCacheServiceTests {
+
+  @Autowired
+  private ResponseCacheService responseCacheService;
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private List<String> bigListing() {
+    loads.incrementAndGet();
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      names.add("firstDayOfClasses" + i);
+    }
+    return names;
+  }
+
+  @BeforeEach
+  void clear() {
+    responseCacheService.invalidateAll();
+  }
+
+  @Test
+  void body_is_rendered_once_per_version() throws Exception {
+    ResponseEntity<byte[]> first = responseCacheService.serve("UCSBDate", null, this::bigListing);
+    ResponseEntity<byte[]> second = responseCacheService.serve("UCSBDate", null, this::bigListing);
+
+    assertEquals(1, loads.get());
+    assertArrayEquals(first.getBody(), second.getBody());
+    assertNull(second.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, second.getHeaders().getFirst(HttpHeaders.VARY));
+
+    responseCacheService.invalidate("UCSBDate");
+    responseCacheService.serve("UCSBDate", null, this::bigListing);
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void gzip_variant_is_served_when_accepted() throws Exception {
+    ResponseEntity<byte[]> identity = responseCacheService.serve("UCSBDate", "identity", this::bigListing);
+    ResponseEntity<byte[]> gzipped = responseCacheService.serve("UCSBDate", "gzip, deflate, br", this::bigListing);
+
+    assertEquals(1, loads.get());
+    assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertTrue(gzipped.getBody().length < identity.getBody().length);
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+      assertArrayEquals(identity.getBody(), in.readAllBytes());
+    }
+  }
+
+  @Test
+  void tiny_bodies_are_not_compressed() throws Exception {
+    ResponseEntity<byte[]> response = responseCacheService.serve("UCSBDate", "gzip", () -> List.of());
+
+    assertEquals("[]", new String(response.getBody()));
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  void invalidate_also_drops_variants() throws Exception {
+    responseCacheService.serve("HelpRequest", null, this::bigListing);
+    responseCacheService.serve("HelpRequest:includeArchived", null, this::bigListing);
+    responseCacheService.serve("HelpRequestStats", null, this::bigListing);
+    assertEquals(3, loads.get());
+
+    responseCacheService.invalidate("HelpRequest");
+
+    responseCacheService.serve("HelpRequest", null, this::bigListing);
+    responseCacheService.serve("HelpRequest:includeArchived", null, this::bigListing);
+    responseCacheService.serve("HelpRequestStats", null, this::bigListing);
+    assertEquals(5, loads.get());
+  }
+
+  @Test
+  void accept_encoding_parsing() throws IOException {
+    assertFalse(ResponseCacheService.accepts(null, "gzip"));
+    assertFalse(ResponseCacheService.accepts("", "gzip"));
+    assertTrue(ResponseCacheService.accepts("gzip", "gzip"));
+    assertTrue(ResponseCacheService.accepts("deflate, GZIP;q=0.5", "gzip"));
+    assertFalse(ResponseCacheService.accepts("gzip;q=0", "gzip"));
+    assertFalse(ResponseCacheService.accepts("gzip;q=nonsense", "gzip"));
+    assertTrue(ResponseCacheService.accepts("*", "gzip"));
+    assertFalse(ResponseCacheService.accepts("*;q=0", "gzip"));
+    assertFalse(ResponseCacheService.accepts("*, gzip;q=0", "gzip"));
+    assertTrue(ResponseCacheService.accepts("br;level=4, gzip", "gzip"));
+  }
+}
@@ -0,0 +1,120 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.ReviewBombingState;
+import edu.ucsb.cs156.example.services.ReviewBombingService.Verdict;
+
+@ExtendWith(SpringExtension.class)
+@Import(ReviewBombingService.class)
+@TestPropertySource(properties = { "app.reviews.bombing.windowMinutes=10", "app.reviews.bombing.suspectMinutes=30",
+    "app.reviews.bombing.badStars=2", "app.reviews.bombing.itemBadReviews=5", "app.reviews.bombing.itemBadShare=0.7",
+    "app.reviews.bombing.reviewerReviews=8", "app.reviews.bombing.action=flag" })
+class ReviewBombingServiceTests {
+
+  // on a minute boundary
+  private static final long NOON = Instant.parse("2023-01-02T12:00:00Z").toEpochMilli();
+
+  @Autowired
+  private ReviewBombingService reviewBombingService;
+
+  @BeforeEach
+  void restart() {
+    reviewBombingService.start();
+  }
+
+  private Verdict review(long itemId, String reviewer, int stars, long atMillis) {
+    return reviewBombingService.screen(
+        MenuItemReview.builder().itemId(itemId).reviewerEmail(reviewer).stars(stars).build(), atMillis);
+  }
+
+  private static long minutes(long n) {
+    return Duration.ofMinutes(n).toMillis();
+  }
+
+  @Test
+  void a_burst_of_bad_reviews_from_several_reviewers_flags_the_item() {
+    for (int i = 0; i < 4; i++) {
+      assertEquals(Verdict.ALLOW, review(1, "bot" + i + "@ucsb.edu", 1, NOON + i));
+    }
+    assertEquals(Verdict.FLAG, review(1, "bot4@ucsb.edu", 1, NOON + 4));
+    assertEquals(Verdict.FLAG, review(1, "bot5@ucsb.edu", 2, NOON + minutes(3)));
+
+    // good reviews of it, and bad reviews of other items, still go through
+    assertEquals(Verdict.ALLOW, review(1, "fan@ucsb.edu", 5, NOON + minutes(3)));
+    assertEquals(Verdict.ALLOW, review(2, "bot0@ucsb.edu", 1, NOON + minutes(3)));
+
+    ReviewBombingState state = reviewBombingService.state(NOON + minutes(4));
+    assertEquals(1, state.getItems().size());
+    assertEquals(1, state.getItems().get(0).getItemId());
+    assertEquals(6, state.getItems().get(0).getBadReviews());
+    assertEquals(Instant.ofEpochMilli(NOON + 4), state.getItems().get(0).getSince());
+    assertEquals(Instant.ofEpochMilli(NOON + minutes(33)), state.getItems().get(0).getUntil());
+    assertEquals(2, state.getFlagged());
+    assertEquals(0, state.getThrottled());
+  }
+
+  @Test
+  void an_item_with_mostly_good_reviews_is_not_suspect() {
+    for (int i = 0; i < 10; i++) {
+      review(3, "fan" + i + "@ucsb.edu", 5, NOON + i);
+    }
+    for (int i = 0; i < 6; i++) {
+      assertEquals(Verdict.ALLOW, review(3, "critic" + i + "@ucsb.edu", 1, NOON + minutes(1) + i));
+    }
+    assertTrue(reviewBombingService.state(NOON + minutes(2)).getItems().isEmpty());
+  }
+
+  @Test
+  void suspicion_lapses_once_the_burst_is_over() {
+    for (int i = 0; i < 5; i++) {
+      review(4, "bot" + i + "@ucsb.edu", 1, NOON + i);
+    }
+    assertEquals(Verdict.FLAG, review(4, "late@ucsb.edu", 1, NOON + minutes(29)));
+
+    // the window has moved past the burst and the last suspicion has run out
+    assertEquals(Verdict.ALLOW, review(4, "later@ucsb.edu", 1, NOON + minutes(60)));
+    assertTrue(reviewBombingService.state(NOON + minutes(60)).getItems().isEmpty());
+  }
+
+  @Test
+  void a_reviewer_posting_too_often_is_refused_whatever_the_stars() {
+    for (int i = 0; i < 8; i++) {
+      assertEquals(Verdict.ALLOW, review(10 + i, "Spammer@ucsb.edu", 5, NOON + i));
+    }
+    assertEquals(Verdict.REFUSE, review(20, "spammer@ucsb.edu ", 5, NOON + minutes(1)));
+    assertEquals(Verdict.ALLOW, review(20, "someone@ucsb.edu", 5, NOON + minutes(1)));
+
+    ReviewBombingState state = reviewBombingService.state(NOON + minutes(2));
+    assertEquals(1, state.getReviewers().size());
+    assertEquals("spammer@ucsb.edu", state.getReviewers().get(0).getReviewerEmail());
+    assertEquals(9, state.getReviewers().get(0).getReviews());
+    assertEquals(1, state.getThrottled());
+  }
+
+  @Test
+  void refused_attempts_do_not_keep_a_reviewer_suspect() {
+    for (int i = 0; i < 8; i++) {
+      review(10 + i, "spammer@ucsb.edu", 5, NOON + i);
+    }
+    // one attempt a minute, all refused, for as long as the suspicion lasts
+    for (int minute = 1; minute < 39; minute++) {
+      assertEquals(Verdict.REFUSE, review(20, "spammer@ucsb.edu", 5, NOON + minutes(minute)));
+    }
+    assertEquals(Verdict.ALLOW, review(20, "spammer@ucsb.edu", 5, NOON + minutes(40)));
+    assertEquals(38, reviewBombingService.state(NOON + minutes(40)).getThrottled());
+  }
+}
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.MinHashLsh;
+
+@ExtendWith(SpringExtension.class)
+@Import(SimilarQuestionsService.class)
+@TestPropertySource(properties = { "app.similarQuestions.threshold=0.5" })
+class SimilarQuestionsServiceTests {
+
+  @Autowired
+  private SimilarQuestionsService similarQuestionsService;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  private static HelpRequest request(long id, String explanation) {
+    return HelpRequest.builder().id(id).explanation(explanation).build();
+  }
+
+  @Test
+  void open_requests_are_indexed_and_solved_ones_leave() {
+    when(helpRequestRepository.findBySolvedFalse()).thenReturn(List.of(
+        request(1, "storybook fails to build after npm install"),
+        request(2, "Storybook fails to build after `npm install`"),
+        request(3, "how do I add a column to the entity")));
+    similarQuestionsService.load();
+
+    HelpRequest query = request(4, "storybook fails to build after npm install");
+    assertEquals(List.of(1L, 2L), similarQuestionsService.similar(query, 10).stream()
+        .map(MinHashLsh.Match::key).sorted().collect(Collectors.toList()));
+    assertEquals(1, similarQuestionsService.clusters().size());
+
+    HelpRequest solved = request(2, "Storybook fails to build after `npm install`");
+    solved.setSolved(true);
+    similarQuestionsService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, 2L, null, solved));
+    similarQuestionsService.helpRequestChanged(EntityChangedEvent.deleted(HelpRequest.class, 3L, null));
+
+    assertEquals(List.of(1L), similarQuestionsService.similar(query, 10).stream()
+        .map(MinHashLsh.Match::key).collect(Collectors.toList()));
+    assertTrue(similarQuestionsService.clusters().isEmpty());
+  }
+
+  @Test
+  void a_request_without_an_explanation_has_no_similar_requests() {
+    assertTrue(similarQuestionsService.similar(request(5, null), 10).isEmpty());
+  }
+}
@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.structures.TimerWheel;
+
+@ExtendWith(SpringExtension.class)
+@Import(SlaAlarmService.class)
+@TestPropertySource(properties = { "app.helpQueue.slaMinutes=20", "app.helpQueue.slaTickMillis=100" })
+class SlaAlarmServiceTests {
+
+  @Autowired
+  private SlaAlarmService slaAlarmService;
+
+  @MockBean
+  HelpRequestRepository helpRequestRepository;
+
+  @MockBean
+  SlaAlarmSink sink;
+
+  @BeforeEach
+  void stopTicking() {
+    // the tests drive a fresh wheel with fire(); the background thread would race them
+    slaAlarmService.stop();
+    ReflectionTestUtils.setField(slaAlarmService, "wheel", new TimerWheel<>(100, System.currentTimeMillis()));
+    reset(sink);
+  }
+
+  private static HelpRequest request(long id, LocalDateTime requestTime) {
+    return HelpRequest.builder().id(id).teamId("6").tableOrBreakoutRoom("3").requestTime(requestTime).build();
+  }
+
+  private static long millis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  @Test
+  void an_unsolved_request_raises_one_alarm_when_the_sla_passes() {
+    LocalDateTime requested = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+    slaAlarmService.track(request(7, requested));
+
+    slaAlarmService.fire(millis(requested.plusMinutes(20)) - 100);
+    verify(sink, times(0)).overdue(any());
+
+    slaAlarmService.fire(millis(requested.plusMinutes(20)));
+    slaAlarmService.fire(millis(requested.plusMinutes(30)));
+    ArgumentCaptor<OverdueAlarm> alarm = ArgumentCaptor.forClass(OverdueAlarm.class);
+    verify(sink, times(1)).overdue(alarm.capture());
+    assertEquals(7L, alarm.getValue().getId());
+    assertEquals("6", alarm.getValue().getTeamId());
+    assertEquals(Instant.ofEpochMilli(millis(requested.plusMinutes(20))), alarm.getValue().getDueAt());
+  }
+
+  @Test
+  void solving_or_deleting_cancels_the_alarm() {
+    LocalDateTime requested = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+    HelpRequest solved = request(8, requested);
+    slaAlarmService.track(solved);
+    slaAlarmService.track(request(9, requested));
+
+    solved.setSolved(true);
+    slaAlarmService.helpRequestChanged(EntityChangedEvent.updated(HelpRequest.class, 8L, null, solved));
+    slaAlarmService.helpRequestChanged(EntityChangedEvent.deleted(HelpRequest.class, 9L, null));
+
+    assertEquals(0, slaAlarmService.getPendingCount());
+    slaAlarmService.fire(millis(requested.plusMinutes(30)));
+    verify(sink, times(0)).overdue(any());
+  }
+
+  @Test
+  void requests_already_overdue_at_startup_are_raised_on_the_first_tick() {
+    when(helpRequestRepository.findBySolvedFalse())
+        .thenReturn(List.of(request(10, LocalDateTime.now().minusHours(1))));
+    slaAlarmService.load();
+
+    slaAlarmService.fire(System.currentTimeMillis() + 200);
+    verify(sink, times(1)).overdue(any());
+  }
+}
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import edu.ucsb.cs156.example.models.OverdueAlarm;
+
+class SseSlaAlarmSinkTests {
+
+  @Test
+  void subscribers_that_are_gone_are_dropped() {
+    SseSlaAlarmSink sink = new SseSlaAlarmSink();
+    SseEmitter emitter = sink.subscribe();
+    assertEquals(1, sink.getSubscriberCount());
+
+    // completed (e.g. the client went away) before the container ever handled it
+    emitter.complete();
+    sink.overdue(OverdueAlarm.builder().id(7L).build());
+
+    assertEquals(0, sink.getSubscriberCount());
+  }
+}
@@ -0,0 +1,159 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.EntityChangedEvent;
+import edu.ucsb.cs156.example.models.Trending;
+import edu.ucsb.cs156.example.models.TrendingItem;
+
+@ExtendWith(SpringExtension.class)
+@Import(TrendingService.class)
+@TestPropertySource(properties = { "app.trending.windows=5m,1h", "app.trending.bucketSeconds=60",
+    "app.trending.capacity=20", "app.trending.maxK=3", "app.trending.refreshSeconds=3600" })
+class TrendingServiceTests {
+
+  // on a minute boundary
+  private static final long NOON = Instant.parse("2023-01-02T12:00:00Z").toEpochMilli();
+
+  @Autowired
+  private TrendingService trendingService;
+
+  // the tests that go through reviewChanged() count at the current time
+  @BeforeEach
+  void restart() {
+    trendingService.stop();
+    trendingService.start();
+  }
+
+  private void review(long itemId, int stars, long atMillis) {
+    trendingService.reviewed(MenuItemReview.builder().itemId(itemId).stars(stars).build(), atMillis);
+  }
+
+  private static long minutes(long n) {
+    return Duration.ofMinutes(n).toMillis();
+  }
+
+  @Test
+  void windows_are_parsed_from_minutes_and_hours() {
+    assertEquals(Duration.ofMinutes(15), TrendingService.parseWindow("15m"));
+    assertEquals(Duration.ofHours(24), TrendingService.parseWindow("24h"));
+    assertNull(TrendingService.parseWindow("1d"));
+    assertNull(TrendingService.parseWindow("h"));
+    assertEquals(List.of("5m", "1h"), trendingService.getWindows());
+    assertTrue(trendingService.isWindow("1h"));
+    assertFalse(trendingService.isWindow("15m"));
+  }
+
+  @Test
+  void items_rank_by_total_stars_within_each_window() {
+    long now = NOON + minutes(24 * 60);
+    // item 1: many middling reviews half an hour ago; item 2: a few great ones just now
+    for (int i = 0; i < 10; i++) {
+      review(1, 3, now - minutes(30));
+    }
+    review(2, 5, now - minutes(1));
+    review(2, 5, now);
+    review(3, 1, now);
+
+    trendingService.refresh(now);
+
+    Trending lastHour = trendingService.trending("1h", 3);
+    assertEquals(Instant.ofEpochMilli(now), lastHour.getComputedAt());
+    assertEquals(List.of(
+        TrendingItem.builder().itemId(1).score(30).reviews(10).averageStars(3.0).build(),
+        TrendingItem.builder().itemId(2).score(10).reviews(2).averageStars(5.0).build(),
+        TrendingItem.builder().itemId(3).score(1).reviews(1).averageStars(1.0).build()), lastHour.getItems());
+
+    Trending lastFive = trendingService.trending("5m", 1);
+    assertEquals("5m", lastFive.getWindow());
+    assertEquals(List.of(TrendingItem.builder().itemId(2).score(10).reviews(2).averageStars(5.0).build()),
+        lastFive.getItems());
+  }
+
+  @Test
+  void only_new_reviews_that_were_not_flagged_count() {
+    MenuItemReview review = MenuItemReview.builder().itemId(1).stars(4).build();
+    trendingService.reviewChanged(EntityChangedEvent.created(MenuItemReview.class, 1L, review));
+    trendingService.reviewChanged(EntityChangedEvent.created(MenuItemReview.class, 2L,
+        MenuItemReview.builder().itemId(2).stars(5).flagged(true).build()));
+    trendingService.reviewChanged(EntityChangedEvent.updated(MenuItemReview.class, 1L, null, review));
+    trendingService.reviewChanged(EntityChangedEvent.deleted(MenuItemReview.class, 1L, review));
+
+    trendingService.refresh(System.currentTimeMillis());
+
+    assertEquals(List.of(TrendingItem.builder().itemId(1).score(4).reviews(1).averageStars(4.0).build()),
+        trendingService.trending("5m", 10).getItems());
+  }
+
+  @Test
+  void a_flagged_review_counts_once_its_flag_is_cleared() {
+    MenuItemReview flagged = MenuItemReview.builder().itemId(2).stars(5).flagged(true).build();
+    MenuItemReview cleared = flagged.toBuilder().flagged(false).build();
+    trendingService.reviewChanged(EntityChangedEvent.created(MenuItemReview.class, 2L, flagged));
+    trendingService.reviewChanged(EntityChangedEvent.updated(MenuItemReview.class, 2L, flagged, cleared));
+    // other edits of it don't count it again
+    trendingService.reviewChanged(EntityChangedEvent.updated(MenuItemReview.class, 2L, cleared, cleared));
+
+    trendingService.refresh(System.currentTimeMillis());
+
+    assertEquals(List.of(TrendingItem.builder().itemId(2).score(5).reviews(1).averageStars(5.0).build()),
+        trendingService.trending("5m", 10).getItems());
+  }
+
+  @Test
+  void a_rebuild_starts_over_from_the_reviews_given() {
+    Instant now = Instant.now();
+    review(1, 5, now.toEpochMilli());
+    review(1, 5, now.toEpochMilli());
+
+    trendingService.rebuild(List.of(
+        MenuItemReview.builder().itemId(2).stars(3).lastModified(now.minusSeconds(90)).build(),
+        MenuItemReview.builder().itemId(3).stars(5).lastModified(now.minusSeconds(600)).build(),
+        MenuItemReview.builder().itemId(4).stars(5).flagged(true).lastModified(now).build(),
+        MenuItemReview.builder().itemId(5).stars(5).build()));
+
+    assertEquals(Duration.ofHours(1), trendingService.getLongestWindow());
+    assertEquals(List.of(TrendingItem.builder().itemId(2).score(3).reviews(1).averageStars(3.0).build()),
+        trendingService.trending("5m", 10).getItems());
+    assertEquals(List.of(3L, 2L),
+        trendingService.trending("1h", 10).getItems().stream().map(TrendingItem::getItemId).toList());
+  }
+
+  @Test
+  void reviews_older_than_the_window_drop_out() {
+    long now = NOON + minutes(3 * 24 * 60);
+    review(7, 4, now - minutes(61));
+    review(8, 2, now - minutes(59));
+
+    trendingService.refresh(now);
+
+    assertEquals(List.of(8L), trendingService.trending("1h", 3).getItems().stream().map(TrendingItem::getItemId).toList());
+  }
+
+  @Test
+  void reads_serve_the_last_refresh() {
+    long now = NOON + minutes(5 * 24 * 60);
+    trendingService.refresh(now);
+    review(9, 5, now);
+
+    assertEquals(List.of(), trendingService.trending("1h", 3).getItems());
+    trendingService.refresh(now + 1000);
+    assertEquals(1, trendingService.trending("1h", 3).getItems().size());
+  }
+}
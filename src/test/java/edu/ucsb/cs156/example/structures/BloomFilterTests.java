@@ -0,0 +1,59 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTests {
+
+  @Test
+  void added_ids_are_always_found() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    for (long id = 1; id <= 10_000; id++) {
+      filter.add(id);
+    }
+    for (long id = 1; id <= 10_000; id++) {
+      assertTrue(filter.mightContain(id));
+    }
+  }
+
+  @Test
+  void false_positive_rate_is_near_the_target() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    for (long id = 1; id <= 10_000; id++) {
+      filter.add(id);
+    }
+    int falsePositives = 0;
+    for (long id = 10_001; id <= 20_000; id++) {
+      if (filter.mightContain(id)) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+  }
+
+  @Test
+  void string_ids_are_supported() {
+    BloomFilter filter = new BloomFilter(100, 0.01);
+    filter.add("ortega");
+    assertTrue(filter.mightContain("ortega"));
+    assertFalse(filter.mightContain("carrillo"));
+  }
+
+  @Test
+  void integer_and_long_ids_hash_alike() {
+    BloomFilter filter = new BloomFilter(100, 0.01);
+    filter.add(7);
+    assertTrue(filter.mightContain(7L));
+  }
+
+  @Test
+  void sizing_follows_the_usual_formulas() {
+    BloomFilter filter = new BloomFilter(1000, 0.01);
+    // m = -n ln p / (ln 2)^2 = 9586 bits, rounded up to whole words
+    assertEquals(9600, filter.getBitCount());
+    assertEquals(7, filter.getHashCount());
+  }
+}
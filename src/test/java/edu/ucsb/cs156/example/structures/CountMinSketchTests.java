@@ -0,0 +1,75 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTests {
+
+  @Test
+  void a_sketch_with_room_to_spare_counts_exactly() {
+    CountMinSketch sketch = new CountMinSketch(1024, 4);
+    sketch.add("pizza", 3);
+    sketch.add("tacos", 1);
+    assertEquals(5, sketch.add("pizza", 2));
+
+    assertEquals(5, sketch.estimate("pizza"));
+    assertEquals(1, sketch.estimate("tacos"));
+    assertEquals(0, sketch.estimate("sushi"));
+  }
+
+  @Test
+  void estimates_never_undercount_and_rarely_overcount_by_much() {
+    CountMinSketch sketch = new CountMinSketch(272, 5);
+    int keys = 5000;
+    for (int i = 0; i < keys; i++) {
+      sketch.add("item" + i, 1 + i % 7);
+    }
+    long total = 0;
+    for (int i = 0; i < keys; i++) {
+      total += 1 + i % 7;
+    }
+
+    // e * total / width, exceeded with probability at most e^-5 per key
+    double bound = Math.E * total / 272;
+    int over = 0;
+    for (int i = 0; i < keys; i++) {
+      long estimate = sketch.estimate("item" + i);
+      assertTrue(estimate >= 1 + i % 7);
+      if (estimate - (1 + i % 7) > bound) {
+        over++;
+      }
+    }
+    assertTrue(over < keys / 50, over + " keys over the bound");
+  }
+
+  @Test
+  void concurrent_adds_are_all_counted() throws InterruptedException {
+    CountMinSketch sketch = new CountMinSketch(64, 3);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          sketch.add("hot", 1);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(80_000, sketch.estimate("hot"));
+  }
+
+  @Test
+  void bad_arguments_are_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, 4));
+    assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(16, 4).add("x", -1));
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class FairShareQueueTests {
+
+  record Item(long id, String group, long time) {
+  }
+
+  private final FairShareQueue<Item> queue = new FairShareQueue<>(Item::id, Item::group,
+      Comparator.comparingLong(Item::time).thenComparingLong(Item::id));
+
+  private List<Long> drain() {
+    List<Long> ids = new ArrayList<>();
+    Item next;
+    while ((next = queue.poll(item -> false)) != null) {
+      ids.add(next.id());
+    }
+    return ids;
+  }
+
+  @Test
+  void groups_take_turns_and_each_group_is_served_oldest_first() {
+    queue.put(new Item(1, "a", 30));
+    queue.put(new Item(2, "a", 10));
+    queue.put(new Item(3, "a", 20));
+    queue.put(new Item(4, "b", 40));
+    queue.put(new Item(5, "c", 50));
+    queue.put(new Item(6, "b", 5));
+
+    assertEquals(List.of(2L, 6L, 5L, 3L, 4L, 1L), drain());
+  }
+
+  @Test
+  void an_overdue_item_jumps_the_rotation() {
+    queue.put(new Item(1, "a", 10));
+    queue.put(new Item(2, "a", 20));
+    queue.put(new Item(3, "b", 1));
+
+    assertEquals(1L, queue.poll(item -> false).id());
+    // b's item has now waited too long, and it's also b's turn
+    assertEquals(3L, queue.poll(item -> item.time() < 5).id());
+    assertEquals(2L, queue.poll(item -> item.time() < 5).id());
+  }
+
+  @Test
+  void put_replaces_an_item_with_the_same_id() {
+    queue.put(new Item(1, "a", 10));
+    queue.put(new Item(2, "b", 20));
+    queue.put(new Item(1, "c", 30));
+
+    assertEquals(2, queue.size());
+    assertEquals(List.of(2L, 1L), drain());
+  }
+
+  @Test
+  void removed_items_are_not_served_and_empty_groups_leave_the_rotation() {
+    queue.put(new Item(1, "a", 10));
+    queue.put(new Item(2, "b", 20));
+    queue.put(new Item(3, "b", 30));
+
+    assertTrue(queue.remove(1L));
+    assertFalse(queue.remove(1L));
+    assertEquals(List.of(2L, 3L), drain());
+    assertNull(queue.poll(item -> true));
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  void thousands_of_waiting_items_are_dispatched_fairly() {
+    // one team holding most of the queue gets one turn in eleven, not 90%
+    for (long id = 0; id < 10_000; id++) {
+      queue.put(new Item(id, id < 9_000 ? "big" : "small" + (id % 10), id));
+    }
+    List<Long> first = new ArrayList<>();
+    for (int i = 0; i < 22; i++) {
+      first.add(queue.poll(item -> false).id());
+    }
+    assertEquals(2, first.stream().filter(id -> id < 9_000).count());
+    assertEquals(9_978, queue.size());
+  }
+}
@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTests {
+
+  private static void assertWithin(double relativeError, long expected, long actual) {
+    assertTrue(Math.abs(actual - expected) <= relativeError * expected,
+        "expected %d within %.1f%% but was %d".formatted(expected, relativeError * 100, actual));
+  }
+
+  @Test
+  void small_counts_are_nearly_exact_and_repeats_do_not_count() {
+    HyperLogLog sketch = new HyperLogLog(12);
+    for (int repeat = 0; repeat < 3; repeat++) {
+      for (int i = 0; i < 200; i++) {
+        sketch.add("student" + i + "@ucsb.edu");
+      }
+    }
+    assertWithin(0.02, 200, sketch.estimate());
+    assertEquals(0, new HyperLogLog(12).estimate());
+  }
+
+  @Test
+  void large_counts_are_within_a_few_standard_errors() {
+    HyperLogLog sketch = new HyperLogLog(12);
+    for (int i = 0; i < 1_000_000; i++) {
+      sketch.add("student" + i + "@ucsb.edu");
+    }
+    assertWithin(4 * sketch.getStandardError(), 1_000_000, sketch.estimate());
+  }
+
+  @Test
+  void merging_gives_the_sketch_of_the_union() {
+    HyperLogLog monday = new HyperLogLog(12);
+    HyperLogLog tuesday = new HyperLogLog(12);
+    HyperLogLog both = new HyperLogLog(12);
+    for (int i = 0; i < 30_000; i++) {
+      // half of Tuesday's students also came on Monday
+      monday.add("student" + i);
+      tuesday.add("student" + (i + 15_000));
+      both.add("student" + i);
+      both.add("student" + (i + 15_000));
+    }
+
+    monday.merge(tuesday);
+
+    assertArrayEquals(both.toBytes(), monday.toBytes());
+    assertWithin(4 * both.getStandardError(), 45_000, monday.estimate());
+  }
+
+  @Test
+  void only_sketches_of_the_same_precision_merge() {
+    assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+  }
+
+  @Test
+  void bytes_round_trip_sparse_and_dense() {
+    HyperLogLog sparse = new HyperLogLog(12);
+    for (int i = 0; i < 100; i++) {
+      sparse.add("student" + i);
+    }
+    byte[] sparseBytes = sparse.toBytes();
+    assertTrue(sparseBytes.length < 400, "100 students took " + sparseBytes.length + " bytes");
+    assertArrayEquals(sparseBytes, HyperLogLog.fromBytes(sparseBytes).toBytes());
+    assertEquals(sparse.estimate(), HyperLogLog.fromBytes(sparseBytes).estimate());
+
+    HyperLogLog dense = new HyperLogLog(12);
+    for (int i = 0; i < 100_000; i++) {
+      dense.add("student" + i);
+    }
+    byte[] denseBytes = dense.toBytes();
+    assertEquals(2 + 4096, denseBytes.length);
+    assertEquals(dense.estimate(), HyperLogLog.fromBytes(denseBytes).estimate());
+  }
+}
@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class LogHistogramTests {
+
+  @Test
+  void small_values_are_exact() {
+    LogHistogram histogram = new LogHistogram();
+    for (int value = 1; value <= 10; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(10, histogram.count());
+    assertEquals(5, histogram.valueAtPercentile(50));
+    assertEquals(9, histogram.valueAtPercentile(90));
+    assertEquals(10, histogram.valueAtPercentile(100));
+    assertEquals(1, histogram.valueAtPercentile(0));
+    assertEquals(0, new LogHistogram().valueAtPercentile(50));
+  }
+
+  @Test
+  void every_value_lands_in_a_bucket_that_covers_it() {
+    for (long value = 0; value < 1_000_000; value += 7) {
+      long reported = LogHistogram.valueOf(LogHistogram.bucketOf(value));
+      assertTrue(Math.abs(reported - value) <= value / 64, "value " + value + " reported as " + reported);
+    }
+    long huge = Long.MAX_VALUE / 3;
+    assertTrue(Math.abs(LogHistogram.valueOf(LogHistogram.bucketOf(huge)) - huge) <= huge / 64);
+  }
+
+  @Test
+  void percentiles_are_within_two_percent_of_the_exact_ones() {
+    SplittableRandom random = new SplittableRandom(42);
+    long[] waits = new long[100_000];
+    LogHistogram histogram = new LogHistogram();
+    for (int i = 0; i < waits.length; i++) {
+      // roughly exponential waits averaging ten minutes
+      waits[i] = (long) (-600 * Math.log(1 - random.nextDouble()));
+      histogram.record(waits[i]);
+    }
+    Arrays.sort(waits);
+
+    for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+      long exact = waits[(int) Math.ceil(percentile / 100 * waits.length) - 1];
+      long estimate = histogram.valueAtPercentile(percentile);
+      assertTrue(Math.abs(estimate - exact) <= 0.02 * exact + 1,
+          "p%s: exact %d, estimated %d".formatted(percentile, exact, estimate));
+    }
+  }
+
+  @Test
+  void merging_adds_counts() {
+    LogHistogram a = new LogHistogram();
+    LogHistogram b = new LogHistogram();
+    LogHistogram both = new LogHistogram();
+    for (long value = 0; value < 10_000; value += 3) {
+      a.record(value);
+      b.record(value * 100);
+      both.record(value);
+      both.record(value * 100);
+    }
+
+    a.merge(b);
+
+    assertEquals(both.count(), a.count());
+    assertArrayEquals(both.toBytes(), a.toBytes());
+  }
+
+  @Test
+  void bytes_round_trip_compactly() {
+    LogHistogram histogram = new LogHistogram();
+    for (int i = 0; i < 1000; i++) {
+      histogram.record(60 * (i % 30));
+    }
+    byte[] bytes = histogram.toBytes();
+
+    assertTrue(bytes.length < 100, "30 distinct values took " + bytes.length + " bytes");
+    LogHistogram copy = LogHistogram.fromBytes(bytes);
+    assertEquals(1000, copy.count());
+    assertEquals(histogram.valueAtPercentile(90), copy.valueAtPercentile(90));
+    assertArrayEquals(bytes, copy.toBytes());
+  }
+}
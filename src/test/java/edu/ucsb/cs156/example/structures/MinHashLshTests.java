@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class MinHashLshTests {
+
+  // made-up vocabulary, so unrelated questions share few 4-grams
+  private static final String[] WORDS = new Random(1).ints(5_000, 0, Integer.MAX_VALUE)
+      .mapToObj(n -> Integer.toString(n, 36))
+      .toArray(String[]::new);
+
+  private static String randomQuestion(Random random, int words) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return text.toString();
+  }
+
+  @Test
+  void near_identical_texts_are_found_and_different_ones_are_not() {
+    MinHashLsh<Long> index = new MinHashLsh<>(16, 4);
+    index.put(1L, "My JUnit test fails with a NullPointerException in the controller");
+    index.put(2L, "my junit test fails with a null pointer exception in the controller!!");
+    index.put(3L, "How do I deploy the app to dokku?");
+
+    List<MinHashLsh.Match<Long>> similar = index.similar(
+        index.signature("My JUnit test fails with a NullPointerException in the controller"), 1L, 0.5, 10);
+
+    assertEquals(List.of(2L), similar.stream().map(MinHashLsh.Match::key).collect(Collectors.toList()));
+    assertTrue(similar.get(0).similarity() > 0.5);
+    assertEquals(List.of(List.of(1L, 2L)), index.clusters(0.5).stream()
+        .map(cluster -> cluster.stream().sorted().collect(Collectors.toList()))
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  void removed_and_replaced_texts_leave_their_old_buckets() {
+    MinHashLsh<Long> index = new MinHashLsh<>(16, 4);
+    index.put(1L, "merge conflict in pom.xml after pulling main");
+    index.put(2L, "merge conflict in pom.xml after pulling main");
+    index.put(3L, "merge conflict in pom.xml after pulling main");
+
+    index.remove(2L);
+    index.put(3L, "storybook won't start after npm install");
+
+    assertTrue(index.similar(index.signature("merge conflict in pom.xml after pulling main"), 1L, 0.5, 10).isEmpty());
+    assertTrue(index.clusters(0.5).isEmpty());
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  void text_without_letters_or_digits_is_not_indexed() {
+    MinHashLsh<Long> index = new MinHashLsh<>(16, 4);
+    assertNull(index.signature(" ?!... "));
+    index.put(1L, "???");
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  @Tag("benchmark")
+  void lookups_stay_fast_and_find_planted_duplicates_among_100k_requests() {
+    MinHashLsh<Long> index = new MinHashLsh<>(16, 4);
+    Random random = new Random(40);
+    Set<Long> planted = new HashSet<>();
+    long start = System.nanoTime();
+    for (long id = 0; id < 100_000; id++) {
+      if (id % 1_000 == 1) {
+        // a lightly edited copy of the previous question
+        planted.add(id);
+        index.put(id, randomQuestion(new Random(id - 1), 12) + " please help");
+      } else {
+        index.put(id, randomQuestion(new Random(id), 12));
+      }
+    }
+    long indexMillis = (System.nanoTime() - start) / 1_000_000;
+
+    int found = 0;
+    start = System.nanoTime();
+    for (long id : planted) {
+      List<MinHashLsh.Match<Long>> similar = index.similar(index.signature(randomQuestion(new Random(id - 1), 12)), null, 0.5, 10);
+      if (similar.stream().anyMatch(match -> match.key() == id)) {
+        found++;
+      }
+    }
+    long lookupMicros = (System.nanoTime() - start) / 1_000 / planted.size();
+
+    log.info("indexed 100k questions in {} ms; {} us per lookup; found {} of {} planted duplicates",
+        indexMillis, lookupMicros, found, planted.size());
+    assertTrue(found >= planted.size() * 9 / 10, "found only " + found);
+    // a linear scan would compare 100k signatures per lookup; a bucket lookup
+    // stays in the low milliseconds even on a slow CI machine
+    assertTrue(lookupMicros < 20_000, lookupMicros + "us per lookup");
+  }
+}
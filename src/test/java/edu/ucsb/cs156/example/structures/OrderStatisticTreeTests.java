@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+class OrderStatisticTreeTests {
+
+  @Test
+  void rank_counts_the_elements_that_sort_before() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+    for (int value : List.of(50, 10, 40, 20, 30)) {
+      assertTrue(tree.add(value));
+    }
+    assertFalse(tree.add(30));
+
+    assertEquals(5, tree.size());
+    assertEquals(0, tree.rank(10));
+    assertEquals(2, tree.rank(30));
+    assertEquals(4, tree.rank(50));
+    // values not in the tree rank where they would go
+    assertEquals(3, tree.rank(35));
+    assertEquals(5, tree.rank(99));
+  }
+
+  @Test
+  void removing_shifts_the_ranks_after_it() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+    for (int value = 1; value <= 10; value++) {
+      tree.add(value);
+    }
+    assertTrue(tree.remove(3));
+    assertFalse(tree.remove(3));
+    assertFalse(tree.contains(3));
+
+    assertEquals(9, tree.size());
+    assertEquals(1, tree.rank(2));
+    assertEquals(2, tree.rank(4));
+  }
+
+  @Test
+  void ranks_agree_with_a_sorted_set_under_random_adds_and_removes() {
+    OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+    TreeSet<Integer> expected = new TreeSet<>();
+    Random random = new Random(37);
+    for (int i = 0; i < 20_000; i++) {
+      int value = random.nextInt(5_000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(value), tree.remove(value));
+      } else {
+        assertEquals(expected.add(value), tree.add(value));
+      }
+    }
+
+    assertEquals(expected.size(), tree.size());
+    List<Integer> probes = new ArrayList<>(expected);
+    Collections.shuffle(probes, random);
+    for (int value : probes.subList(0, Math.min(500, probes.size()))) {
+      assertEquals(expected.headSet(value).size(), tree.rank(value));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCounterTests {
+
+  private static final long T0 = 1_700_000_000_000L;
+
+  @Test
+  void sums_only_the_buckets_inside_the_window() {
+    SlidingWindowCounter counter = new SlidingWindowCounter(1000, 60);
+    counter.increment(T0);
+    counter.increment(T0 + 500);
+    counter.increment(T0 + 10_000);
+    counter.increment(T0 + 30_000);
+
+    assertEquals(4, counter.sum(T0 + 30_000, 60));
+    assertEquals(2, counter.sum(T0 + 30_000, 21));
+    assertEquals(1, counter.sum(T0 + 30_000, 1));
+    assertEquals(1, counter.sum(T0 + 75_000, 60));
+  }
+
+  @Test
+  void a_bucket_reused_on_a_later_lap_starts_from_zero() {
+    SlidingWindowCounter counter = new SlidingWindowCounter(1000, 10);
+    counter.increment(T0);
+    counter.increment(T0);
+    counter.increment(T0 + 10_000); // same bucket, next lap
+
+    assertEquals(1, counter.sum(T0 + 10_000, 10));
+  }
+
+  @Test
+  void concurrent_increments_are_not_lost() throws Exception {
+    SlidingWindowCounter counter = new SlidingWindowCounter(1000, 60);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<?>> tasks = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      tasks.add(pool.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          counter.increment(T0 + i % 3_000);
+        }
+      }));
+    }
+    for (Future<?> task : tasks) {
+      task.get();
+    }
+    pool.shutdown();
+
+    assertEquals(80_000, counter.sum(T0 + 3_000, 60));
+  }
+}
@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class SpaceSavingTests {
+
+  @Test
+  void below_capacity_counts_are_exact() {
+    SpaceSaving<String> summary = new SpaceSaving<>(10);
+    summary.offer("tacos", 5);
+    summary.offer("pizza", 3);
+    summary.offer("tacos", 4);
+
+    assertEquals(List.of(
+        new SpaceSaving.Entry<>("tacos", 9, 0, 2),
+        new SpaceSaving.Entry<>("pizza", 3, 0, 1)), summary.top(5));
+    assertEquals(12, summary.getTotal());
+    assertEquals(1, summary.top(1).size());
+  }
+
+  @Test
+  void a_new_key_takes_over_the_lightest_counter_and_its_weight_as_error() {
+    SpaceSaving<String> summary = new SpaceSaving<>(2);
+    summary.offer("tacos", 5);
+    summary.offer("pizza", 2);
+    summary.offer("salad", 1);
+
+    assertEquals(List.of(
+        new SpaceSaving.Entry<>("tacos", 5, 0, 1),
+        new SpaceSaving.Entry<>("salad", 3, 2, 1)), summary.top(2));
+  }
+
+  @Test
+  void heavy_hitters_of_a_skewed_stream_are_found_with_bounded_error() {
+    SpaceSaving<Integer> summary = new SpaceSaving<>(50);
+    Map<Integer, Long> exact = new HashMap<>();
+    SplittableRandom random = new SplittableRandom(3);
+    for (int i = 0; i < 100_000; i++) {
+      // items 0..4 take half the stream, the other half is spread over 5000 items
+      int item = random.nextBoolean() ? random.nextInt(5) : 5 + random.nextInt(5000);
+      long stars = 1 + random.nextInt(5);
+      summary.offer(item, stars);
+      exact.merge(item, stars, Long::sum);
+    }
+
+    List<SpaceSaving.Entry<Integer>> top = summary.top(5);
+    for (SpaceSaving.Entry<Integer> entry : top) {
+      assertTrue(entry.key() < 5, "unexpected heavy hitter " + entry);
+      long truth = exact.get(entry.key());
+      assertTrue(entry.weight() >= truth && entry.weight() - entry.error() <= truth, entry + " vs " + truth);
+      assertTrue(entry.error() <= summary.getTotal() / summary.getCapacity());
+    }
+  }
+
+  @Test
+  void merging_adds_counts_and_charges_missing_keys_the_other_floor() {
+    SpaceSaving<String> a = new SpaceSaving<>(2);
+    a.offer("tacos", 5);
+    a.offer("pizza", 2);
+    SpaceSaving<String> b = new SpaceSaving<>(2);
+    b.offer("tacos", 4);
+    b.offer("salad", 3);
+
+    SpaceSaving<String> merged = new SpaceSaving<>(2);
+    merged.merge(a);
+    merged.merge(b);
+
+    // pizza could have had up to 3 in b, salad up to 2 in a: both 5, one kept
+    List<SpaceSaving.Entry<String>> top = merged.top(2);
+    assertEquals(new SpaceSaving.Entry<>("tacos", 9, 0, 2), top.get(0));
+    assertEquals(5, top.get(1).weight());
+    assertEquals(14, merged.getTotal());
+    assertEquals(2, merged.size());
+  }
+
+  @Test
+  void negative_weights_and_zero_capacity_are_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(0));
+    assertThrows(IllegalArgumentException.class, () -> new SpaceSaving<String>(1).offer("x", -1));
+  }
+}
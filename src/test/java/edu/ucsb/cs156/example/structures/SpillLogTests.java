@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillLogTests {
+
+  @TempDir
+  Path directory;
+
+  private static List<String> replay(SpillLog log, long afterSeq) {
+    List<String> records = new ArrayList<>();
+    log.replay(afterSeq, (seq, text) -> records.add(seq + ":" + text));
+    return records;
+  }
+
+  @Test
+  void records_are_numbered_and_replayed_in_order() {
+    try (SpillLog log = new SpillLog(directory, 2, false)) {
+      assertEquals(1, log.append("a"));
+      assertEquals(2, log.append("b"));
+      assertEquals(3, log.append("c"));
+
+      assertEquals(List.of("1:a", "2:b", "3:c"), replay(log, 0));
+      assertEquals(List.of("3:c"), replay(log, 2));
+      assertEquals(2, log.getSegmentCount());
+    }
+  }
+
+  @Test
+  void release_deletes_only_segments_that_are_wholly_done_with() {
+    try (SpillLog log = new SpillLog(directory, 2, true)) {
+      for (int i = 1; i <= 5; i++) {
+        log.append("r" + i);
+      }
+      assertEquals(3, log.getSegmentCount());
+
+      log.release(3);
+      assertEquals(2, log.getSegmentCount());
+      assertEquals(List.of("4:r4", "5:r5"), replay(log, 3));
+
+      log.release(5);
+      assertEquals(0, log.getSegmentCount());
+      assertEquals(6, log.append("r6"));
+      assertEquals(List.of("6:r6"), replay(log, 0));
+    }
+  }
+
+  @Test
+  void reopening_continues_the_numbering_and_keeps_unreleased_records() {
+    try (SpillLog log = new SpillLog(directory, 10, false)) {
+      log.append("a");
+      log.append("b");
+    }
+    try (SpillLog log = new SpillLog(directory, 10, false)) {
+      assertEquals(2, log.getLastSeq());
+      assertEquals(3, log.append("c"));
+      assertEquals(List.of("1:a", "2:b", "3:c"), replay(log, 0));
+    }
+  }
+
+  @Test
+  void a_fully_released_log_numbers_on_from_skip_to() {
+    try (SpillLog log = new SpillLog(directory, 10, false)) {
+      log.skipTo(41);
+      assertEquals(42, log.append("a"));
+      log.skipTo(7);
+      assertEquals(43, log.append("b"));
+    }
+  }
+
+  @Test
+  void a_record_cut_short_by_a_crash_is_skipped() throws IOException {
+    try (SpillLog log = new SpillLog(directory, 10, false)) {
+      log.append("whole");
+    }
+    try (var files = Files.list(directory)) {
+      Path segment = files.findFirst().orElseThrow();
+      Files.write(segment, "2\t{\"half".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+    try (SpillLog log = new SpillLog(directory, 10, false)) {
+      assertEquals(List.of("1:whole"), replay(log, 0));
+    }
+  }
+
+  @Test
+  void records_cannot_contain_newlines() {
+    try (SpillLog log = new SpillLog(directory, 10, false)) {
+      assertThrows(IllegalArgumentException.class, () -> log.append("two\nlines"));
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTests {
+
+  private static final long T0 = 1_700_000_000_000L;
+
+  @Test
+  void a_timer_fires_once_at_its_deadline_and_not_before() {
+    TimerWheel<Long, String> wheel = new TimerWheel<>(100, T0);
+    wheel.schedule(1L, "one", T0 + 1_050);
+
+    assertEquals(List.of(), wheel.advance(T0 + 1_000));
+    assertEquals(List.of(), wheel.advance(T0 + 1_099));
+    assertEquals(List.of("one"), wheel.advance(T0 + 1_100));
+    assertEquals(List.of(), wheel.advance(T0 + 5_000));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void a_past_deadline_fires_on_the_next_tick() {
+    TimerWheel<Long, String> wheel = new TimerWheel<>(100, T0);
+    wheel.schedule(1L, "late", T0 - 60_000);
+
+    assertEquals(List.of("late"), wheel.advance(T0 + 100));
+  }
+
+  @Test
+  void cancelled_and_replaced_timers_do_not_fire() {
+    TimerWheel<Long, String> wheel = new TimerWheel<>(100, T0);
+    wheel.schedule(1L, "cancelled", T0 + 500);
+    wheel.schedule(2L, "first", T0 + 500);
+    wheel.schedule(2L, "second", T0 + 900);
+
+    assertTrue(wheel.cancel(1L));
+    assertFalse(wheel.cancel(1L));
+    assertEquals(List.of(), wheel.advance(T0 + 800));
+    assertEquals(List.of("second"), wheel.advance(T0 + 900));
+  }
+
+  @Test
+  void timers_on_every_level_fire_on_their_own_tick() {
+    // 100ms ticks: level 0 covers 6.4s, level 1 ~7min, level 2 ~7.3h, level 3 ~19 days
+    TimerWheel<Long, Long> wheel = new TimerWheel<>(100, T0);
+    long[] delays = { 300, 6_400, 59_900, 20 * 60_000, 3 * 3_600_000, 5 * 86_400_000L, 30 * 86_400_000L };
+    for (long delay : delays) {
+      wheel.schedule(delay, delay, T0 + delay);
+    }
+
+    for (long delay : delays) {
+      assertEquals(List.of(), wheel.advance(T0 + delay - 100));
+      assertEquals(List.of(delay), wheel.advance(T0 + delay));
+    }
+  }
+
+  @Test
+  @Tag("benchmark")
+  void a_hundred_thousand_timers_each_fire_exactly_once_on_time() {
+    TimerWheel<Long, Long> wheel = new TimerWheel<>(100, T0);
+    Random random = new Random(39);
+    int count = 100_000;
+    for (long id = 0; id < count; id++) {
+      // deadlines spread over an hour, on tick boundaries
+      long deadline = T0 + (random.nextInt(36_000) + 1) * 100L;
+      wheel.schedule(id, deadline, deadline);
+    }
+    assertEquals(count, wheel.size());
+
+    List<Long> fired = new ArrayList<>();
+    long start = System.nanoTime();
+    for (long now = T0 + 100; now <= T0 + 3_600_000; now += 100) {
+      for (long deadline : wheel.advance(now)) {
+        assertEquals(now, deadline);
+        fired.add(deadline);
+      }
+    }
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(count, fired.size());
+    assertEquals(0, wheel.size());
+    // an hour of 100ms ticks with 100k timers is well under a second of work
+    assertTrue(elapsedMillis < 5_000, "took " + elapsedMillis + "ms");
+  }
+}
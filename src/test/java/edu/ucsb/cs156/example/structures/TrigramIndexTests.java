@@ -0,0 +1,188 @@
+package edu.ucsb.cs156.example.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class TrigramIndexTests {
+
+  private record Item(long id, String name, String commons, String station) {
+  }
+
+  private static final String[] STYLES = { "spicy", "grilled", "roasted", "crispy", "braised", "smoked", "teriyaki",
+      "orange", "lemon", "garlic", "honey", "chipotle", "cajun", "herb", "sesame", "szechuan", "korean", "thai",
+      "tandoori", "buffalo", "bbq", "pesto", "coconut", "ginger", "miso", "jerk", "mango", "sweet", "sour",
+      "black pepper" };
+  private static final String[] MAINS = { "chicken", "beef", "pork", "tofu", "salmon", "shrimp", "turkey", "lamb",
+      "tempeh", "cod", "tuna", "mushroom", "eggplant", "cauliflower", "chickpea", "lentil", "seitan", "duck",
+      "halibut", "bean" };
+  private static final String[] DISHES = { "bowl", "wrap", "burrito", "taco", "salad", "sandwich", "curry",
+      "stir fry", "pasta", "pizza", "soup", "stew", "skewers", "noodles", "fried rice", "quesadilla", "panini",
+      "burger", "flatbread", "ramen", "pho", "risotto", "enchiladas", "chili", "kebab", "sliders", "melt", "hash",
+      "omelette", "frittata" };
+  private static final String[] COMMONS = { "carrillo", "de-la-guerra", "ortega", "portola" };
+
+  private static TrigramIndex<Long, Item> indexOf(Item... items) {
+    TrigramIndex<Long, Item> index = new TrigramIndex<>(100);
+    for (Item item : items) {
+      index.put(item.id(), item.name(), item);
+    }
+    return index;
+  }
+
+  private static List<String> names(List<TrigramIndex.Match<Item>> matches) {
+    return matches.stream().map(match -> match.value().name()).toList();
+  }
+
+  @Test
+  void words_are_lower_cased_and_padded_into_trigrams() {
+    assertEquals("orange chicken", TrigramIndex.normalize("  Orange-Chicken!! "));
+    assertEquals("", TrigramIndex.normalize(" ?!... "));
+    // "  t", " to", "tof", "ofu", "fu "
+    assertEquals(5, TrigramIndex.trigrams("tofu").length);
+    assertEquals(10, TrigramIndex.trigrams("tofu tofu bowl").length);
+    assertEquals(0, TrigramIndex.trigrams("").length);
+  }
+
+  @Test
+  void edit_distance_is_to_the_closest_substring() {
+    assertEquals(0, TrigramIndex.substringDistance("chicken", "orange chicken bowl"));
+    assertEquals(1, TrigramIndex.substringDistance("chiken", "orange chicken bowl"));
+    assertEquals(1, TrigramIndex.substringDistance("burito", "burrito"));
+    assertEquals(2, TrigramIndex.substringDistance("chikn", "chicken"));
+    assertEquals(3, TrigramIndex.substringDistance("soup", "taco"));
+  }
+
+  @Test
+  void typos_find_the_closest_names_first() {
+    TrigramIndex<Long, Item> index = indexOf(
+        new Item(1, "Orange Chicken", "ortega", "Wok"),
+        new Item(2, "Chicken", "ortega", "Grill"),
+        new Item(3, "Chickpea Curry", "carrillo", "Vegan"),
+        new Item(4, "Tofu Bowl", "portola", "Vegan"));
+
+    List<TrigramIndex.Match<Item>> matches = index.search("chiken", null, 10);
+
+    // one edit from "chicken", the shorter name more alike; three from anything in "chickpea"
+    assertEquals(List.of("Chicken", "Orange Chicken"), names(matches));
+    assertEquals(1, matches.get(0).distance());
+    assertEquals(1, matches.get(1).distance());
+    assertTrue(matches.get(0).similarity() > matches.get(1).similarity());
+    assertEquals(List.of("Tofu Bowl"), names(index.search("TOFU bowl", null, 10)));
+    assertEquals(List.of("Orange Chicken"), names(index.search("chicken orange", null, 10)));
+    assertTrue(index.search("lasagna", null, 10).isEmpty());
+    assertTrue(index.search("?!", null, 10).isEmpty());
+  }
+
+  @Test
+  void the_same_name_is_one_entry_with_every_value_filtered_and_limited() {
+    TrigramIndex<Long, Item> index = indexOf(
+        new Item(1, "Orange Chicken", "ortega", "Wok"),
+        new Item(2, "orange chicken", "portola", "Wok"),
+        new Item(3, "Orange  Chicken!", "ortega", "Grill"),
+        new Item(4, "Chicken", "ortega", "Grill"));
+
+    assertEquals(List.of(1L, 2L, 3L), index.search("orange chiken", null, 10).stream()
+        .map(match -> match.value().id()).toList());
+    assertEquals(List.of(1L, 3L, 4L), index.search("chicken", item -> item.commons().equals("ortega"), 3).stream()
+        .map(match -> match.value().id()).sorted().toList());
+    assertEquals(List.of(3L, 4L), index.search("chicken", item -> item.station().equals("Grill"), 10).stream()
+        .map(match -> match.value().id()).sorted().toList());
+    assertEquals(2, index.search("chicken", null, 2).size());
+    assertEquals(4, index.size());
+  }
+
+  @Test
+  void removed_and_renamed_items_leave_their_old_names() {
+    TrigramIndex<Long, Item> index = indexOf(
+        new Item(1, "Orange Chicken", "ortega", "Wok"),
+        new Item(2, "Orange Chicken", "portola", "Wok"),
+        new Item(3, "Tofu Bowl", "portola", "Vegan"));
+
+    assertTrue(index.remove(1L));
+    assertFalse(index.remove(1L));
+    assertEquals(List.of(2L), index.search("orange chicken", null, 10).stream().map(match -> match.value().id()).toList());
+
+    index.put(2L, "Lemon Salmon", new Item(2, "Lemon Salmon", "portola", "Grill"));
+    assertTrue(index.search("orange chicken", null, 10).isEmpty());
+    assertEquals(List.of("Lemon Salmon"), names(index.search("salmn", null, 10)));
+
+    index.put(3L, "", new Item(3, "", "portola", "Vegan"));
+    assertTrue(index.search("tofu", null, 10).isEmpty());
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  void common_trigrams_are_counted_through_bitsets_and_stop_being_once_rare() {
+    TrigramIndex<Long, Item> index = new TrigramIndex<>(20);
+    for (long id = 0; id < 5_000; id++) {
+      String name = MAINS[(int) (id % MAINS.length)] + " special " + id;
+      index.put(id, name, new Item(id, name, COMMONS[(int) (id % COMMONS.length)], "Grill"));
+    }
+
+    // "special" is in every name, so its lists are dense
+    List<TrigramIndex.Match<Item>> matches = index.search("chiken specal 1240", null, 5);
+    assertEquals("chicken special 1240", matches.get(0).value().name());
+    assertEquals(2, matches.get(0).distance());
+    assertEquals("chicken special 1240",
+        index.search("chicken special 1240", item -> item.commons().equals("carrillo"), 5).get(0).value().name());
+
+    for (long id = 0; id < 4_900; id++) {
+      index.remove(id);
+    }
+    assertEquals(List.of("tofu special 4903"), names(index.search("tofu specal 4903", null, 1)));
+    assertEquals(100, index.size());
+  }
+
+  @Test
+  @Tag("benchmark")
+  void searches_stay_under_two_milliseconds_at_the_99th_percentile_among_500k_items() {
+    // menu items repeat: 500k of them over 18k distinct names
+    TrigramIndex<Long, Item> index = new TrigramIndex<>(100);
+    Random random = new Random(50);
+    long start = System.nanoTime();
+    for (long id = 0; id < 500_000; id++) {
+      String name = STYLES[random.nextInt(STYLES.length)] + " " + MAINS[random.nextInt(MAINS.length)] + " "
+          + DISHES[random.nextInt(DISHES.length)];
+      index.put(id, name, new Item(id, name, COMMONS[random.nextInt(COMMONS.length)], "station " + random.nextInt(12)));
+    }
+    long indexMillis = (System.nanoTime() - start) / 1_000_000;
+
+    String[] queries = { "chiken", "chicken", "orange chiken", "tofu bowl", "burito", "salmn", "teriyaki", "pho",
+        "ramen", "quesadila", "smokd duck", "spicy tuna", "cauliflower curry", "garlic shrimp pasta",
+        "bbq" };
+    int runs = 20_000;
+    long[] nanos = new long[runs];
+    for (int run = -5_000; run < runs; run++) {
+      String query = queries[Math.floorMod(run, queries.length)];
+      String commons = run % 3 == 0 ? COMMONS[Math.floorMod(run, COMMONS.length)] : null;
+      start = System.nanoTime();
+      List<TrigramIndex.Match<Item>> matches = index.search(query,
+          commons == null ? null : item -> item.commons().equals(commons), 10);
+      long elapsed = System.nanoTime() - start;
+      // the first 5k warm up
+      if (run >= 0) {
+        nanos[run] = elapsed;
+        assertFalse(matches.isEmpty(), query);
+      }
+    }
+    Arrays.sort(nanos);
+    long p50 = nanos[runs / 2] / 1_000;
+    long p99 = nanos[runs * 99 / 100] / 1_000;
+
+    log.info("indexed 500k menu items in {} ms; search p50 {} us, p99 {} us", indexMillis, p50, p99);
+    assertTrue(index.search("orange chiken", null, 10).stream()
+        .allMatch(match -> match.value().name().startsWith("orange chicken ")));
+    assertTrue(p99 < 2_000, "p99 " + p99 + "us");
+  }
+}
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.testconfig;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+
+import edu.ucsb.cs156.example.services.EntityCacheService;
+import edu.ucsb.cs156.example.services.IdempotencyService;
+import edu.ucsb.cs156.example.services.NegativeLookupService;
+import edu.ucsb.cs156.example.services.ResponseCacheService;
+
+// the services every ApiController autowires; they need the ObjectMapper
+// of a web context, so they are kept out of TestConfig
+@TestConfiguration
+public class ControllerTestConfig {
+
+    @Bean
+    public ResponseCacheService responseCacheService() {
+        return new ResponseCacheService();
+    }
+
+    @Bean
+    public EntityCacheService entityCacheService() {
+        return new EntityCacheService();
+    }
+
+    @Bean
+    public NegativeLookupService negativeLookupService() {
+        return new NegativeLookupService();
+    }
+
+    @Bean
+    public IdempotencyService idempotencyService() {
+        return new IdempotencyService();
+    }
+
+}